@@ -0,0 +1,88 @@
+package com.example.finder;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioAttributes;
+import android.media.RingtoneManager;
+import android.media.SoundPool;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.io.IOException;
+
+/**
+ * Plays the match sound on its own thread from a preloaded {@link SoundPool}, so announcing a
+ * match never waits for the ringtone to be looked up or decoded.
+ *
+ * <p>The default notification sound is loaded once when the alert sound is created. Until it is
+ * ready, announcements are skipped. {@link #play} only posts to the sound thread, so it is safe to
+ * call from the result thread.
+ */
+final class AlertSound {
+
+    private static final String TAG = "DEBUG_LOG";
+    private static final int MAX_STREAMS = 2;
+
+    private final HandlerThread thread = new HandlerThread("AlertSound");
+    private final Handler handler;
+    private final SoundPool soundPool;
+    // Only used on the sound thread.
+    private int soundId;
+    private boolean loaded;
+
+    AlertSound(Context context) {
+        Context appContext = context.getApplicationContext();
+        soundPool = new SoundPool.Builder()
+                .setMaxStreams(MAX_STREAMS)
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_NOTIFICATION_EVENT)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                        .build())
+                .build();
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        soundPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
+            @Override
+            public void onLoadComplete(SoundPool pool, int sampleId, int status) {
+                handler.post(() -> loaded = status == 0 && sampleId == soundId);
+            }
+        });
+        handler.post(() -> load(appContext));
+    }
+
+    private void load(Context context) {
+        Uri notification = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
+        try (AssetFileDescriptor sound =
+                     context.getContentResolver().openAssetFileDescriptor(notification, "r")) {
+            if (sound != null) {
+                soundId = soundPool.load(sound, 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "AlertSound: Failed to load " + notification, e);
+        }
+    }
+
+    /** Announces a match of a term of the given priority, if the sound is ready. */
+    void play(SearchTerm.Priority priority) {
+        handler.post(() -> {
+            if (!loaded) {
+                return;
+            }
+            float volume = priority == SearchTerm.Priority.HIGH ? 1f
+                    : priority == SearchTerm.Priority.NORMAL ? 0.7f : 0.4f;
+            // A higher pitch sets urgent terms apart without a second sound.
+            float rate = priority == SearchTerm.Priority.HIGH ? 1.25f : 1f;
+            soundPool.play(soundId, volume, volume, priority.ordinal(), 0, rate);
+        });
+    }
+
+    /** Stops the sound thread and frees the sound. */
+    void release() {
+        handler.post(() -> {
+            soundPool.release();
+            thread.quit();
+        });
+    }
+}
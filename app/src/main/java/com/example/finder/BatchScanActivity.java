@@ -0,0 +1,229 @@
+package com.example.finder;
+
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+
+import com.google.mlkit.vision.text.TextRecognizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Searches stored photos, the whole gallery or one folder, for the terms entered in
+ * {@link MainActivity}, listing the photos with matches as they are found.
+ */
+public class BatchScanActivity extends AppCompatActivity {
+
+    private static final String TAG = "DEBUG_LOG";
+    private static final String READ_PERMISSION = "android.permission.READ_EXTERNAL_STORAGE";
+    private static final int REQUEST_CODE_PERMISSIONS = 11;
+    private static final int REQUEST_CODE_FOLDER = 12;
+    private final BatchScanConfig batchScanConfig = BatchScanConfig.DEFAULT;
+    private TextRecognizer recognizer;
+    private final List<Uri> resultUris = new ArrayList<>();
+    private FrameMatcher frameMatcher;
+    private BatchScanner<Uri> scanner;
+    private ArrayAdapter<String> resultsAdapter;
+    private TextView progressText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        Objects.requireNonNull(getSupportActionBar()).hide();
+        setContentView(R.layout.activity_batch_scan);
+        recognizer = RecognizerStartup.getRecognizer(this);
+        Intent intent = getIntent();
+        String message = intent.getStringExtra(MainActivity.EXTRA_MESSAGE);
+        boolean patterns = intent.getBooleanExtra(MainActivity.EXTRA_PATTERNS, false);
+        List<String> terms = (patterns ? SearchSession.parsePatterns(message)
+                : SearchSession.parse(message)).getTermTexts();
+        // Results are listed, not drawn, so labels need no measuring; this also keeps the
+        // measurer safe to share between the scan workers.
+        MatchGeometry.LabelMeasurer noMeasurer = label -> 0f;
+        if (patterns) {
+            frameMatcher = new FrameMatcher(PatternMatcher.compile(terms), noMeasurer);
+        } else if (intent.getBooleanExtra(MainActivity.EXTRA_FUZZY, true)) {
+            frameMatcher = new FrameMatcher(FuzzyMatcher.compile(terms), noMeasurer);
+        } else {
+            frameMatcher = new FrameMatcher(TermMatcher.compile(terms), noMeasurer);
+        }
+
+        progressText = findViewById(R.id.scanProgressText);
+        resultsAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1);
+        ListView resultsList = findViewById(R.id.scanResultsList);
+        resultsList.setAdapter(resultsAdapter);
+        resultsList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                Intent viewIntent = new Intent(Intent.ACTION_VIEW, resultUris.get(position));
+                viewIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                startActivity(viewIntent);
+            }
+        });
+
+        Button galleryButton = findViewById(R.id.scanGalleryButton);
+        galleryButton.setOnClickListener(v -> {
+            if (ActivityCompat.checkSelfPermission(this, READ_PERMISSION)
+                    == PackageManager.PERMISSION_GRANTED) {
+                startScan(ImageSource.gallery(getContentResolver()));
+            } else {
+                ActivityCompat.requestPermissions(this, new String[] {READ_PERMISSION},
+                        REQUEST_CODE_PERMISSIONS);
+            }
+        });
+        Button folderButton = findViewById(R.id.scanFolderButton);
+        folderButton.setOnClickListener(v ->
+                startActivityForResult(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE),
+                        REQUEST_CODE_FOLDER));
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == REQUEST_CODE_PERMISSIONS) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                startScan(ImageSource.gallery(getContentResolver()));
+            } else {
+                Toast.makeText(this, "Permissions not granted by the user.", Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_CODE_FOLDER && resultCode == RESULT_OK && data != null
+                && data.getData() != null) {
+            startScan(ImageSource.folder(getContentResolver(), data.getData()));
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (scanner != null) {
+            scanner.cancel();
+        }
+    }
+
+    /** Cancels any running scan and starts scanning the given images on a background thread. */
+    private void startScan(ImageSource source) {
+        if (scanner != null) {
+            scanner.cancel();
+        }
+        resultUris.clear();
+        resultsAdapter.clear();
+        progressText.setText(R.string.scanStarting);
+        ScanListener listener = new ScanListener();
+        BatchScanner<Uri> batchScanner = new BatchScanner<>(batchScanConfig,
+                new StillImageRecognizer(getContentResolver(), recognizer, batchScanConfig),
+                frameMatcher, listener);
+        listener.owner = batchScanner;
+        scanner = batchScanner;
+        new Thread(() -> {
+            try {
+                batchScanner.run(source);
+            } finally {
+                source.close();
+            }
+        }, "BatchScanSource").start();
+    }
+
+    public void goBack(View view) {
+        this.finish();
+    }
+
+    /** Returns the name an image is shown with in the results. */
+    private String displayName(Uri image) {
+        try (Cursor cursor = getContentResolver().query(image,
+                new String[] {OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && cursor.getString(0) != null) {
+                return cursor.getString(0);
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "displayName: No name for " + image, e);
+        }
+        return image.getLastPathSegment();
+    }
+
+    /** Posts results to the list as each image completes. Runs on the scan workers. */
+    private class ScanListener implements BatchScanner.Listener<Uri> {
+
+        private BatchScanner<Uri> owner;
+
+        @Override
+        public void onImageScanned(Uri image, RecognizedText text, int hitCount,
+                                   MatchGeometry matches) {
+            TextIndex index = SharedTextIndex.get(BatchScanActivity.this);
+            if (index != null) {
+                // A photo scanned again replaces what was indexed for it before.
+                index.replace(image.toString(), System.currentTimeMillis(), text);
+            }
+            if (hitCount > 0) {
+                StringBuilder summary = new StringBuilder(displayName(image))
+                        .append(" (").append(hitCount).append(hitCount == 1 ? " hit)" : " hits)");
+                for (int i = 0; i < matches.size(); i++) {
+                    summary.append('\n').append(matches.getLabel(i));
+                }
+                String entry = summary.toString();
+                runOnUiThread(() -> {
+                    if (isCurrent()) {
+                        resultUris.add(image);
+                        resultsAdapter.add(entry);
+                    }
+                });
+            }
+            postProgress(false);
+        }
+
+        @Override
+        public void onImageFailed(Uri image, Exception error) {
+            Log.w(TAG, "onImageFailed: " + image, error);
+            postProgress(false);
+        }
+
+        @Override
+        public void onScanFinished(BatchScanner.Progress progress) {
+            SharedTextIndex.flush();
+            postProgress(true);
+        }
+
+        private void postProgress(boolean finished) {
+            BatchScanner.Progress progress = owner.getProgress();
+            String status = String.format(Locale.getDefault(),
+                    "%s%d scanned, %d with matches, %d failed, %.1f images/s",
+                    finished ? "Done: " : "", progress.getScannedCount(),
+                    progress.getMatchedCount(), progress.getFailedCount(),
+                    progress.getImagesPerSecond());
+            runOnUiThread(() -> {
+                if (isCurrent()) {
+                    progressText.setText(status);
+                }
+            });
+        }
+
+        /** Returns whether this listener's scan is still the one shown. Call on the UI thread. */
+        private boolean isCurrent() {
+            return scanner == owner;
+        }
+    }
+}
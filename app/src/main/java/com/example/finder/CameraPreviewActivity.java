@@ -1,92 +1,173 @@
 package com.example.finder;
 
-import android.annotation.SuppressLint;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Point;
-import android.graphics.Rect;
-import android.media.Ringtone;
-import android.media.RingtoneManager;
-import android.net.Uri;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
 import android.util.Log;
-import android.util.Size;
 import android.view.View;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.camera.core.Camera;
-import androidx.camera.core.CameraSelector;
-import androidx.camera.core.ImageAnalysis;
-import androidx.camera.core.ImageProxy;
-import androidx.camera.core.Preview;
-import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.app.ActivityCompat;
-import androidx.core.content.ContextCompat;
-
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.android.gms.tasks.Task;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.text.Text;
-import com.google.mlkit.vision.text.TextRecognition;
-import com.google.mlkit.vision.text.TextRecognizer;
-import com.google.mlkit.vision.text.TextRecognizerOptions;
 
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 public class CameraPreviewActivity extends AppCompatActivity {
 
     private static final String[] REQUIRED_PERMISSIONS = new String[] {"android.permission.CAMERA", "android.permission.WRITE_EXTERNAL_STORAGE"};
     private static final int REQUEST_CODE_PERMISSIONS = 10;
     private static final String TAG = "DEBUG_LOG";
-    private ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
-    private final Executor executor = Executors.newSingleThreadExecutor();
+    private static final int MAX_TOAST_LINES = 5;
     private String message;
-    private final TextRecognizer recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+    // Shared with other launches; capture, recognition and matching all run there.
+    private CameraScanner scanner;
+    private CameraSearch search;
     private PreviewView cameraPreviewView;
-    private ProcessCameraProvider cameraProvider;
-    private Preview previewUsecase;
-    private CameraSelector cameraSelector;
-    private ImageAnalysis imageAnalysisUsecase;
-    private long lastNotificationRingtime = System.currentTimeMillis();
     private GraphicOverlay graphicOverlay;
+    private boolean cameraAttached;
     DisplayMetrics metrics;
 
+    /** Draws the engine's results on the overlay. */
+    private final ScanEngine.Display overlayDisplay = new ScanEngine.Display() {
+        @Override
+        public ViewTransform prepare(CropRegion crop) {
+            graphicOverlay.setImageSourceInfo(crop.getUprightImageWidth(),
+                    crop.getUprightImageHeight(), false,
+                    crop.getUprightOffsetX(), crop.getUprightOffsetY());
+            return graphicOverlay.getViewTransform();
+        }
+
+        @Override
+        public RegionOfInterest getRegionOfInterest() {
+            return graphicOverlay.getRegionOfInterest();
+        }
+
+        @Override
+        public void show(RecognizedText text, MatchGeometry matches, ViewTransform transform) {
+            // Built here rather than on a tap, so a tap only looks up a few grid cells.
+            graphicOverlay.setTextGrid(TextGrid.build(text), transform);
+            graphicOverlay.postCommit();
+        }
+    };
+
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         Objects.requireNonNull(getSupportActionBar()).hide();
+        StartupTimeline launchTimeline = new StartupTimeline("launch",
+                SystemClock.elapsedRealtimeNanos());
         setContentView(R.layout.activity_camera_preview);
-        getLifecycle().addObserver(recognizer);
+        scanner = CameraScanner.get(this);
         // Get the Intent that started this activity and extract the string
         Intent intent = getIntent();
         cameraPreviewView = findViewById(R.id.cameraPreviewView);
-        cameraSelector = new CameraSelector.Builder()
-                .requireLensFacing(CameraSelector.LENS_FACING_BACK)
-                .build();
         message = intent.getStringExtra(MainActivity.EXTRA_MESSAGE);
+        search = scanner.getSearch();
+        if (savedInstanceState == null || search == null) {
+            // A new launch; a recreated activity carries on with the running search.
+            boolean patterns = intent.getBooleanExtra(MainActivity.EXTRA_PATTERNS, false);
+            SearchSession session = patterns ? SearchSession.parsePatterns(message)
+                    : SearchSession.parse(message);
+            List<String> terms = session.getTermTexts();
+            // The matcher runs on the result thread, so it gets its own label measurer.
+            FrameMatcher matcher;
+            if (patterns) {
+                matcher = new FrameMatcher(PatternMatcher.compile(terms),
+                        TextGraphic.newLabelMeasurer());
+            } else if (intent.getBooleanExtra(MainActivity.EXTRA_FUZZY, true)) {
+                matcher = new FrameMatcher(FuzzyMatcher.compile(terms),
+                        TextGraphic.newLabelMeasurer());
+            } else {
+                matcher = new FrameMatcher(TermMatcher.compile(terms),
+                        TextGraphic.newLabelMeasurer());
+            }
+            scanner.startSearch(session, matcher, launchTimeline);
+            search = scanner.getSearch();
+        }
+        ScanEngine engine = scanner.getEngine();
+        AnalysisConfig analysisConfig = engine.getConfig();
         graphicOverlay = findViewById(R.id.graphicOverlay);
+        if (analysisConfig.getMode() == AnalysisConfig.Mode.REGION_OF_INTEREST) {
+            graphicOverlay.setRegionOfInterest(analysisConfig.getDefaultRegion());
+            graphicOverlay.setRegionSelectionEnabled(true);
+        }
+        graphicOverlay.setTextSelectionListener(new GraphicOverlay.TextSelectionListener() {
+            @Override
+            public void onWordSelected(TextGrid grid, int element) {
+                showToast(describeSelection(grid, element));
+            }
+
+            @Override
+            public void onRegionSelected(TextGrid grid, int[] lines, int count) {
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < Math.min(count, MAX_TOAST_LINES); i++) {
+                    text.append(i > 0 ? "\n" : "").append(grid.getText(lines[i]));
+                }
+                if (count > 0) {
+                    showToast(text.toString());
+                }
+            }
+        });
+        // A single graphic renders the tracked matches for the lifetime of the activity.
+        graphicOverlay.add(new TextGraphic(graphicOverlay, engine.getTracker(),
+                search.getSession()));
+        graphicOverlay.setMetrics(engine.getMetrics());
+        if (BuildConfig.METRICS_OVERLAY) {
+            graphicOverlay.add(new MetricsGraphic(graphicOverlay, engine.getMetrics()));
+        }
         metrics = getResources().getDisplayMetrics();
-        Log.d(TAG, "onCreate: " + message);
-        if (allPermissionGranted()) {
-            startCamera();
-        } else {
+        if (BuildConfig.VERBOSE_LOGGING) {
+            Log.d(TAG, "onCreate: " + message);
+        }
+        if (!allPermissionGranted()) {
             ActivityCompat.requestPermissions(this, REQUIRED_PERMISSIONS, REQUEST_CODE_PERMISSIONS);
         }
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (allPermissionGranted()) {
+            attachCamera();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (cameraAttached) {
+            scanner.detach(cameraPreviewView, overlayDisplay);
+            cameraAttached = false;
+        }
+        search.exportMetrics(scanner.getEngine().getMetrics());
+        SharedTextIndex.flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (isFinishing() && scanner.getSearch() == search) {
+            // Left for good rather than recreated, e.g. on rotation.
+            scanner.stopSearch();
+        }
+    }
+
+    /** Shows the camera and the engine's results in this activity. */
+    private void attachCamera() {
+        if (cameraAttached) {
+            return;
+        }
+        scanner.attach(cameraPreviewView, overlayDisplay, metrics.widthPixels,
+                metrics.heightPixels, getWindowManager().getDefaultDisplay().getRotation());
+        cameraAttached = true;
+    }
+
     private boolean allPermissionGranted() {
         for(String permission: REQUIRED_PERMISSIONS) {
             if (ActivityCompat.checkSelfPermission(this, permission) != PackageManager.PERMISSION_GRANTED) {
@@ -101,7 +182,7 @@ public class CameraPreviewActivity extends AppCompatActivity {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == REQUEST_CODE_PERMISSIONS) {
             if (allPermissionGranted()) {
-                startCamera();
+                attachCamera();
             } else {
                 Toast.makeText(this, "Permissions not granted by the user.", Toast.LENGTH_SHORT).show();
                 this.finish();
@@ -109,118 +190,56 @@ public class CameraPreviewActivity extends AppCompatActivity {
         }
     }
 
-    private void startCamera() {
-        cameraProviderFuture = ProcessCameraProvider.getInstance(this);
-        cameraProviderFuture.addListener(new Runnable() {
+    public void goBack(View view) {
+        this.finish();
+    }
+
+    /** Recognizes a high-resolution still of the scene, for print too small for the preview. */
+    public void deepScan(View view) {
+        boolean started = scanner.deepScan(new CameraScanner.DeepScanListener() {
             @Override
-            public void run() {
-                try {
-                    cameraProvider = cameraProviderFuture.get();
-                    bindPreview();
-                } catch (ExecutionException | InterruptedException e) {
-                    // No errors need to be handled for this Future.
-                    // This should never be reached.
+            public void onDeepScanFinished(DeepScanner.Result result) {
+                if (isDestroyed()) {
+                    return;
                 }
+                int lines = 0;
+                for (RecognizedText.Block block : result.getText().getBlocks()) {
+                    lines += block.getLines().size();
+                }
+                showToast(getString(R.string.deepScanFinished, lines, result.getTileCount()));
             }
-        }, ContextCompat.getMainExecutor(this));
-    }
 
-    private void bindPreview() {
-        if (cameraProvider == null) {
-            Log.d(TAG, "bindPreview: cameraProvider == null");
-        }
-        if (previewUsecase != null) {
-            cameraProvider.unbind(previewUsecase);
+            @Override
+            public void onDeepScanFailed(Exception e) {
+                if (!isDestroyed()) {
+                    showToast(getString(R.string.deepScanFailed));
+                }
+            }
+        });
+        if (started) {
+            showToast(getString(R.string.deepScanStarted));
         }
-        setupPreviewUsecase();
-
-        setupImageAnalysisUsecase();
-
-        cameraProvider.bindToLifecycle(this, cameraSelector, previewUsecase, imageAnalysisUsecase);
     }
 
-    private void setupImageAnalysisUsecase() {
-        if (imageAnalysisUsecase != null) {
-            cameraProvider.unbind(imageAnalysisUsecase);
-        }
-        Size targetResolution = new Size(metrics.widthPixels, metrics.heightPixels);
-        imageAnalysisUsecase =
-                new ImageAnalysis.Builder()
-                        .setTargetResolution(targetResolution)
-                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                        .build();
-        imageAnalysisUsecase.setAnalyzer(executor, new TextAnalyzer());
-    }
-
-    private void setupPreviewUsecase() {
-        Preview.Builder builder = new Preview.Builder();
-        Size targetResolution = new Size(metrics.widthPixels, metrics.heightPixels);
-        builder.setTargetResolution(targetResolution);
-        previewUsecase = builder.build();
-        previewUsecase.setSurfaceProvider(cameraPreviewView.getSurfaceProvider());
-    }
-
-    public void goBack(View view) {
-        this.finish();
+    /**
+     * Describes a tapped word with its line and the line to the right of it, such as the price
+     * next to a product name.
+     */
+    private static String describeSelection(TextGrid grid, int element) {
+        StringBuilder text = new StringBuilder(grid.getText(element));
+        int line = grid.getLine(element);
+        if (line >= 0) {
+            text.append("\n").append(grid.getText(line));
+            int next = grid.findNeighbour(line, TextGrid.Direction.RIGHT, TextGrid.Kind.LINE,
+                    Float.MAX_VALUE);
+            if (next >= 0) {
+                text.append(" \u2192 ").append(grid.getText(next));
+            }
+        }
+        return text.toString();
     }
 
     public void showToast(String message) {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
-
-    private class TextAnalyzer implements ImageAnalysis.Analyzer {
-
-        @Override
-        public void analyze(@NonNull ImageProxy imageProxy) {
-            @SuppressLint("UnsafeOptInUsageError") InputImage image =
-                    InputImage.fromMediaImage(Objects.requireNonNull(imageProxy.getImage()),
-                            imageProxy.getImageInfo().getRotationDegrees());
-
-            recognizer.process(image)
-                    .addOnSuccessListener(new OnSuccessListener<Text>() {
-                        @Override
-                        public void onSuccess(Text visionText) {
-                            graphicOverlay.clear();
-                            processTextBlock(visionText);
-                        }
-                    })
-                    .addOnFailureListener(
-                            new OnFailureListener() {
-                                @Override
-                                public void onFailure(@NonNull Exception e) {
-                                    // Task failed with an exception
-                                    Log.d(TAG, "onFailure: Failed to detect text", e);
-                                }
-                            })
-                    .addOnCompleteListener(new OnCompleteListener<Text>() {
-                        @Override
-                        public void onComplete(@NonNull Task<Text> task) {
-                            imageProxy.close();
-                        }
-                    });
-        }
-
-        private void processTextBlock(Text visionText) {
-            String resultText = visionText.getText().toLowerCase();
-            Log.d(TAG, "processTextBlock: " + resultText);
-            if (resultText.contains(message.toLowerCase())) {
-                Log.d(TAG, "processTextBlock: " + System.currentTimeMillis());
-                long currentTime = System.currentTimeMillis();
-                // 3 second cooldown time
-                if (currentTime - lastNotificationRingtime > (1000*3)) {
-                    try {
-                        Uri notification = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_NOTIFICATION);
-                        Ringtone r = RingtoneManager.getRingtone(getApplicationContext(), notification);
-                        r.play();
-                        lastNotificationRingtime = currentTime;
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-                graphicOverlay.add(new TextGraphic(graphicOverlay, visionText, message));
-            } else {
-                //showToast(resultText);
-            }
-        }
-    }
-}
\ No newline at end of file
+}
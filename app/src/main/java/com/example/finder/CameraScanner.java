@@ -0,0 +1,525 @@
+package com.example.finder;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.Preview;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The app's single {@link ScanEngine}, fed by the back camera, shared by all camera previews.
+ *
+ * <p>The camera is bound to the scanner's own lifecycle rather than to an activity, so the camera
+ * session, the engine's filters, caches and quality level, and the current {@link CameraSearch}
+ * all survive the preview being recreated on rotation: the new preview only {@link #attach}es its
+ * view and overlay. The camera keeps running for {@link #RELEASE_DELAY_MILLIS} after the last
+ * preview detaches, which covers recreation, and is then closed until a preview attaches again,
+ * since apps may not use the camera in the background.
+ *
+ * <p>On request, a {@link #deepScan deep scan} captures a still at a far higher resolution than
+ * the analysis frames and recognizes it tile by tile, for print too small to read otherwise.
+ *
+ * <p>All methods must be called on the main thread.
+ */
+final class CameraScanner implements LifecycleOwner {
+
+    /** Receives the outcome of a deep scan, on the main thread. */
+    interface DeepScanListener {
+        void onDeepScanFinished(DeepScanner.Result result);
+
+        void onDeepScanFailed(Exception e);
+    }
+
+    /** How long the camera keeps running without a preview attached. */
+    static final long RELEASE_DELAY_MILLIS = 3000;
+
+    private static final String TAG = "DEBUG_LOG";
+    private static final int STATS_LOG_INTERVAL_FRAMES = 100;
+    private static CameraScanner instance;
+
+    private final Context appContext;
+    private final LifecycleRegistry lifecycle = new LifecycleRegistry(this);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ScanEngine engine;
+    private final AlertSound alertSound;
+    private final CameraSelector cameraSelector = new CameraSelector.Builder()
+            .requireLensFacing(CameraSelector.LENS_FACING_BACK)
+            .build();
+    private final Runnable releaseCamera = new Runnable() {
+        @Override
+        public void run() {
+            lifecycle.setCurrentState(Lifecycle.State.CREATED);
+        }
+    };
+    private volatile CameraSearch search;
+    private ProcessCameraProvider cameraProvider;
+    private Preview previewUsecase;
+    private ImageAnalysis imageAnalysisUsecase;
+    // Only bound once a deep scan is requested, since it may lower the other use cases' sizes.
+    private ImageCapture imageCaptureUsecase;
+    // Runs the capture callback and then blocks on the tiles of one deep scan at a time.
+    private final ExecutorService deepScanExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "DeepScanCapture"));
+    private boolean deepScanning;
+    private PreviewView previewView;
+    // Display size and rotation the use cases were last set up for.
+    private int displayWidth;
+    private int displayHeight;
+    private int displayRotation;
+    // Long edge the analysis use case was last bound with.
+    private int analysisLongEdge;
+
+    private CameraScanner(Context context) {
+        appContext = context.getApplicationContext();
+        AnalysisConfig config = RecognizerStartup.getAnalysisConfig(appContext);
+        FrameScheduler scheduler = FrameScheduler.create(config.getMaxFramesInFlight());
+        engine = new ScanEngine(config, FrameFilterConfig.DEFAULT, scheduler,
+                new MlKitRecognizer(RecognizerStartup.getRecognizer(appContext),
+                        scheduler.getResultExecutor()),
+                new ScanEngine.QualityListener() {
+                    @Override
+                    public void onQualityChanged(QualityController.Level level) {
+                        if (BuildConfig.VERBOSE_LOGGING) {
+                            Log.d(TAG, "onQualityChanged: " + level + " changes="
+                                    + engine.getQualityController().getChangeCount());
+                        }
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                rebindAnalysisIfNeeded();
+                            }
+                        });
+                    }
+                });
+        // Loaded once, so that later searches can sound straight away.
+        alertSound = new AlertSound(appContext);
+        lifecycle.setCurrentState(Lifecycle.State.CREATED);
+        listenForThermalStatus();
+    }
+
+    static synchronized CameraScanner get(Context context) {
+        if (instance == null) {
+            instance = new CameraScanner(context);
+        }
+        return instance;
+    }
+
+    @NonNull
+    @Override
+    public Lifecycle getLifecycle() {
+        return lifecycle;
+    }
+
+    ScanEngine getEngine() {
+        return engine;
+    }
+
+    /** Returns the running search, or null if there is none. */
+    CameraSearch getSearch() {
+        return search;
+    }
+
+    /** Starts a search, replacing and closing the running one. */
+    void startSearch(SearchSession session, FrameMatcher matcher, StartupTimeline launchTimeline) {
+        stopSearch();
+        CameraSearch newSearch = new CameraSearch(appContext, session, alertSound, launchTimeline);
+        engine.startSearch(session, matcher, newSearch);
+        newSearch.setAlerter(engine.getAlerter());
+        search = newSearch;
+    }
+
+    /** Stops and closes the running search, if any. */
+    void stopSearch() {
+        CameraSearch current = search;
+        if (current != null) {
+            engine.stopSearch();
+            search = null;
+            current.close();
+        }
+    }
+
+    /**
+     * Shows the camera on a preview and results on a display, starting the camera if needed.
+     *
+     * @param rotation the display's {@code Surface.ROTATION_*}
+     */
+    void attach(PreviewView view, ScanEngine.Display display, int width, int height,
+                int rotation) {
+        mainHandler.removeCallbacks(releaseCamera);
+        previewView = view;
+        engine.attach(display);
+        lifecycle.setCurrentState(Lifecycle.State.STARTED);
+        if (cameraProvider == null) {
+            displayWidth = width;
+            displayHeight = height;
+            displayRotation = rotation;
+            ListenableFuture<ProcessCameraProvider> future =
+                    RecognizerStartup.getCameraProvider(appContext);
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        cameraProvider = future.get();
+                        bindUseCases();
+                    } catch (ExecutionException | InterruptedException e) {
+                        // No errors need to be handled for this Future.
+                        // This should never be reached.
+                    }
+                }
+            }, ContextCompat.getMainExecutor(appContext));
+            return;
+        }
+        if (previewUsecase == null) {
+            // Still waiting for the camera provider, which binds for the latest preview.
+            return;
+        }
+        if (Math.max(width, height) != Math.max(displayWidth, displayHeight)
+                || Math.min(width, height) != Math.min(displayWidth, displayHeight)) {
+            // Another display, e.g. in multi-window mode, so the resolutions are chosen again.
+            displayWidth = width;
+            displayHeight = height;
+            displayRotation = rotation;
+            bindUseCases();
+            return;
+        }
+        // Only rotated, which the bound use cases follow without restarting the camera.
+        displayRotation = rotation;
+        previewUsecase.setTargetRotation(rotation);
+        imageAnalysisUsecase.setTargetRotation(rotation);
+        if (imageCaptureUsecase != null) {
+            imageCaptureUsecase.setTargetRotation(rotation);
+        }
+        previewUsecase.setSurfaceProvider(view.getSurfaceProvider());
+        markCameraBound();
+    }
+
+    /** Stops showing the camera and results on a preview, if it is the attached one. */
+    void detach(PreviewView view, ScanEngine.Display display) {
+        engine.detach(display);
+        if (previewView != view) {
+            return;
+        }
+        if (previewUsecase != null) {
+            previewUsecase.setSurfaceProvider(null);
+        }
+        previewView = null;
+        mainHandler.postDelayed(releaseCamera, RELEASE_DELAY_MILLIS);
+    }
+
+    private void bindUseCases() {
+        if (previewView == null) {
+            // Detached before the camera provider was ready.
+            return;
+        }
+        cameraProvider.unbindAll();
+        Preview.Builder builder = new Preview.Builder();
+        builder.setTargetResolution(new Size(displayWidth, displayHeight));
+        builder.setTargetRotation(displayRotation);
+        previewUsecase = builder.build();
+        previewUsecase.setSurfaceProvider(previewView.getSurfaceProvider());
+        setupImageAnalysisUsecase();
+        if (imageCaptureUsecase != null) {
+            setupImageCaptureUsecase();
+            cameraProvider.bindToLifecycle(this, cameraSelector, previewUsecase,
+                    imageAnalysisUsecase, imageCaptureUsecase);
+        } else {
+            cameraProvider.bindToLifecycle(this, cameraSelector, previewUsecase,
+                    imageAnalysisUsecase);
+        }
+        markCameraBound();
+    }
+
+    /**
+     * Sets up capturing stills in the display's aspect ratio, so they show what the preview
+     * shows, at a long edge of up to {@link DeepScanConfig#getMaxLongEdge()}.
+     */
+    private void setupImageCaptureUsecase() {
+        float scale = (float) DeepScanConfig.DEFAULT.getMaxLongEdge()
+                / Math.max(displayWidth, displayHeight);
+        imageCaptureUsecase =
+                new ImageCapture.Builder()
+                        .setTargetResolution(new Size(Math.round(displayWidth * scale),
+                                Math.round(displayHeight * scale)))
+                        .setTargetRotation(displayRotation)
+                        .setCaptureMode(ImageCapture.CAPTURE_MODE_MAXIMIZE_QUALITY)
+                        .build();
+    }
+
+    /**
+     * Captures a still, recognizes it in overlapping tiles and shows the merged result like a
+     * recognized frame, so its hits are highlighted and announced. Returns false if no deep scan
+     * was started: without calling the listener if the camera is not running or a deep scan is
+     * already in progress, and after reporting the failure if the camera cannot capture stills.
+     */
+    boolean deepScan(DeepScanListener listener) {
+        if (previewUsecase == null || previewView == null || deepScanning) {
+            return false;
+        }
+        if (imageCaptureUsecase == null) {
+            setupImageCaptureUsecase();
+            try {
+                cameraProvider.bindToLifecycle(this, cameraSelector, imageCaptureUsecase);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // Some cameras cannot capture stills alongside preview and analysis.
+                Log.w(TAG, "deepScan: Failed to bind image capture", e);
+                cameraProvider.unbind(imageCaptureUsecase);
+                imageCaptureUsecase = null;
+                listener.onDeepScanFailed(e);
+                return false;
+            }
+        }
+        deepScanning = true;
+        imageCaptureUsecase.takePicture(deepScanExecutor,
+                new ImageCapture.OnImageCapturedCallback() {
+                    @Override
+                    public void onCaptureSuccess(@NonNull ImageProxy image) {
+                        byte[] jpeg;
+                        int rotation;
+                        long timestamp;
+                        try {
+                            ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                            jpeg = new byte[buffer.remaining()];
+                            buffer.get(jpeg);
+                            rotation = image.getImageInfo().getRotationDegrees();
+                            timestamp = image.getImageInfo().getTimestamp();
+                        } finally {
+                            // Hands the capture buffer back before the long recognition.
+                            image.close();
+                        }
+                        runDeepScan(jpeg, rotation, timestamp, listener);
+                    }
+
+                    @Override
+                    public void onError(@NonNull ImageCaptureException e) {
+                        Log.w(TAG, "deepScan: Capture failed", e);
+                        finishDeepScan(listener, null, e);
+                    }
+                });
+        return true;
+    }
+
+    /** Recognizes a captured still tile by tile. Runs on the deep scan thread. */
+    private void runDeepScan(byte[] jpeg, int rotation, long timestamp,
+                             DeepScanListener listener) {
+        CaptureTileRecognizer tiles = null;
+        try {
+            tiles = new CaptureTileRecognizer(jpeg, RecognizerStartup.getRecognizer(appContext),
+                    timestamp);
+            DeepScanner.Result result = new DeepScanner(DeepScanConfig.DEFAULT, tiles)
+                    .scan(tiles.getWidth(), tiles.getHeight(), rotation, timestamp);
+            if (BuildConfig.VERBOSE_LOGGING) {
+                Log.d(TAG, "runDeepScan: " + tiles.getWidth() + "x" + tiles.getHeight()
+                        + " tiles=" + result.getTileCount()
+                        + " failed=" + result.getFailedTileCount()
+                        + " duplicates=" + result.getDuplicateLineCount()
+                        + " ms=" + result.getElapsedNanos() / 1_000_000);
+            }
+            engine.deliverResult(result.getText(),
+                    CropRegion.full(tiles.getWidth(), tiles.getHeight(), rotation));
+            finishDeepScan(listener, result, null);
+        } catch (Exception e) {
+            Log.w(TAG, "runDeepScan: Failed to recognize the capture", e);
+            finishDeepScan(listener, null, e);
+        } finally {
+            if (tiles != null) {
+                tiles.close();
+            }
+        }
+    }
+
+    private void finishDeepScan(DeepScanListener listener, DeepScanner.Result result,
+                                Exception error) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                deepScanning = false;
+                if (result != null) {
+                    listener.onDeepScanFinished(result);
+                } else {
+                    listener.onDeepScanFailed(error);
+                }
+            }
+        });
+    }
+
+    private void setupImageAnalysisUsecase() {
+        if (imageAnalysisUsecase != null) {
+            imageAnalysisUsecase.clearAnalyzer();
+            cameraProvider.unbind(imageAnalysisUsecase);
+        }
+        analysisLongEdge = engine.getQualityController().getLevel().getLongEdge();
+        int[] resolution = AnalysisConfig.targetResolution(displayWidth, displayHeight,
+                analysisLongEdge);
+        engine.getFramePool().resize(resolution[0], resolution[1]);
+        imageAnalysisUsecase =
+                new ImageAnalysis.Builder()
+                        .setTargetResolution(new Size(resolution[0], resolution[1]))
+                        .setTargetRotation(displayRotation)
+                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                        .build();
+        imageAnalysisUsecase.setAnalyzer(engine.getScheduler().getAnalyzerExecutor(),
+                new TextAnalyzer());
+    }
+
+    /**
+     * Rebinds the analysis use case if the quality level asks for another resolution. Region and
+     * frame interval changes apply to the next frame without rebinding.
+     */
+    private void rebindAnalysisIfNeeded() {
+        if (cameraProvider == null || imageAnalysisUsecase == null
+                || engine.getQualityController().getLevel().getLongEdge() == analysisLongEdge) {
+            return;
+        }
+        setupImageAnalysisUsecase();
+        cameraProvider.bindToLifecycle(this, cameraSelector, imageAnalysisUsecase);
+    }
+
+    private void markCameraBound() {
+        CameraSearch current = search;
+        if (current != null) {
+            current.getLaunchTimeline().mark(StartupTimeline.Milestone.CAMERA_BOUND,
+                    SystemClock.elapsedRealtimeNanos());
+        }
+    }
+
+    /** Keeps the engine's thermal status current on devices that report it. */
+    private void listenForThermalStatus() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return;
+        }
+        PowerManager powerManager =
+                (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null) {
+            return;
+        }
+        engine.setThermalStatus(powerManager.getCurrentThermalStatus());
+        // Registered for the lifetime of the process, like the scanner.
+        powerManager.addThermalStatusListener(new PowerManager.OnThermalStatusChangedListener() {
+            @Override
+            public void onThermalStatusChanged(int status) {
+                engine.setThermalStatus(status);
+            }
+        });
+    }
+
+    /** Hands camera frames to the engine. Runs on the analyzer thread. */
+    private class TextAnalyzer implements ImageAnalysis.Analyzer {
+
+        @Override
+        public void analyze(@NonNull ImageProxy imageProxy) {
+            long timestamp = imageProxy.getImageInfo().getTimestamp();
+            CameraSearch current = search;
+            if (current != null) {
+                current.getLaunchTimeline().mark(StartupTimeline.Milestone.FIRST_FRAME,
+                        SystemClock.elapsedRealtimeNanos());
+            }
+            engine.getMetrics().record(PipelineMetrics.Stage.CAMERA_TO_ANALYZER,
+                    cameraDelayNanos(timestamp));
+            engine.analyze(new CameraFrame(imageProxy, timestamp));
+            FrameFilter frameFilter = engine.getFrameFilter();
+            if (BuildConfig.VERBOSE_LOGGING
+                    && frameFilter.getFrameCount() % STATS_LOG_INTERVAL_FRAMES == 0) {
+                FrameScheduler scheduler = engine.getScheduler();
+                ResultCache<RecognizedText> resultCache = engine.getResultCache();
+                Log.d(TAG, "analyze: frames=" + frameFilter.getFrameCount()
+                        + " recognized=" + frameFilter.getRecognizedCount()
+                        + " unchanged=" + frameFilter.getSkippedUnchangedCount()
+                        + " blurry=" + frameFilter.getSkippedBlurryCount()
+                        + " busy=" + scheduler.getDroppedBusyCount()
+                        + " stale=" + scheduler.getDroppedStaleCount()
+                        + " failed=" + engine.getFailedCount()
+                        + " timedOut=" + engine.getTimedOutCount()
+                        + " stuck=" + engine.getDroppedStuckCount()
+                        + " cacheHits=" + resultCache.getHitCount()
+                        + " cacheMisses=" + resultCache.getMissCount());
+            }
+        }
+
+        /**
+         * Returns how long ago a frame was captured. Depending on the device, camera timestamps
+         * come from either the uptime clock, which {@link System#nanoTime()} reads, or the realtime
+         * clock, which is ahead of it by the time spent in deep sleep.
+         */
+        private long cameraDelayNanos(long timestampNanos) {
+            long uptimeDelay = System.nanoTime() - timestampNanos;
+            // A realtime timestamp looks like it is from the future on the uptime clock.
+            return uptimeDelay >= 0 ? uptimeDelay
+                    : SystemClock.elapsedRealtimeNanos() - timestampNanos;
+        }
+    }
+
+    /** A CameraX frame as the engine sees it. */
+    static final class CameraFrame implements ScanEngine.Frame {
+        final ImageProxy imageProxy;
+        private final long timestamp;
+
+        CameraFrame(ImageProxy imageProxy, long timestamp) {
+            this.imageProxy = imageProxy;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public long getTimestampNanos() {
+            return timestamp;
+        }
+
+        @Override
+        public int getWidth() {
+            return imageProxy.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return imageProxy.getHeight();
+        }
+
+        @Override
+        public int getRotationDegrees() {
+            return imageProxy.getImageInfo().getRotationDegrees();
+        }
+
+        @Override
+        public ByteBuffer getPlane(int plane) {
+            return imageProxy.getPlanes()[plane].getBuffer();
+        }
+
+        @Override
+        public int getRowStride(int plane) {
+            return imageProxy.getPlanes()[plane].getRowStride();
+        }
+
+        @Override
+        public int getPixelStride(int plane) {
+            return imageProxy.getPlanes()[plane].getPixelStride();
+        }
+
+        @Override
+        public void close() {
+            imageProxy.close();
+        }
+    }
+}
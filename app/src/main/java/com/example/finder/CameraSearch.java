@@ -0,0 +1,148 @@
+package com.example.finder;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A search running on the {@link CameraScanner}: exports and indexes its results and announces its
+ * matches, whether or not a camera preview is showing them. It lives from the launch of the camera
+ * preview until the preview is left, so it survives the preview being recreated on rotation.
+ */
+final class CameraSearch implements ScanEngine.Listener {
+
+    private static final String TAG = "DEBUG_LOG";
+    private static final long INDEX_INTERVAL_NANOS = 1_000_000_000L;
+    // From opening the preview to the first highlight, with the models already loaded.
+    private static final long FIRST_MATCH_BUDGET_NANOS = 1_500_000_000L;
+
+    private final Context appContext;
+    private final SearchSession session;
+    private final AlertSound alertSound;
+    private final MatchExporter matchExporter;
+    private final StartupTimeline launchTimeline;
+    private final long startMillis = System.currentTimeMillis();
+    // Only used on the result thread.
+    private long deliveredFrames;
+    private long lastIndexedTimestamp;
+    private MatchAlerter alerter;
+
+    /**
+     * @param launchTimeline measures the launch of the preview that started the search
+     */
+    CameraSearch(Context context, SearchSession session, AlertSound alertSound,
+                 StartupTimeline launchTimeline) {
+        this.appContext = context.getApplicationContext();
+        this.session = session;
+        this.alertSound = alertSound;
+        this.launchTimeline = launchTimeline;
+        matchExporter = new MatchExporter(new File(exportDirectory(), "matches"),
+                session.getTermTexts(), MatchExportConfig.DEFAULT);
+    }
+
+    SearchSession getSession() {
+        return session;
+    }
+
+    StartupTimeline getLaunchTimeline() {
+        return launchTimeline;
+    }
+
+    /** Sets the alerter that reports this search's announcements, for logging them. */
+    void setAlerter(MatchAlerter alerter) {
+        this.alerter = alerter;
+    }
+
+    @Override
+    public void onResult(RecognizedText text, int hitCount, MatchGeometry matches,
+                         ViewTransform transform) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        launchTimeline.mark(StartupTimeline.Milestone.FIRST_RESULT, now);
+        if (hitCount > 0 && launchTimeline.mark(StartupTimeline.Milestone.FIRST_MATCH, now)) {
+            reportFirstMatch();
+        }
+        // Only queues the matches; the exporter writes them on its own thread.
+        matchExporter.offer(deliveredFrames++, text.getTimestampNanos(),
+                System.currentTimeMillis(), matches, transform);
+        indexText(text);
+    }
+
+    /** Announces a term that the alerter found due. */
+    @Override
+    public void onAlert(int termId) {
+        SearchTerm term = session.get(termId);
+        if (BuildConfig.VERBOSE_LOGGING && alerter != null) {
+            Log.d(TAG, "notifyMatch: " + term + " hits=" + alerter.getHitCount(termId)
+                    + " frames=" + alerter.getFrameCount(termId)
+                    + " alerts=" + alerter.getAlertCount(termId));
+        }
+        alertSound.play(term.getPriority());
+    }
+
+    /** Logs how long the first highlight took, and warns if that was over budget. */
+    private void reportFirstMatch() {
+        String summary = launchTimeline.summarize() + "; "
+                + RecognizerStartup.getTimeline(appContext).summarize();
+        if (!launchTimeline.isWithinBudget(StartupTimeline.Milestone.FIRST_MATCH,
+                FIRST_MATCH_BUDGET_NANOS)) {
+            Log.w(TAG, "reportFirstMatch: Over budget, " + summary);
+        } else if (BuildConfig.VERBOSE_LOGGING) {
+            Log.d(TAG, "reportFirstMatch: " + summary);
+        }
+    }
+
+    /**
+     * Adds a result to the history of seen text. At most one result per second is added, since
+     * consecutive frames mostly repeat the same text.
+     */
+    private void indexText(RecognizedText text) {
+        long timestamp = text.getTimestampNanos();
+        if (text.getBlocks().isEmpty() || timestamp - lastIndexedTimestamp < INDEX_INTERVAL_NANOS) {
+            return;
+        }
+        TextIndex index = SharedTextIndex.get(appContext);
+        if (index != null) {
+            lastIndexedTimestamp = timestamp;
+            index.add(SharedTextIndex.CAMERA_SOURCE_PREFIX + startMillis,
+                    System.currentTimeMillis(), text);
+        }
+    }
+
+    /** Returns the app's external files directory, or its internal one if there is none. */
+    private File exportDirectory() {
+        File directory = appContext.getExternalFilesDir(null);
+        return directory != null ? directory : appContext.getFilesDir();
+    }
+
+    /** Writes the stage latencies and the startup timeline to the export directory. */
+    void exportMetrics(PipelineMetrics metrics) {
+        File directory = exportDirectory();
+        File file = new File(directory, "pipeline-metrics.csv");
+        try (Writer out = new FileWriter(file)) {
+            metrics.writeCsv(out);
+        } catch (IOException e) {
+            Log.w(TAG, "exportMetrics: Failed to write " + file, e);
+        }
+        File startupFile = new File(directory, "startup-timeline.csv");
+        try (Writer out = new FileWriter(startupFile)) {
+            StartupTimeline.writeCsv(out, RecognizerStartup.getTimeline(appContext),
+                    launchTimeline);
+        } catch (IOException e) {
+            Log.w(TAG, "exportMetrics: Failed to write " + startupFile, e);
+        }
+    }
+
+    /** Writes out the matches still queued and syncs the log. */
+    void close() {
+        try {
+            matchExporter.close();
+        } catch (IOException e) {
+            Log.w(TAG, "close: Failed to export matches", e);
+        }
+    }
+}
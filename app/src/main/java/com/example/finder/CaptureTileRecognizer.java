@@ -0,0 +1,70 @@
+package com.example.finder;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognizer;
+
+import java.io.IOException;
+
+/**
+ * Recognizes the tiles of a JPEG capture for a {@link DeepScanner}.
+ *
+ * <p>Each tile is decoded on its own from the compressed capture and recycled as soon as
+ * recognition completes, so only the tiles in flight are ever held as pixels, never the whole
+ * capture.
+ */
+final class CaptureTileRecognizer implements DeepScanner.TileRecognizer {
+
+    private final BitmapRegionDecoder decoder;
+    private final TextRecognizer recognizer;
+    private final long timestampNanos;
+
+    /**
+     * @param jpeg the capture, which must stay unchanged until the scan is done
+     * @param timestampNanos capture time, which the tiles' text carries
+     */
+    CaptureTileRecognizer(byte[] jpeg, TextRecognizer recognizer, long timestampNanos)
+            throws IOException {
+        this.decoder = BitmapRegionDecoder.newInstance(jpeg, 0, jpeg.length, false);
+        this.recognizer = recognizer;
+        this.timestampNanos = timestampNanos;
+    }
+
+    /** Width of the capture as stored, before rotation. */
+    int getWidth() {
+        return decoder.getWidth();
+    }
+
+    /** Height of the capture as stored, before rotation. */
+    int getHeight() {
+        return decoder.getHeight();
+    }
+
+    @Override
+    public RecognizedText recognize(CropRegion tile) throws Exception {
+        Rect region = new Rect(tile.getLeft(), tile.getTop(), tile.getLeft() + tile.getWidth(),
+                tile.getTop() + tile.getHeight());
+        Bitmap bitmap = decoder.decodeRegion(region, null);
+        if (bitmap == null) {
+            throw new IOException("Failed to decode tile " + region);
+        }
+        try {
+            Text visionText = Tasks.await(recognizer.process(InputImage.fromBitmap(bitmap,
+                    tile.getRotationDegrees())));
+            return MlKitText.convert(visionText, timestampNanos, tile.getUprightWidth(),
+                    tile.getUprightHeight());
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /** Frees the decoder once the scan is done. */
+    void close() {
+        decoder.recycle();
+    }
+}
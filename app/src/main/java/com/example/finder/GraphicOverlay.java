@@ -18,12 +18,18 @@ package com.example.finder;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import com.google.common.base.Preconditions;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A view which renders a series of custom graphics to be overlayed on top of an associated preview
@@ -34,6 +40,17 @@ import java.util.List;
  * idea is that detection items are expressed in terms of an image size, but need to be scaled up
  * to the full view size, and also mirrored in the case of the front-facing camera.
  *
+ * <p>The overlay also shows the {@link RegionOfInterest} sent to the recognizer. When region
+ * selection is enabled, dragging across the overlay selects a new region.
+ *
+ * <p>When given {@link PipelineMetrics}, the overlay records how long each draw takes and how long
+ * results passed to {@link #postCommit()} wait for the next draw.
+ *
+ * <p>Producers never share a lock with drawing. The graphics and the image source are immutable
+ * values swapped atomically, and graphics read their content from snapshots published by their
+ * producers, such as {@link TextTracker.Snapshot}. A commit redraws only the union of the areas that
+ * graphics report as changed, or nothing if none changed.
+ *
  * <p>Associated {@link Graphic} items should use the following methods to convert to view
  * coordinates for the graphics that are drawn:
  *
@@ -45,25 +62,46 @@ import java.util.List;
  * </ol>
  */
 public class GraphicOverlay extends View {
-    private final Object lock = new Object();
-    private final List<Graphic> graphics = new ArrayList<>();
+    // Lines reported for a selected region; more are counted but not listed.
+    private static final int MAX_SELECTED_LINES = 64;
+
+    // Copied on every change, so drawing iterates an array nobody modifies.
+    private final AtomicReference<Graphic[]> graphics = new AtomicReference<>(new Graphic[0]);
     // Matrix for transforming from image coordinates to overlay view coordinates.
     private final Matrix transformationMatrix = new Matrix();
 
-    private int imageWidth;
-    private int imageHeight;
-    // The factor of overlay View size to image size. Anything in the image coordinates need to be
-    // scaled by this amount to fit with the area of overlay View.
-    private float scaleFactor = 1.0f;
-    // The number of horizontal pixels needed to be cropped on each side to fit the image with the
-    // area of overlay View after scaling.
-    private float postScaleWidthOffset;
-    // The number of vertical pixels needed to be cropped on each side to fit the image with the
-    // area of overlay View after scaling.
-    private float postScaleHeightOffset;
-    private boolean isImageFlipped;
+    private volatile SourceInfo imageSource = SourceInfo.UNKNOWN;
+    // Image to view mapping, republished whenever the view or image size changes. Read by analyzer
+    // threads that map geometry ahead of drawing.
+    private volatile ViewTransform viewTransform = ViewTransform.IDENTITY;
+    // Only used on the UI thread: the source the transformation was built for.
+    private SourceInfo transformedSource;
     private boolean needUpdateTransformation = true;
 
+    // Commits are turned into invalidations on the UI thread, where graphics know what they drew.
+    private final AtomicBoolean commitPosted = new AtomicBoolean();
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+    private final Runnable invalidateChanged = this::invalidateChanged;
+
+    private final Paint regionPaint = new Paint();
+    private volatile RegionOfInterest regionOfInterest;
+    private boolean regionSelectionEnabled;
+    private boolean isSelectingRegion;
+    private float selectionStartX;
+    private float selectionStartY;
+    private float selectionEndX;
+    private float selectionEndY;
+
+    // Text of the latest result and the mapping it was drawn with, for finding what was tapped.
+    private volatile IndexedText indexedText = IndexedText.NONE;
+    private TextSelectionListener textSelectionListener;
+    private final float touchSlop;
+    private final int[] selectedLines = new int[MAX_SELECTED_LINES];
+
+    private volatile PipelineMetrics metrics;
+    // System.nanoTime() of the oldest result not yet drawn, or 0 if there is none.
+    private final AtomicLong pendingCommitNanos = new AtomicLong();
+
     /**
      * Base class for a custom graphics object to be rendered within the graphic overlay. Subclass
      * this and implement the {@link Graphic#draw(Canvas)} method to define the graphics element. Add
@@ -91,9 +129,18 @@ public class GraphicOverlay extends View {
          */
         public abstract void draw(Canvas canvas);
 
+        /**
+         * Adds the view area that differs between the last draw and a draw now, e.g. the old and
+         * new boxes of moved highlights. Called on the UI thread. Returns false if the area is not
+         * known, which redraws the whole overlay; that is the default.
+         */
+        public boolean addChangedBounds(DirtyRegion region) {
+            return false;
+        }
+
         /** Adjusts the supplied value from the image scale to the view scale. */
         public float scale(float imagePixel) {
-            return imagePixel * overlay.scaleFactor;
+            return overlay.viewTransform.scale(imagePixel);
         }
 
         /** Returns the application context of the app. */
@@ -102,25 +149,21 @@ public class GraphicOverlay extends View {
         }
 
         public boolean isImageFlipped() {
-            return overlay.isImageFlipped;
+            return overlay.imageSource.isFlipped;
         }
 
         /**
          * Adjusts the x coordinate from the image's coordinate system to the view coordinate system.
          */
         public float translateX(float x) {
-            if (overlay.isImageFlipped) {
-                return overlay.getWidth() - (scale(x) - overlay.postScaleWidthOffset);
-            } else {
-                return scale(x) - overlay.postScaleWidthOffset;
-            }
+            return overlay.viewTransform.mapX(x);
         }
 
         /**
          * Adjusts the y coordinate from the image's coordinate system to the view coordinate system.
          */
         public float translateY(float y) {
-            return scale(y) - overlay.postScaleHeightOffset;
+            return overlay.viewTransform.mapY(y);
         }
 
         /**
@@ -133,6 +176,32 @@ public class GraphicOverlay extends View {
         public void postInvalidate() {
             overlay.postInvalidate();
         }
+
+        /**
+         * Requests another draw of the changed areas on the next display frame, for graphics that
+         * animate.
+         */
+        public void postInvalidateOnAnimation() {
+            overlay.postChangedOnAnimation();
+        }
+    }
+
+    /** Receives the recognized text the user taps or selects a region around, on the UI thread. */
+    public interface TextSelectionListener {
+        /**
+         * Called when a word is tapped.
+         *
+         * @param element index of the word in {@code grid}
+         */
+        void onWordSelected(TextGrid grid, int element);
+
+        /**
+         * Called when a region is selected, with the lines it overlaps.
+         *
+         * @param lines indices of the lines in {@code grid}, valid until the listener returns
+         * @param count number of lines, which may exceed the length of {@code lines}
+         */
+        void onRegionSelected(TextGrid grid, int[] lines, int count);
     }
 
     public GraphicOverlay(Context context, AttributeSet attrs) {
@@ -140,27 +209,91 @@ public class GraphicOverlay extends View {
         addOnLayoutChangeListener(
                 (view, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) ->
                         needUpdateTransformation = true);
+        regionPaint.setColor(Color.WHITE);
+        regionPaint.setAlpha(160);
+        regionPaint.setStyle(Paint.Style.STROKE);
+        regionPaint.setStrokeWidth(3.0f);
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+    }
+
+    /** Sets where draw and commit times are recorded, or null to stop recording them. */
+    public void setMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Requests a redraw of what changed to show a new result. Unlike {@link #postInvalidate()},
+     * the wait until the result is drawn is recorded, and nothing is redrawn if no graphic
+     * changed. Safe to call from any thread.
+     */
+    public void postCommit() {
+        pendingCommitNanos.compareAndSet(0, System.nanoTime());
+        if (commitPosted.compareAndSet(false, true)) {
+            post(invalidateChanged);
+        }
+    }
+
+    private void postChangedOnAnimation() {
+        if (commitPosted.compareAndSet(false, true)) {
+            postOnAnimation(invalidateChanged);
+        }
+    }
+
+    /** Invalidates the union of the areas the graphics report as changed. */
+    @SuppressWarnings("deprecation")
+    private void invalidateChanged() {
+        commitPosted.set(false);
+        dirtyRegion.clear();
+        for (Graphic graphic : graphics.get()) {
+            if (!graphic.addChangedBounds(dirtyRegion)) {
+                invalidate();
+                return;
+            }
+        }
+        if (dirtyRegion.isOutside(getWidth(), getHeight())) {
+            // Nothing to redraw, so the commit is complete.
+            pendingCommitNanos.set(0);
+            return;
+        }
+        // Hardware-accelerated views redraw their whole display list from API 28, but still skip
+        // the draw entirely when nothing changed.
+        invalidate(dirtyRegion.getLeft(getWidth()), dirtyRegion.getTop(getHeight()),
+                dirtyRegion.getRight(getWidth()), dirtyRegion.getBottom(getHeight()));
     }
 
     /** Removes all graphics from the overlay. */
     public void clear() {
-        synchronized (lock) {
-            graphics.clear();
-        }
+        graphics.set(new Graphic[0]);
         postInvalidate();
     }
 
     /** Adds a graphic to the overlay. */
     public void add(Graphic graphic) {
-        synchronized (lock) {
-            graphics.add(graphic);
+        while (true) {
+            Graphic[] current = graphics.get();
+            Graphic[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = graphic;
+            if (graphics.compareAndSet(current, updated)) {
+                break;
+            }
         }
+        postInvalidate();
     }
 
     /** Removes a graphic from the overlay. */
     public void remove(Graphic graphic) {
-        synchronized (lock) {
-            graphics.remove(graphic);
+        while (true) {
+            Graphic[] current = graphics.get();
+            int index = Arrays.asList(current).indexOf(graphic);
+            if (index < 0) {
+                return;
+            }
+            Graphic[] updated = new Graphic[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, updated.length - index);
+            if (graphics.compareAndSet(current, updated)) {
+                break;
+            }
         }
         postInvalidate();
     }
@@ -175,65 +308,287 @@ public class GraphicOverlay extends View {
      *     front camera.
      */
     public void setImageSourceInfo(int imageWidth, int imageHeight, boolean isFlipped) {
+        setImageSourceInfo(imageWidth, imageHeight, isFlipped, 0, 0);
+    }
+
+    /**
+     * Sets the source information of the image being processed by detectors when only a crop of it
+     * is sent to them. Detected coordinates are then relative to the crop.
+     *
+     * @param imageWidth the width of the whole image
+     * @param imageHeight the height of the whole image
+     * @param isFlipped whether the image is flipped
+     * @param cropOffsetX the left edge of the crop within the whole image
+     * @param cropOffsetY the top edge of the crop within the whole image
+     */
+    public void setImageSourceInfo(int imageWidth, int imageHeight, boolean isFlipped,
+                                   int cropOffsetX, int cropOffsetY) {
         Preconditions.checkState(imageWidth > 0, "image width must be positive");
         Preconditions.checkState(imageHeight > 0, "image height must be positive");
-        synchronized (lock) {
-            this.imageWidth = imageWidth;
-            this.imageHeight = imageHeight;
-            this.isImageFlipped = isFlipped;
-            needUpdateTransformation = true;
+        if (imageSource.equals(imageWidth, imageHeight, isFlipped, cropOffsetX, cropOffsetY)) {
+            return;
         }
+        imageSource = new SourceInfo(imageWidth, imageHeight, isFlipped, cropOffsetX, cropOffsetY);
         postInvalidate();
     }
 
+    /**
+     * Returns the region selected by the user, or null if none has been selected. Safe to call
+     * from any thread.
+     */
+    public RegionOfInterest getRegionOfInterest() {
+        return regionOfInterest;
+    }
+
+    /** Sets the region that is outlined on the overlay and sent to the recognizer. */
+    public void setRegionOfInterest(RegionOfInterest regionOfInterest) {
+        this.regionOfInterest = regionOfInterest;
+        postInvalidate();
+    }
+
+    /** Enables or disables selecting a region of interest by dragging across the overlay. */
+    public void setRegionSelectionEnabled(boolean enabled) {
+        regionSelectionEnabled = enabled;
+        isSelectingRegion = false;
+    }
+
+    /** Sets who is told about text the user selects, or null to stop telling anyone. */
+    public void setTextSelectionListener(TextSelectionListener listener) {
+        textSelectionListener = listener;
+    }
+
+    /**
+     * Publishes the text of the latest result for tap and region selection, with the mapping its
+     * matches were drawn with. Safe to call from any thread.
+     */
+    public void setTextGrid(TextGrid grid, ViewTransform transform) {
+        indexedText = new IndexedText(grid, transform);
+    }
+
     public int getImageWidth() {
-        return imageWidth;
+        return imageSource.width;
     }
 
     public int getImageHeight() {
-        return imageHeight;
+        return imageSource.height;
+    }
+
+    /**
+     * Returns the most recent mapping from image coordinates to view coordinates. Safe to call from
+     * any thread.
+     */
+    public ViewTransform getViewTransform() {
+        return viewTransform;
     }
 
     private void updateTransformationIfNeeded() {
-        if (!needUpdateTransformation || imageWidth <= 0 || imageHeight <= 0) {
+        SourceInfo source = imageSource;
+        if ((!needUpdateTransformation && source == transformedSource) || source.width <= 0
+                || source.height <= 0) {
             return;
         }
-        float viewAspectRatio = (float) getWidth() / getHeight();
-        float imageAspectRatio = (float) imageWidth / imageHeight;
-        postScaleWidthOffset = 0;
-        postScaleHeightOffset = 0;
-        if (viewAspectRatio > imageAspectRatio) {
-            // The image needs to be vertically cropped to be displayed in this view.
-            scaleFactor = (float) getWidth() / imageWidth;
-            postScaleHeightOffset = ((float) getWidth() / imageAspectRatio - getHeight()) / 2;
-        } else {
-            // The image needs to be horizontally cropped to be displayed in this view.
-            scaleFactor = (float) getHeight() / imageHeight;
-            postScaleWidthOffset = ((float) getHeight() * imageAspectRatio - getWidth()) / 2;
-        }
+        ViewTransform transform = ViewTransform.create(getWidth(), getHeight(),
+                source.width, source.height, source.isFlipped, source.cropOffsetX,
+                source.cropOffsetY);
 
         transformationMatrix.reset();
-        transformationMatrix.setScale(scaleFactor, scaleFactor);
-        transformationMatrix.postTranslate(-postScaleWidthOffset, -postScaleHeightOffset);
+        transformationMatrix.setTranslate(source.cropOffsetX, source.cropOffsetY);
+        transformationMatrix.postScale(transform.getScaleFactor(), transform.getScaleFactor());
+        transformationMatrix.postTranslate(
+                -transform.getPostScaleWidthOffset(), -transform.getPostScaleHeightOffset());
 
-        if (isImageFlipped) {
+        if (source.isFlipped) {
             transformationMatrix.postScale(-1f, 1f, getWidth() / 2f, getHeight() / 2f);
         }
 
+        viewTransform = transform;
+        transformedSource = source;
         needUpdateTransformation = false;
     }
 
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!regionSelectionEnabled && textSelectionListener == null) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                isSelectingRegion = regionSelectionEnabled;
+                selectionStartX = selectionEndX = event.getX();
+                selectionStartY = selectionEndY = event.getY();
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                selectionEndX = event.getX();
+                selectionEndY = event.getY();
+                if (isSelectingRegion) {
+                    invalidate();
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                isSelectingRegion = false;
+                selectionEndX = event.getX();
+                selectionEndY = event.getY();
+                if (Math.abs(selectionEndX - selectionStartX) <= touchSlop
+                        && Math.abs(selectionEndY - selectionStartY) <= touchSlop) {
+                    // A tap selects the word under it and keeps the region.
+                    selectWord();
+                    invalidate();
+                } else if (regionSelectionEnabled) {
+                    selectRegion();
+                    selectLinesInRegion();
+                }
+                performClick();
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                isSelectingRegion = false;
+                invalidate();
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private void selectRegion() {
+        ViewTransform transform = viewTransform;
+        int imageWidth = imageSource.width;
+        int imageHeight = imageSource.height;
+        if (imageWidth <= 0 || imageHeight <= 0 || transform == ViewTransform.IDENTITY) {
+            return;
+        }
+        setRegionOfInterest(RegionOfInterest.of(
+                transform.unmapX(selectionStartX) / imageWidth,
+                transform.unmapY(selectionStartY) / imageHeight,
+                transform.unmapX(selectionEndX) / imageWidth,
+                transform.unmapY(selectionEndY) / imageHeight));
+    }
+
+    /** Tells the listener about the word under a tap, if there is one. */
+    private void selectWord() {
+        IndexedText text = indexedText;
+        TextSelectionListener listener = textSelectionListener;
+        if (listener == null || text.transform == ViewTransform.IDENTITY) {
+            return;
+        }
+        int element = text.grid.find(text.toTextX(selectionEndX), text.toTextY(selectionEndY),
+                TextGrid.Kind.ELEMENT, touchSlop / text.transform.getScaleFactor());
+        if (element >= 0) {
+            listener.onWordSelected(text.grid, element);
+        }
+    }
+
+    /** Tells the listener about the lines in a region that was just selected. */
+    private void selectLinesInRegion() {
+        IndexedText text = indexedText;
+        TextSelectionListener listener = textSelectionListener;
+        if (listener == null || text.transform == ViewTransform.IDENTITY) {
+            return;
+        }
+        float x0 = text.toTextX(selectionStartX);
+        float x1 = text.toTextX(selectionEndX);
+        float y0 = text.toTextY(selectionStartY);
+        float y1 = text.toTextY(selectionEndY);
+        int count = text.grid.query(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1),
+                Math.max(y0, y1), TextGrid.Kind.LINE, selectedLines);
+        listener.onRegionSelected(text.grid, selectedLines, count);
+    }
+
+    private void drawRegionOfInterest(Canvas canvas) {
+        if (isSelectingRegion) {
+            canvas.drawRect(Math.min(selectionStartX, selectionEndX),
+                    Math.min(selectionStartY, selectionEndY),
+                    Math.max(selectionStartX, selectionEndX),
+                    Math.max(selectionStartY, selectionEndY), regionPaint);
+            return;
+        }
+        RegionOfInterest region = regionOfInterest;
+        ViewTransform transform = viewTransform;
+        if (region == null || transform == ViewTransform.IDENTITY) {
+            return;
+        }
+        int imageWidth = transformedSource.width;
+        int imageHeight = transformedSource.height;
+        float x0 = transform.mapImageX(region.getLeft() * imageWidth);
+        float x1 = transform.mapImageX(region.getRight() * imageWidth);
+        canvas.drawRect(Math.min(x0, x1), transform.mapImageY(region.getTop() * imageHeight),
+                Math.max(x0, x1), transform.mapImageY(region.getBottom() * imageHeight),
+                regionPaint);
+    }
+
     /** Draws the overlay with its associated graphic objects. */
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        synchronized (lock) {
-            updateTransformationIfNeeded();
+        long start = System.nanoTime();
+        PipelineMetrics metrics = this.metrics;
+        long committed = pendingCommitNanos.getAndSet(0);
+        if (metrics != null && committed != 0) {
+            metrics.record(PipelineMetrics.Stage.OVERLAY_COMMIT, start - committed);
+        }
+        updateTransformationIfNeeded();
 
-            for (Graphic graphic : graphics) {
-                graphic.draw(canvas);
-            }
+        for (Graphic graphic : graphics.get()) {
+            graphic.draw(canvas);
+        }
+        drawRegionOfInterest(canvas);
+        if (metrics != null) {
+            metrics.recordSince(PipelineMetrics.Stage.DRAW, start);
+        }
+    }
+
+    /** Recognized text together with the mapping its matches were drawn with. Immutable. */
+    private static final class IndexedText {
+
+        static final IndexedText NONE = new IndexedText(TextGrid.EMPTY, ViewTransform.IDENTITY);
+
+        final TextGrid grid;
+        final ViewTransform transform;
+
+        IndexedText(TextGrid grid, ViewTransform transform) {
+            this.grid = grid;
+            this.transform = transform;
+        }
+
+        /** Maps a view x coordinate to the coordinate system of the recognized crop. */
+        float toTextX(float viewX) {
+            return transform.unmapX(viewX) - transform.getCropOffsetX();
+        }
+
+        /** Maps a view y coordinate to the coordinate system of the recognized crop. */
+        float toTextY(float viewY) {
+            return transform.unmapY(viewY) - transform.getCropOffsetY();
+        }
+    }
+
+    /** Size, orientation and crop of the images whose results are drawn. Immutable. */
+    private static final class SourceInfo {
+
+        static final SourceInfo UNKNOWN = new SourceInfo(0, 0, false, 0, 0);
+
+        final int width;
+        final int height;
+        final boolean isFlipped;
+        // Position of the recognized crop within the image, in image coordinates.
+        final int cropOffsetX;
+        final int cropOffsetY;
+
+        SourceInfo(int width, int height, boolean isFlipped, int cropOffsetX, int cropOffsetY) {
+            this.width = width;
+            this.height = height;
+            this.isFlipped = isFlipped;
+            this.cropOffsetX = cropOffsetX;
+            this.cropOffsetY = cropOffsetY;
+        }
+
+        boolean equals(int width, int height, boolean isFlipped, int cropOffsetX,
+                       int cropOffsetY) {
+            return this.width == width && this.height == height && this.isFlipped == isFlipped
+                    && this.cropOffsetX == cropOffsetX && this.cropOffsetY == cropOffsetY;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,117 @@
+package com.example.finder;
+
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Answers "where did I see this" for the terms entered in {@link MainActivity} from the
+ * {@link TextIndex} of earlier camera sessions and photo scans, without recognizing anything again.
+ */
+public class HistoryActivity extends AppCompatActivity {
+
+    private static final String TAG = "DEBUG_LOG";
+    private static final int MAX_HITS_PER_TERM = 100;
+    private final List<TextIndex.Hit> hits = new ArrayList<>();
+    private ArrayAdapter<String> hitsAdapter;
+    private TextView summaryText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        Objects.requireNonNull(getSupportActionBar()).hide();
+        setContentView(R.layout.activity_history);
+        List<String> terms = SearchSession.parse(getIntent().getStringExtra(MainActivity.EXTRA_MESSAGE))
+                .getTermTexts();
+        summaryText = findViewById(R.id.historySummaryText);
+        hitsAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1);
+        ListView hitsList = findViewById(R.id.historyHitsList);
+        hitsList.setAdapter(hitsAdapter);
+        hitsList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                String source = hits.get(position).getSource();
+                if (!source.startsWith(SharedTextIndex.CAMERA_SOURCE_PREFIX)) {
+                    Intent viewIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(source));
+                    viewIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    startActivity(viewIntent);
+                }
+            }
+        });
+        // Opening the index reads its files, so the search runs off the main thread.
+        new Thread(() -> search(terms), "HistorySearch").start();
+    }
+
+    private void search(List<String> terms) {
+        TextIndex index = SharedTextIndex.get(this);
+        if (index == null) {
+            runOnUiThread(() -> summaryText.setText(R.string.historyUnavailable));
+            return;
+        }
+        long start = System.nanoTime();
+        List<TextIndex.Hit> found = new ArrayList<>();
+        for (String term : terms) {
+            found.addAll(index.search(term, MAX_HITS_PER_TERM));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Collections.sort(found, (a, b) -> Long.compare(b.getTimestampMillis(), a.getTimestampMillis()));
+        List<String> entries = new ArrayList<>(found.size());
+        DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+        for (TextIndex.Hit hit : found) {
+            StringBuilder entry = new StringBuilder(describe(hit.getSource()))
+                    .append(", ").append(dateFormat.format(new Date(hit.getTimestampMillis())));
+            for (int i = 0; i < hit.size(); i++) {
+                entry.append('\n').append(hit.getLabel(i));
+            }
+            entries.add(entry.toString());
+        }
+        String summary = String.format(Locale.getDefault(), "%d sightings in %d ms",
+                found.size(), elapsedMillis);
+        runOnUiThread(() -> {
+            hits.clear();
+            hits.addAll(found);
+            hitsAdapter.clear();
+            hitsAdapter.addAll(entries);
+            summaryText.setText(summary);
+        });
+    }
+
+    /** Returns how a source is shown: the photo's name, or that it was seen in the camera. */
+    private String describe(String source) {
+        if (source.startsWith(SharedTextIndex.CAMERA_SOURCE_PREFIX)) {
+            return getString(R.string.historyCameraSource);
+        }
+        Uri uri = Uri.parse(source);
+        try (Cursor cursor = getContentResolver().query(uri,
+                new String[] {OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && cursor.getString(0) != null) {
+                return cursor.getString(0);
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "describe: No name for " + source, e);
+        }
+        return uri.getLastPathSegment();
+    }
+
+    public void goBack(View view) {
+        this.finish();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.finder;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the URIs of stored images from a content provider query, one row at a time, so that a
+ * {@link BatchScanner} can start on a folder of any size without listing it first. Must be closed
+ * to release the underlying cursor.
+ */
+final class ImageSource implements Iterator<Uri>, Closeable {
+
+    private final Cursor cursor;
+    private final Uri treeUri;
+    private Uri next;
+
+    private ImageSource(Cursor cursor, Uri treeUri) {
+        this.cursor = cursor;
+        this.treeUri = treeUri;
+    }
+
+    /** Returns every image in the device's media store, newest first. */
+    static ImageSource gallery(ContentResolver resolver) {
+        Cursor cursor = resolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                new String[] {MediaStore.Images.Media._ID}, null, null,
+                MediaStore.Images.Media.DATE_ADDED + " DESC");
+        return new ImageSource(cursor, null);
+    }
+
+    /** Returns the images directly inside a folder picked with the storage access framework. */
+    static ImageSource folder(ContentResolver resolver, Uri treeUri) {
+        Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri,
+                DocumentsContract.getTreeDocumentId(treeUri));
+        Cursor cursor = resolver.query(children, new String[] {
+                DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                DocumentsContract.Document.COLUMN_MIME_TYPE}, null, null, null);
+        return new ImageSource(cursor, treeUri);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && cursor != null && cursor.moveToNext()) {
+            next = treeUri == null ? galleryUri() : folderUri();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Uri next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Uri uri = next;
+        next = null;
+        return uri;
+    }
+
+    private Uri galleryUri() {
+        return ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                cursor.getLong(0));
+    }
+
+    /** Returns the current document if it is an image, or null to skip it. */
+    private Uri folderUri() {
+        String mimeType = cursor.getString(1);
+        if (mimeType == null || !mimeType.startsWith("image/")) {
+            return null;
+        }
+        return DocumentsContract.buildDocumentUriUsingTree(treeUri, cursor.getString(0));
+    }
+
+    @Override
+    public void close() {
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.finder;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Keeps the labels drawn above highlights rendered as bitmaps, so that a label that did not change
+ * since the last frame is drawn with one bitmap blit instead of a background rectangle and a text
+ * layout pass.
+ *
+ * <p>Holds up to a fixed number of labels and replaces the least recently used one. Lookups
+ * compare the label text and colour of every entry and allocate nothing. Evicted bitmaps are left
+ * to the collector rather than recycled, since a display list recorded for an earlier frame may
+ * still refer to them. Only used on the UI thread.
+ */
+final class LabelBitmapCache {
+
+    private final Paint textPaint;
+    private final Paint backgroundPaint = new Paint();
+    private final float padding;
+    private final float height;
+    private final String[] labels;
+    private final int[] colors;
+    private final Bitmap[] bitmaps;
+    private final long[] lastUsed;
+    private int size;
+    private long useClock;
+
+    /**
+     * @param capacity most labels kept
+     * @param textPaint paint the label text is drawn with
+     * @param padding space left of the text and above its baseline
+     * @param height height of every label
+     */
+    LabelBitmapCache(int capacity, Paint textPaint, float padding, float height) {
+        this.textPaint = textPaint;
+        this.padding = padding;
+        this.height = height;
+        labels = new String[capacity];
+        colors = new int[capacity];
+        bitmaps = new Bitmap[capacity];
+        lastUsed = new long[capacity];
+        backgroundPaint.setStyle(Paint.Style.FILL);
+    }
+
+    /**
+     * Returns the label drawn on a background of the given colour, rendering it if it is not
+     * cached.
+     *
+     * @param textWidth width of the label text, as measured with the text paint
+     */
+    Bitmap get(String label, int color, float textWidth) {
+        for (int i = 0; i < size; i++) {
+            if (colors[i] == color && labels[i].equals(label)) {
+                lastUsed[i] = ++useClock;
+                return bitmaps[i];
+            }
+        }
+        int slot = size < labels.length ? size++ : leastRecentlyUsed();
+        labels[slot] = label;
+        colors[slot] = color;
+        bitmaps[slot] = render(label, color, textWidth);
+        lastUsed[slot] = ++useClock;
+        return bitmaps[slot];
+    }
+
+    private int leastRecentlyUsed() {
+        int oldest = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastUsed[i] < lastUsed[oldest]) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+
+    private Bitmap render(String label, int color, float textWidth) {
+        int width = Math.max(1, (int) Math.ceil(textWidth + 3 * padding));
+        Bitmap bitmap = Bitmap.createBitmap(width, (int) Math.ceil(height),
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        backgroundPaint.setColor(color);
+        canvas.drawRect(0, 0, width, height, backgroundPaint);
+        canvas.drawText(label, padding, height - padding, textPaint);
+        return bitmap;
+    }
+}
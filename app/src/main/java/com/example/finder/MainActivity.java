@@ -4,6 +4,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.Toast;
 
@@ -14,29 +15,61 @@ import java.util.Objects;
 public class MainActivity extends AppCompatActivity {
 
     public static final String EXTRA_MESSAGE = "com.example.finder.MESSAGE";
+    public static final String EXTRA_FUZZY = "com.example.finder.FUZZY";
+    public static final String EXTRA_PATTERNS = "com.example.finder.PATTERNS";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         Objects.requireNonNull(getSupportActionBar()).hide();
         setContentView(R.layout.activity_main);
+        // Loads the recognition models and opens the camera provider while the terms are typed.
+        RecognizerStartup.start(this);
         Button findButton = findViewById(R.id.findButton);
-        findButton.setOnClickListener(v -> {
-            if (validateSearchText()) {
-                Intent intent = new Intent(v.getContext(), CameraPreviewActivity.class);
-                EditText searchText = findViewById(R.id.searchText);
-                String message = searchText.getText().toString();
-                intent.putExtra(EXTRA_MESSAGE, message);
-                startActivity(intent);
-            } else {
-                Context context = getApplicationContext();
-                CharSequence errorText = "Invalid Text!";
-                int duration = Toast.LENGTH_SHORT;
-
-                Toast toast = Toast.makeText(context, errorText, duration);
-                toast.show();
+        findButton.setOnClickListener(v -> startSearch(CameraPreviewActivity.class));
+        Button scanPhotosButton = findViewById(R.id.scanPhotosButton);
+        scanPhotosButton.setOnClickListener(v -> startSearch(BatchScanActivity.class));
+        Button historyButton = findViewById(R.id.historyButton);
+        historyButton.setOnClickListener(v -> startSearch(HistoryActivity.class));
+    }
+
+    /** Starts searching for the entered terms with the given activity. */
+    private void startSearch(Class<?> activityClass) {
+        if (validateSearchText()) {
+            Intent intent = new Intent(this, activityClass);
+            EditText searchText = findViewById(R.id.searchText);
+            String message = searchText.getText().toString();
+            intent.putExtra(EXTRA_MESSAGE, message);
+            CheckBox fuzzyCheckBox = findViewById(R.id.fuzzyCheckBox);
+            intent.putExtra(EXTRA_FUZZY, fuzzyCheckBox.isChecked());
+            CheckBox patternCheckBox = findViewById(R.id.patternCheckBox);
+            intent.putExtra(EXTRA_PATTERNS, patternCheckBox.isChecked());
+            if (patternCheckBox.isChecked()) {
+                String error = validatePatterns(message);
+                if (error != null) {
+                    Toast.makeText(getApplicationContext(), error, Toast.LENGTH_LONG).show();
+                    return;
+                }
             }
-        });
+            startActivity(intent);
+        } else {
+            Context context = getApplicationContext();
+            CharSequence errorText = "Invalid Text!";
+            int duration = Toast.LENGTH_SHORT;
+
+            Toast toast = Toast.makeText(context, errorText, duration);
+            toast.show();
+        }
+    }
+
+    /** Returns why the patterns of a query cannot be compiled, or null if they can. */
+    private static String validatePatterns(String message) {
+        try {
+            PatternMatcher.compile(SearchSession.parsePatterns(message).getTermTexts());
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
     }
 
     private boolean validateSearchText() {
@@ -0,0 +1,69 @@
+package com.example.finder;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * Debug graphic that shows the p50, p95 and p99 latency of every pipeline stage in the top left
+ * corner of the overlay. The text is refreshed at most twice a second, so drawing it does not
+ * format strings on every frame.
+ */
+public class MetricsGraphic extends GraphicOverlay.Graphic {
+
+    private static final long REFRESH_INTERVAL_NANOS = 500_000_000L;
+    private static final float TEXT_SIZE = 32.0f;
+    private static final float PADDING = 16.0f;
+    private static final PipelineMetrics.Stage[] STAGES = PipelineMetrics.Stage.values();
+
+    private final PipelineMetrics metrics;
+    private final Paint textPaint;
+    private final Paint backgroundPaint;
+    private final String[] lines = new String[STAGES.length];
+    private long lastRefreshNanos;
+    private float width;
+
+    MetricsGraphic(GraphicOverlay overlay, PipelineMetrics metrics) {
+        super(overlay);
+        this.metrics = metrics;
+
+        textPaint = new Paint();
+        textPaint.setColor(Color.GREEN);
+        textPaint.setTextSize(TEXT_SIZE);
+        textPaint.setTypeface(Typeface.MONOSPACE);
+
+        backgroundPaint = new Paint();
+        backgroundPaint.setColor(Color.BLACK);
+        backgroundPaint.setAlpha(160);
+        backgroundPaint.setStyle(Paint.Style.FILL);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        long now = System.nanoTime();
+        if (lines[0] == null || now - lastRefreshNanos >= REFRESH_INTERVAL_NANOS) {
+            width = 0;
+            for (int i = 0; i < STAGES.length; i++) {
+                lines[i] = metrics.summarize(STAGES[i]);
+                width = Math.max(width, textPaint.measureText(lines[i]));
+            }
+            lastRefreshNanos = now;
+        }
+        float lineHeight = TEXT_SIZE * 1.2f;
+        canvas.drawRect(0, 0, width + 2 * PADDING, lines.length * lineHeight + 2 * PADDING,
+                backgroundPaint);
+        for (int i = 0; i < lines.length; i++) {
+            canvas.drawText(lines[i], PADDING, PADDING + (i + 1) * lineHeight - TEXT_SIZE * 0.2f,
+                    textPaint);
+        }
+    }
+
+    /** Reports the panel, with room for the text to grow by a few characters when refreshed. */
+    @Override
+    public boolean addChangedBounds(DirtyRegion region) {
+        region.union(0, 0, width + 2 * PADDING + 4 * TEXT_SIZE,
+                STAGES.length * TEXT_SIZE * 1.2f + 2 * PADDING, 0);
+        return true;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.finder;
+
+import android.annotation.SuppressLint;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognizer;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recognizes camera frames with an ML Kit text recognizer.
+ *
+ * <p>ML Kit cannot stop a recognition once it has started, so cancelling one only discards its
+ * result: the callback is still made when ML Kit is done with the pixels, as the engine needs.
+ */
+final class MlKitRecognizer implements ScanEngine.Recognizer {
+
+    private static final String TAG = "DEBUG_LOG";
+
+    // Shared with other launches and warmed up by MainActivity, so it is never closed here.
+    private final TextRecognizer recognizer;
+    private final Executor callbackExecutor;
+
+    /** @param callbackExecutor runs ML Kit's completion listeners, e.g. the result executor */
+    MlKitRecognizer(TextRecognizer recognizer, Executor callbackExecutor) {
+        this.recognizer = recognizer;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    @Override
+    public ScanEngine.Cancellable recognize(ScanEngine.Frame frame, YuvFramePool.Lease copy,
+                                            CropRegion crop, ScanEngine.Callback callback) {
+        InputImage image;
+        if (copy != null) {
+            image = InputImage.fromByteBuffer(copy.getBuffer(), crop.getWidth(),
+                    crop.getHeight(), crop.getRotationDegrees(), InputImage.IMAGE_FORMAT_NV21);
+        } else {
+            // The whole frame is recognized in place.
+            @SuppressLint("UnsafeOptInUsageError") InputImage mediaImage =
+                    InputImage.fromMediaImage(Objects.requireNonNull(
+                            ((CameraScanner.CameraFrame) frame).imageProxy.getImage()),
+                            crop.getRotationDegrees());
+            image = mediaImage;
+        }
+        long timestamp = frame.getTimestampNanos();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        recognizer.process(image).addOnCompleteListener(callbackExecutor,
+                new OnCompleteListener<Text>() {
+                    @Override
+                    public void onComplete(@NonNull Task<Text> task) {
+                        if (cancelled.get()) {
+                            callback.onFailed(new CancellationException(
+                                    "Recognition was cancelled"));
+                        } else if (task.isSuccessful()) {
+                            Text visionText = task.getResult();
+                            if (BuildConfig.VERBOSE_LOGGING) {
+                                Log.d(TAG, "onSuccess: " + visionText.getText());
+                            }
+                            callback.onRecognized(MlKitText.convert(visionText, timestamp,
+                                    crop.getUprightWidth(), crop.getUprightHeight()));
+                        } else {
+                            Exception e = task.getException() != null ? task.getException()
+                                    : new CancellationException("Recognition was canceled");
+                            Log.d(TAG, "onFailure: Failed to detect text", e);
+                            callback.onFailed(e);
+                        }
+                    }
+                });
+        return new ScanEngine.Cancellable() {
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+            }
+        };
+    }
+}
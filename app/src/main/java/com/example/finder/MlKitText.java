@@ -0,0 +1,53 @@
+package com.example.finder;
+
+import android.graphics.Rect;
+
+import com.google.mlkit.vision.text.Text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Converts ML Kit recognition results to the pipeline's {@link RecognizedText}. */
+final class MlKitText {
+
+    private MlKitText() {
+    }
+
+    /**
+     * @param timestampNanos capture time of the recognized frame
+     * @param imageWidth upright width of the recognized image
+     * @param imageHeight upright height of the recognized image
+     */
+    static RecognizedText convert(Text visionText, long timestampNanos, int imageWidth,
+                                  int imageHeight) {
+        List<Text.TextBlock> textBlocks = visionText.getTextBlocks();
+        List<RecognizedText.Block> blocks = new ArrayList<>(textBlocks.size());
+        for (Text.TextBlock textBlock : textBlocks) {
+            List<Text.Line> textLines = textBlock.getLines();
+            List<RecognizedText.Line> lines = new ArrayList<>(textLines.size());
+            for (Text.Line textLine : textLines) {
+                List<Text.Element> textElements = textLine.getElements();
+                List<RecognizedText.Element> elements = new ArrayList<>(textElements.size());
+                for (Text.Element textElement : textElements) {
+                    Rect box = textElement.getBoundingBox();
+                    elements.add(box == null
+                            ? new RecognizedText.Element(textElement.getText())
+                            : new RecognizedText.Element(textElement.getText(),
+                                    box.left, box.top, box.right, box.bottom));
+                }
+                Rect box = textLine.getBoundingBox();
+                lines.add(box == null
+                        ? new RecognizedText.Line(textLine.getText(), elements)
+                        : new RecognizedText.Line(textLine.getText(),
+                                box.left, box.top, box.right, box.bottom, elements));
+            }
+            Rect box = textBlock.getBoundingBox();
+            blocks.add(box == null
+                    ? new RecognizedText.Block(textBlock.getText(), lines)
+                    : new RecognizedText.Block(textBlock.getText(),
+                            box.left, box.top, box.right, box.bottom, lines));
+        }
+        return new RecognizedText(timestampNanos, imageWidth, imageHeight, visionText.getText(),
+                blocks);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.finder;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.TextRecognition;
+import com.google.mlkit.vision.text.TextRecognizer;
+import com.google.mlkit.vision.text.TextRecognizerOptions;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gets text recognition ready before the first search, and shares it across activity launches.
+ *
+ * <p>{@link #start} is called from {@link MainActivity} while the user is still typing. It creates
+ * the app's single {@link TextRecognizer}, starts initializing the camera provider, and runs one
+ * warm-up inference on a synthetic frame on a background thread, so that the models are loaded
+ * before the camera preview opens instead of in front of the first frame. Starting again is a
+ * no-op, and every accessor starts on first use, so an activity restored after process death
+ * works the same way.
+ *
+ * <p>The recognizer lives as long as the process and must not be closed by the activities using
+ * it. The steps are recorded on a {@link StartupTimeline} measured from process start on the
+ * {@link SystemClock#elapsedRealtimeNanos()} clock.
+ */
+final class RecognizerStartup {
+
+    private static final String TAG = "DEBUG_LOG";
+    private static final int WARM_UP_WIDTH = 480;
+    private static final int WARM_UP_HEIGHT = 160;
+    private static final String WARM_UP_TEXT = "Finder 0123";
+    private static TextRecognizer recognizer;
+    private static ListenableFuture<ProcessCameraProvider> cameraProvider;
+    private static AnalysisConfig analysisConfig;
+    private static StartupTimeline timeline;
+
+    private RecognizerStartup() {
+    }
+
+    /** Starts preparing the recognizer and the camera, unless that was already done. */
+    static synchronized void start(Context context) {
+        if (recognizer != null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        timeline = new StartupTimeline("process", Process.getStartElapsedRealtime() * 1_000_000L);
+        ActivityManager activityManager =
+                (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        analysisConfig = AnalysisConfig.forDevice(Runtime.getRuntime().availableProcessors(),
+                activityManager != null && activityManager.isLowRamDevice());
+
+        // The camera provider initializes on CameraX's own threads while the recognizer warms up.
+        cameraProvider = ProcessCameraProvider.getInstance(appContext);
+        StartupTimeline processTimeline = timeline;
+        cameraProvider.addListener(() -> processTimeline.mark(
+                StartupTimeline.Milestone.CAMERA_PROVIDER_READY, SystemClock.elapsedRealtimeNanos()),
+                ContextCompat.getMainExecutor(appContext));
+
+        recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+        timeline.mark(StartupTimeline.Milestone.RECOGNIZER_CREATED,
+                SystemClock.elapsedRealtimeNanos());
+        TextRecognizer warmUpRecognizer = recognizer;
+        new Thread(() -> warmUp(warmUpRecognizer, processTimeline), "RecognizerWarmUp").start();
+    }
+
+    /** Returns the shared recognizer, which must not be closed. */
+    static synchronized TextRecognizer getRecognizer(Context context) {
+        start(context);
+        return recognizer;
+    }
+
+    static synchronized ListenableFuture<ProcessCameraProvider> getCameraProvider(
+            Context context) {
+        start(context);
+        return cameraProvider;
+    }
+
+    /** Returns the analysis configuration that suits this device. */
+    static synchronized AnalysisConfig getAnalysisConfig(Context context) {
+        start(context);
+        return analysisConfig;
+    }
+
+    /** Returns the steps of preparing recognition, measured from process start. */
+    static synchronized StartupTimeline getTimeline(Context context) {
+        start(context);
+        return timeline;
+    }
+
+    /**
+     * Recognizes a synthetic NV21 frame with a line of text, which loads the detection and
+     * recognition models and goes through the same input path as camera frames. Failures are only
+     * logged, since the first real frame then loads the models instead.
+     */
+    private static void warmUp(TextRecognizer recognizer, StartupTimeline timeline) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            InputImage image = InputImage.fromByteBuffer(syntheticFrame(), WARM_UP_WIDTH,
+                    WARM_UP_HEIGHT, 0, InputImage.IMAGE_FORMAT_NV21);
+            Tasks.await(recognizer.process(image));
+        } catch (Exception e) {
+            Log.w(TAG, "RecognizerStartup: Warm-up failed", e);
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        timeline.mark(StartupTimeline.Milestone.WARM_UP_DONE, now);
+        if (BuildConfig.VERBOSE_LOGGING) {
+            Log.d(TAG, "warmUp: took " + (now - start) / 1_000_000 + "ms, "
+                    + timeline.summarize());
+        }
+    }
+
+    /** Returns black text on white as an NV21 frame with neutral chroma. */
+    private static ByteBuffer syntheticFrame() {
+        Bitmap bitmap = Bitmap.createBitmap(WARM_UP_WIDTH, WARM_UP_HEIGHT,
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.WHITE);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.BLACK);
+        paint.setTextSize(WARM_UP_HEIGHT / 2f);
+        canvas.drawText(WARM_UP_TEXT, WARM_UP_HEIGHT / 8f, WARM_UP_HEIGHT * 0.7f, paint);
+        int[] pixels = new int[WARM_UP_WIDTH * WARM_UP_HEIGHT];
+        bitmap.getPixels(pixels, 0, WARM_UP_WIDTH, 0, 0, WARM_UP_WIDTH, WARM_UP_HEIGHT);
+        bitmap.recycle();
+
+        ByteBuffer frame = ByteBuffer.allocateDirect(YuvCropper.nv21Size(WARM_UP_WIDTH,
+                WARM_UP_HEIGHT));
+        for (int pixel : pixels) {
+            // The text is grey, so the green channel is the luma.
+            frame.put((byte) Color.green(pixel));
+        }
+        while (frame.hasRemaining()) {
+            frame.put((byte) 128);
+        }
+        frame.flip();
+        return frame;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.finder;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The app's single {@link TextIndex}, shared by the camera preview, batch scans and history
+ * search. Opened on first use, which reads the segment files, so call it off the main thread.
+ */
+final class SharedTextIndex {
+
+    /** Prefix of the source of text seen in the camera preview, followed by the session start. */
+    static final String CAMERA_SOURCE_PREFIX = "camera:";
+
+    private static final String TAG = "DEBUG_LOG";
+    private static final String DIRECTORY = "text-index";
+    private static TextIndex index;
+
+    private SharedTextIndex() {
+    }
+
+    /** Returns the index, or null if it can be neither opened nor recreated. */
+    static synchronized TextIndex get(Context context) {
+        if (index == null) {
+            File directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+            try {
+                index = TextIndex.open(directory);
+            } catch (IOException e) {
+                // The history is a cache of earlier scans, so a damaged one is started over.
+                Log.w(TAG, "SharedTextIndex: Recreating unreadable index", e);
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        //noinspection ResultOfMethodCallIgnored
+                        file.delete();
+                    }
+                }
+                try {
+                    index = TextIndex.open(directory);
+                } catch (IOException retryError) {
+                    Log.w(TAG, "SharedTextIndex: Failed to open index", retryError);
+                }
+            }
+        }
+        return index;
+    }
+
+    /** Flushes the index if it is open, so that what was seen so far survives the process. */
+    static synchronized void flush() {
+        if (index != null) {
+            index.flush();
+        }
+    }
+}
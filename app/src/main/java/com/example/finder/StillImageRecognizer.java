@@ -0,0 +1,104 @@
+package com.example.finder;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.net.Uri;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Recognizes the text in stored images for a {@link BatchScanner}.
+ *
+ * <p>Each image is decoded subsampled so that its long edge fits
+ * {@link BatchScanConfig#getMaxLongEdge()}, rotated upright according to its EXIF orientation, and
+ * recycled as soon as recognition completes, so memory stays bounded by the number of images in
+ * flight however large the originals are.
+ */
+final class StillImageRecognizer implements BatchScanner.Recognizer<Uri> {
+
+    private final ContentResolver resolver;
+    private final TextRecognizer recognizer;
+    private final BatchScanConfig config;
+
+    StillImageRecognizer(ContentResolver resolver, TextRecognizer recognizer,
+                         BatchScanConfig config) {
+        this.resolver = resolver;
+        this.recognizer = recognizer;
+        this.config = config;
+    }
+
+    @Override
+    public RecognizedText recognize(Uri image) throws Exception {
+        Bitmap bitmap = decode(image);
+        try {
+            int rotation = readRotation(image);
+            Text visionText = Tasks.await(recognizer.process(InputImage.fromBitmap(bitmap,
+                    rotation)));
+            boolean sideways = rotation == 90 || rotation == 270;
+            int width = sideways ? bitmap.getHeight() : bitmap.getWidth();
+            int height = sideways ? bitmap.getWidth() : bitmap.getHeight();
+            // Stills have no capture time on the camera clock.
+            return MlKitText.convert(visionText, 0, width, height);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /** Decodes the image with the smallest subsampling that fits the configured long edge. */
+    private Bitmap decode(Uri image) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = open(image)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not a decodable image: " + image);
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = config.sampleSize(options.outWidth, options.outHeight);
+        Bitmap bitmap;
+        try (InputStream in = open(image)) {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Failed to decode " + image);
+        }
+        return bitmap;
+    }
+
+    /** Returns the clockwise rotation that makes the image upright, 0 if it has no EXIF data. */
+    private int readRotation(Uri image) {
+        try (InputStream in = open(image)) {
+            int orientation = new ExifInterface(in).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private InputStream open(Uri image) throws IOException {
+        InputStream in = resolver.openInputStream(image);
+        if (in == null) {
+            throw new IOException("Cannot open " + image);
+        }
+        return in;
+    }
+}
@@ -16,106 +16,135 @@
  */
 package com.example.finder;
 
-import static java.lang.Math.max;
-import static java.lang.Math.min;
-
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.RectF;
-import android.util.Log;
-import com.google.mlkit.vision.text.Text;
-import com.google.mlkit.vision.text.Text.Element;
-import com.google.mlkit.vision.text.Text.Line;
-import com.google.mlkit.vision.text.Text.TextBlock;
-import java.util.Arrays;
 
 /**
- * Graphic instance for rendering TextBlock position, size, and ID within an associated graphic
- * overlay view.
+ * Graphic instance for rendering the tracked matched lines, with a label showing each line's text,
+ * within an associated graphic overlay view. Boxes and labels take the colour of the matched term.
+ *
+ * <p>Boxes come from the latest {@link TextTracker} snapshot, extrapolated to the time of drawing,
+ * so highlights move smoothly between recognition results. While any tracked line is moving, the
+ * graphic asks for a redraw on every display frame. Drawing only issues canvas calls; labels are
+ * blitted from a {@link LabelBitmapCache}, and only the areas of highlights that appeared, moved
+ * or disappeared are reported as changed.
  */
 public class TextGraphic extends GraphicOverlay.Graphic {
 
-    private static final String TAG = "TextGraphic";
-
     private static final int TEXT_COLOR = Color.BLACK;
     private static final int MARKER_COLOR = Color.WHITE;
     private static final float TEXT_SIZE = 54.0f;
     private static final float STROKE_WIDTH = 4.0f;
+    private static final float LINE_HEIGHT = TEXT_SIZE + 2 * STROKE_WIDTH;
+    // Covers the stroke and anti-aliasing around boxes.
+    private static final float MARGIN = 2 * STROKE_WIDTH;
+    private static final long FRAME_NANOS = 16_666_667L;
+    private static final int CACHED_LABELS = 64;
 
     private final Paint rectPaint;
-    private final Paint textPaint;
-    private final Paint labelPaint;
-    private final Text text;
-    private final String message;
+    private final LabelBitmapCache labelCache;
+    private final TextTracker tracker;
+    private final int[] termColors;
+    // Only used on the UI thread: what the last draw showed.
+    private TextTracker.Snapshot drawnTracks = TextTracker.Snapshot.EMPTY;
+    private boolean drawnMoving;
+    private final DirtyRegion drawnBounds = new DirtyRegion();
 
-    TextGraphic(GraphicOverlay overlay, Text text, String message) {
+    TextGraphic(GraphicOverlay overlay, TextTracker tracker, SearchSession session) {
         super(overlay);
 
-        this.text = text;
-        this.message = message;
+        this.tracker = tracker;
+        termColors = new int[session.size()];
+        for (int termId = 0; termId < termColors.length; termId++) {
+            termColors[termId] = session.get(termId).getColor();
+        }
 
         rectPaint = new Paint();
         rectPaint.setColor(MARKER_COLOR);
         rectPaint.setStyle(Paint.Style.STROKE);
         rectPaint.setStrokeWidth(STROKE_WIDTH);
 
-        textPaint = new Paint();
-        textPaint.setColor(TEXT_COLOR);
-        textPaint.setTextSize(TEXT_SIZE);
+        labelCache = new LabelBitmapCache(CACHED_LABELS, newTextPaint(), STROKE_WIDTH,
+                LINE_HEIGHT);
+    }
 
-        labelPaint = new Paint();
-        labelPaint.setColor(MARKER_COLOR);
-        labelPaint.setStyle(Paint.Style.FILL);
-        // Redraw the overlay, as this graphic has been added.
-        postInvalidate();
+    /**
+     * Returns a measurer for the labels drawn by this graphic. Each measurer owns its own
+     * {@link Paint}, so it must only be used from one thread.
+     */
+    static MatchGeometry.LabelMeasurer newLabelMeasurer() {
+        Paint paint = newTextPaint();
+        return paint::measureText;
     }
 
-    /** Draws the text block annotations for position, size, and raw value on the supplied canvas. */
+    private static Paint newTextPaint() {
+        Paint paint = new Paint();
+        paint.setColor(TEXT_COLOR);
+        paint.setTextSize(TEXT_SIZE);
+        return paint;
+    }
+
+    /** Draws the tracked line boxes and their text labels on the supplied canvas. */
     @Override
     public void draw(Canvas canvas) {
-        Log.d(TAG, "Text is: " + text.getText());
-        for (TextBlock textBlock : text.getTextBlocks()) {
-            // Renders the text at the bottom of the box.
-            Log.d(TAG, "TextBlock text is: " + textBlock.getText());
-            Log.d(TAG, "TextBlock boundingbox is: " + textBlock.getBoundingBox());
-            Log.d(TAG, "TextBlock cornerpoint is: " + Arrays.toString(textBlock.getCornerPoints()));
-            for (Line line : textBlock.getLines()) {
-                Log.d(TAG, "Line text is: " + line.getText());
-                Log.d(TAG, "Line boundingbox is: " + line.getBoundingBox());
-                Log.d(TAG, "Line cornerpoint is: " + Arrays.toString(line.getCornerPoints()));
-                if (line.getText().toLowerCase().contains(message.toLowerCase())) {
-                    // Draws the bounding box around the TextBlock.
-                    RectF rect = new RectF(line.getBoundingBox());
-                    // If the image is flipped, the left will be translated to right, and the right to left.
-                    float x0 = translateX(rect.left);
-                    float x1 = translateX(rect.right);
-                    rect.left = min(x0, x1);
-                    rect.right = max(x0, x1);
-                    rect.top = translateY(rect.top);
-                    rect.bottom = translateY(rect.bottom);
-                    Log.d(TAG, "rect: " + rect);
-                    canvas.drawRect(rect, rectPaint);
-
-                    float lineHeight = TEXT_SIZE + 2 * STROKE_WIDTH;
-                    float textWidth = textPaint.measureText(line.getText());
-                    canvas.drawRect(
-                            rect.left - STROKE_WIDTH,
-                            rect.top - lineHeight,
-                            rect.left + textWidth + 2 * STROKE_WIDTH,
-                            rect.top,
-                            labelPaint);
-                    // Renders the text at the bottom of the box.
-                    canvas.drawText(line.getText(), rect.left, rect.top - STROKE_WIDTH, textPaint);
+        TextTracker.Snapshot tracks = tracker.getSnapshot();
+        long now = tracker.toFrameTime(System.nanoTime());
+        drawnBounds.clear();
+        for (int i = 0; i < tracks.size(); i++) {
+            int color = colorOf(tracks.getTermId(i));
+            rectPaint.setColor(color);
+            float left = tracks.getLeft(i, now);
+            float top = tracks.getTop(i, now);
+            float right = tracks.getRight(i, now);
+            float bottom = tracks.getBottom(i, now);
+            // Draws the bounding box around the Line.
+            canvas.drawRect(left, top, right, bottom, rectPaint);
+            // Draws the label, with the text at its bottom, above the box.
+            Bitmap label = labelCache.get(tracks.getLabel(i), color, tracks.getLabelWidth(i));
+            canvas.drawBitmap(label, left - STROKE_WIDTH, top - LINE_HEIGHT, null);
+            addBounds(drawnBounds, left, top, right, bottom, label.getWidth());
+        }
+        drawnTracks = tracks;
+        drawnMoving = tracks.isMoving(now);
+        if (drawnMoving) {
+            postInvalidateOnAnimation();
+        }
+    }
 
-                    for (Element element : line.getElements()) {
-                        Log.d(TAG, "Element text is: " + element.getText());
-                        Log.d(TAG, "Element boundingbox is: " + element.getBoundingBox());
-                        Log.d(TAG, "Element cornerpoint is: " + Arrays.toString(element.getCornerPoints()));
-                        Log.d(TAG, "Element language is: " + element.getRecognizedLanguage());
-                    }
-                }
-            }
+    /**
+     * Reports the highlights of the last draw and those of the current snapshot over the next
+     * display frame, or nothing if the snapshot is the one drawn and nothing is moving.
+     */
+    @Override
+    public boolean addChangedBounds(DirtyRegion region) {
+        TextTracker.Snapshot tracks = tracker.getSnapshot();
+        if (tracks == drawnTracks && !drawnMoving) {
+            return true;
+        }
+        region.union(drawnBounds);
+        long now = tracker.toFrameTime(System.nanoTime());
+        for (int i = 0; i < tracks.size(); i++) {
+            // Label bitmaps are at most a pixel wider than the measured text.
+            float labelWidth = tracks.getLabelWidth(i) + 3 * STROKE_WIDTH + 1;
+            addBounds(region, tracks.getLeft(i, now), tracks.getTop(i, now),
+                    tracks.getRight(i, now), tracks.getBottom(i, now), labelWidth);
+            long next = now + FRAME_NANOS;
+            addBounds(region, tracks.getLeft(i, next), tracks.getTop(i, next),
+                    tracks.getRight(i, next), tracks.getBottom(i, next), labelWidth);
         }
+        return true;
+    }
+
+    /** Adds the area of a box and the label above it. */
+    private static void addBounds(DirtyRegion region, float left, float top, float right,
+                                  float bottom, float labelWidth) {
+        region.union(left - STROKE_WIDTH, top - LINE_HEIGHT,
+                Math.max(right, left - STROKE_WIDTH + labelWidth), bottom, MARGIN);
+    }
+
+    private int colorOf(int termId) {
+        return termId >= 0 && termId < termColors.length ? termColors[termId] : MARKER_COLOR;
     }
-}
\ No newline at end of file
+}
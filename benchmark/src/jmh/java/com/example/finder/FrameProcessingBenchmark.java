@@ -0,0 +1,85 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of running one recognition result through {@link TextPipeline}: matching, exact or fuzzy,
+ * geometry and tracking. Run with the {@code gc} profiler, as the build does, to see the allocation rate per
+ * frame.
+ *
+ * <p>Frames are synthetic unless the {@code finder.corpus} system property names a recorded
+ * {@link TextCorpus}, which {@code ./gradlew :benchmark:jmh -Pcorpus=<file>} sets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameProcessingBenchmark {
+
+    private static final int FRAME_COUNT = 256;
+    private static final MatchGeometry.LabelMeasurer LABEL_MEASURER = label -> 8f * label.length();
+
+    @Param({"8", "32", "128"})
+    public int linesPerFrame;
+
+    @Param({"10", "50"})
+    public int termCount;
+
+    @Param({"false", "true"})
+    public boolean fuzzy;
+
+    private List<RecognizedText> frames;
+    private List<String> terms;
+    private ViewTransform transform;
+    private TextPipeline pipeline;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        terms = SyntheticCorpus.terms(random, termCount);
+        String corpus = System.getProperty("finder.corpus");
+        if (corpus != null) {
+            try (FileInputStream in = new FileInputStream(corpus)) {
+                frames = TextCorpus.read(in);
+            }
+        } else {
+            frames = SyntheticCorpus.frames(random, terms, FRAME_COUNT, linesPerFrame);
+        }
+        RecognizedText first = frames.get(0);
+        transform = ViewTransform.create(1080, 2340, first.getImageWidth(),
+                first.getImageHeight(), false);
+        pipeline = newPipeline();
+    }
+
+    @Benchmark
+    public MatchGeometry processFrame() {
+        if (next == frames.size()) {
+            // Timestamps start over, which the tracker would ignore.
+            next = 0;
+            pipeline = newPipeline();
+        }
+        return pipeline.process(frames.get(next++), transform);
+    }
+
+    private TextPipeline newPipeline() {
+        TextPipeline.Listener listener = (text, hitCount, matches) -> { };
+        return fuzzy
+                ? new TextPipeline(FuzzyMatcher.compile(terms), LABEL_MEASURER, new TextTracker(),
+                        listener)
+                : new TextPipeline(TermMatcher.compile(terms), LABEL_MEASURER, new TextTracker(),
+                        listener);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for {@link FuzzyMatcher} to scan one frame of OCR text, to check it stays within the
+ * per-frame budget as frames get longer and queries get larger. The exact {@link TermMatcher} is
+ * measured on the same text for comparison. The {@code fuzzySmallAlphabet} case is the worst one:
+ * terms and text of only four letters, so that almost every position is a near match of some term.
+ * All cases should stay well within a frame at 30 fps, 33 ms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FuzzyMatcherBenchmark {
+
+    @Param({"5", "20", "50"})
+    public int termCount;
+
+    @Param({"1024", "4096", "16384"})
+    public int textLength;
+
+    private String text;
+    private FuzzyMatcher.Scanner scanner;
+    private TermMatcher exactMatcher;
+    private String smallAlphabetText;
+    private FuzzyMatcher.Scanner smallAlphabetScanner;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<String> terms = SyntheticCorpus.terms(random, termCount);
+        text = SyntheticCorpus.text(random, terms, textLength);
+        scanner = FuzzyMatcher.compile(terms).newScanner();
+        exactMatcher = TermMatcher.compile(terms);
+
+        List<String> smallAlphabetTerms = new ArrayList<>(termCount);
+        for (int i = 0; i < termCount; i++) {
+            smallAlphabetTerms.add(smallAlphabetWord(random, 6 + random.nextInt(8)));
+        }
+        StringBuilder builder = new StringBuilder(textLength + 16);
+        while (builder.length() < textLength) {
+            builder.append(smallAlphabetWord(random, 3 + random.nextInt(8))).append(' ');
+        }
+        smallAlphabetText = builder.toString();
+        smallAlphabetScanner = FuzzyMatcher.compile(smallAlphabetTerms).newScanner();
+    }
+
+    @Benchmark
+    public int fuzzy() {
+        return scanner.match(text, null);
+    }
+
+    @Benchmark
+    public int exact() {
+        return exactMatcher.match(text, null);
+    }
+
+    @Benchmark
+    public int fuzzySmallAlphabet() {
+        return smallAlphabetScanner.match(smallAlphabetText, null);
+    }
+
+    private static String smallAlphabetWord(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(chars);
+    }
+}
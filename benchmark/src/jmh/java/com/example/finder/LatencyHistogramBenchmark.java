@@ -0,0 +1,42 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording one duration into {@link PipelineMetrics}, alone and with several threads
+ * recording into the same stage, as the analyzer, result and UI threads do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatencyHistogramBenchmark {
+
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private long duration = 1_000_000L;
+
+    @Benchmark
+    public void record() {
+        // Spreads the values over a few hundred buckets.
+        duration = duration * 1_103_515_245L + 12_345L;
+        metrics.record(PipelineMetrics.Stage.MATCH, (duration >>> 40) & 0xFFFFFFFL);
+    }
+
+    @Benchmark
+    @Threads(3)
+    public void recordContended() {
+        metrics.record(PipelineMetrics.Stage.MATCH, 2_000_000L);
+    }
+
+    @Benchmark
+    public long percentile() {
+        return metrics.getHistogram(PipelineMetrics.Stage.MATCH).getPercentileNanos(99);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of handing a frame's matches to a {@link MatchExporter}, which the result thread pays for
+ * every frame with matches, while the writer thread writes them to a temporary directory. The
+ * {@code written} and {@code dropped} counters show whether the writer kept up, and so the
+ * sustained throughput in matches per second; the {@code gc} profiler shows that offering
+ * allocates nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MatchExporterBenchmark {
+
+    private static final List<String> TERMS = Arrays.asList("milk", "bread", "eggs");
+    private static final ViewTransform TRANSFORM =
+            ViewTransform.create(1080, 2280, 720, 1280, false);
+
+    @Param({"NEVER", "EVERY_BATCH"})
+    public MatchExportConfig.SyncPolicy syncPolicy;
+
+    private File directory;
+    private MatchExporter exporter;
+    private MatchGeometry matches;
+    private long frameId;
+
+    /** Matches written and dropped during an iteration. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ExportCounters {
+        public long written;
+        public long dropped;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("match-export").toFile();
+        exporter = new MatchExporter(directory, TERMS, new MatchExportConfig(
+                MatchExportConfig.DEFAULT.getRingCapacity(),
+                MatchExportConfig.DEFAULT.getBatchIntervalMillis(),
+                MatchExportConfig.DEFAULT.getMaxFileBytes(), 4, syncPolicy));
+        MatchGeometry.Builder builder = new MatchGeometry.Builder(TRANSFORM, label -> 0f);
+        builder.add(0, 1f, "Whole milk 2L", 100, 300, 520, 360);
+        builder.add(1, 0.8f, "Sourdough bread", 90, 420, 600, 480);
+        builder.add(2, 1f, "Free range eggs x12", 110, 540, 640, 600);
+        matches = builder.build();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        exporter.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+
+    @Benchmark
+    public boolean offerFrame(ExportCounters counters) {
+        long id = frameId++;
+        boolean queued = exporter.offer(id, id * 33_000_000L, id, matches, TRANSFORM);
+        counters.written = exporter.getWrittenCount();
+        counters.dropped = exporter.getDroppedCount();
+        return queued;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cost of scanning a frame's text for patterns with a {@link PatternMatcher}, which should stay
+ * flat as patterns are added, against finding each pattern in turn with {@link Pattern}, which
+ * grows with every pattern. Patterns are the built-in ones followed by labelled numbers such as
+ * {@code "batch #\d{2,6}"}, and the text has a few matches of each. Compiling is measured too,
+ * since a search pays for it once when it starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatternMatcherBenchmark {
+
+    private static final int TEXT_LENGTH = 4096;
+
+    @Param({"1", "4", "16", "64"})
+    public int patternCount;
+
+    private List<String> patterns;
+    private String text;
+    private PatternMatcher.Scanner scanner;
+    private Matcher[] regexMatchers;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        patterns = new ArrayList<>(patternCount);
+        List<String> samples = new ArrayList<>();
+        PatternMatcher.BuiltIn[] builtIns = PatternMatcher.BuiltIn.values();
+        for (int i = 0; i < patternCount && i < builtIns.length; i++) {
+            patterns.add(PatternMatcher.BUILT_IN_MARK + builtIns[i].getName());
+        }
+        samples.add("$4.99");
+        samples.add("12/05/2026");
+        samples.add("lot A1234");
+        int labelled = patternCount - patterns.size();
+        for (String label : SyntheticCorpus.terms(random, labelled)) {
+            patterns.add(label + " ?[#:]? ?\\d{2,6}");
+            samples.add(label + " #" + random.nextInt(100_000));
+        }
+        text = SyntheticCorpus.text(random, samples, TEXT_LENGTH);
+        scanner = PatternMatcher.compile(patterns).newScanner();
+        regexMatchers = new Matcher[patterns.size()];
+        for (int i = 0; i < regexMatchers.length; i++) {
+            String pattern = patterns.get(i);
+            String regex = pattern.charAt(0) == PatternMatcher.BUILT_IN_MARK
+                    ? PatternMatcher.BuiltIn.values()[i].getRegex().replace("$", "\\$") : pattern;
+            regexMatchers[i] = Pattern.compile(regex, Pattern.CASE_INSENSITIVE).matcher(text);
+        }
+    }
+
+    @Benchmark
+    public int scan() {
+        return scanner.match(text, null);
+    }
+
+    /** Every pattern in turn, as backtracking regular expressions would find them. */
+    @Benchmark
+    public int scanWithRegex() {
+        int hits = 0;
+        for (Matcher matcher : regexMatchers) {
+            matcher.reset();
+            while (matcher.find()) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public PatternMatcher compile() {
+        return PatternMatcher.compile(patterns);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of scanning text in which a pattern could go on matching to the end of the text from every
+ * match start, such as {@code a.*c} in {@code "ab ab ab ..."}, as the text gets longer. Scanning
+ * should take time linear in the length of the text, so the time per char should stay flat, unlike
+ * running the forward automaton from every match start to where it stops.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatternMatcherOverlapBenchmark {
+
+    @Param({"1000", "4000", "16000"})
+    public int textLength;
+
+    private String text;
+    private PatternMatcher.Scanner scanner;
+    private PatternMatcher.Scanner pairScanner;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(textLength + 3);
+        while (builder.length() < textLength) {
+            builder.append("ab ");
+        }
+        text = builder.toString();
+        scanner = PatternMatcher.compile(Arrays.asList("ab", "a.*c")).newScanner();
+        // Runs from odd and even starts never merge, since they count pairs of chars differently.
+        pairScanner = PatternMatcher.compile(Arrays.asList("ab", "a(..)*c")).newScanner();
+    }
+
+    @Benchmark
+    public int scan() {
+        return scanner.match(text, null);
+    }
+
+    @Benchmark
+    public int scanPairs() {
+        return pairScanner.match(text, null);
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of hashing a frame and looking it up in a full {@link ResultCache}, which the analyzer pays
+ * for every frame it would otherwise recognize, and the hit rate on a sequence of frames. Hashing
+ * and looking up a VGA frame should take well under 500 us, a small part of the frame budget. The
+ * replay benchmark reports the rate as the {@code hits} and {@code misses} counters.
+ *
+ * <p>Frames are synthetic, a camera panning across a page, pausing and returning to earlier
+ * places, unless the {@code finder.lumaFrames} system property names a recording, which
+ * {@code ./gradlew :benchmark:jmh -PlumaFrames=<file>} sets. A recording is the width and height
+ * as big-endian ints followed by any number of frames of {@code width * height} luma bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResultCacheBenchmark {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int FRAME_COUNT = 300;
+    private static final long FRAME_INTERVAL_NANOS = 33_000_000L;
+
+    private List<ByteBuffer> frames;
+    private int width;
+    private int height;
+    private CropRegion crop;
+    private final long[] hash = new long[PerceptualHash.WORDS];
+    private ResultCache<Integer> fullCache;
+    private ResultCache<Integer> replayCache;
+    private int next;
+
+    /** Hits and misses of the replayed sequence. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HitCounters {
+        public long hits;
+        public long misses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        String recording = System.getProperty("finder.lumaFrames");
+        if (recording != null) {
+            readFrames(recording);
+        } else {
+            width = WIDTH;
+            height = HEIGHT;
+            frames = syntheticFrames(new Random(42));
+        }
+        crop = CropRegion.full(width, height, 0);
+        // Filled with frames of other scenes, so every lookup compares against all entries.
+        fullCache = new ResultCache<>();
+        Random random = new Random(7);
+        for (int i = 0; i < fullCache.getCapacity(); i++) {
+            for (int word = 0; word < PerceptualHash.WORDS; word++) {
+                hash[word] = random.nextLong();
+            }
+            fullCache.put(hash, width, height, 0, i);
+        }
+        replayCache = new ResultCache<>();
+    }
+
+    @Benchmark
+    public long[] hashFrame() {
+        PerceptualHash.compute(nextFrame(), width, crop, hash);
+        return hash;
+    }
+
+    @Benchmark
+    public Integer hashAndLookup() {
+        PerceptualHash.compute(nextFrame(), width, crop, hash);
+        return fullCache.get(hash, width, height, 0);
+    }
+
+    /** The analyzer's sequence: a lookup for every frame, and a put for every miss. */
+    @Benchmark
+    public Integer replay(HitCounters counters) {
+        if (next == frames.size()) {
+            // Timestamps start over, which would make every cached result look young forever.
+            replayCache.clear();
+        }
+        int index = next;
+        long timestamp = (long) index * FRAME_INTERVAL_NANOS;
+        PerceptualHash.compute(nextFrame(), width, crop, hash);
+        Integer result = replayCache.get(hash, width, height, timestamp);
+        if (result != null) {
+            counters.hits++;
+        } else {
+            counters.misses++;
+            replayCache.put(hash, width, height, timestamp, index);
+        }
+        return result;
+    }
+
+    private ByteBuffer nextFrame() {
+        if (next == frames.size()) {
+            next = 0;
+        }
+        return frames.get(next++);
+    }
+
+    private void readFrames(String file) throws IOException {
+        frames = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            width = in.readInt();
+            height = in.readInt();
+            while (true) {
+                byte[] frame = new byte[width * height];
+                try {
+                    in.readFully(frame);
+                } catch (EOFException e) {
+                    break;
+                }
+                ByteBuffer buffer = ByteBuffer.allocateDirect(frame.length);
+                buffer.put(frame);
+                frames.add(buffer);
+            }
+        }
+        if (frames.isEmpty()) {
+            throw new IOException("No frames in " + file);
+        }
+    }
+
+    /**
+     * A page of dark text-like strokes on light paper, seen through a window that pans across it,
+     * holds still, and jumps back to where it started, with sensor noise on every frame.
+     */
+    private static List<ByteBuffer> syntheticFrames(Random random) {
+        int pageWidth = 3 * WIDTH;
+        int pageHeight = HEIGHT + 64;
+        byte[] page = new byte[pageWidth * pageHeight];
+        for (int y = 0; y < pageHeight; y++) {
+            for (int x = 0; x < pageWidth; x++) {
+                page[y * pageWidth + x] = (byte) 200;
+            }
+        }
+        for (int line = 16; line + 20 < pageHeight; line += 32) {
+            int x = 8;
+            while (x < pageWidth - 64) {
+                int wordWidth = 16 + random.nextInt(48);
+                for (int y = line; y < line + 20; y++) {
+                    for (int dx = 0; dx < wordWidth; dx += 3) {
+                        page[y * pageWidth + x + dx] = (byte) 40;
+                    }
+                }
+                x += wordWidth + 12;
+            }
+        }
+        List<ByteBuffer> frames = new ArrayList<>(FRAME_COUNT);
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            int phase = i % 100;
+            // 40 frames panning, 40 holding still, 20 back at the start of the page.
+            int left = phase < 40 ? phase * 8 : phase < 80 ? 320 : 0;
+            ByteBuffer frame = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int luma = (page[(y + 32) * pageWidth + left + x] & 0xFF)
+                            + random.nextInt(9) - 4;
+                    frame.put(y * WIDTH + x, (byte) luma);
+                }
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.finder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates corpora that look like a camera panning slowly across a page of text: every frame has
+ * the same lines, shifted a little from the previous frame, and a few of them contain a search
+ * term.
+ */
+final class SyntheticCorpus {
+
+    static final int IMAGE_WIDTH = 1280;
+    static final int IMAGE_HEIGHT = 720;
+    private static final int LINES_PER_BLOCK = 4;
+    private static final int LINE_HEIGHT = 24;
+    private static final long FRAME_INTERVAL_NANOS = 33_000_000L;
+
+    private SyntheticCorpus() {
+    }
+
+    /** Returns {@code count} random lower-case words of 4 to 9 letters. */
+    static List<String> terms(Random random, int count) {
+        List<String> terms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            terms.add(word(random, 4 + random.nextInt(6)));
+        }
+        return terms;
+    }
+
+    /**
+     * Returns OCR-like text of about {@code length} characters in which roughly one word in forty
+     * is one of the terms.
+     */
+    static String text(Random random, List<String> terms, int length) {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            if (random.nextInt(40) == 0) {
+                text.append(terms.get(random.nextInt(terms.size()))).append(' ');
+            }
+            String word = word(random, 3 + random.nextInt(8));
+            text.append(random.nextBoolean() ? word.toUpperCase(Locale.ROOT) : word);
+            text.append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+
+    /** Returns {@code frameCount} frames of {@code linesPerFrame} lines each. */
+    static List<RecognizedText> frames(Random random, List<String> terms, int frameCount,
+                                       int linesPerFrame) {
+        List<String> lineTexts = new ArrayList<>(linesPerFrame);
+        for (int i = 0; i < linesPerFrame; i++) {
+            lineTexts.add(text(random, terms, 20 + random.nextInt(40)).replace('\n', ' ').trim());
+        }
+        List<RecognizedText> frames = new ArrayList<>(frameCount);
+        for (int f = 0; f < frameCount; f++) {
+            // Pans right by 2 pixels a frame and wraps around.
+            int shift = (2 * f) % 64;
+            List<RecognizedText.Block> blocks = new ArrayList<>();
+            StringBuilder frameText = new StringBuilder();
+            for (int first = 0; first < linesPerFrame; first += LINES_PER_BLOCK) {
+                List<RecognizedText.Line> lines = new ArrayList<>(LINES_PER_BLOCK);
+                StringBuilder blockText = new StringBuilder();
+                int last = Math.min(first + LINES_PER_BLOCK, linesPerFrame);
+                for (int i = first; i < last; i++) {
+                    String lineText = lineTexts.get(i);
+                    int top = (i * LINE_HEIGHT) % (IMAGE_HEIGHT - LINE_HEIGHT);
+                    int left = 16 + shift;
+                    lines.add(line(lineText, left, top));
+                    if (blockText.length() > 0) {
+                        blockText.append('\n');
+                    }
+                    blockText.append(lineText);
+                }
+                RecognizedText.Line firstLine = lines.get(0);
+                RecognizedText.Line lastLine = lines.get(lines.size() - 1);
+                blocks.add(new RecognizedText.Block(blockText.toString(), firstLine.getLeft(),
+                        firstLine.getTop(), IMAGE_WIDTH, lastLine.getBottom(), lines));
+                if (frameText.length() > 0) {
+                    frameText.append('\n');
+                }
+                frameText.append(blockText);
+            }
+            frames.add(new RecognizedText(f * FRAME_INTERVAL_NANOS, IMAGE_WIDTH, IMAGE_HEIGHT,
+                    frameText.toString(), blocks));
+        }
+        return Collections.unmodifiableList(frames);
+    }
+
+    private static RecognizedText.Line line(String text, int left, int top) {
+        List<RecognizedText.Element> elements = new ArrayList<>();
+        int x = left;
+        for (String word : text.split(" ")) {
+            int width = 12 * word.length();
+            elements.add(new RecognizedText.Element(word, x, top, x + width, top + LINE_HEIGHT));
+            x += width + 12;
+        }
+        return new RecognizedText.Line(text, left, top, x - 12, top + LINE_HEIGHT, elements);
+    }
+
+    private static String word(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
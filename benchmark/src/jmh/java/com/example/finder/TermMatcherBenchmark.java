@@ -0,0 +1,65 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matcher throughput, in frames of text per millisecond, against the per-term
+ * lowercase-and-contains scan that {@link TermMatcher} replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TermMatcherBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int termCount;
+
+    // A dense OCR frame is typically a few kilobytes of text.
+    @Param({"1024", "4096", "16384"})
+    public int textLength;
+
+    private List<String> terms;
+    private String text;
+    private TermMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        terms = SyntheticCorpus.terms(random, termCount);
+        text = SyntheticCorpus.text(random, terms, textLength);
+        matcher = TermMatcher.compile(terms);
+    }
+
+    @Benchmark
+    public int termMatcher() {
+        return matcher.match(text, null);
+    }
+
+    @Benchmark
+    public int termMatcherAny() {
+        return matcher.matches(text) ? 1 : 0;
+    }
+
+    @Benchmark
+    public int stringContains() {
+        int hits = 0;
+        String lowerText = text.toLowerCase();
+        for (String term : terms) {
+            if (lowerText.contains(term.toLowerCase())) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of fusing one recognition result with the results before it in {@link TextFusion}, which
+ * should grow with the lines of the result and the window, not with the length of the scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TextFusionBenchmark {
+
+    private static final int FRAME_COUNT = 256;
+
+    @Param({"8", "32", "128"})
+    public int linesPerFrame;
+
+    @Param({"2", "4", "8"})
+    public int window;
+
+    private List<RecognizedText> frames;
+    private TextFusion fusion;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        frames = SyntheticCorpus.frames(random, SyntheticCorpus.terms(random, 10), FRAME_COUNT,
+                linesPerFrame);
+        fusion = new TextFusion(window, TextFusion.DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    @Benchmark
+    public RecognizedText fuse() {
+        if (next == frames.size()) {
+            // Timestamps start over, which resets the fusion like a new recording.
+            next = 0;
+        }
+        return fusion.fuse(frames.get(next++));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building a {@link TextGrid} for a result, which the result thread pays for every frame,
+ * and of the lookups a tap, a region selection and a neighbour search make, against scanning every
+ * word for a tap. The page keeps its size while the text gets smaller, so lookups should take
+ * about as long for a label as for a page of fine print.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TextGridBenchmark {
+
+    private static final int WORDS_PER_LINE = 5;
+    private static final int POINTS = 1024;
+
+    /** Lines and words on the page together. */
+    @Param({"100", "1000", "10000"})
+    public int entries;
+
+    private RecognizedText text;
+    private TextGrid grid;
+    private final float[] points = new float[2 * POINTS];
+    private final int[] found = new int[256];
+    private int lineCount;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lineCount = Math.max(1, entries / (WORDS_PER_LINE + 1));
+        // Lines in a table of twice as many rows as columns, each filling most of its cell.
+        int rows = (int) Math.ceil(Math.sqrt(2.0 * lineCount));
+        int columns = (lineCount + rows - 1) / rows;
+        float cellWidth = (float) SyntheticCorpus.IMAGE_WIDTH / columns;
+        float cellHeight = (float) SyntheticCorpus.IMAGE_HEIGHT / rows;
+        List<RecognizedText.Line> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            int left = (int) (i % columns * cellWidth);
+            int top = (int) (i / columns * cellHeight);
+            int wordWidth = (int) (0.9f * cellWidth / WORDS_PER_LINE);
+            int height = Math.max(1, (int) (0.6f * cellHeight));
+            List<RecognizedText.Element> elements = new ArrayList<>(WORDS_PER_LINE);
+            for (int w = 0; w < WORDS_PER_LINE; w++) {
+                int x = left + w * (int) (cellWidth / WORDS_PER_LINE);
+                elements.add(new RecognizedText.Element("w" + i + "." + w, x, top,
+                        x + wordWidth, top + height));
+            }
+            lines.add(new RecognizedText.Line("line" + i, left, top,
+                    elements.get(WORDS_PER_LINE - 1).getRight(), top + height, elements));
+        }
+        text = new RecognizedText(0, SyntheticCorpus.IMAGE_WIDTH, SyntheticCorpus.IMAGE_HEIGHT,
+                "", Collections.singletonList(new RecognizedText.Block("", lines)));
+        grid = TextGrid.build(text);
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            points[2 * i] = random.nextFloat() * SyntheticCorpus.IMAGE_WIDTH;
+            points[2 * i + 1] = random.nextFloat() * SyntheticCorpus.IMAGE_HEIGHT;
+        }
+    }
+
+    @Benchmark
+    public TextGrid build() {
+        return TextGrid.build(text);
+    }
+
+    @Benchmark
+    public int findWord() {
+        int i = next++ & (POINTS - 1);
+        return grid.find(points[2 * i], points[2 * i + 1], TextGrid.Kind.ELEMENT, 8);
+    }
+
+    /** What a tap cost before the grid: the first word containing the point. */
+    @Benchmark
+    public int findWordByScan() {
+        int i = next++ & (POINTS - 1);
+        float x = points[2 * i];
+        float y = points[2 * i + 1];
+        for (RecognizedText.Block block : text.getBlocks()) {
+            for (RecognizedText.Line line : block.getLines()) {
+                for (RecognizedText.Element element : line.getElements()) {
+                    if (x >= element.getLeft() && x <= element.getRight()
+                            && y >= element.getTop() && y <= element.getBottom()) {
+                        return element.getLeft();
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Lines in a region a tenth of the page across. */
+    @Benchmark
+    public int queryRegion() {
+        int i = next++ & (POINTS - 1);
+        float x = points[2 * i];
+        float y = points[2 * i + 1];
+        return grid.query(x, y, x + SyntheticCorpus.IMAGE_WIDTH / 10f,
+                y + SyntheticCorpus.IMAGE_HEIGHT / 10f, TextGrid.Kind.LINE, found);
+    }
+
+    @Benchmark
+    public int findNeighbour() {
+        // Lines are indexed before their words, so every sixth entry is a line.
+        int line = (next++ % lineCount) * (WORDS_PER_LINE + 1);
+        return grid.findNeighbour(line, TextGrid.Direction.RIGHT, TextGrid.Kind.LINE,
+                Float.MAX_VALUE);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for a {@link TextIndex} search over a long history of sightings, which the history screen
+ * pays once for every search term. The index holds several segments, and its buffer holds
+ * postings that have not been flushed yet, as after a scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TextIndexBenchmark {
+
+    private static final int VOCABULARY = 2000;
+    private static final int LINES_PER_FRAME = 10;
+
+    @Param({"500", "2000", "8000"})
+    public int frameCount;
+
+    private File directory;
+    private TextIndex index;
+    private final List<String> words = new ArrayList<>(VOCABULARY);
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        directory = Files.createTempDirectory("text-index").toFile();
+        index = TextIndex.open(directory, OcrConfusionMap.DEFAULT,
+                TextIndex.DEFAULT_FLUSH_THRESHOLD, TextIndex.DEFAULT_MAX_SEGMENTS);
+        for (int i = 0; i < VOCABULARY; i++) {
+            words.add("word" + i);
+        }
+        Random random = new Random(7);
+        for (int frame = 0; frame < frameCount; frame++) {
+            List<String> lines = new ArrayList<>(LINES_PER_FRAME);
+            for (int l = 0; l < LINES_PER_FRAME; l++) {
+                lines.add(words.get(random.nextInt(VOCABULARY)) + " "
+                        + words.get(random.nextInt(VOCABULARY)));
+            }
+            index.add("session", frame, frame(lines));
+        }
+        // Merges finish before measuring, so every search sees the same segments.
+        index.awaitBackgroundWork();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        index.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+
+    @Benchmark
+    public List<TextIndex.Hit> searchOneWord() {
+        return index.search(nextWord(), 10);
+    }
+
+    @Benchmark
+    public List<TextIndex.Hit> searchTwoWords() {
+        return index.search(nextWord() + " " + nextWord(), 10);
+    }
+
+    private String nextWord() {
+        if (next == VOCABULARY) {
+            next = 0;
+        }
+        return words.get(next++);
+    }
+
+    /** Returns a frame with one line, and one element, per string. */
+    private static RecognizedText frame(List<String> lines) {
+        List<RecognizedText.Line> recognizedLines = new ArrayList<>(lines.size());
+        int top = 0;
+        for (String line : lines) {
+            List<RecognizedText.Element> elements = new ArrayList<>(1);
+            elements.add(new RecognizedText.Element(line, 0, top, 400, top + 20));
+            recognizedLines.add(new RecognizedText.Line(line, 0, top, 400, top + 20, elements));
+            top += 24;
+        }
+        List<RecognizedText.Block> blocks = new ArrayList<>(1);
+        blocks.add(new RecognizedText.Block(String.join("\n", lines), 0, 0, 400, top,
+                recognizedLines));
+        return new RecognizedText(0, SyntheticCorpus.IMAGE_WIDTH, SyntheticCorpus.IMAGE_HEIGHT,
+                String.join("\n", lines), blocks);
+    }
+}
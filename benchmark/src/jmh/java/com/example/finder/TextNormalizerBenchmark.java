@@ -0,0 +1,78 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Cost of normalizing a block of recognized text with {@link TextNormalizer}, which matching pays
+ * for every block of every frame, against normalizing it with {@link Normalizer} and regular
+ * expressions into new strings. Text is plain ASCII, accented Latin, or a mix of Latin, Cyrillic,
+ * Greek, Devanagari, CJK and full-width text, as the Latin, Devanagari, Chinese, Japanese and
+ * Korean recognizers produce it. The {@code gc} profiler shows that normalizing into a reused
+ * buffer allocates nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TextNormalizerBenchmark {
+
+    private static final int TEXT_LENGTH = 400;
+    private static final String[] LATIN = {"crème", "brûlée", "façade", "Straße", "ÉCOLE", "ñandú"};
+    private static final String[] MIXED = {"молоко", "ΓΑΛΑ", "दूध", "牛乳", "ミルク", "우유",
+            "ＭＩＬＫ", "İstanbul", "ﬁsh", "semi—skimmed"};
+    private static final Pattern MARKS = Pattern.compile("\\p{Mn}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    @Param({"ascii", "latin", "mixed"})
+    public String script;
+
+    private String text;
+    private final NormalizedText normalized = new NormalizedText();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String ascii = SyntheticCorpus.text(random, SyntheticCorpus.terms(random, 8), TEXT_LENGTH);
+        if (script.equals("ascii")) {
+            text = ascii;
+            return;
+        }
+        String[] words = script.equals("latin") ? LATIN : MIXED;
+        StringBuilder builder = new StringBuilder(TEXT_LENGTH + 16);
+        for (String word : ascii.split(" ")) {
+            builder.append(random.nextInt(3) == 0 ? words[random.nextInt(words.length)] : word)
+                    .append(' ');
+        }
+        text = builder.toString();
+        // Builds the tables of the blocks in the text, as the first frames do.
+        TextNormalizer.normalize(text, 0, text.length(), normalized);
+    }
+
+    @Benchmark
+    public int normalize() {
+        TextNormalizer.normalize(text, 0, text.length(), normalized);
+        return normalized.length();
+    }
+
+    /** Normalizing into new strings, without offsets back to the original text. */
+    @Benchmark
+    public String normalizeWithStrings() {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        String stripped = MARKS.matcher(decomposed).replaceAll("");
+        String composed = Normalizer.normalize(stripped, Normalizer.Form.NFC);
+        return SPACES.matcher(composed.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT))
+                .replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.finder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of copying a camera frame out of its YUV_420_888 planes for pipelined recognition, into a
+ * {@link YuvFramePool} lease and, for comparison, into a new buffer per frame as a naive copy
+ * would. The {@code gc} profiler, which the build enables, shows the pooled copy allocating
+ * nothing per frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class YuvFramePoolBenchmark {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    // Typical padding of camera rows, with chroma interleaved as most devices deliver it.
+    private static final int ROW_STRIDE = 1344;
+    private static final int UV_PIXEL_STRIDE = 2;
+
+    /** Whether the whole frame or the default region of interest is copied. */
+    @Param({"false", "true"})
+    public boolean fullFrame;
+
+    private ByteBuffer yPlane;
+    private ByteBuffer uPlane;
+    private ByteBuffer vPlane;
+    private CropRegion crop;
+    private YuvFramePool pool;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        yPlane = randomPlane(random, ROW_STRIDE * HEIGHT);
+        uPlane = randomPlane(random, ROW_STRIDE * HEIGHT / 2);
+        vPlane = randomPlane(random, ROW_STRIDE * HEIGHT / 2);
+        crop = fullFrame
+                ? CropRegion.full(WIDTH, HEIGHT, 90)
+                : AnalysisConfig.DEFAULT.getDefaultRegion().toCropRegion(WIDTH, HEIGHT, 90);
+        pool = new YuvFramePool(2);
+        pool.resize(WIDTH, HEIGHT);
+    }
+
+    @Benchmark
+    public int pooledNv21() {
+        YuvFramePool.Lease lease = pool.copy(yPlane, ROW_STRIDE, uPlane, vPlane, ROW_STRIDE,
+                UV_PIXEL_STRIDE, crop, YuvFramePool.Layout.NV21);
+        int last = lease.getBuffer().get(lease.getBuffer().limit() - 1);
+        lease.release();
+        return last;
+    }
+
+    @Benchmark
+    public int pooledLuma() {
+        YuvFramePool.Lease lease = pool.copy(yPlane, ROW_STRIDE, uPlane, vPlane, ROW_STRIDE,
+                UV_PIXEL_STRIDE, crop, YuvFramePool.Layout.LUMA);
+        int last = lease.getBuffer().get(lease.getBuffer().limit() - 1);
+        lease.release();
+        return last;
+    }
+
+    @Benchmark
+    public ByteBuffer newBufferNv21() {
+        ByteBuffer nv21 = ByteBuffer.allocate(YuvCropper.nv21Size(crop));
+        YuvCropper.copyToNv21(yPlane, ROW_STRIDE, uPlane, vPlane, ROW_STRIDE, UV_PIXEL_STRIDE,
+                crop, nv21);
+        return nv21;
+    }
+
+    private static ByteBuffer randomPlane(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        ByteBuffer plane = ByteBuffer.allocateDirect(size);
+        plane.put(bytes).clear();
+        return plane;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.finder;
+
+/**
+ * How camera frames are prepared for text recognition.
+ *
+ * <p>{@link Mode#FULL_FRAME} hands every camera frame to the recognizer as is. {@link
+ * Mode#REGION_OF_INTEREST} copies only the selected region of each frame, which cuts recognition
+ * latency roughly in proportion to the area that is dropped. Both modes request a frame whose long
+ * edge is at most {@link #getTargetLongEdge()} pixels instead of the full display size.
+ *
+ * <p>Up to {@link #getMaxFramesInFlight()} frames are recognized at once; see
+ * {@link FrameScheduler}.
+ */
+public final class AnalysisConfig {
+
+    public enum Mode {
+        FULL_FRAME,
+        REGION_OF_INTEREST
+    }
+
+    /**
+     * Centre band at 720p, which keeps label-sized text readable on most phones, with two frames
+     * in flight.
+     */
+    public static final AnalysisConfig DEFAULT = new AnalysisConfig(
+            Mode.REGION_OF_INTEREST, 1280, RegionOfInterest.centreBand(0.4f), 2);
+
+    /**
+     * Same band at 960p with one frame in flight, for devices where a second concurrent
+     * recognition would compete with the camera and UI for too few cores or too little memory.
+     */
+    public static final AnalysisConfig LOW_END = new AnalysisConfig(
+            Mode.REGION_OF_INTEREST, 960, RegionOfInterest.centreBand(0.4f), 1);
+
+    private static final int MIN_PIPELINED_PROCESSORS = 6;
+
+    private final Mode mode;
+    private final int targetLongEdge;
+    private final RegionOfInterest defaultRegion;
+    private final int maxFramesInFlight;
+
+    public AnalysisConfig(Mode mode, int targetLongEdge, RegionOfInterest defaultRegion,
+                          int maxFramesInFlight) {
+        if (targetLongEdge <= 0) {
+            throw new IllegalArgumentException("targetLongEdge must be positive");
+        }
+        if (maxFramesInFlight < 1) {
+            throw new IllegalArgumentException("maxFramesInFlight must be at least 1");
+        }
+        this.mode = mode;
+        this.targetLongEdge = targetLongEdge;
+        this.defaultRegion = defaultRegion;
+        this.maxFramesInFlight = maxFramesInFlight;
+    }
+
+    /**
+     * Returns the configuration for a device with the given number of processors, {@link #LOW_END}
+     * if it has few of them or reports itself as a low-RAM device.
+     */
+    public static AnalysisConfig forDevice(int processors, boolean lowRamDevice) {
+        return lowRamDevice || processors < MIN_PIPELINED_PROCESSORS ? LOW_END : DEFAULT;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /** Upper bound for the long edge of the analysis resolution. */
+    public int getTargetLongEdge() {
+        return targetLongEdge;
+    }
+
+    /** Region used until the user selects one on the overlay. */
+    public RegionOfInterest getDefaultRegion() {
+        return defaultRegion;
+    }
+
+    /** Number of frames that may be recognized at the same time. */
+    public int getMaxFramesInFlight() {
+        return maxFramesInFlight;
+    }
+
+    /**
+     * Returns the analysis resolution for a display, keeping the display's aspect ratio and never
+     * exceeding the display size. The result is {@code {width, height}} in display orientation.
+     */
+    public int[] targetResolution(int displayWidth, int displayHeight) {
+        return targetResolution(displayWidth, displayHeight, targetLongEdge);
+    }
+
+    /** Like {@link #targetResolution(int, int)}, with a long edge of at most {@code maxLongEdge}. */
+    public static int[] targetResolution(int displayWidth, int displayHeight, int maxLongEdge) {
+        int longEdge = Math.max(displayWidth, displayHeight);
+        if (longEdge <= maxLongEdge) {
+            return new int[] {displayWidth, displayHeight};
+        }
+        float scale = (float) maxLongEdge / longEdge;
+        return new int[] {Math.round(displayWidth * scale), Math.round(displayHeight * scale)};
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.finder;
+
+/**
+ * How a {@link BatchScanner} spreads still images over its workers and how large it decodes them.
+ *
+ * <p>At most {@link #getParallelism()} images are recognized at once and at most
+ * {@link #getMaxQueued()} more wait for a worker; the scanner only takes the next image from its
+ * source once one of these slots is free. Images are decoded subsampled by a power of two so that
+ * their long edge is at most {@link #getMaxLongEdge()} pixels, which bounds the memory held by the
+ * images in flight regardless of the size of the originals.
+ */
+public final class BatchScanConfig {
+
+    /**
+     * Two workers, so one image is decoded while another is recognized, and a long edge that keeps
+     * shelf labels and printed pages readable.
+     */
+    public static final BatchScanConfig DEFAULT = new BatchScanConfig(2, 2, 2048);
+
+    private final int parallelism;
+    private final int maxQueued;
+    private final int maxLongEdge;
+
+    public BatchScanConfig(int parallelism, int maxQueued, int maxLongEdge) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued must not be negative");
+        }
+        if (maxLongEdge <= 0) {
+            throw new IllegalArgumentException("maxLongEdge must be positive");
+        }
+        this.parallelism = parallelism;
+        this.maxQueued = maxQueued;
+        this.maxLongEdge = maxLongEdge;
+    }
+
+    /** Number of images that may be recognized at the same time. */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** Number of images that may wait for a worker. */
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /** Number of images taken from the source but not yet scanned, at most. */
+    public int getMaxInFlight() {
+        return parallelism + maxQueued;
+    }
+
+    /** Upper bound for the long edge of a decoded image. */
+    public int getMaxLongEdge() {
+        return maxLongEdge;
+    }
+
+    /**
+     * Returns the smallest power of two that, used as the decoder's subsampling factor, brings the
+     * long edge of an image of the given size down to at most {@link #getMaxLongEdge()}.
+     */
+    public int sampleSize(int width, int height) {
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        // Decoders round the subsampled size up.
+        while ((longEdge + sampleSize - 1) / sampleSize > maxLongEdge) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
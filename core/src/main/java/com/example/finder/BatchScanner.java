@@ -0,0 +1,222 @@
+package com.example.finder;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches a stream of still images, such as a photo folder, for the search terms.
+ *
+ * <p>Images are taken from the source one at a time, and only once one of
+ * {@link BatchScanConfig#getMaxInFlight()} slots is free, so a slow recognizer holds back the
+ * source instead of letting decoded images pile up. Each image is recognized on one of
+ * {@link BatchScanConfig#getParallelism()} workers and matched with the same {@link FrameMatcher}
+ * as the camera preview. Results are handed to the {@link Listener} as soon as each image is done,
+ * in completion order, with hit boxes in the image's own upright coordinates.
+ *
+ * <p>A scanner runs once. {@link #run} blocks the calling thread until every image taken has been
+ * scanned; {@link #cancel} and {@link #getProgress} may be called from any thread.
+ *
+ * @param <T> the type identifying an image, e.g. its file or URI
+ */
+public final class BatchScanner<T> {
+
+    /** Recognizes the text in one image. */
+    public interface Recognizer<T> {
+        /**
+         * Decodes and recognizes an image. Called on a worker thread, so it may block until
+         * recognition completes.
+         */
+        RecognizedText recognize(T image) throws Exception;
+    }
+
+    /** Receives results as they become available, on the worker that produced them. */
+    public interface Listener<T> {
+        /**
+         * @param hitCount number of term occurrences in the image
+         * @param matches geometry of the hits in image coordinates, empty if there were none
+         */
+        void onImageScanned(T image, RecognizedText text, int hitCount, MatchGeometry matches);
+
+        /** Called instead of {@link #onImageScanned} when an image could not be recognized. */
+        void onImageFailed(T image, Exception error);
+
+        /** Called once on the thread that called {@link #run}, after the last result. */
+        void onScanFinished(Progress progress);
+    }
+
+    /** Immutable snapshot of how far a scan has come. */
+    public static final class Progress {
+        private final int scannedCount;
+        private final int failedCount;
+        private final int matchedCount;
+        private final long elapsedNanos;
+
+        Progress(int scannedCount, int failedCount, int matchedCount, long elapsedNanos) {
+            this.scannedCount = scannedCount;
+            this.failedCount = failedCount;
+            this.matchedCount = matchedCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** Number of images recognized and matched. */
+        public int getScannedCount() {
+            return scannedCount;
+        }
+
+        /** Number of images that could not be recognized. */
+        public int getFailedCount() {
+            return failedCount;
+        }
+
+        /** Number of scanned images with at least one hit. */
+        public int getMatchedCount() {
+            return matchedCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /** Images finished, scanned or failed, per second since the scan started. */
+        public double getImagesPerSecond() {
+            if (elapsedNanos <= 0) {
+                return 0;
+            }
+            return (scannedCount + failedCount) * 1e9 / elapsedNanos;
+        }
+    }
+
+    private final BatchScanConfig config;
+    private final Recognizer<T> recognizer;
+    private final Listener<T> listener;
+    private final FrameMatcher prototype;
+    private final ExecutorService workers;
+    private final Semaphore slots;
+    // Each worker matches with its own copy, since matchers reuse their buffers.
+    private final ThreadLocal<FrameMatcher> matchers = new ThreadLocal<FrameMatcher>() {
+        @Override
+        protected FrameMatcher initialValue() {
+            return prototype.copy();
+        }
+    };
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicInteger scannedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger matchedCount = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile long startNanos;
+    private volatile long finishNanos;
+
+    /**
+     * @param matcher the terms to search for; only copies of it are used, so its label measurer
+     *     must be thread-safe
+     */
+    public BatchScanner(BatchScanConfig config, Recognizer<T> recognizer, FrameMatcher matcher,
+                        Listener<T> listener) {
+        this.config = config;
+        this.recognizer = recognizer;
+        this.listener = listener;
+        this.prototype = matcher;
+        this.slots = new Semaphore(config.getMaxInFlight());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(config.getParallelism(), config.getParallelism(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                runnable -> new Thread(runnable, "BatchScan-" + threadCount.incrementAndGet()));
+    }
+
+    public BatchScanConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Scans every image of the source, or until cancelled, and returns the final progress. The
+     * source is only advanced on the calling thread.
+     *
+     * @throws IllegalStateException if the scanner has already run
+     */
+    public Progress run(Iterator<? extends T> images) {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("A batch scanner can only run once");
+        }
+        startNanos = System.nanoTime();
+        try {
+            while (!cancelled && images.hasNext()) {
+                slots.acquire();
+                if (cancelled) {
+                    slots.release();
+                    break;
+                }
+                T image = images.next();
+                workers.execute(() -> scan(image));
+            }
+            // Wait for the images still being scanned.
+            slots.acquire(config.getMaxInFlight());
+            slots.release(config.getMaxInFlight());
+        } catch (InterruptedException e) {
+            cancelled = true;
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdown();
+        }
+        finishNanos = System.nanoTime();
+        Progress progress = getProgress();
+        listener.onScanFinished(progress);
+        return progress;
+    }
+
+    private void scan(T image) {
+        try {
+            if (cancelled) {
+                return;
+            }
+            RecognizedText text;
+            try {
+                text = recognizer.recognize(image);
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                listener.onImageFailed(image, e);
+                return;
+            }
+            FrameMatcher matcher = matchers.get();
+            MatchGeometry matches = matcher.match(text, ViewTransform.IDENTITY);
+            int hitCount = matcher.getHitCount();
+            scannedCount.incrementAndGet();
+            if (hitCount > 0) {
+                matchedCount.incrementAndGet();
+            }
+            listener.onImageScanned(image, text, hitCount, matches);
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Stops taking images from the source and skips those not yet started. Images being
+     * recognized still complete and are reported.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Returns the progress so far; all zero before {@link #run} is called. */
+    public Progress getProgress() {
+        long start = startNanos;
+        long elapsed = 0;
+        if (start != 0) {
+            long finish = finishNanos;
+            elapsed = (finish != 0 ? finish : System.nanoTime()) - start;
+        }
+        return new Progress(scannedCount.get(), failedCount.get(), matchedCount.get(), elapsed);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.finder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The text of one recognized block as a single string, with the position of every element in it,
+ * so that a hit found anywhere in the block, even across a line break, can be traced back to the
+ * boxes of the words it covers.
+ *
+ * <p>Elements are joined with single spaces, including across lines. A line without elements
+ * stands in for its own single element. The buffers are reused between blocks, so after warming
+ * up, only the labels of actual hits are allocated. Not thread-safe.
+ */
+public final class BlockText {
+
+    private final StringBuilder text = new StringBuilder();
+    private int itemCount;
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private int[] lines = new int[64];
+    // Box of each item as left, top, right, bottom, or missing if hasBox is false.
+    private int[] boxes = new int[64 * 4];
+    private boolean[] hasBox = new boolean[64];
+
+    /** Replaces the contents with the text of {@code block}. */
+    public void reset(RecognizedText.Block block) {
+        text.setLength(0);
+        itemCount = 0;
+        List<RecognizedText.Line> blockLines = block.getLines();
+        for (int line = 0; line < blockLines.size(); line++) {
+            RecognizedText.Line textLine = blockLines.get(line);
+            List<RecognizedText.Element> elements = textLine.getElements();
+            if (elements.isEmpty()) {
+                addItem(line, textLine, textLine);
+            }
+            for (int e = 0; e < elements.size(); e++) {
+                addItem(line, elements.get(e), textLine);
+            }
+        }
+    }
+
+    private void addItem(int line, RecognizedText.Node node, RecognizedText.Line textLine) {
+        if (itemCount == starts.length) {
+            int capacity = itemCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            boxes = Arrays.copyOf(boxes, capacity * 4);
+            hasBox = Arrays.copyOf(hasBox, capacity);
+        }
+        if (text.length() > 0) {
+            text.append(' ');
+        }
+        starts[itemCount] = text.length();
+        text.append(node.getText());
+        ends[itemCount] = text.length();
+        lines[itemCount] = line;
+        // An element without a box is placed at its line's box.
+        RecognizedText.Node boxed = node.hasBoundingBox() ? node : textLine;
+        hasBox[itemCount] = boxed.hasBoundingBox();
+        boxes[itemCount * 4] = boxed.getLeft();
+        boxes[itemCount * 4 + 1] = boxed.getTop();
+        boxes[itemCount * 4 + 2] = boxed.getRight();
+        boxes[itemCount * 4 + 3] = boxed.getBottom();
+        itemCount++;
+    }
+
+    /** The block's text. Valid until the next {@link #reset}. */
+    public CharSequence getText() {
+        return text;
+    }
+
+    /** Number of elements, counting lines without elements as one. */
+    public int getElementCount() {
+        return itemCount;
+    }
+
+    /**
+     * Adds the hit covering chars {@code [start, end)} of the text to {@code builder}, as one box
+     * per line around the elements it touches, labelled with those elements' text. Elements
+     * without any box are left out. Returns the number of boxes added.
+     */
+    public int addHit(int start, int end, int termId, float score, MatchGeometry.Builder builder) {
+        int added = 0;
+        int item = 0;
+        while (item < itemCount && ends[item] <= start) {
+            item++;
+        }
+        while (item < itemCount && starts[item] < end) {
+            // Gather the touched elements of this line.
+            int line = lines[item];
+            int first = -1;
+            int last = -1;
+            int left = Integer.MAX_VALUE;
+            int top = Integer.MAX_VALUE;
+            int right = Integer.MIN_VALUE;
+            int bottom = Integer.MIN_VALUE;
+            for (; item < itemCount && starts[item] < end && lines[item] == line; item++) {
+                if (!hasBox[item]) {
+                    continue;
+                }
+                if (first < 0) {
+                    first = item;
+                }
+                last = item;
+                left = Math.min(left, boxes[item * 4]);
+                top = Math.min(top, boxes[item * 4 + 1]);
+                right = Math.max(right, boxes[item * 4 + 2]);
+                bottom = Math.max(bottom, boxes[item * 4 + 3]);
+            }
+            if (first >= 0) {
+                builder.add(termId, score, text.substring(starts[first], ends[last]),
+                        left, top, right, bottom);
+                added++;
+            }
+        }
+        return added;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.finder;
+
+import java.util.List;
+
+/**
+ * Feeds a recorded corpus through the scheduling and post-recognition stages as if the results were
+ * being delivered by the recognizer, and counts what happened.
+ *
+ * <p>Frames are replayed in corpus order, which is the order their results were delivered when
+ * recorded, so the scheduler rejects stale results exactly as it did on the device.
+ */
+public final class CorpusReplay {
+
+    /** Counts collected over one replay. */
+    public static final class Result {
+        private final int frameCount;
+        private final int deliveredCount;
+        private final int matchedFrameCount;
+        private final long matchedLineCount;
+        private final long elapsedNanos;
+
+        Result(int frameCount, int deliveredCount, int matchedFrameCount, long matchedLineCount,
+               long elapsedNanos) {
+            this.frameCount = frameCount;
+            this.deliveredCount = deliveredCount;
+            this.matchedFrameCount = matchedFrameCount;
+            this.matchedLineCount = matchedLineCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** Number of frames in the corpus. */
+        public int getFrameCount() {
+            return frameCount;
+        }
+
+        /** Number of frames the scheduler let through. */
+        public int getDeliveredCount() {
+            return deliveredCount;
+        }
+
+        /** Number of delivered frames with at least one matching line. */
+        public int getMatchedFrameCount() {
+            return matchedFrameCount;
+        }
+
+        /** Total number of matching lines over all delivered frames. */
+        public long getMatchedLineCount() {
+            return matchedLineCount;
+        }
+
+        /** Wall time spent in the replayed stages. */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    private CorpusReplay() {
+    }
+
+    /**
+     * Replays every frame of a corpus.
+     *
+     * @param transform maps the corpus' image coordinates to overlay coordinates
+     */
+    public static Result run(List<RecognizedText> corpus, FrameScheduler scheduler,
+                             TextPipeline pipeline, ViewTransform transform) {
+        int delivered = 0;
+        int matchedFrames = 0;
+        long matchedLines = 0;
+        long start = System.nanoTime();
+        for (RecognizedText frame : corpus) {
+            if (!scheduler.shouldDeliver(frame.getTimestampNanos())) {
+                continue;
+            }
+            delivered++;
+            MatchGeometry matches = pipeline.process(frame, transform);
+            if (matches.size() > 0) {
+                matchedFrames++;
+                matchedLines += matches.size();
+            }
+        }
+        return new Result(corpus.size(), delivered, matchedFrames, matchedLines,
+                System.nanoTime() - start);
+    }
+}
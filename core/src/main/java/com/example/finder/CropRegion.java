@@ -0,0 +1,117 @@
+package com.example.finder;
+
+/**
+ * A crop of an unrotated camera buffer, together with where that crop lands in the upright image.
+ *
+ * <p>The recognizer reports coordinates relative to the upright crop. Adding
+ * {@link #getUprightOffsetX()} and {@link #getUprightOffsetY()} moves them back into the upright
+ * full image, which is what the overlay is laid out against.
+ */
+public final class CropRegion {
+
+    private final int bufferWidth;
+    private final int bufferHeight;
+    private final int rotationDegrees;
+    private final int left;
+    private final int top;
+    private final int width;
+    private final int height;
+
+    CropRegion(int bufferWidth, int bufferHeight, int rotationDegrees,
+               int left, int top, int width, int height) {
+        this.bufferWidth = bufferWidth;
+        this.bufferHeight = bufferHeight;
+        this.rotationDegrees = rotationDegrees;
+        this.left = Math.max(0, Math.min(left, bufferWidth - width));
+        this.top = Math.max(0, Math.min(top, bufferHeight - height));
+        this.width = Math.min(width, bufferWidth);
+        this.height = Math.min(height, bufferHeight);
+    }
+
+    /** Returns a crop covering the whole buffer. */
+    public static CropRegion full(int bufferWidth, int bufferHeight, int rotationDegrees) {
+        return new CropRegion(bufferWidth, bufferHeight, rotationDegrees,
+                0, 0, bufferWidth, bufferHeight);
+    }
+
+    /** Left edge of the crop in the unrotated buffer. */
+    public int getLeft() {
+        return left;
+    }
+
+    /** Top edge of the crop in the unrotated buffer. */
+    public int getTop() {
+        return top;
+    }
+
+    /** Width of the crop in the unrotated buffer. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Height of the crop in the unrotated buffer. */
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRotationDegrees() {
+        return rotationDegrees;
+    }
+
+    private boolean isSideways() {
+        return rotationDegrees == 90 || rotationDegrees == 270;
+    }
+
+    /** Width of the whole buffer once rotated upright. */
+    public int getUprightImageWidth() {
+        return isSideways() ? bufferHeight : bufferWidth;
+    }
+
+    /** Height of the whole buffer once rotated upright. */
+    public int getUprightImageHeight() {
+        return isSideways() ? bufferWidth : bufferHeight;
+    }
+
+    /** Width of the crop once rotated upright, i.e. of the image the recognizer sees. */
+    public int getUprightWidth() {
+        return isSideways() ? height : width;
+    }
+
+    /** Height of the crop once rotated upright. */
+    public int getUprightHeight() {
+        return isSideways() ? width : height;
+    }
+
+    /** Horizontal position of the upright crop within the upright image. */
+    public int getUprightOffsetX() {
+        switch (rotationDegrees) {
+            case 90:
+                return bufferHeight - (top + height);
+            case 180:
+                return bufferWidth - (left + width);
+            case 270:
+                return top;
+            default:
+                return left;
+        }
+    }
+
+    /** Vertical position of the upright crop within the upright image. */
+    public int getUprightOffsetY() {
+        switch (rotationDegrees) {
+            case 90:
+                return left;
+            case 180:
+                return bufferHeight - (top + height);
+            case 270:
+                return bufferWidth - (left + width);
+            default:
+                return top;
+        }
+    }
+
+    /** Returns whether this crop covers the whole buffer. */
+    public boolean isFull() {
+        return left == 0 && top == 0 && width == bufferWidth && height == bufferHeight;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.finder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How a {@link DeepScanner} splits a high-resolution capture into tiles and how many of them it
+ * recognizes at once.
+ *
+ * <p>Tiles are at most {@link #getTileSize()} pixels square and overlap their neighbours by
+ * {@link #getOverlap()} pixels, so that any line shorter than the overlap lies wholly within at
+ * least one tile. Only {@link #getParallelism()} tiles are decoded at a time, which bounds the
+ * memory held by pixels regardless of the size of the capture.
+ */
+public final class DeepScanConfig {
+
+    /**
+     * Tiles of about the analysis resolution, where the recognizer reads label-sized print well,
+     * two at a time, from captures of up to 4032 pixels.
+     */
+    public static final DeepScanConfig DEFAULT = new DeepScanConfig(1280, 160, 2, 4032);
+
+    private final int tileSize;
+    private final int overlap;
+    private final int parallelism;
+    private final int maxLongEdge;
+
+    public DeepScanConfig(int tileSize, int overlap, int parallelism, int maxLongEdge) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        if (overlap < 0 || overlap >= tileSize) {
+            throw new IllegalArgumentException("overlap must be in [0, tileSize)");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if (maxLongEdge <= 0) {
+            throw new IllegalArgumentException("maxLongEdge must be positive");
+        }
+        this.tileSize = tileSize;
+        this.overlap = overlap;
+        this.parallelism = parallelism;
+        this.maxLongEdge = maxLongEdge;
+    }
+
+    /** Largest width and height of a tile, in buffer pixels. */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /** Smallest overlap of neighbouring tiles, in buffer pixels. */
+    public int getOverlap() {
+        return overlap;
+    }
+
+    /** Number of tiles that may be decoded and recognized at the same time. */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** Long edge of the resolution captures are requested at. */
+    public int getMaxLongEdge() {
+        return maxLongEdge;
+    }
+
+    /**
+     * Returns the tiles covering a buffer, row by row. Tiles are spread evenly, so each overlaps
+     * its neighbours by at least {@link #getOverlap()} pixels, and a buffer no larger than a tile
+     * is a single tile.
+     */
+    public List<CropRegion> tiles(int bufferWidth, int bufferHeight, int rotationDegrees) {
+        int tileWidth = Math.min(tileSize, bufferWidth);
+        int tileHeight = Math.min(tileSize, bufferHeight);
+        int columns = tileCount(bufferWidth, tileWidth);
+        int rows = tileCount(bufferHeight, tileHeight);
+        List<CropRegion> tiles = new ArrayList<>(columns * rows);
+        for (int row = 0; row < rows; row++) {
+            int top = tileStart(row, rows, bufferHeight, tileHeight);
+            for (int column = 0; column < columns; column++) {
+                int left = tileStart(column, columns, bufferWidth, tileWidth);
+                tiles.add(new CropRegion(bufferWidth, bufferHeight, rotationDegrees,
+                        left, top, tileWidth, tileHeight));
+            }
+        }
+        return tiles;
+    }
+
+    private int tileCount(int length, int tileLength) {
+        if (length <= tileLength) {
+            return 1;
+        }
+        int step = tileLength - overlap;
+        return 1 + (length - tileLength + step - 1) / step;
+    }
+
+    private static int tileStart(int index, int count, int length, int tileLength) {
+        return count == 1 ? 0 : (int) ((long) index * (length - tileLength) / (count - 1));
+    }
+}
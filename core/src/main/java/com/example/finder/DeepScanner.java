@@ -0,0 +1,366 @@
+package com.example.finder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recognizes a capture too large for the recognizer to read small print in, by splitting it into
+ * overlapping tiles, recognizing them in parallel and merging their results.
+ *
+ * <p>Tiles are laid out by a {@link DeepScanConfig} and handed to the {@link TileRecognizer} one
+ * at a time, and only once one of {@link DeepScanConfig#getParallelism()} slots is free, so at most
+ * that many tiles are decoded at once. Each tile's text is moved from the tile's upright
+ * coordinates into the upright coordinates of the whole capture, and a line seen in two tiles,
+ * where they overlap, is kept once: preferably from the tile that saw it whole, otherwise the
+ * longer reading. Lines wider than a tile minus the overlap are cut in every tile and kept as
+ * pieces.
+ *
+ * <p>A scanner runs once. {@link #scan} blocks the calling thread until every tile is done;
+ * {@link #cancel} may be called from any thread.
+ */
+public final class DeepScanner {
+
+    /** Recognizes the text in one tile of the capture. */
+    public interface TileRecognizer {
+        /**
+         * Decodes and recognizes a tile. Called on a worker thread, so it may block until
+         * recognition completes.
+         *
+         * @return the text in the tile's upright coordinates
+         */
+        RecognizedText recognize(CropRegion tile) throws Exception;
+    }
+
+    /** Outcome of a scan. */
+    public static final class Result {
+        private final RecognizedText text;
+        private final int tileCount;
+        private final int failedTileCount;
+        private final int duplicateLineCount;
+        private final long elapsedNanos;
+
+        Result(RecognizedText text, int tileCount, int failedTileCount, int duplicateLineCount,
+               long elapsedNanos) {
+            this.text = text;
+            this.tileCount = tileCount;
+            this.failedTileCount = failedTileCount;
+            this.duplicateLineCount = duplicateLineCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** The merged text, in the upright coordinates of the whole capture. */
+        public RecognizedText getText() {
+            return text;
+        }
+
+        public int getTileCount() {
+            return tileCount;
+        }
+
+        /** Number of tiles that could not be recognized, and are missing from the text. */
+        public int getFailedTileCount() {
+            return failedTileCount;
+        }
+
+        /** Number of lines dropped because another tile saw them too. */
+        public int getDuplicateLineCount() {
+            return duplicateLineCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    // Lines overlapping by this fraction of the smaller one are the same line.
+    private static final float MIN_DUPLICATE_OVERLAP = 0.5f;
+    // Lines this close to a tile edge inside the capture may have been cut by it.
+    private static final int EDGE_MARGIN = 2;
+
+    private final DeepScanConfig config;
+    private final TileRecognizer recognizer;
+    private final ExecutorService workers;
+    private final Semaphore slots;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean cancelled;
+
+    public DeepScanner(DeepScanConfig config, TileRecognizer recognizer) {
+        this.config = config;
+        this.recognizer = recognizer;
+        this.slots = new Semaphore(config.getParallelism());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(config.getParallelism(), config.getParallelism(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                runnable -> new Thread(runnable, "DeepScan-" + threadCount.incrementAndGet()));
+    }
+
+    public DeepScanConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Recognizes every tile of a capture and returns the merged text.
+     *
+     * @param timestampNanos capture time, which the merged text carries
+     * @throws Exception the failure of the first tile, if no tile could be recognized
+     * @throws InterruptedException if interrupted or cancelled before every tile was done
+     * @throws IllegalStateException if the scanner has already run
+     */
+    public Result scan(int bufferWidth, int bufferHeight, int rotationDegrees,
+                       long timestampNanos) throws Exception {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("A deep scanner can only run once");
+        }
+        long startNanos = System.nanoTime();
+        List<CropRegion> tiles = config.tiles(bufferWidth, bufferHeight, rotationDegrees);
+        RecognizedText[] results = new RecognizedText[tiles.size()];
+        Exception[] errors = new Exception[tiles.size()];
+        try {
+            for (int i = 0; i < tiles.size() && !cancelled; i++) {
+                slots.acquire();
+                int tile = i;
+                workers.execute(() -> recognizeTile(tiles.get(tile), tile, results, errors));
+            }
+            // Wait for the tiles still being recognized.
+            slots.acquire(config.getParallelism());
+            slots.release(config.getParallelism());
+        } catch (InterruptedException e) {
+            cancelled = true;
+            workers.shutdownNow();
+            throw e;
+        } finally {
+            workers.shutdown();
+        }
+        if (cancelled) {
+            throw new InterruptedException("Deep scan cancelled");
+        }
+        int failed = 0;
+        for (Exception error : errors) {
+            if (error != null) {
+                failed++;
+            }
+        }
+        if (failed == tiles.size()) {
+            throw errors[0];
+        }
+        int[] duplicates = new int[1];
+        RecognizedText text = merge(tiles, results, timestampNanos, duplicates);
+        return new Result(text, tiles.size(), failed, duplicates[0],
+                System.nanoTime() - startNanos);
+    }
+
+    private void recognizeTile(CropRegion tile, int index, RecognizedText[] results,
+                               Exception[] errors) {
+        try {
+            if (!cancelled) {
+                results[index] = recognizer.recognize(tile);
+            }
+        } catch (Exception e) {
+            errors[index] = e;
+        } finally {
+            // Also publishes the result to the scanning thread.
+            slots.release();
+        }
+    }
+
+    /** Stops starting tiles; {@link #scan} then throws once the tiles being recognized finish. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Moves the text of each tile into the coordinates of the whole capture and drops lines that
+     * another tile saw too. Tiles without a result are skipped.
+     *
+     * @param duplicates receives the number of dropped lines
+     */
+    static RecognizedText merge(List<CropRegion> tiles, RecognizedText[] results,
+                                long timestampNanos, int[] duplicates) {
+        CropRegion whole = tiles.get(0);
+        int imageWidth = whole.getUprightImageWidth();
+        int imageHeight = whole.getUprightImageHeight();
+        List<TileLine> lines = new ArrayList<>();
+        List<RecognizedText.Block> blocks = new ArrayList<>();
+        for (int t = 0; t < tiles.size(); t++) {
+            if (results[t] == null) {
+                continue;
+            }
+            CropRegion tile = tiles.get(t);
+            int dx = tile.getUprightOffsetX();
+            int dy = tile.getUprightOffsetY();
+            for (RecognizedText.Block block : results[t].getBlocks()) {
+                for (RecognizedText.Line line : block.getLines()) {
+                    lines.add(new TileLine(offset(line, dx, dy), t, blocks.size(),
+                            isCut(line, tile)));
+                }
+                blocks.add(block);
+            }
+        }
+        duplicates[0] = removeDuplicates(lines);
+
+        List<RecognizedText.Block> merged = new ArrayList<>(blocks.size());
+        StringBuilder fullText = new StringBuilder();
+        int next = 0;
+        for (int b = 0; b < blocks.size(); b++) {
+            List<RecognizedText.Line> kept = new ArrayList<>();
+            for (; next < lines.size() && lines.get(next).block == b; next++) {
+                if (!lines.get(next).duplicate) {
+                    kept.add(lines.get(next).line);
+                }
+            }
+            if (kept.isEmpty()) {
+                continue;
+            }
+            RecognizedText.Block block = newBlock(blocks.get(b), kept);
+            merged.add(block);
+            if (fullText.length() > 0) {
+                fullText.append('\n');
+            }
+            fullText.append(block.getText());
+        }
+        return new RecognizedText(timestampNanos, imageWidth, imageHeight, fullText.toString(),
+                merged);
+    }
+
+    /** A line of a tile's result, in the coordinates of the whole capture. */
+    private static final class TileLine {
+        final RecognizedText.Line line;
+        final int tile;
+        final int block;
+        final boolean cut;
+        boolean duplicate;
+
+        TileLine(RecognizedText.Line line, int tile, int block, boolean cut) {
+            this.line = line;
+            this.tile = tile;
+            this.block = block;
+            this.cut = cut;
+        }
+
+        /** Returns whether this reading of a line is better than another tile's. */
+        boolean isBetterThan(TileLine other) {
+            if (cut != other.cut) {
+                return !cut;
+            }
+            int length = line.getText().length();
+            int otherLength = other.line.getText().length();
+            return length != otherLength ? length > otherLength : tile < other.tile;
+        }
+    }
+
+    /**
+     * Marks the worse of every two lines from different tiles that cover the same place, and
+     * returns how many were marked.
+     */
+    private static int removeDuplicates(List<TileLine> lines) {
+        Integer[] byTop = new Integer[lines.size()];
+        for (int i = 0; i < byTop.length; i++) {
+            byTop[i] = i;
+        }
+        Arrays.sort(byTop, (a, b) -> Integer.compare(lines.get(a).line.getTop(),
+                lines.get(b).line.getTop()));
+        int count = 0;
+        for (int i = 0; i < byTop.length; i++) {
+            TileLine first = lines.get(byTop[i]);
+            if (!first.line.hasBoundingBox()) {
+                continue;
+            }
+            for (int j = i + 1; j < byTop.length && !first.duplicate; j++) {
+                TileLine second = lines.get(byTop[j]);
+                if (second.line.getTop() >= first.line.getBottom()) {
+                    break;
+                }
+                if (second.duplicate || second.tile == first.tile
+                        || !second.line.hasBoundingBox() || !overlaps(first.line, second.line)) {
+                    continue;
+                }
+                if (first.isBetterThan(second)) {
+                    second.duplicate = true;
+                } else {
+                    first.duplicate = true;
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Returns whether two boxes overlap by most of the smaller one. */
+    private static boolean overlaps(RecognizedText.Node a, RecognizedText.Node b) {
+        long width = Math.min(a.getRight(), b.getRight()) - Math.max(a.getLeft(), b.getLeft());
+        long height = Math.min(a.getBottom(), b.getBottom()) - Math.max(a.getTop(), b.getTop());
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        long areaA = (long) (a.getRight() - a.getLeft()) * (a.getBottom() - a.getTop());
+        long areaB = (long) (b.getRight() - b.getLeft()) * (b.getBottom() - b.getTop());
+        long smaller = Math.min(areaA, areaB);
+        return width * height >= MIN_DUPLICATE_OVERLAP * smaller;
+    }
+
+    /** Returns whether a line, in tile coordinates, touches an edge of the tile inside the image. */
+    private static boolean isCut(RecognizedText.Line line, CropRegion tile) {
+        if (!line.hasBoundingBox()) {
+            return false;
+        }
+        int x = tile.getUprightOffsetX();
+        int y = tile.getUprightOffsetY();
+        int width = tile.getUprightWidth();
+        int height = tile.getUprightHeight();
+        return (x > 0 && line.getLeft() <= EDGE_MARGIN)
+                || (y > 0 && line.getTop() <= EDGE_MARGIN)
+                || (x + width < tile.getUprightImageWidth()
+                        && line.getRight() >= width - EDGE_MARGIN)
+                || (y + height < tile.getUprightImageHeight()
+                        && line.getBottom() >= height - EDGE_MARGIN);
+    }
+
+    private static RecognizedText.Line offset(RecognizedText.Line line, int dx, int dy) {
+        List<RecognizedText.Element> elements = new ArrayList<>(line.getElements().size());
+        for (RecognizedText.Element element : line.getElements()) {
+            elements.add(element.hasBoundingBox()
+                    ? new RecognizedText.Element(element.getText(), element.getLeft() + dx,
+                            element.getTop() + dy, element.getRight() + dx,
+                            element.getBottom() + dy)
+                    : element);
+        }
+        return line.hasBoundingBox()
+                ? new RecognizedText.Line(line.getText(), line.getLeft() + dx,
+                        line.getTop() + dy, line.getRight() + dx, line.getBottom() + dy,
+                        elements)
+                : new RecognizedText.Line(line.getText(), elements);
+    }
+
+    /** Returns a block of the kept lines, boxed around them if the original block had a box. */
+    private static RecognizedText.Block newBlock(RecognizedText.Block original,
+                                                 List<RecognizedText.Line> lines) {
+        StringBuilder text = new StringBuilder();
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (RecognizedText.Line line : lines) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(line.getText());
+            if (line.hasBoundingBox()) {
+                left = Math.min(left, line.getLeft());
+                top = Math.min(top, line.getTop());
+                right = Math.max(right, line.getRight());
+                bottom = Math.max(bottom, line.getBottom());
+            }
+        }
+        return original.hasBoundingBox() && left <= right
+                ? new RecognizedText.Block(text.toString(), left, top, right, bottom, lines)
+                : new RecognizedText.Block(text.toString(), lines);
+    }
+}
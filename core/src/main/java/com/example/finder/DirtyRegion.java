@@ -0,0 +1,99 @@
+package com.example.finder;
+
+/**
+ * Accumulates the union of rectangles that changed on the overlay, so that only that part of the
+ * view is redrawn. Coordinates are rounded outwards to whole pixels, and each rectangle can be
+ * grown by a margin that covers stroke widths and anti-aliasing. Not thread-safe.
+ */
+public final class DirtyRegion {
+
+    private float left;
+    private float top;
+    private float right;
+    private float bottom;
+    private boolean empty = true;
+
+    /** Adds a rectangle grown by {@code margin} on every side. Empty rectangles are ignored. */
+    public void union(float left, float top, float right, float bottom, float margin) {
+        if (!(right > left) || !(bottom > top)) {
+            return;
+        }
+        left -= margin;
+        top -= margin;
+        right += margin;
+        bottom += margin;
+        if (empty) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            empty = false;
+        } else {
+            this.left = Math.min(this.left, left);
+            this.top = Math.min(this.top, top);
+            this.right = Math.max(this.right, right);
+            this.bottom = Math.max(this.bottom, bottom);
+        }
+    }
+
+    /** Adds another region. */
+    public void union(DirtyRegion other) {
+        if (!other.empty) {
+            union(other.left, other.top, other.right, other.bottom, 0);
+        }
+    }
+
+    /** Copies another region into this one. */
+    public void set(DirtyRegion other) {
+        left = other.left;
+        top = other.top;
+        right = other.right;
+        bottom = other.bottom;
+        empty = other.empty;
+    }
+
+    public void clear() {
+        empty = true;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /** Left edge in whole pixels, clipped to a view of the given size. */
+    public int getLeft(int viewWidth) {
+        return clip((int) Math.floor(left), viewWidth);
+    }
+
+    public int getTop(int viewHeight) {
+        return clip((int) Math.floor(top), viewHeight);
+    }
+
+    public int getRight(int viewWidth) {
+        return clip((int) Math.ceil(right), viewWidth);
+    }
+
+    public int getBottom(int viewHeight) {
+        return clip((int) Math.ceil(bottom), viewHeight);
+    }
+
+    /** Returns whether the region, clipped to the view, covers none of it. */
+    public boolean isOutside(int viewWidth, int viewHeight) {
+        return empty || getLeft(viewWidth) >= getRight(viewWidth)
+                || getTop(viewHeight) >= getBottom(viewHeight);
+    }
+
+    /** Share of a view of the given size that the region covers after clipping, from 0 to 1. */
+    public float coverage(int viewWidth, int viewHeight) {
+        if (isOutside(viewWidth, viewHeight)) {
+            return 0f;
+        }
+        long area = (long) (getRight(viewWidth) - getLeft(viewWidth))
+                * (getBottom(viewHeight) - getTop(viewHeight));
+        return (float) area / ((long) viewWidth * viewHeight);
+    }
+
+    private static int clip(int value, int size) {
+        return Math.max(0, Math.min(size, value));
+    }
+}
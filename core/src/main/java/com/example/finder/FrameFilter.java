@@ -0,0 +1,197 @@
+package com.example.finder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cheap pre-filter that decides, from the luma plane alone, whether a frame is worth sending to the
+ * recognizer.
+ *
+ * <p>Each frame is reduced to a {@value #GRID}x{@value #GRID} signature of mean luma values and a
+ * sharpness score, both from a sparse sample of pixels. A frame is skipped when its signature is
+ * close to that of the last recognized frame, in which case the previous result still applies, or
+ * when it is too blurry to read. Evaluating a frame reads a few thousand pixels and allocates
+ * nothing.
+ *
+ * <p>{@link #evaluate} must be called from a single thread. The counters can be read from any
+ * thread.
+ */
+public final class FrameFilter {
+
+    /** Outcome of {@link #evaluate}. */
+    public enum Decision {
+        /** The frame should be recognized. */
+        RECOGNIZE,
+        /** The scene has not changed since the last recognized frame; reuse its result. */
+        SKIP_UNCHANGED,
+        /** The frame is too blurry to be read. */
+        SKIP_BLURRY
+    }
+
+    static final int GRID = 16;
+    // Pixels sampled along each axis of a grid cell.
+    private static final int SAMPLES_PER_CELL = 4;
+    private static final int CELLS = GRID * GRID;
+
+    private final FrameFilterConfig config;
+    private int[] signature = new int[CELLS];
+    private int[] reference = new int[CELLS];
+    private final float[] cellSharpness = new float[CELLS];
+    // Cleared by invalidate(), which may run on another thread.
+    private volatile boolean hasReference;
+    private int referenceLeft;
+    private int referenceTop;
+    private int referenceWidth;
+    private int referenceHeight;
+    private long referenceTimestampNanos;
+
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong skippedUnchangedCount = new AtomicLong();
+    private final AtomicLong skippedBlurryCount = new AtomicLong();
+    private volatile float lastChange;
+    private volatile float lastSharpness;
+
+    public FrameFilter(FrameFilterConfig config) {
+        this.config = config;
+    }
+
+    public FrameFilterConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Scores the cropped part of a luma plane and decides whether to recognize it.
+     *
+     * @param yPlane luma plane, with a pixel stride of one
+     * @param rowStride row stride of the luma plane
+     * @param crop part of the plane that would be recognized
+     * @param timestampNanos capture time of the frame
+     */
+    public Decision evaluate(ByteBuffer yPlane, int rowStride, CropRegion crop,
+                             long timestampNanos) {
+        frameCount.incrementAndGet();
+        if (!config.isEnabled()) {
+            return Decision.RECOGNIZE;
+        }
+        float sharpness = sample(yPlane, rowStride, crop);
+        boolean sameCrop = hasReference
+                && crop.getLeft() == referenceLeft && crop.getTop() == referenceTop
+                && crop.getWidth() == referenceWidth && crop.getHeight() == referenceHeight;
+        float change = sameCrop ? meanDifference(signature, reference) : Float.MAX_VALUE;
+        lastChange = change;
+        lastSharpness = sharpness;
+
+        boolean stale = timestampNanos - referenceTimestampNanos
+                >= config.getMaxReuseMillis() * 1_000_000L;
+        if (!stale) {
+            if (change < config.getMinChange()) {
+                skippedUnchangedCount.incrementAndGet();
+                return Decision.SKIP_UNCHANGED;
+            }
+            if (sharpness < config.getMinSharpness()) {
+                skippedBlurryCount.incrementAndGet();
+                return Decision.SKIP_BLURRY;
+            }
+        }
+
+        // This frame becomes the reference that later frames are compared with.
+        int[] swap = reference;
+        reference = signature;
+        signature = swap;
+        hasReference = true;
+        referenceLeft = crop.getLeft();
+        referenceTop = crop.getTop();
+        referenceWidth = crop.getWidth();
+        referenceHeight = crop.getHeight();
+        referenceTimestampNanos = timestampNanos;
+        return Decision.RECOGNIZE;
+    }
+
+    /**
+     * Forgets the last recognized frame, so the next frame is not skipped as unchanged. Call this
+     * when recognition of a frame that was let through fails.
+     */
+    public void invalidate() {
+        hasReference = false;
+    }
+
+    /** Total number of frames evaluated. */
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    /** Number of frames let through to the recognizer. */
+    public long getRecognizedCount() {
+        return frameCount.get() - skippedUnchangedCount.get() - skippedBlurryCount.get();
+    }
+
+    /** Number of frames skipped because the scene had not changed. */
+    public long getSkippedUnchangedCount() {
+        return skippedUnchangedCount.get();
+    }
+
+    /** Number of frames skipped because they were too blurry. */
+    public long getSkippedBlurryCount() {
+        return skippedBlurryCount.get();
+    }
+
+    /** Change score of the last evaluated frame, or {@link Float#MAX_VALUE} if not comparable. */
+    public float getLastChange() {
+        return lastChange;
+    }
+
+    /** Sharpness score of the last evaluated frame. */
+    public float getLastSharpness() {
+        return lastSharpness;
+    }
+
+    /**
+     * Fills {@link #signature} with the mean luma of each grid cell and returns the sharpness of the
+     * frame: the mean gradient of the sharpest quarter of the cells, so that a small label on a
+     * plain background still counts as sharp.
+     */
+    private float sample(ByteBuffer yPlane, int rowStride, CropRegion crop) {
+        // Leave one pixel at the right and bottom edges for the gradient neighbours.
+        float cellWidth = (crop.getWidth() - 1) / (float) GRID;
+        float cellHeight = (crop.getHeight() - 1) / (float) GRID;
+        float stepX = cellWidth / SAMPLES_PER_CELL;
+        float stepY = cellHeight / SAMPLES_PER_CELL;
+        for (int gy = 0; gy < GRID; gy++) {
+            for (int gx = 0; gx < GRID; gx++) {
+                int lumaSum = 0;
+                int gradientSum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = crop.getTop() + (int) (gy * cellHeight + (sy + 0.5f) * stepY);
+                    int rowStart = y * rowStride;
+                    for (int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = crop.getLeft() + (int) (gx * cellWidth + (sx + 0.5f) * stepX);
+                        int index = rowStart + x;
+                        int luma = yPlane.get(index) & 0xFF;
+                        lumaSum += luma;
+                        gradientSum += Math.abs(luma - (yPlane.get(index + 1) & 0xFF))
+                                + Math.abs(luma - (yPlane.get(index + rowStride) & 0xFF));
+                    }
+                }
+                int cell = gy * GRID + gx;
+                signature[cell] = lumaSum / (SAMPLES_PER_CELL * SAMPLES_PER_CELL);
+                cellSharpness[cell] = gradientSum / (2f * SAMPLES_PER_CELL * SAMPLES_PER_CELL);
+            }
+        }
+        // Sorting a primitive array of this size is done in place.
+        Arrays.sort(cellSharpness);
+        float sharpest = 0;
+        for (int cell = CELLS - CELLS / 4; cell < CELLS; cell++) {
+            sharpest += cellSharpness[cell];
+        }
+        return sharpest / (CELLS / 4);
+    }
+
+    private static float meanDifference(int[] a, int[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += Math.abs(a[i] - b[i]);
+        }
+        return (float) sum / a.length;
+    }
+}
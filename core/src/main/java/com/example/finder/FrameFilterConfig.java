@@ -0,0 +1,55 @@
+package com.example.finder;
+
+/**
+ * Thresholds used by {@link FrameFilter} to decide which frames are worth recognizing.
+ *
+ * <p>Scores are on a 0-255 luma scale so that they can be compared with what the camera delivers.
+ */
+public final class FrameFilterConfig {
+
+    /**
+     * Skips frames whose luma moved by less than 4 levels on average, or whose mean gradient is
+     * below 6 levels, and always recognizes at least one frame per second.
+     */
+    public static final FrameFilterConfig DEFAULT = new FrameFilterConfig(true, 4.0f, 6.0f, 1000);
+
+    /** Recognizes every frame. */
+    public static final FrameFilterConfig DISABLED = new FrameFilterConfig(false, 0f, 0f, 0);
+
+    private final boolean enabled;
+    private final float minChange;
+    private final float minSharpness;
+    private final long maxReuseMillis;
+
+    /**
+     * @param enabled whether frames may be skipped at all
+     * @param minChange mean absolute difference of the luma signature, against the last recognized
+     *     frame, below which a frame counts as unchanged
+     * @param minSharpness mean absolute luma gradient below which a frame counts as too blurry
+     * @param maxReuseMillis longest time a previous result is reused before a frame is recognized
+     *     regardless of the scores
+     */
+    public FrameFilterConfig(boolean enabled, float minChange, float minSharpness,
+                             long maxReuseMillis) {
+        this.enabled = enabled;
+        this.minChange = minChange;
+        this.minSharpness = minSharpness;
+        this.maxReuseMillis = maxReuseMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public float getMinChange() {
+        return minChange;
+    }
+
+    public float getMinSharpness() {
+        return minSharpness;
+    }
+
+    public long getMaxReuseMillis() {
+        return maxReuseMillis;
+    }
+}
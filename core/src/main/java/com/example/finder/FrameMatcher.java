@@ -0,0 +1,132 @@
+package com.example.finder;
+
+/**
+ * Matches the search terms against one recognized frame and reduces the hits to
+ * {@link MatchGeometry}.
+ *
+ * <p>Terms are matched block by block, across line breaks, either exactly with a
+ * {@link TermMatcher}, tolerating OCR errors with a {@link FuzzyMatcher}, or as patterns such as
+ * prices and dates with a {@link PatternMatcher}. Each hit is drawn as a
+ * box around just the words it covers, one box per line it spans.
+ *
+ * <p>An instance reuses its buffers between frames and must only be used by one thread. The
+ * compiled matchers are immutable, so {@link #copy()} cheaply creates an instance for another
+ * thread.
+ */
+public final class FrameMatcher {
+
+    private final TermMatcher exactMatcher;
+    private final FuzzyMatcher fuzzyMatcher;
+    private final FuzzyMatcher.Scanner fuzzyScanner;
+    private final PatternMatcher patternMatcher;
+    private final PatternMatcher.Scanner patternScanner;
+    private final MatchGeometry.LabelMeasurer labelMeasurer;
+    private final BlockText blockText = new BlockText();
+    private final NormalizedText normalizedText = new NormalizedText();
+    private final HitCollector hitCollector = new HitCollector();
+    private int hitCount;
+
+    /** Creates a matcher that matches terms exactly, ignoring case. */
+    public FrameMatcher(TermMatcher matcher, MatchGeometry.LabelMeasurer labelMeasurer) {
+        this(matcher, null, null, labelMeasurer);
+    }
+
+    /** Creates a matcher that matches terms tolerating OCR errors. */
+    public FrameMatcher(FuzzyMatcher matcher, MatchGeometry.LabelMeasurer labelMeasurer) {
+        this(null, matcher, null, labelMeasurer);
+    }
+
+    /** Creates a matcher that matches patterns, with pattern ids as term ids. */
+    public FrameMatcher(PatternMatcher matcher, MatchGeometry.LabelMeasurer labelMeasurer) {
+        this(null, null, matcher, labelMeasurer);
+    }
+
+    private FrameMatcher(TermMatcher exactMatcher, FuzzyMatcher fuzzyMatcher,
+                         PatternMatcher patternMatcher,
+                         MatchGeometry.LabelMeasurer labelMeasurer) {
+        this.exactMatcher = exactMatcher;
+        this.fuzzyMatcher = fuzzyMatcher;
+        this.fuzzyScanner = fuzzyMatcher != null ? fuzzyMatcher.newScanner() : null;
+        this.patternMatcher = patternMatcher;
+        this.patternScanner = patternMatcher != null ? patternMatcher.newScanner() : null;
+        this.labelMeasurer = labelMeasurer;
+    }
+
+    /**
+     * Returns a new instance with the same terms and label measurer and its own buffers. The
+     * measurer is shared, so it must be thread-safe if the copy is used on another thread.
+     */
+    public FrameMatcher copy() {
+        return new FrameMatcher(exactMatcher, fuzzyMatcher, patternMatcher, labelMeasurer);
+    }
+
+    /** Returns whether terms are matched tolerating OCR errors. */
+    public boolean isFuzzy() {
+        return fuzzyMatcher != null;
+    }
+
+    /**
+     * Matches the terms against all blocks of a result and returns the geometry of the hits, or
+     * {@link MatchGeometry#EMPTY} if there were none.
+     *
+     * @param transform maps the result's image coordinates to the coordinates of the geometry
+     */
+    public MatchGeometry match(RecognizedText text, ViewTransform transform) {
+        hitCollector.begin(transform);
+        hitCount = 0;
+        for (RecognizedText.Block block : text.getBlocks()) {
+            blockText.reset(block);
+            if (fuzzyScanner != null) {
+                hitCount += fuzzyScanner.match(blockText.getText(), hitCollector);
+            } else if (patternScanner != null) {
+                hitCount += patternScanner.match(blockText.getText(), hitCollector);
+            } else {
+                TextNormalizer.normalize(blockText.getText(), 0, blockText.getText().length(),
+                        normalizedText);
+                hitCount += exactMatcher.match(normalizedText, hitCollector);
+            }
+        }
+        return hitCollector.finish();
+    }
+
+    /**
+     * Number of term occurrences found by the last {@link #match}. This can exceed the number of
+     * boxes, since hits on words without a box have no geometry.
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    /** Turns the hits in the current block into boxes, creating the builder on the first hit. */
+    private final class HitCollector
+            implements TermMatcher.OnMatchListener, FuzzyMatcher.OnMatchListener {
+        private ViewTransform transform;
+        private MatchGeometry.Builder builder;
+
+        void begin(ViewTransform transform) {
+            this.transform = transform;
+            builder = null;
+        }
+
+        MatchGeometry finish() {
+            return builder != null ? builder.build() : MatchGeometry.EMPTY;
+        }
+
+        @Override
+        public void onMatch(int termId, int start, int end) {
+            add(termId, 1f, start, end);
+        }
+
+        @Override
+        public void onMatch(int termId, int start, int end, int distance) {
+            add(termId, fuzzyMatcher.score(termId, distance), start, end);
+        }
+
+        private void add(int termId, float score, int start, int end) {
+            if (builder == null) {
+                builder = new MatchGeometry.Builder(transform, labelMeasurer);
+            }
+            blockText.addHit(start, end, termId, score, builder);
+        }
+    }
+}
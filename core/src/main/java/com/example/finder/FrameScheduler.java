@@ -0,0 +1,141 @@
+package com.example.finder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which camera frames enter recognition and which results are still worth showing.
+ *
+ * <p>The scheduler owns the executor that camera frames are analyzed on and the executor that
+ * recognition results are delivered on, so that neither runs on the main thread. It allows up to
+ * {@link #getMaxFramesInFlight()} frames to be recognized at once. With more than one, frames are
+ * pipelined: each is copied out of the camera buffer so the buffer can be returned right away, and
+ * the camera keeps delivering while earlier frames are still being recognized. Because results can
+ * then complete out of order, a result is only delivered if no newer frame has been delivered
+ * before it.
+ */
+public final class FrameScheduler {
+
+    private final ExecutorService analyzerExecutor;
+    private final ExecutorService resultExecutor;
+    private final int maxFramesInFlight;
+
+    private final AtomicInteger framesInFlight = new AtomicInteger();
+    // Capture time of the newest frame whose result has been delivered.
+    private final AtomicLong lastDeliveredTimestamp = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong droppedBusyCount = new AtomicLong();
+    private final AtomicLong droppedStaleCount = new AtomicLong();
+
+    public FrameScheduler(ExecutorService analyzerExecutor, ExecutorService resultExecutor,
+                          int maxFramesInFlight) {
+        if (maxFramesInFlight < 1) {
+            throw new IllegalArgumentException("maxFramesInFlight must be at least 1");
+        }
+        this.analyzerExecutor = analyzerExecutor;
+        this.resultExecutor = resultExecutor;
+        this.maxFramesInFlight = maxFramesInFlight;
+    }
+
+    /**
+     * Creates a scheduler with its own single-threaded analyzer and result executors. After
+     * {@link #shutdown()}, work still submitted to them is silently discarded, so late recognition
+     * callbacks cannot fail.
+     */
+    public static FrameScheduler create(int maxFramesInFlight) {
+        return new FrameScheduler(singleThread("FrameAnalyzer"), singleThread("FrameResults"),
+                maxFramesInFlight);
+    }
+
+    private static ExecutorService singleThread(String name) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), runnable -> new Thread(runnable, name),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /** Executor that camera frames are analyzed on. */
+    public ExecutorService getAnalyzerExecutor() {
+        return analyzerExecutor;
+    }
+
+    /** Executor that recognition results are delivered on. */
+    public ExecutorService getResultExecutor() {
+        return resultExecutor;
+    }
+
+    public int getMaxFramesInFlight() {
+        return maxFramesInFlight;
+    }
+
+    /**
+     * Returns whether frames are copied and released before recognition, rather than held until
+     * recognition completes.
+     */
+    public boolean isPipelined() {
+        return maxFramesInFlight > 1;
+    }
+
+    /**
+     * Claims a recognition slot for a frame. Returns false, and counts the frame as dropped, if the
+     * maximum number of frames is already in flight. Every successful call must be matched by a
+     * call to {@link #finishFrame()}.
+     */
+    public boolean tryStartFrame() {
+        while (true) {
+            int current = framesInFlight.get();
+            if (current >= maxFramesInFlight) {
+                droppedBusyCount.incrementAndGet();
+                return false;
+            }
+            if (framesInFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /** Releases the slot claimed by {@link #tryStartFrame()}. */
+    public void finishFrame() {
+        framesInFlight.decrementAndGet();
+    }
+
+    /**
+     * Returns whether the result of the frame captured at {@code timestampNanos} should be
+     * delivered. Results older than one already delivered are counted as stale and rejected.
+     */
+    public boolean shouldDeliver(long timestampNanos) {
+        while (true) {
+            long last = lastDeliveredTimestamp.get();
+            if (timestampNanos <= last) {
+                droppedStaleCount.incrementAndGet();
+                return false;
+            }
+            if (lastDeliveredTimestamp.compareAndSet(last, timestampNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /** Number of frames currently being recognized. */
+    public int getFramesInFlight() {
+        return framesInFlight.get();
+    }
+
+    /** Number of frames dropped because too many were already in flight. */
+    public long getDroppedBusyCount() {
+        return droppedBusyCount.get();
+    }
+
+    /** Number of results dropped because a newer frame's result had already been delivered. */
+    public long getDroppedStaleCount() {
+        return droppedStaleCount.get();
+    }
+
+    /** Stops both executors. Frames still in flight are not waited for. */
+    public void shutdown() {
+        analyzerExecutor.shutdown();
+        resultExecutor.shutdown();
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.finder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-term matcher that tolerates OCR errors: a term matches wherever the text is within a few
+ * edits of it after both have been normalized with {@link TextNormalizer} and an
+ * {@link OcrConfusionMap}.
+ *
+ * <p>Each term is searched with Myers' bit-parallel algorithm, which keeps a whole column of the
+ * edit distance matrix in two machine words and advances it with a handful of bitwise operations
+ * per text char. Scanning is therefore linear in the text length times the number of terms, with
+ * no dependence on the allowed number of edits. Only the first {@value #MAX_TERM_LENGTH}
+ * normalized chars of a term are matched.
+ *
+ * <p>A term of n normalized chars may be matched with up to {@code min(maxEdits, n / 4)} edits,
+ * so terms shorter than four chars must match exactly. Of overlapping candidate hits of a term only
+ * the closest is reported.
+ *
+ * <p>Instances are immutable and can be shared between threads. Scanning uses buffers held by a
+ * {@link Scanner}, which must only be used by one thread.
+ */
+public final class FuzzyMatcher {
+
+    /** Receives the hits found by a {@link Scanner}. */
+    public interface OnMatchListener {
+        /**
+         * Called once per hit.
+         *
+         * @param termId index of the term in the list the matcher was compiled from
+         * @param start offset of the first matched char in the scanned text
+         * @param end offset one past the last matched char in the scanned text
+         * @param distance number of edits between the term and the matched text
+         */
+        void onMatch(int termId, int start, int end, int distance);
+    }
+
+    public static final int MAX_TERM_LENGTH = 64;
+    public static final int DEFAULT_MAX_EDITS = 2;
+    private static final int CHARS_PER_EDIT = 4;
+    private static final int TABLE_SIZE = 256;
+    // Symbol used for every char that does not occur in any term.
+    private static final int OTHER = 0;
+
+    private final OcrConfusionMap confusionMap;
+    private final String[] terms;
+    private final char[][] patterns;
+    private final int[] maxEdits;
+    // Bit of each term's last row, or 0 for terms that are empty once normalized.
+    private final long[] lastRowBits;
+    private final int termCount;
+
+    private final int[] tableSymbols = new int[TABLE_SIZE];
+    private final char[] extendedChars;
+    private final int[] extendedSymbols;
+    // Match masks of every term for every symbol, indexed by symbol * termCount + termId.
+    private final long[] peq;
+
+    private FuzzyMatcher(List<String> termList, OcrConfusionMap confusionMap, int maxEditLimit) {
+        this.confusionMap = confusionMap;
+        termCount = termList.size();
+        terms = termList.toArray(new String[0]);
+        patterns = new char[termCount][];
+        maxEdits = new int[termCount];
+        lastRowBits = new long[termCount];
+        NormalizedText folded = new NormalizedText();
+        NormalizedText normalized = new NormalizedText();
+        StringBuilder extended = new StringBuilder();
+        int nextSymbol = OTHER + 1;
+        for (int termId = 0; termId < termCount; termId++) {
+            TextNormalizer.normalize(terms[termId], 0, terms[termId].length(), folded);
+            confusionMap.normalize(folded, normalized);
+            int length = Math.min(normalized.length(), MAX_TERM_LENGTH);
+            char[] pattern = new char[length];
+            for (int i = 0; i < length; i++) {
+                char c = normalized.charAt(i);
+                pattern[i] = c;
+                if (c < TABLE_SIZE) {
+                    if (tableSymbols[c] == OTHER) {
+                        tableSymbols[c] = nextSymbol++;
+                    }
+                } else if (extended.indexOf(String.valueOf(c)) < 0) {
+                    extended.append(c);
+                }
+            }
+            patterns[termId] = pattern;
+            maxEdits[termId] = Math.min(maxEditLimit, length / CHARS_PER_EDIT);
+            lastRowBits[termId] = length == 0 ? 0 : 1L << (length - 1);
+        }
+        extendedChars = extended.toString().toCharArray();
+        Arrays.sort(extendedChars);
+        extendedSymbols = new int[extendedChars.length];
+        for (int i = 0; i < extendedChars.length; i++) {
+            extendedSymbols[i] = nextSymbol++;
+        }
+
+        peq = new long[nextSymbol * termCount];
+        for (int termId = 0; termId < termCount; termId++) {
+            char[] pattern = patterns[termId];
+            for (int i = 0; i < pattern.length; i++) {
+                peq[symbolOf(pattern[i]) * termCount + termId] |= 1L << i;
+            }
+        }
+    }
+
+    /** Compiles a matcher with the {@link OcrConfusionMap#DEFAULT default} confusions. */
+    public static FuzzyMatcher compile(List<String> terms) {
+        return compile(terms, OcrConfusionMap.DEFAULT, DEFAULT_MAX_EDITS);
+    }
+
+    /**
+     * Compiles a matcher for the given terms. Term ids reported by the matcher are indices into
+     * this list. Terms that are empty once normalized never match.
+     *
+     * @param maxEdits most edits allowed for any term
+     */
+    public static FuzzyMatcher compile(List<String> terms, OcrConfusionMap confusionMap,
+                                       int maxEdits) {
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("maxEdits must not be negative");
+        }
+        return new FuzzyMatcher(terms, confusionMap, maxEdits);
+    }
+
+    public OcrConfusionMap getConfusionMap() {
+        return confusionMap;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    public String getTerm(int termId) {
+        return terms[termId];
+    }
+
+    /** Most edits a hit of the term may have. */
+    public int getMaxEdits(int termId) {
+        return maxEdits[termId];
+    }
+
+    /** Returns the score of a hit: 1 for an exact match, falling with each edit. */
+    public float score(int termId, int distance) {
+        int length = patterns[termId].length;
+        return length == 0 ? 0f : 1f - (float) distance / length;
+    }
+
+    /** Returns a new scanner, with its own buffers, for use by a single thread. */
+    public Scanner newScanner() {
+        return new Scanner();
+    }
+
+    private int symbolOf(char c) {
+        if (c < TABLE_SIZE) {
+            return tableSymbols[c];
+        }
+        int index = Arrays.binarySearch(extendedChars, c);
+        return index >= 0 ? extendedSymbols[index] : OTHER;
+    }
+
+    /**
+     * Scans text for the matcher's terms. Once its buffers have grown to the size of the largest
+     * text scanned, scanning does not allocate.
+     */
+    public final class Scanner {
+        private final NormalizedText folded = new NormalizedText();
+        private final NormalizedText normalized = new NormalizedText();
+        private final long[] positive = new long[termCount];
+        private final long[] negative = new long[termCount];
+        private final int[] distances = new int[termCount];
+        // Closest candidate in the current run of candidates of each term, or -1 if not in a run.
+        private final int[] runDistances = new int[termCount];
+        private final int[] runEnds = new int[termCount];
+        private final int[] column = new int[MAX_TERM_LENGTH + 1];
+
+        private Scanner() {
+        }
+
+        /** Scans the whole text and reports every hit. Returns the number of hits. */
+        public int match(CharSequence text, OnMatchListener listener) {
+            return match(text, 0, text.length(), listener);
+        }
+
+        /**
+         * Scans {@code text} from {@code start} (inclusive) to {@code end} (exclusive) and reports
+         * every hit. Offsets passed to the listener are relative to the start of {@code text}.
+         * Returns the number of hits.
+         */
+        public int match(CharSequence text, int start, int end, OnMatchListener listener) {
+            TextNormalizer.normalize(text, start, end, folded);
+            confusionMap.normalize(folded, normalized);
+            normalized.remap(folded);
+            // Locals let the compiler keep the hot loop's arrays in registers.
+            final int terms = termCount;
+            final long[] matchMasks = peq;
+            final long[] lastBits = lastRowBits;
+            final int[] limits = maxEdits;
+            final long[] pvs = positive;
+            final long[] mvs = negative;
+            final int[] scores = distances;
+            final int[] runs = runDistances;
+            for (int termId = 0; termId < terms; termId++) {
+                pvs[termId] = -1L;
+                mvs[termId] = 0;
+                scores[termId] = patterns[termId].length;
+                runs[termId] = -1;
+            }
+            int hits = 0;
+            int length = normalized.length();
+            for (int j = 0; j < length; j++) {
+                int row = symbolOf(normalized.charAt(j)) * terms;
+                for (int termId = 0; termId < terms; termId++) {
+                    long lastBit = lastBits[termId];
+                    if (lastBit == 0) {
+                        continue;
+                    }
+                    long eq = matchMasks[row + termId];
+                    long pv = pvs[termId];
+                    long mv = mvs[termId];
+                    long xv = eq | mv;
+                    long xh = (((eq & pv) + pv) ^ pv) | eq;
+                    long ph = mv | ~(xh | pv);
+                    long mh = pv & xh;
+                    int distance = scores[termId];
+                    if ((ph & lastBit) != 0) {
+                        distance++;
+                    } else if ((mh & lastBit) != 0) {
+                        distance--;
+                    }
+                    scores[termId] = distance;
+                    // A match may start anywhere in the text, so no carry enters the first row.
+                    ph <<= 1;
+                    mh <<= 1;
+                    pvs[termId] = mh | ~(xv | ph);
+                    mvs[termId] = ph & xv;
+
+                    if (distance <= limits[termId]) {
+                        if (runs[termId] < 0 || distance < runs[termId]) {
+                            runs[termId] = distance;
+                            runEnds[termId] = j;
+                        }
+                    } else if (runs[termId] >= 0) {
+                        report(termId, listener);
+                        hits++;
+                    }
+                }
+            }
+            for (int termId = 0; termId < termCount; termId++) {
+                if (runDistances[termId] >= 0) {
+                    report(termId, listener);
+                    hits++;
+                }
+            }
+            return hits;
+        }
+
+        /** Reports the closest candidate of the current run of a term and ends the run. */
+        private void report(int termId, OnMatchListener listener) {
+            int end = runEnds[termId];
+            int distance = runDistances[termId];
+            runDistances[termId] = -1;
+            if (listener != null) {
+                int start = findStart(patterns[termId], end, distance);
+                listener.onMatch(termId, normalized.getStart(start), normalized.getEnd(end),
+                        distance);
+            }
+        }
+
+        /**
+         * Returns the start of the shortest text ending at {@code end} that is {@code distance}
+         * edits from the pattern, by filling the edit distance matrix of the reversed pattern
+         * against the text read backwards from {@code end}.
+         */
+        private int findStart(char[] pattern, int end, int distance) {
+            int m = pattern.length;
+            for (int i = 0; i <= m; i++) {
+                column[i] = i;
+            }
+            int maxLength = Math.min(end + 1, m + distance);
+            for (int length = 1; length <= maxLength; length++) {
+                char c = normalized.charAt(end - length + 1);
+                int diagonal = column[0];
+                column[0] = length;
+                for (int i = 1; i <= m; i++) {
+                    int above = column[i];
+                    int cost = pattern[m - i] == c ? 0 : 1;
+                    column[i] = Math.min(Math.min(above, column[i - 1]) + 1, diagonal + cost);
+                    diagonal = above;
+                }
+                if (column[m] <= distance) {
+                    return end - length + 1;
+                }
+            }
+            return Math.max(0, end - maxLength + 1);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.finder;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with bounded relative error, in the style of HdrHistogram.
+ *
+ * <p>Durations are counted in microseconds. Values below {@value #SUB_BUCKETS} are counted
+ * exactly; above that, each power of two is split into {@value #HALF_SUB_BUCKETS} buckets of equal
+ * width, so a reported percentile is within about 3% of the true value. Durations up to about a
+ * minute are distinguished; longer ones are counted in the last bucket. All storage is allocated
+ * up front, and {@link #record} is a few atomic increments, so it can be called from hot paths on
+ * any thread.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    // Largest distinguished value is just below 2^MAX_VALUE_BITS microseconds.
+    private static final int MAX_VALUE_BITS = 26;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /** Counts one duration. Negative durations are counted as zero. */
+    public void record(long durationNanos) {
+        long micros = Math.max(0, durationNanos / 1000);
+        counts.incrementAndGet(indexOf(Math.min(micros, MAX_VALUE)));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get())) {
+            if (maxMicros.compareAndSet(max, micros)) {
+                break;
+            }
+        }
+    }
+
+    /** Number of durations recorded. */
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /** Longest duration recorded, in nanoseconds, with microsecond resolution. */
+    public long getMaxNanos() {
+        return maxMicros.get() * 1000;
+    }
+
+    /** Mean duration in nanoseconds, or 0 if nothing has been recorded. */
+    public long getMeanNanos() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : totalMicros.get() * 1000 / count;
+    }
+
+    /**
+     * Returns the duration, in nanoseconds, that {@code percentile} percent of the recorded
+     * durations do not exceed, or 0 if nothing has been recorded. While other threads record, the
+     * result reflects some mix of before and after.
+     *
+     * @param percentile between 0 and 100
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), maxMicros.get()) * 1000;
+            }
+        }
+        return maxMicros.get() * 1000;
+    }
+
+    /** Forgets everything recorded so far. Not atomic with respect to concurrent recording. */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKETS + (int) (micros >>> shift);
+    }
+
+    /** Returns the largest value counted in bucket {@code index}. */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long lowest = (long) (index - shift * HALF_SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
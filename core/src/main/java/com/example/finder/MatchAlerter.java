@@ -0,0 +1,128 @@
+package com.example.finder;
+
+import java.util.Arrays;
+
+/**
+ * Decides which hits of a {@link SearchSession} are announced, and counts hits per term.
+ *
+ * <p>A term is announced once it has been seen for its debounce time without a gap longer than
+ * {@value #MAX_GAP_MILLIS} ms, and not again within its cooldown. Announcements of all terms are
+ * additionally spaced by a minimum interval, so that a list of many terms does not produce a burst
+ * of sounds. When several terms are due in the same frame, the one of highest priority wins and the
+ * others stay due.
+ *
+ * <p>Per-term state is kept in flat arrays and a frame only touches the terms it hit, so the cost
+ * per frame depends on the number of hits, not on the number of terms. Not thread-safe; results
+ * are fed from the result thread in capture order.
+ */
+public final class MatchAlerter {
+
+    /** Longest time a term may go unseen without restarting its debounce. */
+    static final long MAX_GAP_MILLIS = 700;
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 1000;
+
+    private final SearchSession session;
+    private final long minIntervalNanos;
+    private final long[] hitCounts;
+    private final long[] frameCounts;
+    private final long[] alertCounts;
+    private final long[] streakStart;
+    private final long[] lastSeen;
+    private final long[] lastAlert;
+    // Number of the last frame each term was seen in, to count it once per frame.
+    private final long[] lastFrame;
+    private long frame;
+    private long lastAnyAlert = Long.MIN_VALUE;
+
+    public MatchAlerter(SearchSession session) {
+        this(session, DEFAULT_MIN_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param minIntervalMillis shortest time between two announcements of any terms
+     */
+    public MatchAlerter(SearchSession session, long minIntervalMillis) {
+        this.session = session;
+        this.minIntervalNanos = minIntervalMillis * 1_000_000L;
+        int size = session.size();
+        hitCounts = new long[size];
+        frameCounts = new long[size];
+        alertCounts = new long[size];
+        streakStart = new long[size];
+        lastSeen = new long[size];
+        lastAlert = new long[size];
+        lastFrame = new long[size];
+        Arrays.fill(lastAlert, Long.MIN_VALUE);
+    }
+
+    /**
+     * Counts the hits of a frame and returns the term to announce now, or
+     * {@link MatchGeometry#NO_TERM} if there is none.
+     */
+    public int onFrame(MatchGeometry matches, long timestampNanos) {
+        frame++;
+        int due = MatchGeometry.NO_TERM;
+        for (int i = 0; i < matches.size(); i++) {
+            int termId = matches.getTermId(i);
+            if (termId < 0 || termId >= hitCounts.length) {
+                continue;
+            }
+            hitCounts[termId]++;
+            if (lastFrame[termId] == frame) {
+                continue;
+            }
+            lastFrame[termId] = frame;
+            frameCounts[termId]++;
+            if (frameCounts[termId] == 1
+                    || timestampNanos - lastSeen[termId] > MAX_GAP_MILLIS * 1_000_000L) {
+                streakStart[termId] = timestampNanos;
+            }
+            lastSeen[termId] = timestampNanos;
+            if (isDue(termId, timestampNanos) && (due == MatchGeometry.NO_TERM
+                    || outranks(termId, due))) {
+                due = termId;
+            }
+        }
+        if (due == MatchGeometry.NO_TERM
+                || (lastAnyAlert != Long.MIN_VALUE
+                        && timestampNanos - lastAnyAlert < minIntervalNanos)) {
+            return MatchGeometry.NO_TERM;
+        }
+        lastAnyAlert = timestampNanos;
+        lastAlert[due] = timestampNanos;
+        alertCounts[due]++;
+        return due;
+    }
+
+    private boolean isDue(int termId, long timestampNanos) {
+        SearchTerm term = session.get(termId);
+        return timestampNanos - streakStart[termId] >= term.getDebounceMillis() * 1_000_000L
+                && (lastAlert[termId] == Long.MIN_VALUE
+                        || timestampNanos - lastAlert[termId]
+                                >= term.getCooldownMillis() * 1_000_000L);
+    }
+
+    private boolean outranks(int termId, int other) {
+        int order = session.get(termId).getPriority().compareTo(session.get(other).getPriority());
+        return order > 0 || (order == 0 && termId < other);
+    }
+
+    public SearchSession getSession() {
+        return session;
+    }
+
+    /** Number of hits of a term so far, counting every hit in every frame. */
+    public long getHitCount(int termId) {
+        return hitCounts[termId];
+    }
+
+    /** Number of frames in which a term was seen. */
+    public long getFrameCount(int termId) {
+        return frameCounts[termId];
+    }
+
+    /** Number of times a term was announced. */
+    public long getAlertCount(int termId) {
+        return alertCounts[termId];
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.finder;
+
+/**
+ * How a {@link MatchExporter} buffers, batches and stores the matches it writes.
+ *
+ * <p>Matches wait in a ring of {@link #getRingCapacity()} slots until the writer thread takes them,
+ * at the latest every {@link #getBatchIntervalMillis()} milliseconds. Log files are started anew
+ * once they reach {@link #getMaxFileBytes()}, and only the newest {@link #getMaxFiles()} are kept.
+ * {@link #getSyncPolicy()} decides how often written data is forced to storage.
+ */
+public final class MatchExportConfig {
+
+    /** When written matches are forced to storage, beyond closing the exporter. */
+    public enum SyncPolicy {
+        /** Left to the operating system. */
+        NEVER,
+        /** When a file is complete, so only the current file can lose matches in a crash. */
+        ON_ROTATE,
+        /** After every batch, so a crash loses at most one batch interval of matches. */
+        EVERY_BATCH
+    }
+
+    /**
+     * Room for a few seconds of matches at camera rate, batches of a quarter second, and at most
+     * 8 MB of logs in files of 1 MB.
+     */
+    public static final MatchExportConfig DEFAULT = new MatchExportConfig(
+            4096, 250, 1 << 20, 8, SyncPolicy.ON_ROTATE);
+
+    private final int ringCapacity;
+    private final long batchIntervalMillis;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final SyncPolicy syncPolicy;
+
+    /**
+     * @param ringCapacity matches that can wait for the writer, rounded up to a power of two
+     */
+    public MatchExportConfig(int ringCapacity, long batchIntervalMillis, long maxFileBytes,
+                             int maxFiles, SyncPolicy syncPolicy) {
+        if (ringCapacity < 1 || ringCapacity > 1 << 24) {
+            throw new IllegalArgumentException("ringCapacity must be from 1 to 2^24");
+        }
+        if (batchIntervalMillis < 1) {
+            throw new IllegalArgumentException("batchIntervalMillis must be at least 1");
+        }
+        if (maxFileBytes < 1) {
+            throw new IllegalArgumentException("maxFileBytes must be positive");
+        }
+        if (maxFiles < 1) {
+            throw new IllegalArgumentException("maxFiles must be at least 1");
+        }
+        this.ringCapacity = Integer.highestOneBit(ringCapacity * 2 - 1);
+        this.batchIntervalMillis = batchIntervalMillis;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.syncPolicy = syncPolicy;
+    }
+
+    /** Matches that can wait for the writer; more are dropped rather than waited for. */
+    public int getRingCapacity() {
+        return ringCapacity;
+    }
+
+    /** Longest time a match waits before the writer takes it. */
+    public long getBatchIntervalMillis() {
+        return batchIntervalMillis;
+    }
+
+    /** Size from which a new log file is started. */
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    /** Number of log files kept; older ones are deleted. */
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+}
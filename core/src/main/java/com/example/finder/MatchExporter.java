@@ -0,0 +1,459 @@
+package com.example.finder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes every match to a log of JSON lines, for audits, without slowing down the thread that
+ * finds the matches.
+ *
+ * <p>{@link #offer} copies the matches of a frame into a preallocated ring and returns; it never
+ * blocks, allocates or touches storage, and if the ring is full the matches are counted as dropped.
+ * A writer thread takes everything waiting in the ring every batch interval, or as soon as the
+ * ring is half full, encodes it into a direct buffer and writes it to a {@link FileChannel}. Each line holds one match:
+ *
+ * <pre>
+ * {"frame":12,"t":84512300000,"time":1700000000000,"term":"milk","text":"Milk 2L",
+ *  "box":[120,340,380,402],"score":1.0}
+ * </pre>
+ *
+ * where {@code t} is the capture time on the camera clock, {@code time} the wall-clock time in
+ * milliseconds, and {@code box} the line's bounds in pixels of the upright image. Log files are
+ * named {@code matches-000001.jsonl} and so on, continuing after the files already present. They
+ * are rotated and synced as set by the {@link MatchExportConfig}.
+ *
+ * <p>{@link #offer} must be called from one thread at a time. Write errors do not reach the
+ * producer: the batch is counted as dropped, {@link #getLastError()} reports the error, and the
+ * next batch opens a new file.
+ */
+public final class MatchExporter implements Closeable {
+
+    private static final String PREFIX = "matches-";
+    private static final String SUFFIX = ".jsonl";
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // Longest a single character takes in UTF-8, as produced from a Java string.
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    private final File directory;
+    private final MatchExportConfig config;
+    private final String[] terms;
+    private final int mask;
+
+    // The ring. Slots from head to tail hold matches the writer has not taken yet.
+    private final long[] frameIds;
+    private final long[] timestamps;
+    private final long[] wallTimes;
+    private final int[] termIds;
+    private final String[] labels;
+    private final float[] boxes;
+    private final float[] scores;
+    private final ViewTransform[] transforms;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong offeredCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong fileCount = new AtomicLong();
+    private volatile IOException lastError;
+    private volatile boolean closing;
+    private final Thread writer;
+
+    // Only used on the writer thread.
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder(256);
+    private FileChannel channel;
+    private long fileSize;
+    private int nextFileNumber;
+    private long bufferedMatches;
+
+    /**
+     * Starts the writer thread. The directory is created, and the first file opened, by the writer.
+     *
+     * @param terms texts of the search terms, indexed by term id
+     */
+    public MatchExporter(File directory, List<String> terms, MatchExportConfig config) {
+        this.directory = directory;
+        this.config = config;
+        this.terms = terms.toArray(new String[0]);
+        int capacity = config.getRingCapacity();
+        mask = capacity - 1;
+        frameIds = new long[capacity];
+        timestamps = new long[capacity];
+        wallTimes = new long[capacity];
+        termIds = new int[capacity];
+        labels = new String[capacity];
+        boxes = new float[4 * capacity];
+        scores = new float[capacity];
+        transforms = new ViewTransform[capacity];
+        writer = new Thread(this::run, "MatchExporter");
+        writer.start();
+    }
+
+    /**
+     * Queues the matches of one frame for writing, or drops them all if the ring has no room for
+     * them.
+     *
+     * @param frameId number of the frame, increasing within a session
+     * @param timestampNanos capture time of the frame
+     * @param wallTimeMillis wall-clock time the frame was processed
+     * @param matches the frame's matches, in view coordinates
+     * @param transform the transform the matches were mapped with, to recover image coordinates
+     * @return whether the matches were queued
+     */
+    public boolean offer(long frameId, long timestampNanos, long wallTimeMillis,
+                         MatchGeometry matches, ViewTransform transform) {
+        int count = matches.size();
+        if (count == 0) {
+            return true;
+        }
+        offeredCount.addAndGet(count);
+        long start = tail.get();
+        long used = start - head.get();
+        if (used + count > mask + 1 || closing) {
+            droppedCount.addAndGet(count);
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int slot = (int) (start + i) & mask;
+            frameIds[slot] = frameId;
+            timestamps[slot] = timestampNanos;
+            wallTimes[slot] = wallTimeMillis;
+            termIds[slot] = matches.getTermId(i);
+            labels[slot] = matches.getLabel(i);
+            boxes[4 * slot] = matches.getLeft(i);
+            boxes[4 * slot + 1] = matches.getTop(i);
+            boxes[4 * slot + 2] = matches.getRight(i);
+            boxes[4 * slot + 3] = matches.getBottom(i);
+            scores[slot] = matches.getScore(i);
+            transforms[slot] = transform;
+        }
+        // Publishes the slots to the writer in one ordered store.
+        tail.lazySet(start + count);
+        int halfFull = (mask + 1) / 2;
+        if (used < halfFull && used + count >= halfFull) {
+            // A burst fills the ring faster than the batch interval empties it.
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /** Matches passed to {@link #offer}. */
+    public long getOfferedCount() {
+        return offeredCount.get();
+    }
+
+    /** Matches written to a log file, though not necessarily synced yet. */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /** Matches lost because the ring was full or writing failed. */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /** Number of log files opened. */
+    public long getFileCount() {
+        return fileCount.get();
+    }
+
+    /** Returns the most recent write error, or null if there was none. */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Writes what is queued, syncs and closes the log, and waits up to a minute for that. Matches
+     * offered afterwards are dropped. Throws the last write error, if any write failed.
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the match exporter", e);
+        }
+        IOException error = lastError;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void run() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getBatchIntervalMillis());
+        while (true) {
+            // Read before draining, so nothing offered before close() is left behind.
+            boolean last = closing;
+            drain();
+            if (last) {
+                break;
+            }
+            LockSupport.parkNanos(this, intervalNanos);
+        }
+        try {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        } catch (IOException e) {
+            lastError = e;
+        }
+    }
+
+    /** Writes everything in the ring as one batch. Runs on the writer thread. */
+    private void drain() {
+        long end = tail.get();
+        long position = head.get();
+        if (position == end) {
+            return;
+        }
+        try {
+            if (channel == null) {
+                openNextFile();
+            }
+            for (; position < end; position++) {
+                int slot = (int) position & mask;
+                encode(slot);
+                labels[slot] = null;
+                transforms[slot] = null;
+                // Frees slots as it goes, so the producer is not held up by a long batch.
+                head.lazySet(position + 1);
+            }
+            writeBuffer();
+            if (config.getSyncPolicy() == MatchExportConfig.SyncPolicy.EVERY_BATCH) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            lastError = e;
+            // The batch is lost: what was encoded but not written, and what was not encoded.
+            droppedCount.addAndGet(bufferedMatches + end - position);
+            bufferedMatches = 0;
+            for (; position < end; position++) {
+                int slot = (int) position & mask;
+                labels[slot] = null;
+                transforms[slot] = null;
+            }
+            head.lazySet(end);
+            buffer.clear();
+            closeQuietly();
+        }
+    }
+
+    private void encode(int slot) throws IOException {
+        StringBuilder out = line;
+        out.setLength(0);
+        ViewTransform transform = transforms[slot];
+        float left = transform.unmapX(boxes[4 * slot]);
+        float right = transform.unmapX(boxes[4 * slot + 2]);
+        out.append("{\"frame\":").append(frameIds[slot])
+                .append(",\"t\":").append(timestamps[slot])
+                .append(",\"time\":").append(wallTimes[slot])
+                .append(",\"term\":");
+        int termId = termIds[slot];
+        if (termId >= 0 && termId < terms.length) {
+            appendString(out, terms[termId]);
+        } else {
+            out.append("null");
+        }
+        out.append(",\"text\":");
+        appendString(out, labels[slot]);
+        // A flipped transform swaps the sides.
+        out.append(",\"box\":[").append(Math.round(Math.min(left, right)))
+                .append(',').append(Math.round(transform.unmapY(boxes[4 * slot + 1])))
+                .append(',').append(Math.round(Math.max(left, right)))
+                .append(',').append(Math.round(transform.unmapY(boxes[4 * slot + 3])))
+                .append("],\"score\":").append(scores[slot])
+                .append("}\n");
+
+        if (buffer.remaining() < out.length() * MAX_BYTES_PER_CHAR) {
+            writeBuffer();
+        }
+        int lineStart = buffer.position();
+        boolean split = false;
+        CharBuffer chars = CharBuffer.wrap(out);
+        encoder.reset();
+        CoderResult result;
+        while ((result = encoder.encode(chars, buffer, true)).isOverflow()) {
+            // Only a line larger than the whole buffer is split.
+            writeFully();
+            split = true;
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+        if (!split && fileSize + lineStart > 0
+                && fileSize + buffer.position() > config.getMaxFileBytes()) {
+            rotateBefore(lineStart);
+        }
+        bufferedMatches++;
+    }
+
+    /**
+     * Writes the buffered lines before {@code lineStart} to the current file, and starts a new
+     * file that the line at {@code lineStart} will begin.
+     */
+    private void rotateBefore(int lineStart) throws IOException {
+        int lineEnd = buffer.position();
+        buffer.flip();
+        buffer.limit(lineStart);
+        writeRemaining();
+        writtenCount.addAndGet(bufferedMatches);
+        bufferedMatches = 0;
+        // Moves the line to the front of the buffer.
+        buffer.limit(lineEnd);
+        buffer.compact();
+        if (config.getSyncPolicy() != MatchExportConfig.SyncPolicy.NEVER) {
+            channel.force(false);
+        }
+        channel.close();
+        channel = null;
+        openNextFile();
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || Character.isSurrogate(c)
+                            && !isPairedSurrogate(value, i)) {
+                        out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /** Returns whether the surrogate at {@code index} is part of a valid pair. */
+    private static boolean isPairedSurrogate(String value, int index) {
+        char c = value.charAt(index);
+        if (Character.isHighSurrogate(c)) {
+            return index + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(index + 1));
+        }
+        return index > 0 && Character.isHighSurrogate(value.charAt(index - 1));
+    }
+
+    /** Writes the buffered lines to the current file. */
+    private void writeBuffer() throws IOException {
+        if (buffer.position() > 0) {
+            writeFully();
+        }
+        writtenCount.addAndGet(bufferedMatches);
+        bufferedMatches = 0;
+    }
+
+    private void writeFully() throws IOException {
+        buffer.flip();
+        writeRemaining();
+        buffer.clear();
+    }
+
+    private void writeRemaining() throws IOException {
+        while (buffer.hasRemaining()) {
+            int written = channel.write(buffer);
+            fileSize += written;
+            bytesWritten.addAndGet(written);
+        }
+    }
+
+    private void openNextFile() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        if (nextFileNumber == 0) {
+            nextFileNumber = 1;
+            for (File file : logFiles()) {
+                nextFileNumber = Math.max(nextFileNumber, fileNumber(file) + 1);
+            }
+        }
+        File file = new File(directory,
+                String.format(Locale.ROOT, "%s%06d%s", PREFIX, nextFileNumber++, SUFFIX));
+        channel = new FileOutputStream(file, true).getChannel();
+        fileSize = channel.size();
+        fileCount.incrementAndGet();
+        deleteOldFiles();
+    }
+
+    /** Deletes the oldest log files beyond the number to keep, counting the current one. */
+    private void deleteOldFiles() {
+        File[] files = logFiles();
+        Arrays.sort(files, (a, b) -> Integer.compare(fileNumber(a), fileNumber(b)));
+        for (int i = 0; i < files.length - config.getMaxFiles(); i++) {
+            //noinspection ResultOfMethodCallIgnored
+            files[i].delete();
+        }
+    }
+
+    private File[] logFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX)
+                && name.endsWith(SUFFIX) && fileNumber(name) > 0);
+        return files != null ? files : new File[0];
+    }
+
+    private static int fileNumber(File file) {
+        return fileNumber(file.getName());
+    }
+
+    private static int fileNumber(String name) {
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(),
+                    name.length() - SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already failing; the next batch starts a new file.
+            }
+            channel = null;
+        }
+    }
+}
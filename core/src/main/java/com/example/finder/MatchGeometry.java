@@ -0,0 +1,143 @@
+package com.example.finder;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, drawable summary of the matches found in one frame.
+ *
+ * <p>Each hit is a box already mapped to overlay view coordinates, plus the label drawn above it, the
+ * measured width of that label, and the term it matched with its match score. Everything is kept in flat primitive arrays and computed on the
+ * analyzer thread, so drawing a frame's highlights needs no allocation, matching or text measuring.
+ */
+public final class MatchGeometry {
+
+    /** Measures the on-screen width of a label, e.g. with {@code Paint#measureText}. */
+    public interface LabelMeasurer {
+        float measure(String label);
+    }
+
+    public static final MatchGeometry EMPTY = new MatchGeometry(
+            0, new float[0], new float[0], new String[0], new int[0], new float[0]);
+
+    /** Term id of hits that were not attributed to a single term. */
+    public static final int NO_TERM = -1;
+
+    private static final int LEFT = 0;
+    private static final int TOP = 1;
+    private static final int RIGHT = 2;
+    private static final int BOTTOM = 3;
+    private static final int COORDS_PER_HIT = 4;
+
+    private final int size;
+    private final float[] boxes;
+    private final float[] labelWidths;
+    private final String[] labels;
+    private final int[] termIds;
+    private final float[] scores;
+
+    private MatchGeometry(int size, float[] boxes, float[] labelWidths, String[] labels,
+                          int[] termIds, float[] scores) {
+        this.size = size;
+        this.boxes = boxes;
+        this.labelWidths = labelWidths;
+        this.labels = labels;
+        this.termIds = termIds;
+        this.scores = scores;
+    }
+
+    /** Returns the number of hits. */
+    public int size() {
+        return size;
+    }
+
+    public float getLeft(int index) {
+        return boxes[index * COORDS_PER_HIT + LEFT];
+    }
+
+    public float getTop(int index) {
+        return boxes[index * COORDS_PER_HIT + TOP];
+    }
+
+    public float getRight(int index) {
+        return boxes[index * COORDS_PER_HIT + RIGHT];
+    }
+
+    public float getBottom(int index) {
+        return boxes[index * COORDS_PER_HIT + BOTTOM];
+    }
+
+    public String getLabel(int index) {
+        return labels[index];
+    }
+
+    public float getLabelWidth(int index) {
+        return labelWidths[index];
+    }
+
+    /** Returns the id of the matched term, or {@link #NO_TERM}. */
+    public int getTermId(int index) {
+        return termIds[index];
+    }
+
+    /** Returns how well the hit matched its term, from 0 exclusive to 1 for an exact match. */
+    public float getScore(int index) {
+        return scores[index];
+    }
+
+    /** Collects hits in image coordinates and maps them to view coordinates as they are added. */
+    public static final class Builder {
+        private final ViewTransform transform;
+        private final LabelMeasurer measurer;
+        private int size;
+        private float[] boxes = new float[8 * COORDS_PER_HIT];
+        private float[] labelWidths = new float[8];
+        private String[] labels = new String[8];
+        private int[] termIds = new int[8];
+        private float[] scores = new float[8];
+
+        public Builder(ViewTransform transform, LabelMeasurer measurer) {
+            this.transform = transform;
+            this.measurer = measurer;
+        }
+
+        /** Adds an exact hit, not attributed to a term, whose box is given in image coordinates. */
+        public Builder add(String label, float left, float top, float right, float bottom) {
+            return add(NO_TERM, 1f, label, left, top, right, bottom);
+        }
+
+        /** Adds a hit of a term whose box is given in image coordinates. */
+        public Builder add(int termId, float score, String label,
+                           float left, float top, float right, float bottom) {
+            if (size == labels.length) {
+                boxes = Arrays.copyOf(boxes, boxes.length * 2);
+                labelWidths = Arrays.copyOf(labelWidths, labelWidths.length * 2);
+                labels = Arrays.copyOf(labels, labels.length * 2);
+                termIds = Arrays.copyOf(termIds, termIds.length * 2);
+                scores = Arrays.copyOf(scores, scores.length * 2);
+            }
+            // If the image is flipped, the left will be translated to right, and the right to left.
+            float x0 = transform.mapX(left);
+            float x1 = transform.mapX(right);
+            int offset = size * COORDS_PER_HIT;
+            boxes[offset + LEFT] = Math.min(x0, x1);
+            boxes[offset + TOP] = transform.mapY(top);
+            boxes[offset + RIGHT] = Math.max(x0, x1);
+            boxes[offset + BOTTOM] = transform.mapY(bottom);
+            labelWidths[size] = measurer.measure(label);
+            labels[size] = label;
+            termIds[size] = termId;
+            scores[size] = score;
+            size++;
+            return this;
+        }
+
+        public MatchGeometry build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new MatchGeometry(size, Arrays.copyOf(boxes, size * COORDS_PER_HIT),
+                    Arrays.copyOf(labelWidths, size), Arrays.copyOf(labels, size),
+                    Arrays.copyOf(termIds, size), Arrays.copyOf(scores, size));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.finder;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer holding a normalized copy of some text, together with where each normalized char
+ * came from in the original.
+ *
+ * <p>A normalized char may stand for several original chars, e.g. {@code "rn"} read as {@code 'm'},
+ * and original chars may have been dropped, e.g. separators. {@link #getStart} and {@link #getEnd}
+ * map any normalized range back to the original text, also through several normalizations with
+ * {@link #remap}. The buffer grows as needed and is reused between frames, so normalizing does not
+ * allocate once it has reached its working size. Not thread-safe.
+ */
+public final class NormalizedText implements CharSequence {
+
+    private char[] chars = new char[256];
+    private int[] starts = new int[256];
+    private int[] ends = new int[256];
+    private int length;
+
+    /** Empties the buffer, keeping its capacity. */
+    public void clear() {
+        length = 0;
+    }
+
+    /** Appends a normalized char that stands for the original chars {@code [start, end)}. */
+    public void append(char c, int start, int end) {
+        if (length == chars.length) {
+            int capacity = chars.length * 2;
+            chars = Arrays.copyOf(chars, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        chars[length] = c;
+        starts[length] = start;
+        ends[length] = end;
+        length++;
+    }
+
+    /**
+     * Extends the original chars behind the last normalized char to {@code end}, e.g. over a
+     * diacritic that was dropped.
+     */
+    public void extendLast(int end) {
+        ends[length - 1] = end;
+    }
+
+    /** Drops the normalized chars from {@code length} on. */
+    public void setLength(int length) {
+        if (length < 0 || length > this.length) {
+            throw new IndexOutOfBoundsException("length " + length + " of " + this.length);
+        }
+        this.length = length;
+    }
+
+    /**
+     * Maps the offsets of this text, normalized from {@code source}, through {@code source}, so
+     * that they point into the text {@code source} was normalized from.
+     */
+    public void remap(NormalizedText source) {
+        for (int i = 0; i < length; i++) {
+            starts[i] = source.starts[starts[i]];
+            ends[i] = source.ends[ends[i] - 1];
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    /** Offset in the original text of the first char behind normalized char {@code index}. */
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    /** Offset in the original text one past the last char behind normalized char {@code index}. */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
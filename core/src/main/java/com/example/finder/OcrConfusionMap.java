@@ -0,0 +1,224 @@
+package com.example.finder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Normalization that makes text compare equal to the text OCR commonly mistakes it for.
+ *
+ * <p>Text is folded with {@link TextNormalizer#fold}, then chars that are easily confused, such as {@code 0} and {@code o},
+ * are replaced by one representative of their class, and sequences that read as a single char,
+ * such as {@code rn} for {@code m}, are replaced by that char. Separators, by default whitespace and
+ * hyphens, are dropped, so that words split across elements or lines, or hyphenated at a line end,
+ * still compare equal to the unsplit word. Search terms and recognized text are normalized the same
+ * way before they are compared, after {@link TextNormalizer#normalize normalizing} them, so that
+ * chars that fold to several chars compare equal too.
+ *
+ * <p>Instances are immutable. Use {@link #DEFAULT} or build one with {@link Builder}.
+ */
+public final class OcrConfusionMap {
+
+    /** Confusions seen most often in printed labels. */
+    public static final OcrConfusionMap DEFAULT = new Builder()
+            .equivalent("o0")
+            .equivalent("l1i|")
+            .equivalent("s5")
+            .equivalent("b8")
+            .equivalent("z2")
+            .replace("rn", 'm')
+            .replace("vv", 'w')
+            .ignore("-\u00AD")
+            .build();
+
+    /** Only folds chars and drops whitespace. */
+    public static final OcrConfusionMap NONE = new Builder().build();
+
+    private static final int TABLE_SIZE = 256;
+
+    // Representative of each char below TABLE_SIZE, and sorted other chars with theirs.
+    private final char[] table = new char[TABLE_SIZE];
+    private final char[] extendedChars;
+    private final char[] extendedReplacements;
+    private final boolean[] ignoredTable = new boolean[TABLE_SIZE];
+    private final char[] extendedIgnored;
+    private final boolean ignoreWhitespace;
+    private final String[] sequences;
+    private final char[] sequenceReplacements;
+
+    private OcrConfusionMap(Builder builder) {
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            table[c] = TextNormalizer.fold((char) c);
+        }
+        StringBuilder extended = new StringBuilder();
+        StringBuilder extendedTo = new StringBuilder();
+        for (String chars : builder.classes) {
+            char representative = TextNormalizer.fold(chars.charAt(0));
+            for (int i = 0; i < chars.length(); i++) {
+                char c = TextNormalizer.fold(chars.charAt(i));
+                if (c < TABLE_SIZE) {
+                    table[c] = representative;
+                } else {
+                    extended.append(c);
+                    extendedTo.append(representative);
+                }
+            }
+        }
+        // Sort the extended chars, keeping each with its replacement.
+        Integer[] order = new Integer[extended.length()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Character.compare(extended.charAt(a), extended.charAt(b)));
+        extendedChars = new char[order.length];
+        extendedReplacements = new char[order.length];
+        for (int i = 0; i < order.length; i++) {
+            extendedChars[i] = extended.charAt(order[i]);
+            extendedReplacements[i] = extendedTo.charAt(order[i]);
+        }
+
+        StringBuilder ignored = new StringBuilder();
+        for (int i = 0; i < builder.ignored.length(); i++) {
+            char c = builder.ignored.charAt(i);
+            if (c < TABLE_SIZE) {
+                ignoredTable[c] = true;
+            } else {
+                ignored.append(c);
+            }
+        }
+        extendedIgnored = ignored.toString().toCharArray();
+        Arrays.sort(extendedIgnored);
+        ignoreWhitespace = builder.ignoreWhitespace;
+
+        sequences = new String[builder.sequences.size()];
+        sequenceReplacements = new char[sequences.length];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = foldChars(builder.sequences.get(i));
+            sequenceReplacements[i] = map(builder.sequenceReplacements.get(i));
+        }
+    }
+
+    /** Returns the representative of a single char, without looking at sequences. */
+    public char map(char c) {
+        char lower = c < TABLE_SIZE ? table[c] : TextNormalizer.fold(c);
+        if (lower < TABLE_SIZE) {
+            return table[lower];
+        }
+        int index = Arrays.binarySearch(extendedChars, lower);
+        return index >= 0 ? extendedReplacements[index] : lower;
+    }
+
+    /** Returns whether a char is dropped as a separator. */
+    public boolean isIgnored(char c) {
+        if (c < TABLE_SIZE) {
+            return ignoredTable[c] || (ignoreWhitespace && Character.isWhitespace(c));
+        }
+        return (ignoreWhitespace && Character.isWhitespace(c))
+                || Arrays.binarySearch(extendedIgnored, c) >= 0;
+    }
+
+    /** Normalizes a whole text; see {@link #normalize(CharSequence, int, int, NormalizedText)}. */
+    public void normalize(CharSequence text, NormalizedText out) {
+        normalize(text, 0, text.length(), out);
+    }
+
+    /**
+     * Replaces the contents of {@code out} with the normalized form of {@code text} from
+     * {@code start} (inclusive) to {@code end} (exclusive). Offsets recorded in {@code out} are
+     * relative to the start of {@code text}.
+     */
+    public void normalize(CharSequence text, int start, int end, NormalizedText out) {
+        out.clear();
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (isIgnored(c)) {
+                i++;
+                continue;
+            }
+            int sequence = matchSequence(text, i, end);
+            if (sequence >= 0) {
+                int length = sequences[sequence].length();
+                out.append(sequenceReplacements[sequence], i, i + length);
+                i += length;
+            } else {
+                out.append(map(c), i, i + 1);
+                i++;
+            }
+        }
+    }
+
+    /** Returns the longest sequence starting at {@code offset}, or -1 if none does. */
+    private int matchSequence(CharSequence text, int offset, int end) {
+        int best = -1;
+        for (int s = 0; s < sequences.length; s++) {
+            String sequence = sequences[s];
+            int length = sequence.length();
+            if (offset + length > end
+                    || (best >= 0 && length <= sequences[best].length())) {
+                continue;
+            }
+            int i = 0;
+            while (i < length
+                    && TextNormalizer.fold(text.charAt(offset + i)) == sequence.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    private static String foldChars(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = TextNormalizer.fold(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /** Builds an {@link OcrConfusionMap}. */
+    public static final class Builder {
+        private final List<String> classes = new ArrayList<>();
+        private final List<String> sequences = new ArrayList<>();
+        private final List<Character> sequenceReplacements = new ArrayList<>();
+        private String ignored = "";
+        private boolean ignoreWhitespace = true;
+
+        /** Treats all the given chars, ignoring case, as the first of them. */
+        public Builder equivalent(String chars) {
+            if (chars.isEmpty()) {
+                throw new IllegalArgumentException("chars must not be empty");
+            }
+            classes.add(chars);
+            return this;
+        }
+
+        /** Reads a sequence of two or more chars, ignoring case, as a single char. */
+        public Builder replace(String sequence, char replacement) {
+            if (sequence.length() < 2) {
+                throw new IllegalArgumentException("sequence must have at least two chars");
+            }
+            sequences.add(sequence);
+            sequenceReplacements.add(TextNormalizer.fold(replacement));
+            return this;
+        }
+
+        /** Drops the given chars, in addition to whitespace. */
+        public Builder ignore(String chars) {
+            ignored += chars;
+            return this;
+        }
+
+        /** Sets whether whitespace is dropped. It is by default. */
+        public Builder ignoreWhitespace(boolean ignoreWhitespace) {
+            this.ignoreWhitespace = ignoreWhitespace;
+            return this;
+        }
+
+        public OcrConfusionMap build() {
+            return new OcrConfusionMap(this);
+        }
+    }
+}
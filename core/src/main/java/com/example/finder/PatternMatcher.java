@@ -0,0 +1,900 @@
+package com.example.finder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Multi-pattern matcher for structured text such as prices, dates, lot numbers and postcodes,
+ * built on deterministic automata so that scanning never backtracks.
+ *
+ * <p>Patterns use a subset of regular expression syntax: literal chars, {@code .}, classes such as
+ * {@code [a-z0-9]} and {@code [^,]}, the escapes {@code \d \w \s} and their negations, groups
+ * {@code (...)} and {@code (?:...)}, alternation {@code |}, and the quantifiers {@code * + ?},
+ * {@code {n}}, {@code {n,}} and {@code {n,m}}. Anchors, lookaround and backreferences need
+ * backtracking and are not supported; {@code ^} and {@code $} are literal chars, as in prices. A
+ * pattern {@code @name} stands for the {@link BuiltIn} pattern of that name. Matching ignores
+ * case and accents: text and patterns are folded one char at a time with
+ * {@link TextNormalizer#fold}, which also turns all whitespace into spaces.
+ *
+ * <p>All patterns are compiled into two automata together. One, read backwards over the text, marks
+ * every position where a match of any pattern starts; the other, read forwards from such a
+ * position, finds the longest match there. Matches are leftmost-longest and do not overlap, and of
+ * patterns matching the same text the first one wins. Scanning reads every char once backwards,
+ * and forwards at most once per state of the forward automaton, since runs from different starts
+ * that reach the same state are merged. It takes time linear in the length of the text, however
+ * many patterns there are.
+ *
+ * <p>Instances are immutable and can be shared between threads. Scanning uses buffers held by a
+ * {@link Scanner}, one per thread.
+ */
+public final class PatternMatcher {
+
+    /** Patterns for common structured text, referred to in queries as {@code @name}. */
+    public enum BuiltIn {
+        PRICE("price", "[$£€¥] ?\\d{1,6}([.,]\\d\\d)?"
+                + "|\\d{1,6}[.,]\\d\\d ?([$£€¥]|eur|usd|gbp)"),
+        DATE("date", "\\d{1,2}[./-]\\d{1,2}[./-](\\d\\d){1,2}|\\d{4}-\\d\\d-\\d\\d"
+                + "|\\d{1,2} (jan|feb|mar|apr|may|jun|jul|aug|sep|oct|nov|dec)[a-z]*\\.? \\d{4}"),
+        LOT("lot", "(lot|batch)( ?(no\\.?|#))? ?:? ?[a-z0-9][a-z0-9-]{2,15}"),
+        SKU("sku", "(sku|art\\.?|item)( ?(no\\.?|#))? ?:? ?[a-z0-9][a-z0-9-]{3,15}"),
+        EAN("ean", "\\d{13}|\\d{12}|\\d{8}"),
+        POSTCODE("postcode", "[a-z]{1,2}\\d[a-z\\d]? ?\\d[a-z]{2}"),
+        ZIP("zip", "\\d{5}(-\\d{4})?");
+
+        private final String name;
+        private final String regex;
+
+        BuiltIn(String name, String regex) {
+            this.name = name;
+            this.regex = regex;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getRegex() {
+            return regex;
+        }
+    }
+
+    /** Marks a query pattern as the name of a {@link BuiltIn} pattern. */
+    public static final char BUILT_IN_MARK = '@';
+    /** Most states either automaton may have; more complex patterns are rejected. */
+    public static final int MAX_STATES = 10_000;
+    /** Largest count a quantifier may have. */
+    public static final int MAX_REPEAT = 64;
+
+    private static final int DEAD = 0;
+    private static final int START = 1;
+    private static final int NO_PATTERN = -1;
+
+    private final String[] patterns;
+    // Chars are read as classes of chars that no pattern tells apart. Class of each ASCII char, and
+    // the first char of every class after the first, sorted.
+    private final int[] asciiClasses = new int[128];
+    private final int[] boundaries;
+    private final int classCount;
+
+    // Transitions of the automata, indexed by state * classCount + class.
+    private final int[] forward;
+    // Pattern matched on reaching each forward state, or NO_PATTERN.
+    private final int[] forwardAccept;
+    private final int[] reverse;
+    // Whether a match starts where the reverse automaton reaches each state.
+    private final boolean[] reverseAccept;
+
+    private PatternMatcher(List<String> patternList) {
+        patterns = patternList.toArray(new String[0]);
+        List<BitSet> sets = new ArrayList<>();
+        Node[] trees = new Node[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            trees[i] = new Parser(regexOf(patterns[i]), sets).parse();
+            if (trees[i].isNullable()) {
+                throw new IllegalArgumentException("Pattern matches empty text: " + patterns[i]);
+            }
+        }
+
+        // Splits chars into classes at every edge of every set.
+        BitSet edges = new BitSet(Character.MAX_VALUE + 2);
+        for (BitSet set : sets) {
+            for (int lo = set.nextSetBit(0); lo >= 0; lo = set.nextSetBit(lo)) {
+                int hi = set.nextClearBit(lo);
+                edges.set(lo);
+                edges.set(hi);
+                lo = hi;
+            }
+        }
+        edges.clear(0);
+        edges.clear(Character.MAX_VALUE + 1);
+        boundaries = edges.stream().toArray();
+        classCount = boundaries.length + 1;
+        for (char c = 0; c < asciiClasses.length; c++) {
+            asciiClasses[c] = classOf(c);
+        }
+        // The classes in each set, as sets are mostly small.
+        int[][] setClasses = new int[sets.size()][];
+        for (int s = 0; s < sets.size(); s++) {
+            int[] inSet = new int[classCount];
+            int count = 0;
+            for (int k = 0; k < classCount; k++) {
+                if (sets.get(s).get(k == 0 ? 0 : boundaries[k - 1])) {
+                    inSet[count++] = k;
+                }
+            }
+            setClasses[s] = Arrays.copyOf(inSet, count);
+        }
+
+        Nfa forwardNfa = new Nfa(setClasses);
+        Nfa reverseNfa = new Nfa(setClasses);
+        for (int i = 0; i < trees.length; i++) {
+            forwardNfa.addPattern(trees[i], i, false);
+            reverseNfa.addPattern(trees[i], i, true);
+        }
+        Dfa forwardDfa = new Dfa(forwardNfa, classCount, false);
+        Dfa reverseDfa = new Dfa(reverseNfa, classCount, true);
+        forward = forwardDfa.transitions;
+        forwardAccept = forwardDfa.accept;
+        reverse = reverseDfa.transitions;
+        reverseAccept = new boolean[reverseDfa.accept.length];
+        for (int state = 0; state < reverseAccept.length; state++) {
+            reverseAccept[state] = reverseDfa.accept[state] != NO_PATTERN;
+        }
+    }
+
+    /**
+     * Compiles a matcher for the given patterns. Pattern ids reported by the matcher are indices
+     * into this list.
+     *
+     * @throws IllegalArgumentException if a pattern is malformed, unsupported, matches empty text,
+     *     or the patterns together need more than {@link #MAX_STATES} states
+     */
+    public static PatternMatcher compile(List<String> patterns) {
+        return new PatternMatcher(patterns);
+    }
+
+    /**
+     * Splits a query into patterns. Patterns are separated by commas or line breaks like terms, but
+     * commas inside brackets and braces belong to the pattern, as in {@code \d{1,2}}.
+     */
+    public static List<String> splitPatterns(String query) {
+        List<String> patterns = new ArrayList<>();
+        if (query == null) {
+            return patterns;
+        }
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : '\n';
+            if (c == '\\' && i + 1 < query.length()) {
+                i++;
+            } else if (c == '[' || c == '{') {
+                depth++;
+            } else if ((c == ']' || c == '}') && depth > 0) {
+                depth--;
+            } else if (c == '\n' || c == '\r' || (c == ',' && depth == 0)) {
+                String pattern = query.substring(start, i).trim();
+                if (!pattern.isEmpty()) {
+                    patterns.add(pattern);
+                }
+                start = i + 1;
+                depth = 0;
+            }
+        }
+        return patterns;
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    public String getPattern(int patternId) {
+        return patterns[patternId];
+    }
+
+    /** Number of states of the forward and reverse automata together. */
+    public int getStateCount() {
+        return forwardAccept.length + reverseAccept.length;
+    }
+
+    /** Returns a new scanner, with its own buffers, for use by a single thread. */
+    public Scanner newScanner() {
+        return new Scanner();
+    }
+
+    private int classOf(char folded) {
+        if (folded < asciiClasses.length && asciiClasses[folded] != 0) {
+            return asciiClasses[folded];
+        }
+        int index = Arrays.binarySearch(boundaries, folded);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /** Returns the regular expression of a query pattern, resolving built-in names. */
+    private static String regexOf(String pattern) {
+        if (pattern.isEmpty() || pattern.charAt(0) != BUILT_IN_MARK) {
+            return pattern;
+        }
+        String name = pattern.substring(1).trim().toLowerCase(Locale.ROOT);
+        for (BuiltIn builtIn : BuiltIn.values()) {
+            if (builtIn.getName().equals(name)) {
+                return builtIn.getRegex();
+            }
+        }
+        throw new IllegalArgumentException("Unknown built-in pattern " + pattern);
+    }
+
+    /**
+     * Scans text for the matcher's patterns. Once its buffers have grown to the size of the largest
+     * text scanned, scanning does not allocate.
+     */
+    public final class Scanner {
+        private int[] classes = new int[256];
+        private boolean[] starts = new boolean[256];
+        // Per start of a run: end and pattern of its longest match, and for a run that joined an
+        // earlier one, that run's start and where it joined.
+        private int[] runEnds = new int[256];
+        private int[] runPatterns = new int[256];
+        private int[] runLeaders = new int[256];
+        private int[] runJoins = new int[256];
+        // Starts of runs in the order they stopped.
+        private int[] stopped = new int[256];
+        // Runs still going, in order of their starts, at most one per state.
+        private final int[] liveStarts = new int[forwardAccept.length + 1];
+        private final int[] liveStates = new int[forwardAccept.length + 1];
+        // Last position at which a run reached each state, and which live run it is.
+        private final int[] stateSeen = new int[forwardAccept.length];
+        private final int[] stateRun = new int[forwardAccept.length];
+
+        private Scanner() {
+        }
+
+        /** Scans the whole text and reports every match. Returns the number of matches. */
+        public int match(CharSequence text, TermMatcher.OnMatchListener listener) {
+            return match(text, 0, text.length(), listener);
+        }
+
+        /**
+         * Scans {@code text} from {@code start} (inclusive) to {@code end} (exclusive) and reports
+         * every match, with the id of its pattern as the term id. Offsets passed to the listener
+         * are relative to the start of {@code text}. Returns the number of matches.
+         */
+        public int match(CharSequence text, int start, int end,
+                         TermMatcher.OnMatchListener listener) {
+            if (classes.length < end) {
+                int capacity = Math.max(end, classes.length * 2);
+                classes = new int[capacity];
+                starts = new boolean[capacity];
+                runEnds = new int[capacity];
+                runPatterns = new int[capacity];
+                runLeaders = new int[capacity];
+                runJoins = new int[capacity];
+                stopped = new int[capacity];
+            }
+            // Locals let the compiler keep the hot loops' arrays in registers.
+            final int k = classCount;
+            final int[] forwardTable = forward;
+            final int[] reverseTable = reverse;
+            final int[] textClasses = classes;
+            final boolean[] matchStarts = starts;
+            final int[] ends = runEnds;
+            final int[] ids = runPatterns;
+            int state = START;
+            for (int i = end - 1; i >= start; i--) {
+                int c = classOf(TextNormalizer.fold(text.charAt(i)));
+                textClasses[i] = c;
+                state = reverseTable[state * k + c];
+                matchStarts[i] = reverseAccept[state];
+            }
+
+            // Runs the forward automaton from every start at once. Runs that reach the same state
+            // read the same text from then on, so the later one stops and takes the earlier one's
+            // matches past that point. Each char is read by at most one run per state.
+            Arrays.fill(stateSeen, -1);
+            int live = 0;
+            int stops = 0;
+            for (int i = start; i < end; i++) {
+                if (matchStarts[i]) {
+                    liveStarts[live] = i;
+                    liveStates[live++] = START;
+                    ends[i] = -1;
+                    runLeaders[i] = -1;
+                }
+                int c = textClasses[i];
+                int kept = 0;
+                for (int r = 0; r < live; r++) {
+                    int runStart = liveStarts[r];
+                    int next = forwardTable[liveStates[r] * k + c];
+                    if (next == DEAD) {
+                        stopped[stops++] = runStart;
+                        continue;
+                    }
+                    if (forwardAccept[next] != NO_PATTERN) {
+                        ends[runStart] = i + 1;
+                        ids[runStart] = forwardAccept[next];
+                    }
+                    if (stateSeen[next] == i) {
+                        runLeaders[runStart] = liveStarts[stateRun[next]];
+                        runJoins[runStart] = i + 1;
+                        stopped[stops++] = runStart;
+                        continue;
+                    }
+                    stateSeen[next] = i;
+                    stateRun[next] = kept;
+                    liveStarts[kept] = runStart;
+                    liveStates[kept++] = next;
+                }
+                live = kept;
+            }
+            for (int r = 0; r < live; r++) {
+                stopped[stops++] = liveStarts[r];
+            }
+            // A run stops before the run it joined, so in reverse order of stopping, the longest
+            // match of the joined run is known. If it ends past the join, it is this run's too.
+            for (int s = stops - 1; s >= 0; s--) {
+                int runStart = stopped[s];
+                int leader = runLeaders[runStart];
+                if (leader >= 0 && ends[leader] > runJoins[runStart]) {
+                    ends[runStart] = ends[leader];
+                    ids[runStart] = ids[leader];
+                }
+            }
+
+            int hits = 0;
+            int i = start;
+            while (i < end) {
+                if (!matchStarts[i] || ends[i] < 0) {
+                    i++;
+                    continue;
+                }
+                hits++;
+                if (listener != null) {
+                    listener.onMatch(ids[i], i, ends[i]);
+                }
+                i = ends[i];
+            }
+            return hits;
+        }
+    }
+
+    /** A node of a parsed pattern. */
+    private static final class Node {
+        static final int CHARS = 0;
+        static final int CONCAT = 1;
+        static final int ALTERNATE = 2;
+        static final int REPEAT = 3;
+        static final int EMPTY = 4;
+
+        final int kind;
+        // Index of the char set of a CHARS node.
+        final int set;
+        final List<Node> children;
+        final int min;
+        // Most repetitions, or -1 for any number.
+        final int max;
+
+        Node(int kind, int set, List<Node> children, int min, int max) {
+            this.kind = kind;
+            this.set = set;
+            this.children = children;
+            this.min = min;
+            this.max = max;
+        }
+
+        boolean isNullable() {
+            switch (kind) {
+                case CHARS:
+                    return false;
+                case CONCAT:
+                    for (Node child : children) {
+                        if (!child.isNullable()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                case ALTERNATE:
+                    for (Node child : children) {
+                        if (child.isNullable()) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case REPEAT:
+                    return min == 0 || children.get(0).isNullable();
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /** Recursive descent parser of one pattern, adding the folded char sets it uses to a list. */
+    private static final class Parser {
+        private static final int CHAR_COUNT = Character.MAX_VALUE + 1;
+
+        private final String pattern;
+        private final List<BitSet> sets;
+        private int position;
+
+        Parser(String pattern, List<BitSet> sets) {
+            this.pattern = pattern;
+            this.sets = sets;
+        }
+
+        Node parse() {
+            Node node = parseAlternation();
+            if (position < pattern.length()) {
+                throw error("Unmatched )");
+            }
+            return node;
+        }
+
+        private Node parseAlternation() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(parseConcatenation());
+            while (position < pattern.length() && pattern.charAt(position) == '|') {
+                position++;
+                alternatives.add(parseConcatenation());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0)
+                    : new Node(Node.ALTERNATE, -1, alternatives, 0, 0);
+        }
+
+        private Node parseConcatenation() {
+            List<Node> items = new ArrayList<>();
+            while (position < pattern.length() && pattern.charAt(position) != '|'
+                    && pattern.charAt(position) != ')') {
+                items.add(parseRepetition());
+            }
+            if (items.isEmpty()) {
+                return new Node(Node.EMPTY, -1, null, 0, 0);
+            }
+            return items.size() == 1 ? items.get(0) : new Node(Node.CONCAT, -1, items, 0, 0);
+        }
+
+        private Node parseRepetition() {
+            Node node = parseAtom();
+            while (position < pattern.length()) {
+                char c = pattern.charAt(position);
+                int min;
+                int max;
+                if (c == '*') {
+                    min = 0;
+                    max = -1;
+                } else if (c == '+') {
+                    min = 1;
+                    max = -1;
+                } else if (c == '?') {
+                    min = 0;
+                    max = 1;
+                } else if (c == '{') {
+                    int close = pattern.indexOf('}', position);
+                    if (close < 0) {
+                        throw error("Unclosed {");
+                    }
+                    String[] counts = pattern.substring(position + 1, close).split(",", -1);
+                    try {
+                        min = Integer.parseInt(counts[0].trim());
+                        max = counts.length == 1 ? min
+                                : counts[1].trim().isEmpty() ? -1
+                                : Integer.parseInt(counts[1].trim());
+                    } catch (NumberFormatException e) {
+                        throw error("Malformed count");
+                    }
+                    if (counts.length > 2 || min < 0 || (max >= 0 && max < min)
+                            || Math.max(min, max) > MAX_REPEAT) {
+                        throw error("Count must be from 0 to " + MAX_REPEAT);
+                    }
+                    position = close;
+                } else {
+                    break;
+                }
+                position++;
+                List<Node> child = new ArrayList<>(1);
+                child.add(node);
+                node = new Node(Node.REPEAT, -1, child, min, max);
+            }
+            return node;
+        }
+
+        private Node parseAtom() {
+            char c = pattern.charAt(position++);
+            switch (c) {
+                case '(':
+                    if (pattern.startsWith("?:", position)) {
+                        position += 2;
+                    }
+                    Node group = parseAlternation();
+                    if (position >= pattern.length() || pattern.charAt(position) != ')') {
+                        throw error("Unclosed (");
+                    }
+                    position++;
+                    return group;
+                case '[':
+                    return chars(parseClass());
+                case '.': {
+                    BitSet any = new BitSet(CHAR_COUNT);
+                    any.set(0, CHAR_COUNT);
+                    return chars(any);
+                }
+                case '\\':
+                    return chars(parseEscape());
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw error("Nothing to repeat");
+                default:
+                    return chars(literal(c));
+            }
+        }
+
+        /** Parses a class after its opening bracket. */
+        private BitSet parseClass() {
+            boolean negated = position < pattern.length() && pattern.charAt(position) == '^';
+            if (negated) {
+                position++;
+            }
+            BitSet set = new BitSet(CHAR_COUNT);
+            boolean first = true;
+            while (true) {
+                if (position >= pattern.length()) {
+                    throw error("Unclosed [");
+                }
+                char c = pattern.charAt(position++);
+                if (c == ']' && !first) {
+                    break;
+                }
+                first = false;
+                if (c == '\\') {
+                    set.or(parseEscape());
+                    continue;
+                }
+                char last = c;
+                if (position + 1 < pattern.length() && pattern.charAt(position) == '-'
+                        && pattern.charAt(position + 1) != ']') {
+                    last = pattern.charAt(position + 1);
+                    position += 2;
+                    if (last < c) {
+                        throw error("Reversed range");
+                    }
+                }
+                for (int x = c; x <= last; x++) {
+                    set.set(TextNormalizer.fold((char) x));
+                }
+            }
+            if (negated) {
+                set.flip(0, CHAR_COUNT);
+            }
+            return set;
+        }
+
+        /** Parses an escape after its backslash. */
+        private BitSet parseEscape() {
+            if (position >= pattern.length()) {
+                throw error("Trailing \\");
+            }
+            char c = pattern.charAt(position++);
+            BitSet set = new BitSet(CHAR_COUNT);
+            switch (Character.toLowerCase(c)) {
+                case 'd':
+                    set.set('0', '9' + 1);
+                    break;
+                case 'w':
+                    set.set('0', '9' + 1);
+                    set.set('a', 'z' + 1);
+                    set.set('_');
+                    break;
+                case 's':
+                case 't':
+                case 'n':
+                case 'r':
+                    // Whitespace folds to a space.
+                    set.set(' ');
+                    break;
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw error("Unsupported escape \\" + c);
+                    }
+                    return literal(c);
+            }
+            if (Character.isUpperCase(c)) {
+                set.flip(0, CHAR_COUNT);
+            }
+            return set;
+        }
+
+        private static BitSet literal(char c) {
+            BitSet set = new BitSet(CHAR_COUNT);
+            set.set(TextNormalizer.fold(c));
+            return set;
+        }
+
+        private Node chars(BitSet set) {
+            sets.add(set);
+            return new Node(Node.CHARS, sets.size() - 1, null, 0, 0);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(
+                    message + " at " + position + " in pattern " + pattern);
+        }
+    }
+
+    /** Thompson automaton of all patterns, with an edge on a char set or on nothing per state. */
+    private static final class Nfa {
+        final int[][] setClasses;
+        final List<int[]> epsilons = new ArrayList<>();
+        final List<Integer> edgeSets = new ArrayList<>();
+        final List<Integer> edgeTargets = new ArrayList<>();
+        final List<Integer> accept = new ArrayList<>();
+        final int start;
+
+        Nfa(int[][] setClasses) {
+            this.setClasses = setClasses;
+            start = newState();
+        }
+
+        int newState() {
+            epsilons.add(new int[0]);
+            edgeSets.add(-1);
+            edgeTargets.add(-1);
+            accept.add(NO_PATTERN);
+            return epsilons.size() - 1;
+        }
+
+        void epsilon(int from, int to) {
+            int[] targets = epsilons.get(from);
+            int[] grown = Arrays.copyOf(targets, targets.length + 1);
+            grown[targets.length] = to;
+            epsilons.set(from, grown);
+        }
+
+        void addPattern(Node tree, int patternId, boolean reversed) {
+            int[] fragment = build(tree, reversed);
+            epsilon(start, fragment[0]);
+            accept.set(fragment[1], patternId);
+            if (epsilons.size() > 20 * MAX_STATES) {
+                throw new IllegalArgumentException("Patterns are too complex");
+            }
+        }
+
+        /** Builds the states of a node, returning its entry and exit states. */
+        private int[] build(Node node, boolean reversed) {
+            int in = newState();
+            int out;
+            switch (node.kind) {
+                case Node.CHARS:
+                    out = newState();
+                    edgeSets.set(in, node.set);
+                    edgeTargets.set(in, out);
+                    break;
+                case Node.CONCAT: {
+                    out = in;
+                    int count = node.children.size();
+                    for (int i = 0; i < count; i++) {
+                        int[] child = build(node.children.get(reversed ? count - 1 - i : i),
+                                reversed);
+                        epsilon(out, child[0]);
+                        out = child[1];
+                    }
+                    break;
+                }
+                case Node.ALTERNATE:
+                    out = newState();
+                    for (Node child : node.children) {
+                        int[] fragment = build(child, reversed);
+                        epsilon(in, fragment[0]);
+                        epsilon(fragment[1], out);
+                    }
+                    break;
+                case Node.REPEAT: {
+                    Node child = node.children.get(0);
+                    out = in;
+                    for (int i = 0; i < node.min; i++) {
+                        int[] fragment = build(child, reversed);
+                        epsilon(out, fragment[0]);
+                        out = fragment[1];
+                    }
+                    if (node.max < 0) {
+                        int[] fragment = build(child, reversed);
+                        int loopOut = newState();
+                        epsilon(out, fragment[0]);
+                        epsilon(out, loopOut);
+                        epsilon(fragment[1], fragment[0]);
+                        epsilon(fragment[1], loopOut);
+                        out = loopOut;
+                    } else if (node.max > node.min) {
+                        int optionalOut = newState();
+                        for (int i = node.min; i < node.max; i++) {
+                            int[] fragment = build(child, reversed);
+                            epsilon(out, fragment[0]);
+                            epsilon(out, optionalOut);
+                            out = fragment[1];
+                        }
+                        epsilon(out, optionalOut);
+                        out = optionalOut;
+                    }
+                    break;
+                }
+                default:
+                    out = in;
+                    break;
+            }
+            return new int[] {in, out};
+        }
+    }
+
+    /** Deterministic automaton built from an {@link Nfa} by subset construction. */
+    private static final class Dfa {
+        int[] transitions;
+        int[] accept;
+
+        private final int[][] epsilons;
+        private final int[] edgeSets;
+        private final int[] edgeTargets;
+        private final int[] nfaAccept;
+        // Closure buffers: the stamp of the closure that last reached each NFA state, states to
+        // expand, and states found.
+        private final int[] reached;
+        private final int[] stack;
+        private final int[] found;
+        private int stamp;
+
+        /**
+         * @param unanchored whether matches may start anywhere, by staying in the start state of
+         *     the {@link Nfa} throughout
+         */
+        Dfa(Nfa nfa, int classCount, boolean unanchored) {
+            int size = nfa.epsilons.size();
+            epsilons = nfa.epsilons.toArray(new int[0][]);
+            edgeSets = new int[size];
+            edgeTargets = new int[size];
+            nfaAccept = new int[size];
+            for (int s = 0; s < size; s++) {
+                edgeSets[s] = nfa.edgeSets.get(s);
+                edgeTargets[s] = nfa.edgeTargets.get(s);
+                nfaAccept[s] = nfa.accept.get(s);
+            }
+            reached = new int[size];
+            stack = new int[size];
+            found = new int[size];
+            // NFA states moved to on each class from the current state.
+            int[][] targets = new int[classCount][8];
+            int[] targetCounts = new int[classCount];
+            int[] startSet = closure(new int[] {nfa.start}, 1, null);
+
+            Map<StateSet, Integer> ids = new HashMap<>();
+            List<int[]> sets = new ArrayList<>();
+            sets.add(new int[0]);
+            ids.put(new StateSet(sets.get(DEAD)), DEAD);
+            sets.add(startSet);
+            ids.put(new StateSet(startSet), START);
+            // The state reached by each set of NFA states moved to, so that sets reached on many
+            // classes and from many states are closed once.
+            Map<StateSet, Integer> moves = new HashMap<>();
+            transitions = new int[64 * classCount];
+            accept = new int[64];
+            for (int state = START; state < sets.size(); state++) {
+                int[] set = sets.get(state);
+                accept[state] = NO_PATTERN;
+                for (int s : set) {
+                    int pattern = nfaAccept[s];
+                    if (pattern != NO_PATTERN
+                            && (accept[state] == NO_PATTERN || pattern < accept[state])) {
+                        accept[state] = pattern;
+                    }
+                }
+                Arrays.fill(targetCounts, 0);
+                for (int s : set) {
+                    if (edgeSets[s] < 0) {
+                        continue;
+                    }
+                    for (int k : nfa.setClasses[edgeSets[s]]) {
+                        if (targetCounts[k] == targets[k].length) {
+                            targets[k] = Arrays.copyOf(targets[k], 2 * targets[k].length);
+                        }
+                        targets[k][targetCounts[k]++] = edgeTargets[s];
+                    }
+                }
+                for (int k = 0; k < classCount; k++) {
+                    int count = targetCounts[k];
+                    int next = DEAD;
+                    if (count > 0 || unanchored) {
+                        StateSet move = new StateSet(Arrays.copyOf(targets[k], count));
+                        Integer id = moves.get(move);
+                        if (id == null) {
+                            int[] nextSet = closure(targets[k], count,
+                                    unanchored ? startSet : null);
+                            StateSet key = new StateSet(nextSet);
+                            id = ids.get(key);
+                            if (id == null) {
+                                id = sets.size();
+                                if (id >= MAX_STATES) {
+                                    throw new IllegalArgumentException("Patterns are too complex");
+                                }
+                                sets.add(nextSet);
+                                ids.put(key, id);
+                                if (accept.length <= id) {
+                                    accept = Arrays.copyOf(accept, accept.length * 2);
+                                    transitions = Arrays.copyOf(transitions,
+                                            accept.length * classCount);
+                                }
+                            }
+                            moves.put(move, id);
+                        }
+                        next = id;
+                    }
+                    transitions[state * classCount + k] = next;
+                }
+            }
+            accept = Arrays.copyOf(accept, sets.size());
+            accept[DEAD] = NO_PATTERN;
+            transitions = Arrays.copyOf(transitions, sets.size() * classCount);
+        }
+
+        /**
+         * Returns the sorted states reachable from the given ones without reading a char, together
+         * with the states of {@code closed}, which must already be closed, if not null. Only states
+         * with a char edge or a pattern to accept are kept, since others make no difference to
+         * where the automaton can go, so that sets differing in them give one state.
+         */
+        private int[] closure(int[] states, int count, int[] closed) {
+            stamp++;
+            int length = 0;
+            if (closed != null) {
+                for (int s : closed) {
+                    reached[s] = stamp;
+                    found[length++] = s;
+                }
+            }
+            int top = 0;
+            for (int i = 0; i < count; i++) {
+                if (reached[states[i]] != stamp) {
+                    reached[states[i]] = stamp;
+                    stack[top++] = states[i];
+                }
+            }
+            while (top > 0) {
+                int s = stack[--top];
+                if (edgeSets[s] >= 0 || nfaAccept[s] != NO_PATTERN) {
+                    found[length++] = s;
+                }
+                for (int next : epsilons[s]) {
+                    if (reached[next] != stamp) {
+                        reached[next] = stamp;
+                        stack[top++] = next;
+                    }
+                }
+            }
+            int[] result = Arrays.copyOf(found, length);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    /** A set of automaton states, as a key. */
+    private static final class StateSet {
+        final int[] states;
+        final int hash;
+
+        StateSet(int[] states) {
+            this.states = states;
+            hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateSet && Arrays.equals(states, ((StateSet) o).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.finder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Difference hash of a luma image, which stays nearly the same when the camera sees the same scene
+ * again with slightly different exposure, noise or position.
+ *
+ * <p>The cropped image is divided into {@value #GRID} rows of {@code GRID + 1} cells, and each bit
+ * of the hash tells whether a cell is clearly brighter than its right neighbour. Cells that differ
+ * by less than {@value #MIN_STEP} luma levels count as equal, so that sensor noise on flat paper
+ * does not flip bits. Similar scenes therefore have hashes that differ in few bits, measured by
+ * {@link #distance}. Cell brightness is estimated
+ * from a sparse sample of pixels, so hashing reads a few thousand pixels and allocates nothing.
+ */
+public final class PerceptualHash {
+
+    static final int GRID = 16;
+    /** Number of longs a hash takes. */
+    public static final int WORDS = GRID * GRID / Long.SIZE;
+    /** Number of bits in a hash, and the largest possible distance. */
+    public static final int BITS = GRID * GRID;
+    // Pixels sampled along each axis of a cell.
+    private static final int SAMPLES_PER_CELL = 3;
+    // Average luma difference below which neighbouring cells count as equal.
+    static final int MIN_STEP = 6;
+    private static final int MIN_SUM_STEP = MIN_STEP * SAMPLES_PER_CELL * SAMPLES_PER_CELL;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Hashes the cropped part of a luma plane into {@code out[0]} to {@code out[WORDS - 1]}.
+     *
+     * @param yPlane luma plane, with a pixel stride of one
+     * @param rowStride row stride of the luma plane
+     */
+    public static void compute(ByteBuffer yPlane, int rowStride, CropRegion crop, long[] out) {
+        float cellWidth = crop.getWidth() / (float) (GRID + 1);
+        float cellHeight = crop.getHeight() / (float) GRID;
+        float stepX = cellWidth / SAMPLES_PER_CELL;
+        float stepY = cellHeight / SAMPLES_PER_CELL;
+        for (int word = 0; word < WORDS; word++) {
+            out[word] = 0;
+        }
+        for (int gy = 0; gy < GRID; gy++) {
+            int previous = 0;
+            for (int gx = 0; gx <= GRID; gx++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = crop.getTop() + (int) (gy * cellHeight + (sy + 0.5f) * stepY);
+                    int rowStart = y * rowStride;
+                    for (int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = crop.getLeft() + (int) (gx * cellWidth + (sx + 0.5f) * stepX);
+                        sum += yPlane.get(rowStart + x) & 0xFF;
+                    }
+                }
+                if (gx > 0 && previous - sum > MIN_SUM_STEP) {
+                    int bit = gy * GRID + gx - 1;
+                    out[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+                previous = sum;
+            }
+        }
+    }
+
+    /** Number of bits in which the hashes at the given offsets of two arrays differ. */
+    public static int distance(long[] a, int aOffset, long[] b, int bOffset) {
+        int distance = 0;
+        for (int word = 0; word < WORDS; word++) {
+            distance += Long.bitCount(a[aOffset + word] ^ b[bOffset + word]);
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.finder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Latency histograms for each stage a camera frame passes through, from capture to the overlay.
+ *
+ * <p>Each {@link Stage} has its own preallocated {@link LatencyHistogram}, so recording is
+ * lock-free and cheap enough to leave on in release builds.
+ */
+public final class PipelineMetrics {
+
+    /** A timed part of the pipeline. */
+    public enum Stage {
+        /** From capture to the frame reaching the analyzer. */
+        CAMERA_TO_ANALYZER("camera"),
+        /** Cropping or copying the frame into the recognizer's input. */
+        INPUT_IMAGE("input"),
+        /** From handing the frame to the recognizer to receiving its result. */
+        RECOGNITION("recognize"),
+        /** Matching the result and reducing it to geometry and tracks. */
+        MATCH("match"),
+        /** From a processed result to the overlay starting to draw it. */
+        OVERLAY_COMMIT("commit"),
+        /** Drawing the overlay. */
+        DRAW("draw");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        /** Short name used in reports. */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+    public PipelineMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /** Records one duration of a stage. Safe to call from any thread. */
+    public void record(Stage stage, long durationNanos) {
+        histograms[stage.ordinal()].record(durationNanos);
+    }
+
+    /** Records the time from {@code startNanos}, a {@link System#nanoTime()} reading, until now. */
+    public void recordSince(Stage stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /** Forgets everything recorded so far. */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Writes one CSV row per stage with its count and its p50, p95, p99, max and mean in
+     * milliseconds.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("stage,count,p50_ms,p95_ms,p99_ms,max_ms,mean_ms\n");
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = getHistogram(stage);
+            out.write(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+                    stage.getLabel(), histogram.getCount(),
+                    millis(histogram.getPercentileNanos(50)),
+                    millis(histogram.getPercentileNanos(95)),
+                    millis(histogram.getPercentileNanos(99)),
+                    millis(histogram.getMaxNanos()),
+                    millis(histogram.getMeanNanos())));
+        }
+    }
+
+    /** Returns a one-line summary of a stage, e.g. for a debug overlay. */
+    public String summarize(Stage stage) {
+        LatencyHistogram histogram = getHistogram(stage);
+        return String.format(Locale.ROOT, "%-9s p50 %6.1f  p95 %6.1f  p99 %6.1f ms  n=%d",
+                stage.getLabel(),
+                millis(histogram.getPercentileNanos(50)),
+                millis(histogram.getPercentileNanos(95)),
+                millis(histogram.getPercentileNanos(99)),
+                histogram.getCount());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
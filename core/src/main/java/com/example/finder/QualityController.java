@@ -0,0 +1,229 @@
+package com.example.finder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop controller that trades analysis quality for latency, so recognition keeps up on slow
+ * or hot devices and uses the headroom on fast ones.
+ *
+ * <p>The controller steps along a fixed ladder of {@link Level}s, from the full analysis
+ * resolution and region to a low resolution, a shorter region and recognizing only every third
+ * frame. It never goes above the level that fits the device's {@link AnalysisConfig}. Every
+ * {@link #WINDOW_NANOS} it looks at the recognition latencies and the share of admitted frames that
+ * were dropped during the window:
+ * <ul>
+ *     <li>a p95 latency above the target or too many drops steps down one level;</li>
+ *     <li>{@value #RAISE_AFTER_WINDOWS} windows in a row well under the target step up one level;</li>
+ *     <li>a thermal status of moderate or worse forces a level at least as cheap as its floor.</li>
+ * </ul>
+ * The window after a change is discarded, since it still holds frames from the previous level.
+ *
+ * <p>{@link #update} must be called from a single thread, and {@link #admitFrame} from a single
+ * thread, which may be another one. {@link #recordLatency} and {@link #getLevel} are safe from any
+ * thread.
+ */
+public final class QualityController {
+
+    /** One step of the ladder. */
+    public static final class Level {
+
+        private final int longEdge;
+        private final float regionScale;
+        private final int frameInterval;
+
+        Level(int longEdge, float regionScale, int frameInterval) {
+            this.longEdge = longEdge;
+            this.regionScale = regionScale;
+            this.frameInterval = frameInterval;
+        }
+
+        /** Upper bound for the long edge of the analysis resolution. */
+        public int getLongEdge() {
+            return longEdge;
+        }
+
+        /** Height of the analyzed region relative to the selected one, from 0 to 1. */
+        public float getRegionScale() {
+            return regionScale;
+        }
+
+        /** Only one in this many frames that would be recognized is recognized. */
+        public int getFrameInterval() {
+            return frameInterval;
+        }
+
+        @Override
+        public String toString() {
+            return "Level(" + longEdge + "p, region x" + regionScale + ", every "
+                    + frameInterval + ")";
+        }
+    }
+
+    /** Target p95 recognition latency that keeps highlights feeling attached to the text. */
+    public static final long DEFAULT_TARGET_NANOS = 150_000_000L;
+    /** Length of the window that decisions are based on. */
+    public static final long WINDOW_NANOS = 1_000_000_000L;
+
+    /** Values of Android's {@code PowerManager.THERMAL_STATUS_*} that the controller acts on. */
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+    public static final int THERMAL_CRITICAL = 4;
+
+    // From the best quality to the cheapest.
+    private static final Level[] LEVELS = {
+            new Level(1280, 1f, 1),
+            new Level(1280, 0.75f, 1),
+            new Level(960, 0.75f, 1),
+            new Level(960, 0.75f, 2),
+            new Level(720, 0.6f, 2),
+            new Level(640, 0.5f, 3),
+    };
+    private static final int MIN_SAMPLES = 5;
+    private static final float MAX_DROP_RATE = 0.5f;
+    private static final float RAISE_MAX_DROP_RATE = 0.2f;
+    // Latency must stay below this share of the target before quality is raised.
+    private static final float RAISE_HEADROOM = 0.6f;
+    private static final int RAISE_AFTER_WINDOWS = 3;
+
+    private final long targetNanos;
+    private final int bestLevel;
+    private final LatencyHistogram windowLatency = new LatencyHistogram();
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong changeCount = new AtomicLong();
+    private volatile int levelIndex;
+    // Only used on the analyzer thread.
+    private int framesSinceAdmitted;
+    // Only used on the thread that calls update().
+    private boolean windowStarted;
+    private long windowStartNanos;
+    private long windowStartAdmitted;
+    private long windowStartDropped;
+    private boolean discardWindow;
+    private int goodWindows;
+
+    /**
+     * @param config configuration the device starts with, which bounds the best level
+     * @param targetNanos p95 recognition latency to hold
+     */
+    public QualityController(AnalysisConfig config, long targetNanos) {
+        int best = LEVELS.length - 1;
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].longEdge <= config.getTargetLongEdge()) {
+                best = i;
+                break;
+            }
+        }
+        this.bestLevel = best;
+        this.levelIndex = best;
+        this.targetNanos = targetNanos;
+    }
+
+    public Level getLevel() {
+        return LEVELS[levelIndex];
+    }
+
+    /** Number of times the level changed. */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Returns whether a frame that would be recognized should be, according to the frame interval
+     * of the current level.
+     */
+    public boolean admitFrame() {
+        if (++framesSinceAdmitted < LEVELS[levelIndex].frameInterval) {
+            return false;
+        }
+        framesSinceAdmitted = 0;
+        admittedCount.incrementAndGet();
+        return true;
+    }
+
+    /** Records how long one recognition took. */
+    public void recordLatency(long durationNanos) {
+        windowLatency.record(durationNanos);
+    }
+
+    /**
+     * Ends the current window if it is over, and changes the level if the window calls for it.
+     *
+     * @param nowNanos current time
+     * @param droppedFrames admitted frames dropped so far, e.g. because too many were in flight
+     *                      or their results were stale
+     * @param thermalStatus current {@code PowerManager.THERMAL_STATUS_*}, or
+     *                      {@link #THERMAL_NONE} where it is not available
+     * @return whether the level changed
+     */
+    public boolean update(long nowNanos, long droppedFrames, int thermalStatus) {
+        int current = levelIndex;
+        int floor = Math.max(current, thermalFloor(thermalStatus));
+        if (!windowStarted) {
+            startWindow(nowNanos, droppedFrames);
+            return floor != current && changeTo(floor);
+        }
+        if (floor != current) {
+            // Heat does not wait for the window to end.
+            startWindow(nowNanos, droppedFrames);
+            return changeTo(floor);
+        }
+        if (nowNanos - windowStartNanos < WINDOW_NANOS) {
+            return false;
+        }
+        long samples = windowLatency.getCount();
+        long p95 = windowLatency.getPercentileNanos(95);
+        long admitted = admittedCount.get() - windowStartAdmitted;
+        long dropped = droppedFrames - windowStartDropped;
+        float dropRate = admitted > 0 ? Math.min(1f, (float) dropped / admitted) : 0f;
+        boolean discard = discardWindow;
+        startWindow(nowNanos, droppedFrames);
+        if (discard || samples < MIN_SAMPLES) {
+            return false;
+        }
+        if (p95 > targetNanos || dropRate > MAX_DROP_RATE) {
+            goodWindows = 0;
+            return current < LEVELS.length - 1 && changeTo(current + 1);
+        }
+        if (p95 < targetNanos * RAISE_HEADROOM && dropRate <= RAISE_MAX_DROP_RATE) {
+            goodWindows++;
+        } else {
+            goodWindows = 0;
+        }
+        int highest = Math.max(bestLevel, thermalFloor(thermalStatus));
+        if (goodWindows >= RAISE_AFTER_WINDOWS && current > highest) {
+            goodWindows = 0;
+            return changeTo(current - 1);
+        }
+        return false;
+    }
+
+    private boolean changeTo(int index) {
+        levelIndex = index;
+        changeCount.incrementAndGet();
+        discardWindow = true;
+        goodWindows = 0;
+        return true;
+    }
+
+    private void startWindow(long nowNanos, long droppedFrames) {
+        windowStarted = true;
+        windowStartNanos = nowNanos;
+        windowStartAdmitted = admittedCount.get();
+        windowStartDropped = droppedFrames;
+        discardWindow = false;
+        windowLatency.reset();
+    }
+
+    /** Returns the best level allowed at a thermal status. */
+    private int thermalFloor(int thermalStatus) {
+        if (thermalStatus >= THERMAL_CRITICAL) {
+            return LEVELS.length - 1;
+        } else if (thermalStatus >= THERMAL_SEVERE) {
+            return Math.max(bestLevel, 4);
+        } else if (thermalStatus >= THERMAL_MODERATE) {
+            return Math.max(bestLevel, 2);
+        }
+        return bestLevel;
+    }
+}
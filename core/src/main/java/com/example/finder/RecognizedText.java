@@ -0,0 +1,159 @@
+package com.example.finder;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of recognizing one frame: a tree of blocks, lines and elements, each with its text and
+ * bounding box, in the same shape as the recognizer's own result.
+ *
+ * <p>This is what the pipeline after recognition consumes, so it can run on the host JVM against
+ * results recorded on a device; see {@link TextCorpus}. Boxes are in the coordinates of the
+ * recognized image, which is {@link #getImageWidth()} by {@link #getImageHeight()} pixels upright.
+ * Instances are immutable.
+ */
+public final class RecognizedText {
+
+    /** Text and bounding box shared by blocks, lines and elements. */
+    public abstract static class Node {
+        private final String text;
+        private final boolean hasBoundingBox;
+        private final int left;
+        private final int top;
+        private final int right;
+        private final int bottom;
+
+        Node(String text, boolean hasBoundingBox, int left, int top, int right, int bottom) {
+            this.text = text;
+            this.hasBoundingBox = hasBoundingBox;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /** Returns false if the recognizer did not report a box; the coordinates are then zero. */
+        public boolean hasBoundingBox() {
+            return hasBoundingBox;
+        }
+
+        public int getLeft() {
+            return left;
+        }
+
+        public int getTop() {
+            return top;
+        }
+
+        public int getRight() {
+            return right;
+        }
+
+        public int getBottom() {
+            return bottom;
+        }
+    }
+
+    /** A single word or symbol. */
+    public static final class Element extends Node {
+        public Element(String text, int left, int top, int right, int bottom) {
+            super(text, true, left, top, right, bottom);
+        }
+
+        /** Creates an element without a bounding box. */
+        public Element(String text) {
+            super(text, false, 0, 0, 0, 0);
+        }
+    }
+
+    /** A line of elements. */
+    public static final class Line extends Node {
+        private final List<Element> elements;
+
+        public Line(String text, int left, int top, int right, int bottom, List<Element> elements) {
+            super(text, true, left, top, right, bottom);
+            this.elements = Collections.unmodifiableList(elements);
+        }
+
+        /** Creates a line without a bounding box. */
+        public Line(String text, List<Element> elements) {
+            super(text, false, 0, 0, 0, 0);
+            this.elements = Collections.unmodifiableList(elements);
+        }
+
+        public List<Element> getElements() {
+            return elements;
+        }
+    }
+
+    /** A paragraph-like group of lines. */
+    public static final class Block extends Node {
+        private final List<Line> lines;
+
+        public Block(String text, int left, int top, int right, int bottom, List<Line> lines) {
+            super(text, true, left, top, right, bottom);
+            this.lines = Collections.unmodifiableList(lines);
+        }
+
+        /** Creates a block without a bounding box. */
+        public Block(String text, List<Line> lines) {
+            super(text, false, 0, 0, 0, 0);
+            this.lines = Collections.unmodifiableList(lines);
+        }
+
+        public List<Line> getLines() {
+            return lines;
+        }
+    }
+
+    private final long timestampNanos;
+    private final int imageWidth;
+    private final int imageHeight;
+    private final String text;
+    private final List<Block> blocks;
+
+    /**
+     * @param timestampNanos capture time of the recognized frame
+     * @param imageWidth upright width of the recognized image
+     * @param imageHeight upright height of the recognized image
+     * @param text full text of the result, blocks separated by newlines
+     * @param blocks recognized blocks, in reading order
+     */
+    public RecognizedText(long timestampNanos, int imageWidth, int imageHeight, String text,
+                          List<Block> blocks) {
+        this.timestampNanos = timestampNanos;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.text = text;
+        this.blocks = Collections.unmodifiableList(blocks);
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /** Returns the same result as if recognized from a frame captured at another time. */
+    public RecognizedText withTimestamp(long timestampNanos) {
+        return new RecognizedText(timestampNanos, imageWidth, imageHeight, text, blocks);
+    }
+}
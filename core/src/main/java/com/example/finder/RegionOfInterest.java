@@ -0,0 +1,169 @@
+package com.example.finder;
+
+/**
+ * Part of the camera image that is sent to the recognizer, as fractions of the upright image.
+ *
+ * <p>Fractions are relative to the image after it has been rotated for display, so a region keeps
+ * its meaning on screen whatever the sensor orientation is. {@link #toCropRegion} converts it to a
+ * crop rectangle in the unrotated camera buffer.
+ */
+public final class RegionOfInterest {
+
+    /** The whole image. */
+    public static final RegionOfInterest FULL = new RegionOfInterest(0f, 0f, 1f, 1f);
+
+    // Smallest width or height of a region, as a fraction of the image.
+    private static final float MIN_SIZE = 0.05f;
+
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+
+    private RegionOfInterest(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /**
+     * Creates a region from fractions of the upright image. The corners may be given in any order;
+     * the region is clamped to the image and grown to a minimum size if needed.
+     */
+    public static RegionOfInterest of(float x0, float y0, float x1, float y1) {
+        float left = clamp(Math.min(x0, x1));
+        float right = clamp(Math.max(x0, x1));
+        float top = clamp(Math.min(y0, y1));
+        float bottom = clamp(Math.max(y0, y1));
+        if (right - left < MIN_SIZE) {
+            left = Math.min(left, 1f - MIN_SIZE);
+            right = left + MIN_SIZE;
+        }
+        if (bottom - top < MIN_SIZE) {
+            top = Math.min(top, 1f - MIN_SIZE);
+            bottom = top + MIN_SIZE;
+        }
+        return new RegionOfInterest(left, top, right, bottom);
+    }
+
+    /** Returns a full-width band of the given height fraction, centred vertically. */
+    public static RegionOfInterest centreBand(float heightFraction) {
+        float margin = (1f - heightFraction) / 2;
+        return of(0f, margin, 1f, 1f - margin);
+    }
+
+    public float getLeft() {
+        return left;
+    }
+
+    public float getTop() {
+        return top;
+    }
+
+    public float getRight() {
+        return right;
+    }
+
+    public float getBottom() {
+        return bottom;
+    }
+
+    /**
+     * Returns this region with its height scaled around its vertical centre, keeping its width,
+     * since lines of text are wider than they are tall.
+     */
+    public RegionOfInterest withHeightScaled(float scale) {
+        if (scale == 1f) {
+            return this;
+        }
+        float centre = (top + bottom) / 2;
+        float halfHeight = (bottom - top) * scale / 2;
+        return of(left, centre - halfHeight, right, centre + halfHeight);
+    }
+
+    /**
+     * Maps this region to a crop of a camera buffer.
+     *
+     * @param bufferWidth width of the unrotated camera buffer
+     * @param bufferHeight height of the unrotated camera buffer
+     * @param rotationDegrees clockwise rotation that makes the buffer upright: 0, 90, 180 or 270
+     */
+    public CropRegion toCropRegion(int bufferWidth, int bufferHeight, int rotationDegrees) {
+        // Fractions of the buffer along its own x and y axes.
+        float x0;
+        float y0;
+        float x1;
+        float y1;
+        switch (rotationDegrees) {
+            case 90:
+                x0 = top;
+                x1 = bottom;
+                y0 = 1f - right;
+                y1 = 1f - left;
+                break;
+            case 180:
+                x0 = 1f - right;
+                x1 = 1f - left;
+                y0 = 1f - bottom;
+                y1 = 1f - top;
+                break;
+            case 270:
+                x0 = 1f - bottom;
+                x1 = 1f - top;
+                y0 = left;
+                y1 = right;
+                break;
+            case 0:
+                x0 = left;
+                x1 = right;
+                y0 = top;
+                y1 = bottom;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported rotation: " + rotationDegrees);
+        }
+        // Chroma is subsampled by two in both directions, so keep the crop on even coordinates.
+        int cropLeft = even(x0 * bufferWidth);
+        int cropTop = even(y0 * bufferHeight);
+        int cropRight = Math.max(cropLeft + 2, even(x1 * bufferWidth));
+        int cropBottom = Math.max(cropTop + 2, even(y1 * bufferHeight));
+        return new CropRegion(bufferWidth, bufferHeight, rotationDegrees,
+                cropLeft, cropTop, cropRight - cropLeft, cropBottom - cropTop);
+    }
+
+    private static int even(float value) {
+        return Math.round(value / 2) * 2;
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0f, Math.min(1f, value));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RegionOfInterest)) {
+            return false;
+        }
+        RegionOfInterest other = (RegionOfInterest) o;
+        return left == other.left && top == other.top && right == other.right
+                && bottom == other.bottom;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(left);
+        result = 31 * result + Float.floatToIntBits(top);
+        result = 31 * result + Float.floatToIntBits(right);
+        result = 31 * result + Float.floatToIntBits(bottom);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RegionOfInterest(" + left + ", " + top + ", " + right + ", " + bottom + ")";
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.finder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ScanEngine.Recognizer} that replays recorded results instead of recognizing frames, so
+ * that the engine's throughput, queueing and dropped frames can be load tested on the host JVM.
+ *
+ * <p>Each recognition completes with the next result of a recording, such as a
+ * {@link TextCorpus}, stamped with the frame's timestamp, after a latency drawn from a
+ * {@link Latency} distribution. A share of recognitions fail instead, and a share hang until they
+ * are cancelled, as a stuck backend would. A recognizer can also be made to ignore cancels until
+ * its recognitions are done, as ML Kit does, so that a hanging one never calls back at all. All
+ * draws come from a seeded {@link Random}, so a run makes the same draws in the same order each
+ * time. Callbacks are made on the recognizer's own timer thread, or on the cancelling thread.
+ */
+public final class ReplayRecognizer implements ScanEngine.Recognizer {
+
+    /** A distribution of recognition latencies. */
+    public interface Latency {
+        /** Draws a latency, in nanoseconds. */
+        long nextNanos(Random random);
+    }
+
+    /** Returns a latency that is always the same. */
+    public static Latency fixed(long millis) {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        return random -> nanos;
+    }
+
+    /** Returns latencies spread evenly between two bounds. */
+    public static Latency uniform(long minMillis, long maxMillis) {
+        if (maxMillis < minMillis) {
+            throw new IllegalArgumentException("maxMillis must not be less than minMillis");
+        }
+        long min = TimeUnit.MILLISECONDS.toNanos(minMillis);
+        long range = TimeUnit.MILLISECONDS.toNanos(maxMillis) - min;
+        return random -> min + (long) (random.nextDouble() * range);
+    }
+
+    /**
+     * Returns log-normal latencies, whose long tail is typical of on-device recognition. With a
+     * {@code sigma} of 0.5, one recognition in a hundred takes more than three times the median.
+     */
+    public static Latency logNormal(long medianMillis, double sigma) {
+        if (sigma < 0) {
+            throw new IllegalArgumentException("sigma must not be negative");
+        }
+        double median = TimeUnit.MILLISECONDS.toNanos(medianMillis);
+        return random -> (long) (median * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    /** Builds a {@link ReplayRecognizer}. */
+    public static final class Builder {
+        private final List<RecognizedText> results;
+        private Latency latency = fixed(0);
+        private float failureRate;
+        private float hangRate;
+        private boolean stoppable = true;
+        private long seed;
+
+        /** @param results the results to replay, in order and then again from the start */
+        public Builder(List<RecognizedText> results) {
+            if (results.isEmpty()) {
+                throw new IllegalArgumentException("results must not be empty");
+            }
+            this.results = new ArrayList<>(results);
+        }
+
+        /** Sets the latency distribution, by default none. */
+        public Builder setLatency(Latency latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /** Sets the share of recognitions that fail after their latency, by default none. */
+        public Builder setFailureRate(float failureRate) {
+            this.failureRate = checkRate(failureRate, "failureRate");
+            return this;
+        }
+
+        /** Sets the share of recognitions that never complete unless cancelled, by default none. */
+        public Builder setHangRate(float hangRate) {
+            this.hangRate = checkRate(hangRate, "hangRate");
+            return this;
+        }
+
+        /**
+         * Sets whether a cancel stops a recognition at once, by default true. If not, a cancelled
+         * recognition still runs its course and then fails with a {@link CancellationException},
+         * and a hanging one never calls back.
+         */
+        public Builder setStoppable(boolean stoppable) {
+            this.stoppable = stoppable;
+            return this;
+        }
+
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public ReplayRecognizer build() {
+            if (failureRate + hangRate > 1) {
+                throw new IllegalArgumentException("failureRate and hangRate exceed 1 together");
+            }
+            return new ReplayRecognizer(this);
+        }
+
+        private static float checkRate(float rate, String name) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException(name + " must be in [0, 1]");
+            }
+            return rate;
+        }
+    }
+
+    private final List<RecognizedText> results;
+    private final Latency latency;
+    private final float failureRate;
+    private final float hangRate;
+    private final boolean stoppable;
+    // Guarded by itself, since recognitions may be started on more than one thread.
+    private final Random random;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicInteger nextResult = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong startedCount = new AtomicLong();
+    private final AtomicLong recognizedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+
+    private ReplayRecognizer(Builder builder) {
+        results = builder.results;
+        latency = builder.latency;
+        failureRate = builder.failureRate;
+        hangRate = builder.hangRate;
+        stoppable = builder.stoppable;
+        random = new Random(builder.seed);
+        timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ReplayRecognizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public ScanEngine.Cancellable recognize(ScanEngine.Frame frame, YuvFramePool.Lease copy,
+                                            CropRegion crop, ScanEngine.Callback callback) {
+        startedCount.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        RecognizedText result = results.get(Math.floorMod(nextResult.getAndIncrement(),
+                results.size()));
+        long latencyNanos;
+        float outcome;
+        synchronized (random) {
+            latencyNanos = Math.max(0, latency.nextNanos(random));
+            outcome = random.nextFloat();
+        }
+        boolean fails = outcome < failureRate;
+        Call call = new Call(callback, fails ? null
+                : result.withTimestamp(frame.getTimestampNanos()));
+        boolean hangs = !fails && outcome < failureRate + hangRate;
+        if (!hangs) {
+            call.future = timer.schedule(call, latencyNanos, TimeUnit.NANOSECONDS);
+        }
+        return call;
+    }
+
+    /** Number of recognitions started. */
+    public long getStartedCount() {
+        return startedCount.get();
+    }
+
+    /** Number of recognitions that completed with a result. */
+    public long getRecognizedCount() {
+        return recognizedCount.get();
+    }
+
+    /** Number of recognitions that failed, not counting cancelled ones. */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /** Number of recognitions that failed because they were cancelled. */
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    /** Number of recognitions whose callback has not returned yet, including hanging ones. */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /** Largest number of recognitions that were in flight at once. */
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    /** Stops the timer. Recognitions still in flight never call back. */
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /** One recognition, completed by the timer or by a cancel, whichever is first. */
+    private final class Call implements Runnable, ScanEngine.Cancellable {
+        private final ScanEngine.Callback callback;
+        // Null if the recognition fails.
+        private final RecognizedText result;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile boolean cancelled;
+        volatile ScheduledFuture<?> future;
+
+        Call(ScanEngine.Callback callback, RecognizedText result) {
+            this.callback = callback;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (cancelled) {
+                    cancelledCount.incrementAndGet();
+                    callback.onFailed(new CancellationException("Recognition was cancelled"));
+                } else if (result != null) {
+                    recognizedCount.incrementAndGet();
+                    callback.onRecognized(result);
+                } else {
+                    failedCount.incrementAndGet();
+                    callback.onFailed(new IOException("Injected recognition failure"));
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!stoppable) {
+                // The result is discarded once the recognition is done.
+                cancelled = true;
+                return;
+            }
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            ScheduledFuture<?> current = future;
+            if (current != null) {
+                current.cancel(false);
+            }
+            cancelledCount.incrementAndGet();
+            try {
+                callback.onFailed(new CancellationException("Recognition was cancelled"));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
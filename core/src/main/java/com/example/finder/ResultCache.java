@@ -0,0 +1,178 @@
+package com.example.finder;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of recognition results keyed by the {@link PerceptualHash} of the frame they were
+ * recognized from, so that a scene the camera returns to is not recognized again.
+ *
+ * <p>A lookup returns the result of the closest cached frame of the same size whose hash differs
+ * in at most {@code maxDistance} bits, unless that result is older than {@code maxAgeNanos}. A
+ * result is stored over the entry of a near-identical frame, otherwise in a free slot, otherwise
+ * over the oldest expired entry, and otherwise over the least recently used one. All state is
+ * kept in flat arrays sized at construction, so lookups scan at most {@code capacity} hashes and
+ * allocate nothing.
+ *
+ * <p>All methods are thread-safe.
+ *
+ * @param <V> the cached result
+ */
+public final class ResultCache<V> {
+
+    public static final int DEFAULT_CAPACITY = 32;
+    /** About 5% of the hash bits, which tolerates noise and small shifts but not a new label. */
+    public static final int DEFAULT_MAX_DISTANCE = 12;
+    public static final long DEFAULT_MAX_AGE_NANOS = 10_000_000_000L;
+
+    private final int capacity;
+    private final int maxDistance;
+    private final long maxAgeNanos;
+    private final long[] hashes;
+    private final int[] widths;
+    private final int[] heights;
+    private final long[] storedAt;
+    private final long[] lastUsed;
+    private final Object[] values;
+    private int size;
+    private long useClock;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /** Creates a cache with the default capacity, distance and age. */
+    public ResultCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_DISTANCE, DEFAULT_MAX_AGE_NANOS);
+    }
+
+    /**
+     * @param capacity most results kept
+     * @param maxDistance most hash bits in which a frame may differ from a cached one to reuse
+     *     its result
+     * @param maxAgeNanos longest time, in frame timestamps, a result is reused
+     */
+    public ResultCache(int capacity, int maxDistance, long maxAgeNanos) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        if (maxDistance < 0 || maxDistance >= PerceptualHash.BITS) {
+            throw new IllegalArgumentException("maxDistance out of range: " + maxDistance);
+        }
+        this.capacity = capacity;
+        this.maxDistance = maxDistance;
+        this.maxAgeNanos = maxAgeNanos;
+        hashes = new long[capacity * PerceptualHash.WORDS];
+        widths = new int[capacity];
+        heights = new int[capacity];
+        storedAt = new long[capacity];
+        lastUsed = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Returns the result of a near-identical frame, or null on a miss.
+     *
+     * @param hash hash of the frame, as computed by {@link PerceptualHash#compute}
+     * @param width width of the hashed image
+     * @param height height of the hashed image
+     * @param timestampNanos capture time of the frame
+     */
+    public synchronized V get(long[] hash, int width, int height, long timestampNanos) {
+        int slot = findClosest(hash, width, height, timestampNanos);
+        if (slot < 0) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        lastUsed[slot] = ++useClock;
+        @SuppressWarnings("unchecked") V value = (V) values[slot];
+        return value;
+    }
+
+    /**
+     * Stores the result recognized from a frame.
+     *
+     * @param timestampNanos capture time of the frame, from which the result's age is counted
+     */
+    public synchronized void put(long[] hash, int width, int height, long timestampNanos,
+                                 V value) {
+        int slot = findClosest(hash, width, height, timestampNanos);
+        if (slot < 0) {
+            slot = size < capacity ? size++ : evictionSlot(timestampNanos);
+        }
+        System.arraycopy(hash, 0, hashes, slot * PerceptualHash.WORDS, PerceptualHash.WORDS);
+        widths[slot] = width;
+        heights[slot] = height;
+        storedAt[slot] = timestampNanos;
+        lastUsed[slot] = ++useClock;
+        values[slot] = value;
+    }
+
+    /** Returns the closest live entry within the maximum distance, or -1 if there is none. */
+    private int findClosest(long[] hash, int width, int height, long timestampNanos) {
+        int best = -1;
+        int bestDistance = maxDistance + 1;
+        for (int slot = 0; slot < size; slot++) {
+            if (widths[slot] != width || heights[slot] != height
+                    || isExpired(slot, timestampNanos)) {
+                continue;
+            }
+            int distance = PerceptualHash.distance(hash, 0, hashes, slot * PerceptualHash.WORDS);
+            if (distance < bestDistance) {
+                best = slot;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /** Returns the oldest expired entry, or else the least recently used one. */
+    private int evictionSlot(long timestampNanos) {
+        int oldestExpired = -1;
+        int leastRecentlyUsed = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (isExpired(slot, timestampNanos)
+                    && (oldestExpired < 0 || storedAt[slot] < storedAt[oldestExpired])) {
+                oldestExpired = slot;
+            }
+            if (lastUsed[slot] < lastUsed[leastRecentlyUsed]) {
+                leastRecentlyUsed = slot;
+            }
+        }
+        return oldestExpired >= 0 ? oldestExpired : leastRecentlyUsed;
+    }
+
+    private boolean isExpired(int slot, long timestampNanos) {
+        return timestampNanos - storedAt[slot] > maxAgeNanos;
+    }
+
+    /** Drops all results, e.g. when the analyzed region changes meaning. */
+    public synchronized void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /** Number of results held, including expired ones not yet replaced. */
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /** Share of lookups that were hits, or 0 before the first lookup. */
+    public float getHitRate() {
+        long hits = hitCount.get();
+        long lookups = hits + missCount.get();
+        return lookups == 0 ? 0f : (float) hits / lookups;
+    }
+}
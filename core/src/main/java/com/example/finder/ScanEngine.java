@@ -0,0 +1,730 @@
+package com.example.finder;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns camera frames into matches for the current search, independently of any activity.
+ *
+ * <p>The engine owns every stage between the camera and the screen: the {@link FrameFilter} and
+ * {@link ResultCache} that spare recognition, the {@link FrameScheduler} and {@link YuvFramePool}
+ * that pipeline it, the {@link QualityController} that adapts it to latency and heat, and the
+ * {@link TextPipeline} and {@link MatchAlerter} of the current search. It is meant to live as long
+ * as the process, so that all of this stays warm when an activity is recreated on rotation or a
+ * new search is started; activities only {@link #attach} a {@link Display} to render results.
+ * Camera frames, recognizer and display are interfaces, so the engine also runs headlessly, e.g.
+ * against a {@link ReplayRecognizer} to load test it.
+ *
+ * <p>A recognition that has not called back by its deadline is cancelled and its slot is freed,
+ * so a stuck recognizer costs frames rather than stalling the camera for good. With a deadline,
+ * frames are always recognized from a copy, so the camera gets its buffer back whatever the
+ * recognizer does. A copy is only released once the recognizer calls back, since until then it may
+ * still read it; while as many timed-out recognitions as frames in flight still hold theirs, frames
+ * are dropped instead, so a recognizer that never calls back holds a bounded number of buffers.
+ *
+ * <p>{@link #analyze} must be called on the scheduler's analyzer executor. Results, alerts and
+ * quality changes are delivered on its result executor.
+ */
+public final class ScanEngine {
+
+    /** A camera frame in YUV 4:2:0 layout, valid until closed. */
+    public interface Frame {
+        /** Returns the capture time, which can still be read once the frame is closed. */
+        long getTimestampNanos();
+
+        int getWidth();
+
+        int getHeight();
+
+        /** Clockwise rotation that makes the frame upright. */
+        int getRotationDegrees();
+
+        /** Returns plane 0 (Y), 1 (U) or 2 (V). */
+        ByteBuffer getPlane(int plane);
+
+        int getRowStride(int plane);
+
+        int getPixelStride(int plane);
+
+        /** Hands the frame's buffers back to the camera. */
+        void close();
+    }
+
+    /** Recognizes the text in frames. */
+    public interface Recognizer {
+        /**
+         * Starts recognizing a crop of a frame and reports the outcome to {@code callback} exactly
+         * once, on any thread. If {@code copy} is not null, it holds the crop in NV21 layout and
+         * the frame is already closed; otherwise the crop is the whole frame, which stays open
+         * until the callback is done with it. Frames are only recognized in place by engines
+         * without a deadline.
+         *
+         * @return a handle to cancel the recognition with, never null
+         */
+        Cancellable recognize(Frame frame, YuvFramePool.Lease copy, CropRegion crop,
+                              Callback callback);
+    }
+
+    /** Stops a recognition whose outcome is no longer needed. */
+    public interface Cancellable {
+        /**
+         * Asks the recognizer to stop. The callback is still called exactly once: with a
+         * {@link CancellationException} if the recognition stopped, or with its outcome if it
+         * was too late to stop. May be called on any thread, and more than once.
+         */
+        void cancel();
+    }
+
+    /** Receives the outcome of one recognition. */
+    public interface Callback {
+        /** @param text the text in the crop's upright coordinates, timestamped with the frame */
+        void onRecognized(RecognizedText text);
+
+        void onFailed(Exception e);
+    }
+
+    /** Renders results, such as the overlay of the camera preview. */
+    public interface Display {
+        /**
+         * Returns the transform from a crop's upright image coordinates to display coordinates,
+         * and prepares to draw results of that crop. Called on the result thread.
+         */
+        ViewTransform prepare(CropRegion crop);
+
+        /** Returns the region selected on the display, or null for the default. Any thread. */
+        RegionOfInterest getRegionOfInterest();
+
+        /** Shows a matched result. Called on the result thread. */
+        void show(RecognizedText text, MatchGeometry matches, ViewTransform transform);
+    }
+
+    /** Receives the results of a search, whether or not a display is attached. */
+    public interface Listener {
+        /**
+         * Called on the result thread for every delivered result, before it is shown.
+         *
+         * @param transform the transform the matches were computed with, the identity if no
+         *                  display was attached
+         */
+        void onResult(RecognizedText text, int hitCount, MatchGeometry matches,
+                      ViewTransform transform);
+
+        /** Called on the result thread when the alerter finds a term due an announcement. */
+        void onAlert(int termId);
+    }
+
+    /** Receives changes of the quality level, e.g. to bind the camera at another resolution. */
+    public interface QualityListener {
+        /** Called on the result thread. */
+        void onQualityChanged(QualityController.Level level);
+    }
+
+    private final AnalysisConfig config;
+    private final FrameScheduler scheduler;
+    private final Recognizer recognizer;
+    private final QualityListener qualityListener;
+    private final YuvFramePool framePool;
+    private final QualityController qualityController;
+    private final FrameFilter frameFilter;
+    private final ResultCache<RecognizedText> resultCache = new ResultCache<>();
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+    private final AtomicLong droppedStuckCount = new AtomicLong();
+    // Timed-out recognitions that have not called back, and so still hold their copies.
+    private final AtomicInteger abandonedCount = new AtomicInteger();
+    private final long deadlineNanos;
+    // Null if recognitions have no deadline.
+    private final ScheduledThreadPoolExecutor deadlineTimer;
+    private final Set<Recognition> recognitions = Collections.newSetFromMap(
+            new ConcurrentHashMap<Recognition, Boolean>());
+    // Only used on the analyzer thread.
+    private final long[] frameHash = new long[PerceptualHash.WORDS];
+    private volatile Search search;
+    private volatile Display display;
+    private volatile int thermalStatus = QualityController.THERMAL_NONE;
+
+    /**
+     * Ten times the latency the quality controller aims for: long enough for the slowest devices'
+     * recognitions, short enough that a stuck one is noticed within a couple of seconds.
+     */
+    public static final long DEFAULT_DEADLINE_NANOS = 10 * QualityController.DEFAULT_TARGET_NANOS;
+
+    /**
+     * How long the hits of a {@link #deliverResult result from outside the camera stream} stay
+     * highlighted without the frames seeing them, which often cannot read the text it was
+     * recognized for.
+     */
+    public static final long HELD_RESULT_MILLIS = 2000;
+
+    /**
+     * Creates an engine whose recognitions have the {@link #DEFAULT_DEADLINE_NANOS default
+     * deadline}.
+     *
+     * @param qualityListener notified when the quality level changes, or null
+     */
+    public ScanEngine(AnalysisConfig config, FrameFilterConfig filterConfig,
+                      FrameScheduler scheduler, Recognizer recognizer,
+                      QualityListener qualityListener) {
+        this(config, filterConfig, scheduler, recognizer, qualityListener,
+                DEFAULT_DEADLINE_NANOS);
+    }
+
+    /**
+     * @param qualityListener notified when the quality level changes, or null
+     * @param deadlineNanos   how long a recognition may take before it is cancelled, or 0 for no
+     *                        limit
+     */
+    public ScanEngine(AnalysisConfig config, FrameFilterConfig filterConfig,
+                      FrameScheduler scheduler, Recognizer recognizer,
+                      QualityListener qualityListener, long deadlineNanos) {
+        if (deadlineNanos < 0) {
+            throw new IllegalArgumentException("deadlineNanos must not be negative");
+        }
+        this.config = config;
+        this.scheduler = scheduler;
+        this.recognizer = recognizer;
+        this.qualityListener = qualityListener;
+        this.deadlineNanos = deadlineNanos;
+        framePool = new YuvFramePool(scheduler.getMaxFramesInFlight());
+        qualityController = new QualityController(config, QualityController.DEFAULT_TARGET_NANOS);
+        frameFilter = new FrameFilter(filterConfig);
+        if (deadlineNanos > 0) {
+            deadlineTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "RecognitionDeadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+            deadlineTimer.setRemoveOnCancelPolicy(true);
+        } else {
+            deadlineTimer = null;
+        }
+    }
+
+    /**
+     * Starts matching frames against a search, replacing the current one. Results of frames
+     * recognized for the previous search are matched against the new one, and the frame filter
+     * lets the next frame through, so that the new search does not wait for the scene to change.
+     *
+     * @param matcher matches the search's terms, and from now on must only be used by the engine
+     */
+    public void startSearch(SearchSession session, FrameMatcher matcher, Listener listener) {
+        search = new Search(session, matcher, listener);
+        frameFilter.invalidate();
+    }
+
+    /**
+     * Stops matching; frames are then closed without being recognized, and recognitions still in
+     * flight are cancelled.
+     */
+    public void stopSearch() {
+        search = null;
+        for (Recognition recognition : recognitions) {
+            recognition.cancel();
+        }
+    }
+
+    /**
+     * Stops the search and the deadline timer. The scheduler's executors are left to its owner to
+     * shut down.
+     */
+    public void shutdown() {
+        stopSearch();
+        if (deadlineTimer != null) {
+            deadlineTimer.shutdownNow();
+        }
+    }
+
+    /** Returns the current search, or null if there is none. */
+    public SearchSession getSession() {
+        Search current = search;
+        return current != null ? current.session : null;
+    }
+
+    /** Returns the tracker of the current search, or null if there is none. */
+    public TextTracker getTracker() {
+        Search current = search;
+        return current != null ? current.pipeline.getTracker() : null;
+    }
+
+    /** Returns the alerter of the current search, or null if there is none. */
+    public MatchAlerter getAlerter() {
+        Search current = search;
+        return current != null ? current.alerter : null;
+    }
+
+    /** Shows results on a display from the next result on, replacing any attached display. */
+    public void attach(Display display) {
+        this.display = display;
+    }
+
+    /** Stops showing results on a display, if it is the attached one. */
+    public void detach(Display display) {
+        if (this.display == display) {
+            this.display = null;
+        }
+    }
+
+    /**
+     * Sets the device's {@code PowerManager.THERMAL_STATUS_*}, which the quality controller takes
+     * into account.
+     */
+    public void setThermalStatus(int status) {
+        thermalStatus = status;
+    }
+
+    public AnalysisConfig getConfig() {
+        return config;
+    }
+
+    public FrameScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public YuvFramePool getFramePool() {
+        return framePool;
+    }
+
+    public QualityController getQualityController() {
+        return qualityController;
+    }
+
+    public FrameFilter getFrameFilter() {
+        return frameFilter;
+    }
+
+    public ResultCache<RecognizedText> getResultCache() {
+        return resultCache;
+    }
+
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Number of recognitions that failed. */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /** Number of recognitions that were cancelled before their deadline, e.g. by a stop. */
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    /** Number of recognitions that had not called back by their deadline. */
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    /** Number of frames dropped because timed-out recognitions still held too many copies. */
+    public long getDroppedStuckCount() {
+        return droppedStuckCount.get();
+    }
+
+    /** Number of recognitions that timed out and have not called back yet. */
+    public int getAbandonedCount() {
+        return abandonedCount.get();
+    }
+
+    /** Number of recognitions whose slot has not been freed yet. */
+    public int getRecognitionsInFlight() {
+        return recognitions.size();
+    }
+
+    /**
+     * Decides what to do with a camera frame, and recognizes it if that is worth it. Closes the
+     * frame, at once or when its recognition is done. Runs on the analyzer thread.
+     */
+    public void analyze(Frame frame) {
+        Search current = search;
+        if (current == null) {
+            frame.close();
+            return;
+        }
+        long timestamp = frame.getTimestampNanos();
+        CropRegion crop = cropFor(frame);
+        ByteBuffer lumaPlane = frame.getPlane(0);
+        int lumaRowStride = frame.getRowStride(0);
+        FrameFilter.Decision decision = frameFilter.evaluate(lumaPlane, lumaRowStride, crop,
+                timestamp);
+        if (decision != FrameFilter.Decision.RECOGNIZE) {
+            // The display keeps showing the previous result, which still holds for an unchanged
+            // scene and is the best estimate while the camera is moving.
+            frame.close();
+            return;
+        }
+        PerceptualHash.compute(lumaPlane, lumaRowStride, crop, frameHash);
+        RecognizedText cached = resultCache.get(frameHash, crop.getUprightWidth(),
+                crop.getUprightHeight(), timestamp);
+        if (cached != null) {
+            // The camera is back on a scene it recognized moments ago.
+            frame.close();
+            deliverCached(current, cached, crop, timestamp);
+            return;
+        }
+        if (!qualityController.admitFrame()) {
+            // The current quality level recognizes only some frames. The filter must not treat
+            // this one as recognized, or the next frames would be compared with it.
+            frameFilter.invalidate();
+            frame.close();
+            return;
+        }
+        if (abandonedCount.get() >= scheduler.getMaxFramesInFlight()) {
+            // The recognizer is stuck on frames it was given earlier, which still hold their
+            // copies; copying more would only pile up buffers until it recovers.
+            droppedStuckCount.incrementAndGet();
+            frameFilter.invalidate();
+            frame.close();
+            return;
+        }
+        if (!scheduler.tryStartFrame()) {
+            // Enough frames are already being recognized; this one would only add latency.
+            frame.close();
+            return;
+        }
+
+        current.pipeline.getTracker().syncClock(timestamp, System.nanoTime());
+        long inputStart = System.nanoTime();
+        YuvFramePool.Lease copy = null;
+        if (scheduler.isPipelined() || !crop.isFull() || deadlineTimer != null) {
+            // Copy the crop out and hand the camera buffer back straight away, so the next frame
+            // can be analyzed while this one is recognized, and a recognition that outlives its
+            // deadline does not keep a buffer the camera needs.
+            copy = framePool.copy(frame.getPlane(0), frame.getRowStride(0),
+                    frame.getPlane(1), frame.getPlane(2), frame.getRowStride(1),
+                    frame.getPixelStride(1), crop, YuvFramePool.Layout.NV21);
+            frame.close();
+        }
+        long recognitionStart = System.nanoTime();
+        metrics.record(PipelineMetrics.Stage.INPUT_IMAGE, recognitionStart - inputStart);
+        Recognition recognition = new Recognition(current, frame, copy, crop, frameHash.clone(),
+                timestamp, recognitionStart);
+        recognitions.add(recognition);
+        recognition.startDeadline();
+        try {
+            recognition.setHandle(recognizer.recognize(frame, copy, crop, recognition));
+        } catch (RuntimeException e) {
+            recognition.onFailed(e);
+        }
+    }
+
+    /**
+     * Matches and shows a result recognized outside the camera stream, such as a
+     * {@link DeepScanner deep scan} of a still. Frames captured while it was recognized have
+     * already been delivered, so it is stamped with the latest of them, and its hits are held by
+     * the tracker for {@link #HELD_RESULT_MILLIS} against the frames after it. Any thread.
+     *
+     * @param crop where the text was recognized, e.g. the whole of the still
+     */
+    public void deliverResult(RecognizedText text, CropRegion crop) {
+        Search current = search;
+        if (current == null) {
+            return;
+        }
+        scheduler.getResultExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                deliverHeld(current, text, crop);
+            }
+        });
+    }
+
+    /** Matches a result from outside the camera stream on the result thread, and shows it. */
+    private void deliverHeld(Search current, RecognizedText result, CropRegion crop) {
+        if (current != search) {
+            return;
+        }
+        RecognizedText text = current.lastFrameTimestamp != Long.MIN_VALUE
+                ? result.withTimestamp(current.lastFrameTimestamp) : result;
+        Display target = display;
+        ViewTransform transform;
+        if (target == null) {
+            transform = ViewTransform.IDENTITY;
+        } else if (current.frameTransform != null) {
+            // Mapped into the view as the frames are, without switching the display to the
+            // still's image size, which the next frame would switch straight back.
+            transform = current.frameTransform.forImage(crop.getUprightImageWidth(),
+                    crop.getUprightImageHeight(), crop.getUprightOffsetX(),
+                    crop.getUprightOffsetY());
+        } else {
+            transform = target.prepare(crop);
+        }
+        long matchStart = System.nanoTime();
+        // Not fused: its image size differs from the frames', which would reset the fusion of
+        // their readings.
+        MatchGeometry matches = current.processHeld(text, transform);
+        metrics.recordSince(PipelineMetrics.Stage.MATCH, matchStart);
+        if (target != null) {
+            target.show(text, matches, transform);
+        }
+    }
+
+    /** Shows a cached result for a frame that was not recognized, as if it had been. */
+    private void deliverCached(Search current, RecognizedText cached, CropRegion crop,
+                               long timestamp) {
+        current.pipeline.getTracker().syncClock(timestamp, System.nanoTime());
+        RecognizedText text = cached.withTimestamp(timestamp);
+        scheduler.getResultExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (scheduler.shouldDeliver(timestamp)) {
+                    deliver(current, text, crop);
+                }
+            }
+        });
+    }
+
+    /** Matches a frame's result on the result thread and shows it for the crop it came from. */
+    private void deliver(Search current, RecognizedText text, CropRegion crop) {
+        if (current != search) {
+            // Recognized for a search that has since been replaced or stopped.
+            return;
+        }
+        Display target = display;
+        ViewTransform transform = target != null ? target.prepare(crop) : ViewTransform.IDENTITY;
+        long matchStart = System.nanoTime();
+        MatchGeometry matches = current.process(text, transform);
+        metrics.recordSince(PipelineMetrics.Stage.MATCH, matchStart);
+        if (target != null) {
+            target.show(text, matches, transform);
+        }
+    }
+
+    /**
+     * Lets the quality controller see the latest latencies, drops and thermal status. Runs on the
+     * result thread after each recognition.
+     */
+    private void adjustQuality() {
+        long dropped = scheduler.getDroppedBusyCount() + scheduler.getDroppedStaleCount();
+        if (qualityController.update(System.nanoTime(), dropped, thermalStatus)
+                && qualityListener != null) {
+            qualityListener.onQualityChanged(qualityController.getLevel());
+        }
+    }
+
+    /** Returns the part of a frame that is recognized in the current analysis mode. */
+    private CropRegion cropFor(Frame frame) {
+        int rotation = frame.getRotationDegrees();
+        if (config.getMode() == AnalysisConfig.Mode.FULL_FRAME) {
+            return CropRegion.full(frame.getWidth(), frame.getHeight(), rotation);
+        }
+        Display target = display;
+        RegionOfInterest region = target != null ? target.getRegionOfInterest() : null;
+        if (region == null) {
+            region = config.getDefaultRegion();
+        }
+        // Cheaper quality levels recognize the middle of the selected region only.
+        region = region.withHeightScaled(qualityController.getLevel().getRegionScale());
+        return region.toCropRegion(frame.getWidth(), frame.getHeight(), rotation);
+    }
+
+    /** A search with the state its results are matched and announced with. */
+    private static final class Search implements TextPipeline.Listener {
+        final SearchSession session;
+        final TextPipeline pipeline;
+        final MatchAlerter alerter;
+        final Listener listener;
+        // Transform of the result being processed, and the timestamp and transform of the last
+        // frame's result. Only used on the result thread.
+        private ViewTransform transform;
+        long lastFrameTimestamp = Long.MIN_VALUE;
+        ViewTransform frameTransform;
+
+        Search(SearchSession session, FrameMatcher matcher, Listener listener) {
+            this.session = session;
+            // Consecutive camera frames see the same text, so misreads in some are outvoted.
+            this.pipeline = new TextPipeline(matcher, new TextFusion(), new TextTracker(), this);
+            this.alerter = new MatchAlerter(session);
+            this.listener = listener;
+        }
+
+        MatchGeometry process(RecognizedText text, ViewTransform transform) {
+            this.transform = transform;
+            lastFrameTimestamp = text.getTimestampNanos();
+            frameTransform = transform;
+            return pipeline.process(text, transform);
+        }
+
+        MatchGeometry processHeld(RecognizedText text, ViewTransform transform) {
+            this.transform = transform;
+            return pipeline.processHeld(text, transform, HELD_RESULT_MILLIS);
+        }
+
+        @Override
+        public void onFrameProcessed(RecognizedText text, int hitCount, MatchGeometry matches) {
+            listener.onResult(text, hitCount, matches, transform);
+            int termId = alerter.onFrame(matches, text.getTimestampNanos());
+            if (termId != MatchGeometry.NO_TERM) {
+                listener.onAlert(termId);
+            }
+        }
+    }
+
+    /**
+     * Delivers the outcome of one recognition on the result thread and frees its resources. Its
+     * slot is freed as soon as the outcome is known or the deadline passes; its frame or copy only
+     * once the recognizer has called back.
+     */
+    private final class Recognition implements Callback {
+        private final Search search;
+        private final Frame frame;
+        private final YuvFramePool.Lease copy;
+        private final CropRegion crop;
+        private final long[] hash;
+        private final long timestamp;
+        private final long startNanos;
+        private final AtomicBoolean calledBack = new AtomicBoolean();
+        private volatile Cancellable handle;
+        private volatile boolean cancelRequested;
+        private volatile ScheduledFuture<?> deadline;
+        // Whether the slot has been freed, and whether that was at the deadline, before the
+        // recognizer called back. Only used on the result thread.
+        private boolean finished;
+        private boolean abandoned;
+
+        Recognition(Search search, Frame frame, YuvFramePool.Lease copy, CropRegion crop,
+                    long[] hash, long timestamp, long startNanos) {
+            this.search = search;
+            this.frame = frame;
+            this.copy = copy;
+            this.crop = crop;
+            this.hash = hash;
+            this.timestamp = timestamp;
+            this.startNanos = startNanos;
+        }
+
+        /** Starts the deadline, before the recognizer is called so that it counts its setup. */
+        void startDeadline() {
+            if (deadlineTimer == null) {
+                return;
+            }
+            deadline = deadlineTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    scheduler.getResultExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!finished) {
+                                timedOutCount.incrementAndGet();
+                                if (!calledBack.get()) {
+                                    abandoned = true;
+                                    abandonedCount.incrementAndGet();
+                                }
+                                frameFilter.invalidate();
+                                finish();
+                                cancel();
+                            }
+                        }
+                    });
+                }
+            }, deadlineNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void setHandle(Cancellable handle) {
+            this.handle = handle;
+            if (cancelRequested) {
+                // Cancelled while the recognizer was still being called.
+                handle.cancel();
+            }
+        }
+
+        /** Asks the recognizer to stop. Any thread. */
+        void cancel() {
+            cancelRequested = true;
+            Cancellable current = handle;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void onRecognized(RecognizedText text) {
+            if (!calledBack()) {
+                return;
+            }
+            scheduler.getResultExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    metrics.recordSince(PipelineMetrics.Stage.RECOGNITION, startNanos);
+                    resultCache.put(hash, crop.getUprightWidth(), crop.getUprightHeight(),
+                            timestamp, text);
+                    // Skipped if a newer frame's result is already shown, or if the deadline
+                    // passed and later frames have taken over.
+                    if (!finished) {
+                        if (scheduler.shouldDeliver(timestamp)) {
+                            deliver(search, text, crop);
+                        }
+                        finish();
+                    }
+                    release();
+                }
+            });
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            if (!calledBack()) {
+                return;
+            }
+            scheduler.getResultExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    metrics.recordSince(PipelineMetrics.Stage.RECOGNITION, startNanos);
+                    if (!finished) {
+                        if (e instanceof CancellationException) {
+                            cancelledCount.incrementAndGet();
+                        } else {
+                            failedCount.incrementAndGet();
+                        }
+                        frameFilter.invalidate();
+                        finish();
+                    }
+                    release();
+                }
+            });
+        }
+
+        /** Returns false if the recognizer already called back, which it must not do twice. */
+        private boolean calledBack() {
+            if (!calledBack.compareAndSet(false, true)) {
+                return false;
+            }
+            ScheduledFuture<?> current = deadline;
+            if (current != null) {
+                current.cancel(false);
+            }
+            return true;
+        }
+
+        /** Frees the slot. */
+        private void finish() {
+            finished = true;
+            recognitions.remove(this);
+            scheduler.finishFrame();
+            qualityController.recordLatency(System.nanoTime() - startNanos);
+            adjustQuality();
+        }
+
+        /** Hands the pixels back, once the recognizer is done with them. */
+        private void release() {
+            if (abandoned) {
+                abandonedCount.decrementAndGet();
+            }
+            if (copy != null) {
+                copy.release();
+            } else {
+                frame.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.finder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The terms searched for in one camera session, each with its own priority, highlight colour and
+ * announcement policy. Term ids used by the matchers and {@link MatchGeometry} are indices into
+ * {@link #getTerms()}.
+ */
+public final class SearchSession {
+
+    /** Marks a term as {@link SearchTerm.Priority#HIGH} in a query. */
+    public static final char HIGH_PRIORITY_MARK = '!';
+    /** Marks a term as {@link SearchTerm.Priority#LOW} in a query. */
+    public static final char LOW_PRIORITY_MARK = '?';
+
+    // Light enough for the black label text drawn on them.
+    private static final int[] PALETTE = {
+            0xFFFFEB3B, 0xFF80DEEA, 0xFFA5D6A7, 0xFFFFAB91, 0xFFCE93D8, 0xFF90CAF9,
+            0xFFFFCC80, 0xFFE6EE9C, 0xFFF48FB1, 0xFFB0BEC5,
+    };
+
+    private final List<SearchTerm> terms;
+    private final List<String> texts;
+
+    public SearchSession(List<SearchTerm> terms) {
+        this.terms = Collections.unmodifiableList(new ArrayList<>(terms));
+        List<String> texts = new ArrayList<>(terms.size());
+        for (SearchTerm term : terms) {
+            texts.add(term.getText());
+        }
+        this.texts = Collections.unmodifiableList(texts);
+    }
+
+    /**
+     * Parses a query, split into terms as by {@link TermMatcher#splitTerms}. A term starting with
+     * {@value #HIGH_PRIORITY_MARK} is of high priority, one starting with
+     * {@value #LOW_PRIORITY_MARK} of low priority, and any other of normal priority. Terms get
+     * colours in turn and the default policy of their priority, and repeated terms are dropped.
+     */
+    public static SearchSession parse(String query) {
+        return parse(TermMatcher.splitTerms(query), false);
+    }
+
+    /**
+     * Parses a query of patterns, split as by {@link PatternMatcher#splitPatterns}, with the same
+     * priority marks as {@link #parse}. Patterns are only dropped if repeated exactly, since
+     * patterns differing in case, such as {@code \s} and {@code \S}, can mean different things.
+     */
+    public static SearchSession parsePatterns(String query) {
+        return parse(PatternMatcher.splitPatterns(query), true);
+    }
+
+    private static SearchSession parse(List<String> parts, boolean patterns) {
+        List<SearchTerm> terms = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String part : parts) {
+            SearchTerm.Priority priority = SearchTerm.Priority.NORMAL;
+            if (part.charAt(0) == HIGH_PRIORITY_MARK) {
+                priority = SearchTerm.Priority.HIGH;
+            } else if (part.charAt(0) == LOW_PRIORITY_MARK) {
+                priority = SearchTerm.Priority.LOW;
+            }
+            String text = priority == SearchTerm.Priority.NORMAL ? part : part.substring(1).trim();
+            String key = patterns ? text : TextNormalizer.normalize(text);
+            if (text.isEmpty() || !seen.add(key)) {
+                continue;
+            }
+            terms.add(newTerm(text, priority, PALETTE[terms.size() % PALETTE.length]));
+        }
+        return new SearchSession(terms);
+    }
+
+    /** Returns a term with the default announcement policy of its priority. */
+    public static SearchTerm newTerm(String text, SearchTerm.Priority priority, int color) {
+        switch (priority) {
+            case HIGH:
+                return new SearchTerm(text, priority, color, 0, 2000);
+            case LOW:
+                return new SearchTerm(text, priority, color, 600, 15000);
+            default:
+                // Two results in a row, so that a single misread does not sound.
+                return new SearchTerm(text, priority, color, 150, 5000);
+        }
+    }
+
+    public List<SearchTerm> getTerms() {
+        return terms;
+    }
+
+    /** Returns the texts of the terms, in term id order, to compile a matcher from. */
+    public List<String> getTermTexts() {
+        return texts;
+    }
+
+    public SearchTerm get(int termId) {
+        return terms.get(termId);
+    }
+
+    public int size() {
+        return terms.size();
+    }
+}
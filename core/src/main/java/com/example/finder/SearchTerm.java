@@ -0,0 +1,63 @@
+package com.example.finder;
+
+/**
+ * One term of a {@link SearchSession}, with how its hits are shown and announced.
+ */
+public final class SearchTerm {
+
+    /** How urgently hits of a term are announced. */
+    public enum Priority {
+        /** Highlighted, and announced quietly after a longer sighting and rarely. */
+        LOW,
+        NORMAL,
+        /** Announced loudly on the first sighting, and again soon. */
+        HIGH
+    }
+
+    private final String text;
+    private final Priority priority;
+    private final int color;
+    private final long debounceMillis;
+    private final long cooldownMillis;
+
+    /**
+     * @param text what is searched for
+     * @param priority how urgently hits are announced
+     * @param color ARGB colour of the term's highlights
+     * @param debounceMillis how long the term must be seen without a break before it is announced
+     * @param cooldownMillis shortest time between two announcements of the term
+     */
+    public SearchTerm(String text, Priority priority, int color, long debounceMillis,
+                      long cooldownMillis) {
+        this.text = text;
+        this.priority = priority;
+        this.color = color;
+        this.debounceMillis = debounceMillis;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    public long getCooldownMillis() {
+        return cooldownMillis;
+    }
+
+    @Override
+    public String toString() {
+        return text + " (" + priority + ")";
+    }
+}
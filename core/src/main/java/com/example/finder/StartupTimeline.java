@@ -0,0 +1,117 @@
+package com.example.finder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * When the steps that lead up to the first highlight completed, measured from a common origin
+ * such as process start or the launch of the camera preview.
+ *
+ * <p>Each {@link Milestone} is recorded once; later marks of the same milestone are ignored, so
+ * callers can mark on every frame without checking first. Marks are lock-free and may come from
+ * any thread. All times must come from the same clock as the origin.
+ */
+public final class StartupTimeline {
+
+    /** A step on the way to the first highlight. */
+    public enum Milestone {
+        /** The shared text recognizer was created. */
+        RECOGNIZER_CREATED("recognizer"),
+        /** The camera provider finished initializing. */
+        CAMERA_PROVIDER_READY("camera_provider"),
+        /** The recognizer completed its warm-up inference, so its models are loaded. */
+        WARM_UP_DONE("warm_up"),
+        /** The camera use cases were bound. */
+        CAMERA_BOUND("camera_bound"),
+        /** The first camera frame reached the analyzer. */
+        FIRST_FRAME("first_frame"),
+        /** The first recognition result was matched. */
+        FIRST_RESULT("first_result"),
+        /** The first result with a match was handed to the overlay. */
+        FIRST_MATCH("first_match");
+
+        private final String label;
+
+        Milestone(String label) {
+            this.label = label;
+        }
+
+        /** Short name used in reports. */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Milestone[] MILESTONES = Milestone.values();
+    private static final long NOT_REACHED = Long.MIN_VALUE;
+
+    private final String name;
+    private final long originNanos;
+    private final AtomicLongArray marks = new AtomicLongArray(MILESTONES.length);
+
+    /**
+     * @param name what the origin is, used in reports
+     * @param originNanos time everything is measured from
+     */
+    public StartupTimeline(String name, long originNanos) {
+        this.name = name;
+        this.originNanos = originNanos;
+        for (int i = 0; i < MILESTONES.length; i++) {
+            marks.set(i, NOT_REACHED);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Records a milestone, and returns whether this was its first mark. */
+    public boolean mark(Milestone milestone, long nowNanos) {
+        return marks.compareAndSet(milestone.ordinal(), NOT_REACHED, nowNanos);
+    }
+
+    public boolean isReached(Milestone milestone) {
+        return marks.get(milestone.ordinal()) != NOT_REACHED;
+    }
+
+    /** Returns the time from the origin to a milestone, or -1 if it was not reached yet. */
+    public long getElapsedNanos(Milestone milestone) {
+        long mark = marks.get(milestone.ordinal());
+        return mark == NOT_REACHED ? -1 : mark - originNanos;
+    }
+
+    /** Returns whether a milestone was reached no later than {@code budgetNanos} after the origin. */
+    public boolean isWithinBudget(Milestone milestone, long budgetNanos) {
+        long elapsed = getElapsedNanos(milestone);
+        return elapsed >= 0 && elapsed <= budgetNanos;
+    }
+
+    /** Returns the reached milestones on one line, e.g. for the log. */
+    public String summarize() {
+        StringBuilder summary = new StringBuilder(name);
+        for (Milestone milestone : MILESTONES) {
+            long elapsed = getElapsedNanos(milestone);
+            if (elapsed >= 0) {
+                summary.append(String.format(Locale.ROOT, " %s=%.1fms", milestone.getLabel(),
+                        elapsed / 1e6));
+            }
+        }
+        return summary.toString();
+    }
+
+    /** Writes one CSV row per reached milestone of each timeline, with its time in milliseconds. */
+    public static void writeCsv(Writer out, StartupTimeline... timelines) throws IOException {
+        out.write("timeline,milestone,elapsed_ms\n");
+        for (StartupTimeline timeline : timelines) {
+            for (Milestone milestone : MILESTONES) {
+                long elapsed = timeline.getElapsedNanos(milestone);
+                if (elapsed >= 0) {
+                    out.write(String.format(Locale.ROOT, "%s,%s,%.3f\n", timeline.name,
+                            milestone.getLabel(), elapsed / 1e6));
+                }
+            }
+        }
+    }
+}
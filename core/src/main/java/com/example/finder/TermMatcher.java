@@ -0,0 +1,259 @@
+package com.example.finder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Multi-term matcher built on an Aho-Corasick automaton, ignoring case, accents and spacing.
+ *
+ * <p>The automaton is compiled once from the search terms, normalized with {@link TextNormalizer},
+ * and then scans any amount of OCR text in a single pass, reporting every occurrence of every term.
+ * Text normalized into a {@link NormalizedText} matches fully, with hits reported at their offsets
+ * in the original text. Other text is folded one char at a time while scanning, which covers case
+ * and accents but not chars that normalize to several, such as {@code 'ß'}, or runs of spaces.
+ * Matching never allocates: hits are delivered through an {@link OnMatchListener} callback.
+ *
+ * <p>Instances are immutable and can be shared between the analyzer and UI threads.
+ */
+public final class TermMatcher {
+
+    /** Receives the hits found by {@link #match(CharSequence, OnMatchListener)}. */
+    public interface OnMatchListener {
+        /**
+         * Called once per occurrence of a term.
+         *
+         * @param termId index of the term in the list the matcher was compiled from
+         * @param start offset of the first matched char in the scanned text
+         * @param end offset one past the last matched char in the scanned text
+         */
+        void onMatch(int termId, int start, int end);
+    }
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    // Symbol used for every char that does not occur in any term.
+    private static final int OTHER = 0;
+
+    private final String[] terms;
+    private final int[] termLengths;
+    // Next term ending in the same state, or NONE.
+    private final int[] termNext;
+
+    // Symbol of each folded ASCII char, and sorted folded non-ASCII chars with their symbols.
+    private final int[] asciiSymbols = new int[128];
+    private final char[] extendedChars;
+    private final int[] extendedSymbols;
+    private final int alphabetSize;
+
+    // Complete transition table, indexed by state * alphabetSize + symbol.
+    private final int[] transitions;
+    // First term ending in each state, or NONE.
+    private final int[] stateOutput;
+    // Nearest state on the failure chain that has an output, or NONE.
+    private final int[] dictionaryLink;
+
+    private TermMatcher(List<String> termList) {
+        int termCount = termList.size();
+        terms = termList.toArray(new String[0]);
+        termLengths = new int[termCount];
+        termNext = new int[termCount];
+        Arrays.fill(termNext, NONE);
+        String[] normalizedTerms = new String[termCount];
+        for (int termId = 0; termId < termCount; termId++) {
+            normalizedTerms[termId] = TextNormalizer.normalize(terms[termId]);
+        }
+
+        // Build the alphabet from the folded chars of all terms.
+        StringBuilder extended = new StringBuilder();
+        int nextSymbol = OTHER + 1;
+        for (String term : normalizedTerms) {
+            for (int i = 0; i < term.length(); i++) {
+                char c = term.charAt(i);
+                if (c < 128) {
+                    if (asciiSymbols[c] == OTHER) {
+                        asciiSymbols[c] = nextSymbol++;
+                    }
+                } else if (extended.indexOf(String.valueOf(c)) < 0) {
+                    extended.append(c);
+                }
+            }
+        }
+        extendedChars = extended.toString().toCharArray();
+        Arrays.sort(extendedChars);
+        extendedSymbols = new int[extendedChars.length];
+        for (int i = 0; i < extendedChars.length; i++) {
+            extendedSymbols[i] = nextSymbol++;
+        }
+        alphabetSize = nextSymbol;
+
+        // Build the trie. A state count of total term length + 1 is an upper bound.
+        int maxStates = 1;
+        for (String term : normalizedTerms) {
+            maxStates += term.length();
+        }
+        int[] trie = new int[maxStates * alphabetSize];
+        Arrays.fill(trie, NONE);
+        int[] output = new int[maxStates];
+        Arrays.fill(output, NONE);
+        int stateCount = 1;
+        for (int termId = 0; termId < termCount; termId++) {
+            String term = normalizedTerms[termId];
+            termLengths[termId] = term.length();
+            if (term.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < term.length(); i++) {
+                int index = state * alphabetSize + symbolOf(term.charAt(i));
+                if (trie[index] == NONE) {
+                    trie[index] = stateCount++;
+                }
+                state = trie[index];
+            }
+            termNext[termId] = output[state];
+            output[state] = termId;
+        }
+
+        // Turn the trie into a complete automaton with a breadth-first walk, resolving failure
+        // transitions so that scanning never has to follow failure links.
+        transitions = Arrays.copyOf(trie, stateCount * alphabetSize);
+        stateOutput = Arrays.copyOf(output, stateCount);
+        dictionaryLink = new int[stateCount];
+        Arrays.fill(dictionaryLink, NONE);
+        int[] failure = new int[stateCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int next = transitions[symbol];
+            if (next == NONE) {
+                transitions[symbol] = ROOT;
+            } else {
+                failure[next] = ROOT;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int fail = failure[state];
+            dictionaryLink[state] = stateOutput[fail] != NONE ? fail : dictionaryLink[fail];
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int index = state * alphabetSize + symbol;
+                int next = transitions[index];
+                int fallback = transitions[fail * alphabetSize + symbol];
+                if (next == NONE) {
+                    transitions[index] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles a matcher for the given terms. Term ids reported by the matcher are indices into
+     * this list. Empty terms never match.
+     */
+    public static TermMatcher compile(List<String> terms) {
+        return new TermMatcher(terms);
+    }
+
+    /**
+     * Splits a search query into terms. Terms are separated by commas or line breaks, trimmed, and
+     * de-duplicated ignoring what {@link TextNormalizer} ignores.
+     */
+    public static List<String> splitTerms(String query) {
+        Set<String> seen = new LinkedHashSet<>();
+        List<String> terms = new ArrayList<>();
+        if (query == null) {
+            return terms;
+        }
+        for (String part : query.split("[,\\n\\r]")) {
+            String term = part.trim();
+            if (!term.isEmpty() && seen.add(TextNormalizer.normalize(term))) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    public String getTerm(int termId) {
+        return terms[termId];
+    }
+
+    /** Scans the whole text and reports every hit. Returns the number of hits. */
+    public int match(CharSequence text, OnMatchListener listener) {
+        return match(text, 0, text.length(), listener);
+    }
+
+    /**
+     * Scans normalized text and reports every hit, at its offsets in the text that was normalized.
+     * Returns the number of hits.
+     */
+    public int match(NormalizedText text, OnMatchListener listener) {
+        return scan(text, 0, text.length(), text, listener);
+    }
+
+    /**
+     * Scans {@code text} from {@code start} (inclusive) to {@code end} (exclusive) and reports every
+     * hit. Offsets passed to the listener are relative to the start of {@code text}. Returns the
+     * number of hits.
+     */
+    public int match(CharSequence text, int start, int end, OnMatchListener listener) {
+        return scan(text, start, end, null, listener);
+    }
+
+    /** Scans text, mapping hits through {@code offsets} unless it is null. */
+    private int scan(CharSequence text, int start, int end, NormalizedText offsets,
+                     OnMatchListener listener) {
+        int hits = 0;
+        int state = ROOT;
+        for (int i = start; i < end; i++) {
+            state = transitions[state * alphabetSize + symbolOf(TextNormalizer.fold(text.charAt(i)))];
+            int out = stateOutput[state] != NONE ? state : dictionaryLink[state];
+            while (out != NONE) {
+                for (int termId = stateOutput[out]; termId != NONE; termId = termNext[termId]) {
+                    hits++;
+                    if (listener == null) {
+                        continue;
+                    }
+                    int first = i + 1 - termLengths[termId];
+                    if (offsets != null) {
+                        listener.onMatch(termId, offsets.getStart(first), offsets.getEnd(i));
+                    } else {
+                        listener.onMatch(termId, first, i + 1);
+                    }
+                }
+                out = dictionaryLink[out];
+            }
+        }
+        return hits;
+    }
+
+    /** Returns whether any term occurs in the text. Stops at the first hit. */
+    public boolean matches(CharSequence text) {
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * alphabetSize + symbolOf(TextNormalizer.fold(text.charAt(i)))];
+            if (stateOutput[state] != NONE || dictionaryLink[state] != NONE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int symbolOf(char folded) {
+        if (folded < 128) {
+            return asciiSymbols[folded];
+        }
+        int index = Arrays.binarySearch(extendedChars, folded);
+        return index >= 0 ? extendedSymbols[index] : OTHER;
+    }
+}
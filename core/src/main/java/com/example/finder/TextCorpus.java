@@ -0,0 +1,181 @@
+package com.example.finder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary format for sequences of {@link RecognizedText} results, so that recognition output
+ * recorded on a device can be replayed through the rest of the pipeline on the host JVM.
+ *
+ * <p>A corpus is a header followed by frames in the order their results were delivered. Each
+ * frame starts with a marker byte, so a recording that was cut short can still be read up to its
+ * last complete frame.
+ */
+public final class TextCorpus {
+
+    private static final int MAGIC = 0x46544331; // "FTC1"
+    private static final int VERSION = 1;
+    private static final int FRAME_MARKER = 'F';
+
+    private TextCorpus() {
+    }
+
+    /** Appends frames to a stream. Not thread-safe. */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+
+        public Writer(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+        }
+
+        public void write(RecognizedText text) throws IOException {
+            out.writeByte(FRAME_MARKER);
+            out.writeLong(text.getTimestampNanos());
+            out.writeInt(text.getImageWidth());
+            out.writeInt(text.getImageHeight());
+            writeString(text.getText());
+            out.writeInt(text.getBlocks().size());
+            for (RecognizedText.Block block : text.getBlocks()) {
+                writeNode(block);
+                out.writeInt(block.getLines().size());
+                for (RecognizedText.Line line : block.getLines()) {
+                    writeNode(line);
+                    out.writeInt(line.getElements().size());
+                    for (RecognizedText.Element element : line.getElements()) {
+                        writeNode(element);
+                    }
+                }
+            }
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeNode(RecognizedText.Node node) throws IOException {
+            writeString(node.getText());
+            out.writeBoolean(node.hasBoundingBox());
+            if (node.hasBoundingBox()) {
+                out.writeInt(node.getLeft());
+                out.writeInt(node.getTop());
+                out.writeInt(node.getRight());
+                out.writeInt(node.getBottom());
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /** Writes a whole corpus and closes the stream. */
+    public static void write(List<RecognizedText> frames, OutputStream out) throws IOException {
+        try (Writer writer = new Writer(out)) {
+            for (RecognizedText frame : frames) {
+                writer.write(frame);
+            }
+        }
+    }
+
+    /**
+     * Reads a whole corpus and closes the stream. A frame cut short at the end of the stream is
+     * dropped.
+     *
+     * @throws IOException if the stream cannot be read or is not a corpus
+     */
+    public static List<RecognizedText> read(InputStream in) throws IOException {
+        List<RecognizedText> frames = new ArrayList<>();
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a text corpus");
+            }
+            int version = data.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported corpus version " + version);
+            }
+            int marker;
+            while ((marker = data.read()) != -1) {
+                if (marker != FRAME_MARKER) {
+                    throw new IOException("Corrupt corpus after frame " + frames.size());
+                }
+                try {
+                    frames.add(readFrame(data));
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        return frames;
+    }
+
+    private static RecognizedText readFrame(DataInputStream in) throws IOException {
+        long timestampNanos = in.readLong();
+        int imageWidth = in.readInt();
+        int imageHeight = in.readInt();
+        String text = readString(in);
+        int blockCount = in.readInt();
+        List<RecognizedText.Block> blocks = new ArrayList<>(blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            String blockText = readString(in);
+            int[] blockBox = readBox(in);
+            int lineCount = in.readInt();
+            List<RecognizedText.Line> lines = new ArrayList<>(lineCount);
+            for (int l = 0; l < lineCount; l++) {
+                String lineText = readString(in);
+                int[] lineBox = readBox(in);
+                int elementCount = in.readInt();
+                List<RecognizedText.Element> elements = new ArrayList<>(elementCount);
+                for (int e = 0; e < elementCount; e++) {
+                    String elementText = readString(in);
+                    int[] box = readBox(in);
+                    elements.add(box == null ? new RecognizedText.Element(elementText)
+                            : new RecognizedText.Element(elementText, box[0], box[1], box[2], box[3]));
+                }
+                lines.add(lineBox == null ? new RecognizedText.Line(lineText, elements)
+                        : new RecognizedText.Line(lineText,
+                                lineBox[0], lineBox[1], lineBox[2], lineBox[3], elements));
+            }
+            blocks.add(blockBox == null ? new RecognizedText.Block(blockText, lines)
+                    : new RecognizedText.Block(blockText,
+                            blockBox[0], blockBox[1], blockBox[2], blockBox[3], lines));
+        }
+        return new RecognizedText(timestampNanos, imageWidth, imageHeight, text, blocks);
+    }
+
+    /** Returns {@code {left, top, right, bottom}}, or null if the node has no box. */
+    private static int[] readBox(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new int[] {in.readInt(), in.readInt(), in.readInt(), in.readInt()};
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt corpus: negative string length");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
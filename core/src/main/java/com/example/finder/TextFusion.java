@@ -0,0 +1,481 @@
+package com.example.finder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fuses the readings of each line over the last few recognition results into a consensus, so that
+ * text that is misread in some frames but read correctly in most still matches.
+ *
+ * <p>Lines are linked from one result to the next by the overlap (IoU) of their boxes, and each
+ * linked line keeps its last {@code window} readings. The elements of a new reading are aligned
+ * with those of the earlier readings by their position within the line, which tolerates panning,
+ * zooming and words missed at either end, and every element is replaced by a weighted vote: first
+ * on its length, then on each of its chars. The recognizer reports no confidences, so a reading is
+ * weighted by the height of its line; text seen larger is resolved by more pixels and misread
+ * less. Ties go to the new reading, so a line seen once is left as it is.
+ *
+ * <p>Boxes are never changed, only the text of elements, so hits in the consensus are drawn where
+ * the words are in the new result. At most {@value #MAX_TRACKS} lines are followed, each with a
+ * fixed number of readings, so memory is bounded, and the cost of a result depends on its own
+ * lines and the window, not on how long the scan has been running. Not thread-safe; results are
+ * fed from the result thread in capture order.
+ */
+public final class TextFusion {
+
+    /** Number of earlier readings each line is fused with by default. */
+    public static final int DEFAULT_WINDOW = 4;
+    public static final long DEFAULT_MAX_AGE_MILLIS = 1000;
+
+    static final int MAX_TRACKS = 64;
+    private static final float MIN_IOU = 0.3f;
+    // Smallest horizontal overlap, as IoU along the line, for two elements to be aligned.
+    private static final float MIN_ELEMENT_IOU = 0.5f;
+
+    private final int window;
+    private final long maxAgeNanos;
+    private int imageWidth = -1;
+    private int imageHeight = -1;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long correctedCount;
+
+    // Track state. The readings of a track form a ring of the last {@code window} lines.
+    private int count;
+    private final int[] boxes = new int[MAX_TRACKS * 4];
+    private final long[] lastSeen = new long[MAX_TRACKS];
+    private final boolean[] linked = new boolean[MAX_TRACKS];
+    private final RecognizedText.Line[][] readings;
+    private final long[][] readingTimes;
+    private final int[] readingCounts = new int[MAX_TRACKS];
+    private final int[] nextReading = new int[MAX_TRACKS];
+
+    // Candidates of the element being voted on; the first one is the new reading.
+    private final String[] candidates;
+    private final float[] candidateWeights;
+    // Readings young enough to vote, with how x coordinates map into each.
+    private final RecognizedText.Line[] usable;
+    private final float[] scales;
+    private final float[] offsets;
+    private final RecognizedText.Element[] bestElement = new RecognizedText.Element[1];
+    private char[] consensus = new char[32];
+
+    /** Creates a fusion of the last {@value #DEFAULT_WINDOW} readings up to a second old. */
+    public TextFusion() {
+        this(DEFAULT_WINDOW, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * @param window number of earlier readings each line is fused with
+     * @param maxAgeMillis age beyond which readings are no longer used, and lines are forgotten
+     */
+    public TextFusion(int window, long maxAgeMillis) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be at least 1");
+        }
+        this.window = window;
+        this.maxAgeNanos = maxAgeMillis * 1_000_000L;
+        readings = new RecognizedText.Line[MAX_TRACKS][window];
+        readingTimes = new long[MAX_TRACKS][window];
+        candidates = new String[window + 1];
+        candidateWeights = new float[window + 1];
+        usable = new RecognizedText.Line[window];
+        scales = new float[window];
+        offsets = new float[window];
+    }
+
+    /**
+     * Returns the result with every element replaced by its consensus, or {@code text} itself if
+     * no element changed.
+     */
+    public RecognizedText fuse(RecognizedText text) {
+        long now = text.getTimestampNanos();
+        if (text.getImageWidth() != imageWidth || text.getImageHeight() != imageHeight
+                || now < lastTimestamp) {
+            // Another crop, orientation or recording: earlier boxes no longer line up.
+            reset();
+            imageWidth = text.getImageWidth();
+            imageHeight = text.getImageHeight();
+        }
+        lastTimestamp = now;
+        forgetTracks(now);
+        List<RecognizedText.Block> blocks = text.getBlocks();
+        List<RecognizedText.Block> fusedBlocks = null;
+        for (int b = 0; b < blocks.size(); b++) {
+            RecognizedText.Block block = blocks.get(b);
+            RecognizedText.Block fused = fuseBlock(block, now);
+            if (fused != block && fusedBlocks == null) {
+                fusedBlocks = new ArrayList<>(blocks.subList(0, b));
+            }
+            if (fusedBlocks != null) {
+                fusedBlocks.add(fused);
+            }
+        }
+        if (fusedBlocks == null) {
+            return text;
+        }
+        StringBuilder fullText = new StringBuilder(text.getText().length());
+        for (RecognizedText.Block block : fusedBlocks) {
+            if (fullText.length() > 0) {
+                fullText.append('\n');
+            }
+            fullText.append(block.getText());
+        }
+        return new RecognizedText(now, text.getImageWidth(), text.getImageHeight(),
+                fullText.toString(), fusedBlocks);
+    }
+
+    /** Forgets all lines, e.g. when the camera is pointed somewhere else. */
+    public void reset() {
+        for (int t = 0; t < count; t++) {
+            Arrays.fill(readings[t], null);
+            readingCounts[t] = 0;
+            nextReading[t] = 0;
+        }
+        count = 0;
+        lastTimestamp = Long.MIN_VALUE;
+    }
+
+    /** Number of lines currently followed. */
+    public int getTrackCount() {
+        return count;
+    }
+
+    /** Number of elements whose text has been replaced by a consensus so far. */
+    public long getCorrectedCount() {
+        return correctedCount;
+    }
+
+    private RecognizedText.Block fuseBlock(RecognizedText.Block block, long now) {
+        List<RecognizedText.Line> lines = block.getLines();
+        List<RecognizedText.Line> fusedLines = null;
+        for (int i = 0; i < lines.size(); i++) {
+            RecognizedText.Line line = lines.get(i);
+            RecognizedText.Line fused = fuseLine(line, now);
+            if (fused != line && fusedLines == null) {
+                fusedLines = new ArrayList<>(lines.subList(0, i));
+            }
+            if (fusedLines != null) {
+                fusedLines.add(fused);
+            }
+        }
+        if (fusedLines == null) {
+            return block;
+        }
+        StringBuilder text = new StringBuilder(block.getText().length());
+        for (RecognizedText.Line line : fusedLines) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(line.getText());
+        }
+        return block.hasBoundingBox()
+                ? new RecognizedText.Block(text.toString(), block.getLeft(), block.getTop(),
+                        block.getRight(), block.getBottom(), fusedLines)
+                : new RecognizedText.Block(text.toString(), fusedLines);
+    }
+
+    /** Votes on the elements of a line with its earlier readings, then records the line. */
+    private RecognizedText.Line fuseLine(RecognizedText.Line line, long now) {
+        if (!line.hasBoundingBox() || line.getElements().isEmpty()) {
+            return line;
+        }
+        int track = link(line);
+        RecognizedText.Line fused = line;
+        if (track >= 0) {
+            fused = vote(track, line, now);
+        } else {
+            track = newTrack();
+            if (track < 0) {
+                return line;
+            }
+        }
+        // The raw reading is kept, so that every vote counts independent readings.
+        RecognizedText.Line[] ring = readings[track];
+        ring[nextReading[track]] = line;
+        readingTimes[track][nextReading[track]] = now;
+        nextReading[track] = (nextReading[track] + 1) % window;
+        readingCounts[track] = Math.min(readingCounts[track] + 1, window);
+        boxes[track * 4] = line.getLeft();
+        boxes[track * 4 + 1] = line.getTop();
+        boxes[track * 4 + 2] = line.getRight();
+        boxes[track * 4 + 3] = line.getBottom();
+        lastSeen[track] = now;
+        linked[track] = true;
+        return fused;
+    }
+
+    /** Returns the unlinked track that overlaps the line most, or -1 if none overlaps enough. */
+    private int link(RecognizedText.Line line) {
+        int best = -1;
+        float bestIou = MIN_IOU;
+        for (int t = 0; t < count; t++) {
+            if (linked[t]) {
+                continue;
+            }
+            float iou = iou(line.getLeft(), line.getTop(), line.getRight(), line.getBottom(),
+                    boxes[t * 4], boxes[t * 4 + 1], boxes[t * 4 + 2], boxes[t * 4 + 3]);
+            if (iou >= bestIou) {
+                best = t;
+                bestIou = iou;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns a free track, replacing the least recently seen one not linked in this result if
+     * all are taken, or -1 if every track is linked.
+     */
+    private int newTrack() {
+        if (count < MAX_TRACKS) {
+            return count++;
+        }
+        int oldest = -1;
+        for (int t = 0; t < count; t++) {
+            if (!linked[t] && (oldest < 0 || lastSeen[t] < lastSeen[oldest])) {
+                oldest = t;
+            }
+        }
+        if (oldest >= 0) {
+            Arrays.fill(readings[oldest], null);
+            readingCounts[oldest] = 0;
+            nextReading[oldest] = 0;
+        }
+        return oldest;
+    }
+
+    /** Drops tracks not seen within the maximum age and clears the links of the last result. */
+    private void forgetTracks(long now) {
+        for (int t = count - 1; t >= 0; t--) {
+            linked[t] = false;
+            if (now - lastSeen[t] <= maxAgeNanos) {
+                continue;
+            }
+            int last = --count;
+            RecognizedText.Line[] ring = readings[t];
+            long[] times = readingTimes[t];
+            Arrays.fill(ring, null);
+            System.arraycopy(boxes, last * 4, boxes, t * 4, 4);
+            lastSeen[t] = lastSeen[last];
+            linked[t] = linked[last];
+            readings[t] = readings[last];
+            readingTimes[t] = readingTimes[last];
+            readingCounts[t] = readingCounts[last];
+            nextReading[t] = nextReading[last];
+            // The freed ring is reused by the next new track.
+            readings[last] = ring;
+            readingTimes[last] = times;
+            readingCounts[last] = 0;
+            nextReading[last] = 0;
+        }
+    }
+
+    /** Returns the line with each element replaced by its consensus with the track's readings. */
+    private RecognizedText.Line vote(int track, RecognizedText.Line line, long now) {
+        int readingCount = 0;
+        for (int r = 0; r < readingCounts[track]; r++) {
+            RecognizedText.Line reading = readings[track][r];
+            if (now - readingTimes[track][r] <= maxAgeNanos) {
+                usable[readingCount] = reading;
+                fitMapping(reading, line, readingCount);
+                readingCount++;
+            }
+        }
+        List<RecognizedText.Element> elements = line.getElements();
+        RecognizedText.Element[] fused = null;
+        float lineWeight = weight(line);
+        for (int e = 0; e < elements.size() && readingCount > 0; e++) {
+            RecognizedText.Element element = elements.get(e);
+            if (!element.hasBoundingBox()) {
+                continue;
+            }
+            candidates[0] = element.getText();
+            candidateWeights[0] = lineWeight;
+            int candidateCount = 1;
+            for (int r = 0; r < readingCount; r++) {
+                RecognizedText.Element aligned = align(usable[r], element, scales[r],
+                        offsets[r]);
+                if (aligned != null) {
+                    candidates[candidateCount] = aligned.getText();
+                    candidateWeights[candidateCount] = weight(usable[r]);
+                    candidateCount++;
+                }
+            }
+            String text = candidateCount > 1 ? consensus(candidateCount) : null;
+            if (text != null) {
+                if (fused == null) {
+                    fused = elements.toArray(new RecognizedText.Element[0]);
+                }
+                fused[e] = new RecognizedText.Element(text, element.getLeft(), element.getTop(),
+                        element.getRight(), element.getBottom());
+                correctedCount++;
+            }
+        }
+        Arrays.fill(candidates, null);
+        Arrays.fill(usable, null);
+        if (fused == null) {
+            return line;
+        }
+        StringBuilder text = new StringBuilder(line.getText().length());
+        for (RecognizedText.Element element : fused) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(element.getText());
+        }
+        return new RecognizedText.Line(text.toString(), line.getLeft(), line.getTop(),
+                line.getRight(), line.getBottom(), Arrays.asList(fused));
+    }
+
+    /**
+     * Finds how x coordinates in {@code line} map into an earlier reading of it, and stores the
+     * mapping at {@code index}. The scale follows the line height, which stays put when the
+     * camera zooms; the offset lines up either the left or the right ends of the lines, whichever
+     * aligns the elements better, since a word missed at one end moves only that end.
+     */
+    private void fitMapping(RecognizedText.Line reading, RecognizedText.Line line, int index) {
+        float scale = (float) Math.max(1, reading.getBottom() - reading.getTop())
+                / Math.max(1, line.getBottom() - line.getTop());
+        float leftOffset = reading.getLeft() - line.getLeft() * scale;
+        float rightOffset = reading.getRight() - line.getRight() * scale;
+        scales[index] = scale;
+        offsets[index] = leftOffset;
+        if (leftOffset != rightOffset
+                && alignment(reading, line, scale, rightOffset)
+                        > alignment(reading, line, scale, leftOffset)) {
+            offsets[index] = rightOffset;
+        }
+    }
+
+    /** Returns the summed overlap of every element of a line with its best aligned element. */
+    private static float alignment(RecognizedText.Line reading, RecognizedText.Line line,
+                                   float scale, float offset) {
+        float total = 0;
+        for (RecognizedText.Element element : line.getElements()) {
+            if (element.hasBoundingBox()) {
+                total += Math.max(0, bestOverlap(reading, element.getLeft() * scale + offset,
+                        element.getRight() * scale + offset, null));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the element of an earlier reading at the place {@code element} maps to, or null if
+     * none overlaps it enough.
+     */
+    private RecognizedText.Element align(RecognizedText.Line reading,
+                                         RecognizedText.Element element, float scale,
+                                         float offset) {
+        float iou = bestOverlap(reading, element.getLeft() * scale + offset,
+                element.getRight() * scale + offset, bestElement);
+        RecognizedText.Element best = bestElement[0];
+        bestElement[0] = null;
+        return iou >= MIN_ELEMENT_IOU ? best : null;
+    }
+
+    /**
+     * Returns the largest horizontal IoU of {@code [left, right)} with an element of the reading,
+     * or 0 if none overlaps, and stores that element in {@code best} unless it is null.
+     */
+    private static float bestOverlap(RecognizedText.Line reading, float left, float right,
+                                     RecognizedText.Element[] best) {
+        float bestIou = 0;
+        for (RecognizedText.Element candidate : reading.getElements()) {
+            if (!candidate.hasBoundingBox()) {
+                continue;
+            }
+            float overlap = Math.min(right, candidate.getRight())
+                    - Math.max(left, candidate.getLeft());
+            float union = Math.max(right, candidate.getRight())
+                    - Math.min(left, candidate.getLeft());
+            if (overlap > 0 && union > 0 && overlap / union > bestIou) {
+                bestIou = overlap / union;
+                if (best != null) {
+                    best[0] = candidate;
+                }
+            }
+        }
+        return bestIou;
+    }
+
+    /**
+     * Returns the weighted consensus of the candidates, or null if it is the new reading's text.
+     * The length is voted on first, then each char among the candidates of that length.
+     */
+    private String consensus(int candidateCount) {
+        int length = candidates[0].length();
+        float lengthWeight = -1;
+        for (int i = 0; i < candidateCount; i++) {
+            int candidateLength = candidates[i].length();
+            float weight = 0;
+            for (int j = 0; j < candidateCount; j++) {
+                if (candidates[j].length() == candidateLength) {
+                    weight += candidateWeights[j];
+                }
+            }
+            // Strictly greater, so that the new reading wins ties.
+            if (weight > lengthWeight) {
+                length = candidateLength;
+                lengthWeight = weight;
+            }
+        }
+        if (consensus.length < length) {
+            consensus = new char[Math.max(length, consensus.length * 2)];
+        }
+        for (int p = 0; p < length; p++) {
+            char best = 0;
+            float bestWeight = -1;
+            for (int i = 0; i < candidateCount; i++) {
+                if (candidates[i].length() != length) {
+                    continue;
+                }
+                char c = candidates[i].charAt(p);
+                if (c == best) {
+                    continue;
+                }
+                float weight = 0;
+                for (int j = i; j < candidateCount; j++) {
+                    if (candidates[j].length() == length && candidates[j].charAt(p) == c) {
+                        weight += candidateWeights[j];
+                    }
+                }
+                if (weight > bestWeight) {
+                    best = c;
+                    bestWeight = weight;
+                }
+            }
+            consensus[p] = best;
+        }
+        String current = candidates[0];
+        if (current.length() == length) {
+            boolean same = true;
+            for (int p = 0; p < length && same; p++) {
+                same = current.charAt(p) == consensus[p];
+            }
+            if (same) {
+                return null;
+            }
+        }
+        return new String(consensus, 0, length);
+    }
+
+    /** Weight of a reading: the height of its line, as a stand-in for a confidence. */
+    private static float weight(RecognizedText.Line line) {
+        return Math.max(1, line.getBottom() - line.getTop());
+    }
+
+    private static float iou(int left, int top, int right, int bottom,
+                             int otherLeft, int otherTop, int otherRight, int otherBottom) {
+        long width = Math.min(right, otherRight) - Math.max(left, otherLeft);
+        long height = Math.min(bottom, otherBottom) - Math.max(top, otherTop);
+        if (width <= 0 || height <= 0) {
+            return 0f;
+        }
+        long intersection = width * height;
+        long union = (long) (right - left) * (bottom - top)
+                + (long) (otherRight - otherLeft) * (otherBottom - otherTop) - intersection;
+        return union > 0 ? (float) intersection / union : 0f;
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.finder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uniform grid over the lines and elements of one {@link RecognizedText}, for finding the text at
+ * a point, inside a rectangle, or next to other text without scanning the whole result.
+ *
+ * <p>The grid has about {@value #ENTRIES_PER_CELL} entries per cell whatever the number of
+ * entries, so a point lookup reads a few entries and a rectangle or neighbour lookup reads the
+ * cells it covers, on a sparse label as on a dense page. Entries are kept in primitive arrays, and
+ * each cell lists the entries overlapping it, as one array of entry indices with an offset per
+ * cell. Building the grid sorts the entries into cells in two linear passes.
+ *
+ * <p>Coordinates are those of the recognized image. Nodes without a bounding box are left out.
+ * Instances are immutable and all lookups are safe from any thread.
+ */
+public final class TextGrid {
+
+    /** What an entry is. */
+    public enum Kind {
+        LINE,
+        ELEMENT
+    }
+
+    /** Where to look for a neighbour, relative to an entry. */
+    public enum Direction {
+        LEFT,
+        RIGHT,
+        ABOVE,
+        BELOW
+    }
+
+    static final int ENTRIES_PER_CELL = 2;
+    private static final int MAX_CELLS_PER_AXIS = 128;
+    private static final Kind[] KINDS = Kind.values();
+
+    public static final TextGrid EMPTY = build(new RecognizedText(0, 0, 0, "",
+            Collections.<RecognizedText.Block>emptyList()));
+    // A neighbour must overlap an entry across the search direction by this share of the smaller
+    // of the two, e.g. vertically for a neighbour on the right.
+    private static final float MIN_NEIGHBOUR_OVERLAP = 0.5f;
+
+    private final long timestampNanos;
+    private final int size;
+    private final int[] boxes;
+    private final byte[] kinds;
+    // Index of the line an entry belongs to; a line belongs to itself.
+    private final int[] lines;
+    private final String[] texts;
+
+    private final float originX;
+    private final float originY;
+    private final float cellWidth;
+    private final float cellHeight;
+    private final int columns;
+    private final int rows;
+    // Entries overlapping cell c are cellEntries[cellStarts[c]] to cellEntries[cellStarts[c + 1]].
+    private final int[] cellStarts;
+    private final int[] cellEntries;
+
+    private TextGrid(long timestampNanos, int size, int[] boxes, byte[] kinds, int[] lines,
+                     String[] texts, float originX, float originY, float cellWidth,
+                     float cellHeight, int columns, int rows) {
+        this.timestampNanos = timestampNanos;
+        this.size = size;
+        this.boxes = boxes;
+        this.kinds = kinds;
+        this.lines = lines;
+        this.texts = texts;
+        this.originX = originX;
+        this.originY = originY;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.columns = columns;
+        this.rows = rows;
+
+        cellStarts = new int[columns * rows + 1];
+        for (int i = 0; i < size; i++) {
+            for (int row = rowOf(boxes[4 * i + 1]); row <= rowOf(boxes[4 * i + 3]); row++) {
+                for (int column = columnOf(boxes[4 * i]); column <= columnOf(boxes[4 * i + 2]);
+                     column++) {
+                    cellStarts[row * columns + column + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        cellEntries = new int[cellStarts[columns * rows]];
+        int[] fill = Arrays.copyOf(cellStarts, columns * rows);
+        for (int i = 0; i < size; i++) {
+            for (int row = rowOf(boxes[4 * i + 1]); row <= rowOf(boxes[4 * i + 3]); row++) {
+                for (int column = columnOf(boxes[4 * i]); column <= columnOf(boxes[4 * i + 2]);
+                     column++) {
+                    cellEntries[fill[row * columns + column]++] = i;
+                }
+            }
+        }
+    }
+
+    /** Builds the grid over the lines and elements of a result. */
+    public static TextGrid build(RecognizedText text) {
+        int capacity = 0;
+        for (RecognizedText.Block block : text.getBlocks()) {
+            for (RecognizedText.Line line : block.getLines()) {
+                capacity += 1 + line.getElements().size();
+            }
+        }
+        int[] boxes = new int[4 * capacity];
+        byte[] kinds = new byte[capacity];
+        int[] lines = new int[capacity];
+        String[] texts = new String[capacity];
+        int size = 0;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (RecognizedText.Block block : text.getBlocks()) {
+            for (RecognizedText.Line line : block.getLines()) {
+                // Elements of a line without a box still point at a line entry, if they have one.
+                int lineIndex = line.hasBoundingBox() ? size : -1;
+                List<RecognizedText.Element> elements = line.getElements();
+                for (int e = -1; e < elements.size(); e++) {
+                    RecognizedText.Node node = e < 0 ? line : elements.get(e);
+                    if (!node.hasBoundingBox()) {
+                        continue;
+                    }
+                    boxes[4 * size] = Math.min(node.getLeft(), node.getRight());
+                    boxes[4 * size + 1] = Math.min(node.getTop(), node.getBottom());
+                    boxes[4 * size + 2] = Math.max(node.getLeft(), node.getRight());
+                    boxes[4 * size + 3] = Math.max(node.getTop(), node.getBottom());
+                    minX = Math.min(minX, boxes[4 * size]);
+                    minY = Math.min(minY, boxes[4 * size + 1]);
+                    maxX = Math.max(maxX, boxes[4 * size + 2]);
+                    maxY = Math.max(maxY, boxes[4 * size + 3]);
+                    kinds[size] = (byte) (e < 0 ? Kind.LINE : Kind.ELEMENT).ordinal();
+                    lines[size] = lineIndex;
+                    texts[size] = node.getText();
+                    size++;
+                }
+            }
+        }
+        if (size == 0) {
+            return new TextGrid(text.getTimestampNanos(), 0, boxes, kinds, lines, texts,
+                    0, 0, 1, 1, 1, 1);
+        }
+        // Covers the image, and any boxes the recognizer reported partly outside of it.
+        float originX = Math.min(0, minX);
+        float originY = Math.min(0, minY);
+        float width = Math.max(Math.max(text.getImageWidth(), maxX) - originX, 1);
+        float height = Math.max(Math.max(text.getImageHeight(), maxY) - originY, 1);
+        float cells = Math.max(1f, (float) size / ENTRIES_PER_CELL);
+        int columns = clampCells(Math.round((float) Math.sqrt(cells * width / height)));
+        int rows = clampCells(Math.round(cells / columns));
+        return new TextGrid(text.getTimestampNanos(), size, boxes, kinds, lines, texts,
+                originX, originY, width / columns, height / rows, columns, rows);
+    }
+
+    private static int clampCells(int cells) {
+        return Math.max(1, Math.min(MAX_CELLS_PER_AXIS, cells));
+    }
+
+    /** Capture time of the result the grid was built from. */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /** Number of entries, lines and elements together. */
+    public int size() {
+        return size;
+    }
+
+    public Kind getKind(int index) {
+        return KINDS[kinds[index]];
+    }
+
+    public String getText(int index) {
+        return texts[index];
+    }
+
+    /** Returns the line an element belongs to, the line itself for a line, or -1 if unknown. */
+    public int getLine(int index) {
+        return lines[index];
+    }
+
+    public int getLeft(int index) {
+        return boxes[4 * index];
+    }
+
+    public int getTop(int index) {
+        return boxes[4 * index + 1];
+    }
+
+    public int getRight(int index) {
+        return boxes[4 * index + 2];
+    }
+
+    public int getBottom(int index) {
+        return boxes[4 * index + 3];
+    }
+
+    /**
+     * Returns the entry of a kind at a point: the smallest one containing it, or else the closest
+     * one within {@code slop}, or -1 if there is none.
+     */
+    public int find(float x, float y, Kind kind, float slop) {
+        int best = -1;
+        float bestDistance = Float.MAX_VALUE;
+        long bestArea = Long.MAX_VALUE;
+        int column0 = columnOf(x - slop);
+        int column1 = columnOf(x + slop);
+        for (int row = rowOf(y - slop); row <= rowOf(y + slop); row++) {
+            for (int column = column0; column <= column1; column++) {
+                int cell = row * columns + column;
+                for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+                    int i = cellEntries[k];
+                    if (kinds[i] != kind.ordinal()) {
+                        continue;
+                    }
+                    float dx = Math.max(Math.max(boxes[4 * i] - x, x - boxes[4 * i + 2]), 0);
+                    float dy = Math.max(Math.max(boxes[4 * i + 1] - y, y - boxes[4 * i + 3]), 0);
+                    float distance = (float) Math.sqrt(dx * dx + dy * dy);
+                    if (distance > slop || distance > bestDistance) {
+                        continue;
+                    }
+                    long area = (long) (boxes[4 * i + 2] - boxes[4 * i])
+                            * (boxes[4 * i + 3] - boxes[4 * i + 1]);
+                    if (distance < bestDistance || area < bestArea) {
+                        best = i;
+                        bestDistance = distance;
+                        bestArea = area;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the entries of a kind that overlap a rectangle, in no particular order.
+     *
+     * @param out receives the indices of the entries, as many as fit
+     * @return the number of entries found, which may be more than fit in {@code out}
+     */
+    public int query(float left, float top, float right, float bottom, Kind kind, int[] out) {
+        if (size == 0 || right < left || bottom < top) {
+            return 0;
+        }
+        int count = 0;
+        int column0 = columnOf(left);
+        int row0 = rowOf(top);
+        for (int row = row0; row <= rowOf(bottom); row++) {
+            for (int column = column0; column <= columnOf(right); column++) {
+                int cell = row * columns + column;
+                for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+                    int i = cellEntries[k];
+                    if (kinds[i] != kind.ordinal() || !overlaps(i, left, top, right, bottom)) {
+                        continue;
+                    }
+                    // An entry in several cells is reported in the first one both it and the
+                    // rectangle cover, so every entry is reported once without remembering any.
+                    if (column != Math.max(column0, columnOf(boxes[4 * i]))
+                            || row != Math.max(row0, rowOf(boxes[4 * i + 1]))) {
+                        continue;
+                    }
+                    if (count < out.length) {
+                        out[count] = i;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the closest entry of a kind next to an entry in a direction, such as the price on
+     * the right of a product name, or -1 if there is none within {@code maxDistance}. A neighbour
+     * must overlap the entry across the direction, by half of the smaller of their sizes, and must
+     * not belong to the same line.
+     */
+    public int findNeighbour(int index, Direction direction, Kind kind, float maxDistance) {
+        int left = boxes[4 * index];
+        int top = boxes[4 * index + 1];
+        int right = boxes[4 * index + 2];
+        int bottom = boxes[4 * index + 3];
+        boolean horizontal = direction == Direction.LEFT || direction == Direction.RIGHT;
+        // Searches bands of growing length, so close neighbours on dense pages are found after
+        // reading a few cells.
+        float step = Math.max(1, horizontal ? cellWidth : cellHeight);
+        float limit = Math.min(maxDistance, horizontal ? columns * cellWidth : rows * cellHeight);
+        for (float reach = Math.min(step, limit); ; reach = Math.min(2 * reach, limit)) {
+            int best = -1;
+            float bestGap = Float.MAX_VALUE;
+            int row1 = rowOf(direction == Direction.BELOW ? bottom + reach : bottom);
+            int column1 = columnOf(direction == Direction.RIGHT ? right + reach : right);
+            for (int row = rowOf(direction == Direction.ABOVE ? top - reach : top); row <= row1;
+                 row++) {
+                for (int column = columnOf(direction == Direction.LEFT ? left - reach : left);
+                     column <= column1; column++) {
+                    int cell = row * columns + column;
+                    for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+                        int i = cellEntries[k];
+                        if (kinds[i] != kind.ordinal() || i == index
+                                || lines[i] >= 0 && lines[i] == lines[index]) {
+                            continue;
+                        }
+                        float gap = gap(index, i, direction);
+                        if (gap < bestGap && gap <= reach && isBeside(index, i, horizontal)) {
+                            best = i;
+                            bestGap = gap;
+                        }
+                    }
+                }
+            }
+            if (best >= 0 || reach >= limit) {
+                return best;
+            }
+        }
+    }
+
+    /**
+     * Returns how far entry {@code i} lies from entry {@code index} in a direction, or infinity if
+     * it does not lie in that direction. Entries may overlap a little, as neighbouring boxes of
+     * recognized text do.
+     */
+    private float gap(int index, int i, Direction direction) {
+        float gap;
+        float size;
+        switch (direction) {
+            case RIGHT:
+                gap = boxes[4 * i] - boxes[4 * index + 2];
+                size = boxes[4 * index + 3] - boxes[4 * index + 1];
+                break;
+            case LEFT:
+                gap = boxes[4 * index] - boxes[4 * i + 2];
+                size = boxes[4 * index + 3] - boxes[4 * index + 1];
+                break;
+            case BELOW:
+                gap = boxes[4 * i + 1] - boxes[4 * index + 3];
+                size = boxes[4 * index + 3] - boxes[4 * index + 1];
+                break;
+            default:
+                gap = boxes[4 * index + 1] - boxes[4 * i + 3];
+                size = boxes[4 * index + 3] - boxes[4 * index + 1];
+                break;
+        }
+        // Up to a quarter of the text height of overlap still counts as beside.
+        if (gap < -size / 4) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return Math.max(0, gap);
+    }
+
+    /** Returns whether two entries overlap enough across the direction to be neighbours. */
+    private boolean isBeside(int a, int b, boolean horizontal) {
+        int start = horizontal ? 1 : 0;
+        int end = horizontal ? 3 : 2;
+        int overlap = Math.min(boxes[4 * a + end], boxes[4 * b + end])
+                - Math.max(boxes[4 * a + start], boxes[4 * b + start]);
+        int smaller = Math.min(boxes[4 * a + end] - boxes[4 * a + start],
+                boxes[4 * b + end] - boxes[4 * b + start]);
+        return overlap >= MIN_NEIGHBOUR_OVERLAP * smaller;
+    }
+
+    private boolean overlaps(int i, float left, float top, float right, float bottom) {
+        return boxes[4 * i] <= right && boxes[4 * i + 2] >= left
+                && boxes[4 * i + 1] <= bottom && boxes[4 * i + 3] >= top;
+    }
+
+    private int columnOf(float x) {
+        int column = (int) Math.floor((x - originX) / cellWidth);
+        return Math.max(0, Math.min(columns - 1, column));
+    }
+
+    private int rowOf(float y) {
+        int row = (int) Math.floor((y - originY) / cellHeight);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+}
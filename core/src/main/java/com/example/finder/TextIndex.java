@@ -0,0 +1,533 @@
+package com.example.finder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent inverted index of recognized text, so that "where did I see X" is answered from
+ * earlier scans instead of by running recognition again.
+ *
+ * <p>Every recognized word is split into tokens, which are normalized with an
+ * {@link OcrConfusionMap} so that a word and its common misreadings share a key. Each token gets a
+ * posting with the source it was seen in, such as an image URI or a camera session, the time, the
+ * word's box and its text as recognized.
+ *
+ * <p>Postings are added to an in-memory buffer. Once it is large enough, or on {@link #flush()},
+ * the buffer becomes an immutable segment. The segment is searchable at once and is written to
+ * its own file on a background thread. Segment files are never modified. Once there are more than
+ * {@code maxSegments} of them, the background thread merges them into a single file. The merge
+ * drops the postings of deleted or replaced sources. Each file is written under a temporary name
+ * and then renamed, and the merged files are removed only once their replacement is in place, or
+ * when the index is next opened after a crash. So a crash loses at most the postings whose segment
+ * was not written yet.
+ *
+ * <p>All methods are thread-safe. Adding is cheap enough for the analyzer thread; searching
+ * touches only in-memory sorted arrays. Buffered postings are searched in memory too, so searches
+ * never flush the buffer into small segments.
+ */
+public final class TextIndex implements Closeable {
+
+    /** Buffered postings that trigger a flush. */
+    public static final int DEFAULT_FLUSH_THRESHOLD = 4096;
+    /** Segment files that trigger a merge. */
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Tokens per query, so matched tokens fit in the bits of a long.
+    private static final int MAX_QUERY_TOKENS = 64;
+
+    /** A place where all tokens of a query were seen together. */
+    public static final class Hit {
+        private final String source;
+        private final long timestampMillis;
+        private final int[] boxes;
+        private final String[] labels;
+
+        Hit(String source, long timestampMillis, int[] boxes, String[] labels) {
+            this.source = source;
+            this.timestampMillis = timestampMillis;
+            this.boxes = boxes;
+            this.labels = labels;
+        }
+
+        /** The source passed to {@link #add}. */
+        public String getSource() {
+            return source;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        /** Number of matched words. */
+        public int size() {
+            return labels.length;
+        }
+
+        /** The matched word as it was recognized. */
+        public String getLabel(int index) {
+            return labels[index];
+        }
+
+        public int getLeft(int index) {
+            return boxes[index * 4];
+        }
+
+        public int getTop(int index) {
+            return boxes[index * 4 + 1];
+        }
+
+        public int getRight(int index) {
+            return boxes[index * 4 + 2];
+        }
+
+        public int getBottom(int index) {
+            return boxes[index * 4 + 3];
+        }
+    }
+
+    private final File directory;
+    private final OcrConfusionMap confusionMap;
+    private final int flushThreshold;
+    private final int maxSegments;
+    private final ExecutorService background;
+
+    // Guarded by this.
+    private TextIndexSegment.Builder buffer = new TextIndexSegment.Builder();
+    // The buffer sorted for searching, or null if it changed since; guarded by this.
+    private TextIndexSegment bufferSegment;
+    private long nextGeneration;
+    // Oldest first. Replaced, never modified, so readers can use it without locking.
+    private volatile List<TextIndexSegment> segments;
+    // Segments whose files are complete, guarded by this.
+    private final Set<TextIndexSegment> persisted = new HashSet<>();
+
+    private TextIndex(File directory, OcrConfusionMap confusionMap, int flushThreshold,
+                      int maxSegments, List<TextIndexSegment> segments) {
+        this.directory = directory;
+        this.confusionMap = confusionMap;
+        this.flushThreshold = flushThreshold;
+        this.maxSegments = maxSegments;
+        this.segments = Collections.unmodifiableList(segments);
+        this.persisted.addAll(segments);
+        this.nextGeneration = segments.isEmpty()
+                ? 1 : segments.get(segments.size() - 1).getLastGeneration() + 1;
+        this.background = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), runnable -> new Thread(runnable, "TextIndex"));
+    }
+
+    /** Opens the index in a directory with the default settings, creating it if needed. */
+    public static TextIndex open(File directory) throws IOException {
+        return open(directory, OcrConfusionMap.DEFAULT, DEFAULT_FLUSH_THRESHOLD,
+                DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * Opens the index in a directory, creating it if needed. Leftovers of an interrupted write or
+     * merge are removed.
+     *
+     * @throws IOException if the directory cannot be created or a segment file is corrupt
+     */
+    public static TextIndex open(File directory, OcrConfusionMap confusionMap, int flushThreshold,
+                                 int maxSegments) throws IOException {
+        if (flushThreshold < 1) {
+            throw new IllegalArgumentException("flushThreshold must be at least 1");
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("maxSegments must be at least 1");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + directory);
+        }
+        List<long[]> ranges = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                delete(file);
+                continue;
+            }
+            long[] range = TextIndexSegment.parseFileName(file.getName());
+            if (range != null) {
+                ranges.add(range);
+            }
+        }
+        // A segment inside the range of a merged one was merged before the crash.
+        List<long[]> live = new ArrayList<>();
+        for (long[] range : ranges) {
+            boolean merged = false;
+            for (long[] other : ranges) {
+                if (other != range && other[0] <= range[0] && range[1] <= other[1]
+                        && (other[0] != range[0] || other[1] != range[1])) {
+                    merged = true;
+                }
+            }
+            if (merged) {
+                delete(new File(directory, TextIndexSegment.fileName(range[0], range[1])));
+            } else {
+                live.add(range);
+            }
+        }
+        Collections.sort(live, (a, b) -> Long.compare(a[0], b[0]));
+        List<TextIndexSegment> segments = new ArrayList<>(live.size());
+        for (long[] range : live) {
+            segments.add(TextIndexSegment.read(
+                    new File(directory, TextIndexSegment.fileName(range[0], range[1]))));
+        }
+        return new TextIndex(directory, confusionMap, flushThreshold, maxSegments, segments);
+    }
+
+    /**
+     * Indexes every word of a recognition result.
+     *
+     * @param source where the text was seen, e.g. an image URI or a camera session
+     * @param timestampMillis wall-clock time the text was seen
+     */
+    public synchronized void add(String source, long timestampMillis, RecognizedText text) {
+        addLocked(source, timestampMillis, text);
+        flushIfFull();
+    }
+
+    /** Replaces everything indexed for a source, e.g. an image that was scanned again. */
+    public synchronized void replace(String source, long timestampMillis, RecognizedText text) {
+        buffer.delete(source);
+        addLocked(source, timestampMillis, text);
+        flushIfFull();
+    }
+
+    /** Removes everything indexed for a source. */
+    public synchronized void delete(String source) {
+        buffer.delete(source);
+        bufferSegment = null;
+    }
+
+    private void addLocked(String source, long timestampMillis, RecognizedText text) {
+        bufferSegment = null;
+        List<String> tokens = new ArrayList<>();
+        for (RecognizedText.Block block : text.getBlocks()) {
+            for (RecognizedText.Line line : block.getLines()) {
+                if (line.getElements().isEmpty()) {
+                    addNode(source, timestampMillis, line, line, block, tokens);
+                }
+                for (RecognizedText.Element element : line.getElements()) {
+                    addNode(source, timestampMillis, element, line, block, tokens);
+                }
+            }
+        }
+    }
+
+    /** Adds a posting for each token of a word, at the closest box available. */
+    private void addNode(String source, long timestampMillis, RecognizedText.Node node,
+                         RecognizedText.Line line, RecognizedText.Block block,
+                         List<String> tokens) {
+        tokens.clear();
+        tokenize(node.getText(), tokens);
+        if (tokens.isEmpty()) {
+            return;
+        }
+        RecognizedText.Node boxed = node.hasBoundingBox() ? node
+                : line.hasBoundingBox() ? line : block;
+        for (String token : tokens) {
+            buffer.add(token, source, timestampMillis, boxed.getLeft(), boxed.getTop(),
+                    boxed.getRight(), boxed.getBottom(), node.getText());
+        }
+    }
+
+    /**
+     * Splits text into tokens: maximal runs of letters and digits after normalization with the
+     * index's confusion map.
+     */
+    void tokenize(CharSequence text, List<String> out) {
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? confusionMap.map(text.charAt(i)) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (token.length() > 0) {
+                out.add(token.toString());
+                token.setLength(0);
+            }
+        }
+    }
+
+    private void flushIfFull() {
+        if (buffer.size() >= flushThreshold) {
+            flush();
+        }
+    }
+
+    /**
+     * Turns the buffered postings into a segment, which is searchable on return and written to
+     * disk in the background.
+     */
+    public synchronized void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        TextIndexSegment segment = buffer.build(nextGeneration++);
+        buffer = new TextIndexSegment.Builder();
+        bufferSegment = null;
+        List<TextIndexSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        segments = Collections.unmodifiableList(updated);
+        background.execute(this::persist);
+    }
+
+    /**
+     * Writes the files of all segments that have none yet, oldest first, then merges if needed.
+     * Runs on the background thread. A segment that cannot be written stays searchable and is
+     * tried again after the next flush.
+     */
+    private void persist() {
+        try {
+            for (TextIndexSegment segment : segments) {
+                synchronized (this) {
+                    if (persisted.contains(segment)) {
+                        continue;
+                    }
+                }
+                write(segment);
+                synchronized (this) {
+                    persisted.add(segment);
+                }
+            }
+            compactIfNeeded();
+        } catch (IOException e) {
+            // Kept in memory; retried by the next persist.
+        }
+    }
+
+    /** Merges all segment files into one if there are too many. Runs on the background thread. */
+    private void compactIfNeeded() throws IOException {
+        List<TextIndexSegment> merged = new ArrayList<>();
+        synchronized (this) {
+            // Only the oldest segments with complete files, so a merge covers a contiguous range.
+            for (TextIndexSegment segment : segments) {
+                if (!persisted.contains(segment)) {
+                    break;
+                }
+                merged.add(segment);
+            }
+        }
+        if (merged.size() <= maxSegments) {
+            return;
+        }
+        TextIndexSegment compacted = TextIndexSegment.merge(merged);
+        write(compacted);
+        synchronized (this) {
+            List<TextIndexSegment> updated = new ArrayList<>();
+            updated.add(compacted);
+            updated.addAll(segments.subList(merged.size(), segments.size()));
+            segments = Collections.unmodifiableList(updated);
+            persisted.removeAll(merged);
+            persisted.add(compacted);
+        }
+        for (TextIndexSegment segment : merged) {
+            delete(fileOf(segment));
+        }
+    }
+
+    private void write(TextIndexSegment segment) throws IOException {
+        File file = fileOf(segment);
+        File temp = new File(directory, file.getName() + TEMP_SUFFIX);
+        segment.writeTo(temp);
+        if (!temp.renameTo(file)) {
+            delete(temp);
+            throw new IOException("Cannot rename " + temp + " to " + file);
+        }
+    }
+
+    private File fileOf(TextIndexSegment segment) {
+        return new File(directory, TextIndexSegment.fileName(segment.getFirstGeneration(),
+                segment.getLastGeneration()));
+    }
+
+    private static void delete(File file) {
+        // A file that cannot be deleted is retried, and skipped, the next time the index opens.
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * Returns the places where all words of the query were seen together, most recent first. The
+     * query is normalized like indexed text, and each of its words must match a whole indexed
+     * word. Everything added so far is searched, including postings still in the buffer.
+     *
+     * @param maxHits most hits to return
+     */
+    public List<Hit> search(String query, int maxHits) {
+        List<String> tokenList = new ArrayList<>();
+        tokenize(query, tokenList);
+        Set<String> unique = new LinkedHashSet<>(tokenList);
+        if (unique.isEmpty() || maxHits <= 0) {
+            return Collections.emptyList();
+        }
+        if (unique.size() > MAX_QUERY_TOKENS) {
+            throw new IllegalArgumentException("Too many words in query: " + unique.size());
+        }
+        String[] tokens = unique.toArray(new String[0]);
+        long allTokens = tokens.length == 64 ? -1L : (1L << tokens.length) - 1;
+
+        List<TextIndexSegment> snapshot = searchableSegments();
+        // Candidates keyed by source and time, i.e. by one sighting.
+        Map<String, Candidate> candidates = new HashMap<>();
+        for (int s = 0; s < snapshot.size(); s++) {
+            TextIndexSegment segment = snapshot.get(s);
+            for (int t = 0; t < tokens.length; t++) {
+                int tokenIndex = segment.findToken(tokens[t]);
+                if (tokenIndex < 0) {
+                    continue;
+                }
+                int end = segment.getPostingEnd(tokenIndex);
+                for (int p = segment.getPostingStart(tokenIndex); p < end; p++) {
+                    String source = segment.getSource(p);
+                    if (isDeletedAfter(snapshot, s, source)) {
+                        continue;
+                    }
+                    long timestamp = segment.getTimestamp(p);
+                    String key = source + '\u0000' + timestamp;
+                    Candidate candidate = candidates.get(key);
+                    if (candidate == null) {
+                        candidate = new Candidate(source, timestamp);
+                        candidates.put(key, candidate);
+                    }
+                    candidate.add(t, segment, p);
+                }
+            }
+        }
+
+        List<Candidate> complete = new ArrayList<>();
+        for (Candidate candidate : candidates.values()) {
+            if (candidate.matchedTokens == allTokens) {
+                complete.add(candidate);
+            }
+        }
+        Collections.sort(complete, (a, b) -> a.timestampMillis != b.timestampMillis
+                ? Long.compare(b.timestampMillis, a.timestampMillis)
+                : a.source.compareTo(b.source));
+        List<Hit> hits = new ArrayList<>(Math.min(maxHits, complete.size()));
+        for (int i = 0; i < complete.size() && hits.size() < maxHits; i++) {
+            hits.add(complete.get(i).toHit());
+        }
+        return hits;
+    }
+
+    /**
+     * Returns the segments, oldest first, followed by the buffer as a segment if it is not empty.
+     * The buffer is only sorted again once it has changed, so repeated searches stay cheap.
+     */
+    private synchronized List<TextIndexSegment> searchableSegments() {
+        if (buffer.isEmpty()) {
+            return segments;
+        }
+        if (bufferSegment == null) {
+            // Not added to the segments or written; flush() builds the segment that is.
+            bufferSegment = buffer.build(nextGeneration);
+        }
+        List<TextIndexSegment> all = new ArrayList<>(segments.size() + 1);
+        all.addAll(segments);
+        all.add(bufferSegment);
+        return all;
+    }
+
+    private static boolean isDeletedAfter(List<TextIndexSegment> segments, int index,
+                                          String source) {
+        for (int newer = index + 1; newer < segments.size(); newer++) {
+            if (segments.get(newer).deletes(source)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Number of searchable segments, including those still being written. */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /** Number of postings in all searchable segments, including hidden ones not yet merged. */
+    public int getPostingCount() {
+        int count = 0;
+        for (TextIndexSegment segment : segments) {
+            count += segment.getPostingCount();
+        }
+        return count;
+    }
+
+    /** Waits until all segments flushed so far are written and merged. For tests. */
+    void awaitBackgroundWork() throws InterruptedException {
+        Future<?> done = background.submit(() -> { });
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Flushes the buffer and waits for all segment files to be written. */
+    @Override
+    public void close() throws IOException {
+        flush();
+        // Also retries segments whose write failed earlier.
+        background.execute(this::persist);
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the text index", e);
+        }
+    }
+
+    /** A sighting that matched some of the query's tokens. */
+    private static final class Candidate {
+        final String source;
+        final long timestampMillis;
+        long matchedTokens;
+        int size;
+        int[] boxes = new int[4 * 4];
+        String[] labels = new String[4];
+
+        Candidate(String source, long timestampMillis) {
+            this.source = source;
+            this.timestampMillis = timestampMillis;
+        }
+
+        void add(int token, TextIndexSegment segment, int posting) {
+            matchedTokens |= 1L << token;
+            if (size == labels.length) {
+                boxes = Arrays.copyOf(boxes, boxes.length * 2);
+                labels = Arrays.copyOf(labels, labels.length * 2);
+            }
+            boxes[size * 4] = segment.getLeft(posting);
+            boxes[size * 4 + 1] = segment.getTop(posting);
+            boxes[size * 4 + 2] = segment.getRight(posting);
+            boxes[size * 4 + 3] = segment.getBottom(posting);
+            labels[size] = segment.getLabel(posting);
+            size++;
+        }
+
+        Hit toHit() {
+            return new Hit(source, timestampMillis, Arrays.copyOf(boxes, size * 4),
+                    Arrays.copyOf(labels, size));
+        }
+    }
+}
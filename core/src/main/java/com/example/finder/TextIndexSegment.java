@@ -0,0 +1,407 @@
+package com.example.finder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One immutable, sorted run of {@link TextIndex} postings, as held in memory and written to a
+ * segment file.
+ *
+ * <p>Postings are grouped by token, tokens sorted, so all postings of a token are found with one
+ * binary search. A segment also lists the sources deleted when it was built; these hide the
+ * postings of older segments, never its own. A segment covers a range of generations: a freshly
+ * flushed segment has one, a compacted segment the range of the segments merged into it.
+ */
+final class TextIndexSegment {
+
+    private static final int MAGIC = 0x46544931; // "FTI1"
+    private static final int VERSION = 1;
+    private static final int COORDS_PER_POSTING = 4;
+
+    private final long firstGeneration;
+    private final long lastGeneration;
+    private final String[] sources;
+    private final Set<String> deletedSources;
+    private final String[] tokens;
+    // Postings of tokens[i] are at positions tokenStarts[i] until tokenStarts[i + 1].
+    private final int[] tokenStarts;
+    private final int[] postingSources;
+    private final long[] timestamps;
+    private final int[] boxes;
+    private final String[] labels;
+
+    private TextIndexSegment(long firstGeneration, long lastGeneration, String[] sources,
+                             Set<String> deletedSources, String[] tokens, int[] tokenStarts,
+                             int[] postingSources, long[] timestamps, int[] boxes,
+                             String[] labels) {
+        this.firstGeneration = firstGeneration;
+        this.lastGeneration = lastGeneration;
+        this.sources = sources;
+        this.deletedSources = deletedSources;
+        this.tokens = tokens;
+        this.tokenStarts = tokenStarts;
+        this.postingSources = postingSources;
+        this.timestamps = timestamps;
+        this.boxes = boxes;
+        this.labels = labels;
+    }
+
+    long getFirstGeneration() {
+        return firstGeneration;
+    }
+
+    long getLastGeneration() {
+        return lastGeneration;
+    }
+
+    int getPostingCount() {
+        return postingSources.length;
+    }
+
+    /** Returns whether this segment hides the postings of a source in older segments. */
+    boolean deletes(String source) {
+        return deletedSources.contains(source);
+    }
+
+    /** Returns the index of a token, or a negative value if the segment has no postings of it. */
+    int findToken(String token) {
+        return Arrays.binarySearch(tokens, token);
+    }
+
+    int getPostingStart(int tokenIndex) {
+        return tokenStarts[tokenIndex];
+    }
+
+    int getPostingEnd(int tokenIndex) {
+        return tokenStarts[tokenIndex + 1];
+    }
+
+    String getSource(int posting) {
+        return sources[postingSources[posting]];
+    }
+
+    long getTimestamp(int posting) {
+        return timestamps[posting];
+    }
+
+    int getLeft(int posting) {
+        return boxes[posting * COORDS_PER_POSTING];
+    }
+
+    int getTop(int posting) {
+        return boxes[posting * COORDS_PER_POSTING + 1];
+    }
+
+    int getRight(int posting) {
+        return boxes[posting * COORDS_PER_POSTING + 2];
+    }
+
+    int getBottom(int posting) {
+        return boxes[posting * COORDS_PER_POSTING + 3];
+    }
+
+    String getLabel(int posting) {
+        return labels[posting];
+    }
+
+    /** Name of the file a segment covering the given generations is stored in. */
+    static String fileName(long firstGeneration, long lastGeneration) {
+        return String.format(Locale.ROOT, "seg-%012d-%012d.fti", firstGeneration,
+                lastGeneration);
+    }
+
+    /**
+     * Returns {@code {first, last}} generation of a segment file name, or null if the name is not
+     * one.
+     */
+    static long[] parseFileName(String name) {
+        if (!name.startsWith("seg-") || !name.endsWith(".fti")) {
+            return null;
+        }
+        String[] parts = name.substring(4, name.length() - 4).split("-");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new long[] {Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Merges segments, oldest first, into one covering all their generations. Postings hidden by
+     * a newer segment of the list are dropped, and so are all deletions, since no older segment is
+     * left for them to apply to.
+     */
+    static TextIndexSegment merge(List<TextIndexSegment> segments) {
+        Builder builder = new Builder();
+        for (int s = 0; s < segments.size(); s++) {
+            TextIndexSegment segment = segments.get(s);
+            // Sources whose postings in this segment were deleted later.
+            Set<String> hidden = new HashSet<>();
+            for (int newer = s + 1; newer < segments.size(); newer++) {
+                hidden.addAll(segments.get(newer).deletedSources);
+            }
+            for (int t = 0; t < segment.tokens.length; t++) {
+                for (int p = segment.tokenStarts[t]; p < segment.tokenStarts[t + 1]; p++) {
+                    String source = segment.getSource(p);
+                    if (!hidden.contains(source)) {
+                        builder.add(segment.tokens[t], source, segment.timestamps[p],
+                                segment.getLeft(p), segment.getTop(p), segment.getRight(p),
+                                segment.getBottom(p), segment.labels[p]);
+                    }
+                }
+            }
+        }
+        return builder.build(segments.get(0).firstGeneration,
+                segments.get(segments.size() - 1).lastGeneration, Collections.<String>emptySet());
+    }
+
+    /** Writes the segment to a file, syncing it to disk before returning. */
+    void writeTo(File file) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(firstGeneration);
+            out.writeLong(lastGeneration);
+            out.writeInt(sources.length);
+            for (String source : sources) {
+                writeString(out, source);
+            }
+            out.writeInt(deletedSources.size());
+            for (String source : deletedSources) {
+                writeString(out, source);
+            }
+            out.writeInt(tokens.length);
+            for (int t = 0; t < tokens.length; t++) {
+                writeString(out, tokens[t]);
+                out.writeInt(tokenStarts[t + 1] - tokenStarts[t]);
+                for (int p = tokenStarts[t]; p < tokenStarts[t + 1]; p++) {
+                    out.writeInt(postingSources[p]);
+                    out.writeLong(timestamps[p]);
+                    for (int c = 0; c < COORDS_PER_POSTING; c++) {
+                        out.writeInt(boxes[p * COORDS_PER_POSTING + c]);
+                    }
+                    writeString(out, labels[p]);
+                }
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+    }
+
+    /**
+     * Reads a segment file.
+     *
+     * @throws IOException if the file cannot be read or is not a complete segment
+     */
+    static TextIndexSegment read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a text index segment: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported segment version " + version + ": " + file);
+            }
+            long firstGeneration = in.readLong();
+            long lastGeneration = in.readLong();
+            String[] sources = new String[readCount(in)];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = readString(in);
+            }
+            int deletedCount = readCount(in);
+            Set<String> deletedSources = new HashSet<>();
+            for (int i = 0; i < deletedCount; i++) {
+                deletedSources.add(readString(in));
+            }
+            Builder builder = new Builder();
+            int tokenCount = readCount(in);
+            for (int t = 0; t < tokenCount; t++) {
+                String token = readString(in);
+                int postingCount = readCount(in);
+                for (int p = 0; p < postingCount; p++) {
+                    int source = in.readInt();
+                    if (source < 0 || source >= sources.length) {
+                        throw new IOException("Corrupt segment: bad source index in " + file);
+                    }
+                    builder.add(token, sources[source], in.readLong(), in.readInt(),
+                            in.readInt(), in.readInt(), in.readInt(), readString(in));
+                }
+            }
+            return builder.build(firstGeneration, lastGeneration, deletedSources);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readCount(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt segment: negative count");
+        }
+        return count;
+    }
+
+    /**
+     * Collects postings in any order and sorts them into a segment. Postings of a token keep the
+     * order they were added in. Not thread-safe.
+     */
+    static final class Builder {
+        private final Map<String, Integer> sourceIndices = new HashMap<>();
+        private final Set<String> deletedSources = new HashSet<>();
+        private String[] sources = new String[16];
+        private int sourceCount;
+        private int size;
+        private String[] tokens = new String[64];
+        private int[] postingSources = new int[64];
+        private long[] timestamps = new long[64];
+        private int[] boxes = new int[64 * COORDS_PER_POSTING];
+        private String[] labels = new String[64];
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0 && deletedSources.isEmpty();
+        }
+
+        void add(String token, String source, long timestamp, int left, int top, int right,
+                 int bottom, String label) {
+            if (size == tokens.length) {
+                int capacity = size * 2;
+                tokens = Arrays.copyOf(tokens, capacity);
+                postingSources = Arrays.copyOf(postingSources, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                boxes = Arrays.copyOf(boxes, capacity * COORDS_PER_POSTING);
+                labels = Arrays.copyOf(labels, capacity);
+            }
+            tokens[size] = token;
+            postingSources[size] = sourceIndex(source);
+            timestamps[size] = timestamp;
+            int offset = size * COORDS_PER_POSTING;
+            boxes[offset] = left;
+            boxes[offset + 1] = top;
+            boxes[offset + 2] = right;
+            boxes[offset + 3] = bottom;
+            labels[size] = label;
+            size++;
+        }
+
+        /**
+         * Drops the postings of a source added so far and records its deletion, which hides its
+         * postings in older segments.
+         */
+        void delete(String source) {
+            deletedSources.add(source);
+            Integer index = sourceIndices.get(source);
+            if (index == null) {
+                return;
+            }
+            int kept = 0;
+            for (int p = 0; p < size; p++) {
+                if (postingSources[p] == index) {
+                    continue;
+                }
+                tokens[kept] = tokens[p];
+                postingSources[kept] = postingSources[p];
+                timestamps[kept] = timestamps[p];
+                System.arraycopy(boxes, p * COORDS_PER_POSTING, boxes, kept * COORDS_PER_POSTING,
+                        COORDS_PER_POSTING);
+                labels[kept] = labels[p];
+                kept++;
+            }
+            Arrays.fill(tokens, kept, size, null);
+            Arrays.fill(labels, kept, size, null);
+            size = kept;
+        }
+
+        TextIndexSegment build(long generation) {
+            return build(generation, generation, new HashSet<>(deletedSources));
+        }
+
+        private TextIndexSegment build(long firstGeneration, long lastGeneration,
+                                       Set<String> deleted) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            // Stable, so postings of a token stay in insertion order.
+            Arrays.sort(order, (a, b) -> tokens[a].compareTo(tokens[b]));
+
+            int tokenCount = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || !tokens[order[i]].equals(tokens[order[i - 1]])) {
+                    tokenCount++;
+                }
+            }
+            String[] sortedTokens = new String[tokenCount];
+            int[] tokenStarts = new int[tokenCount + 1];
+            int[] sortedSources = new int[size];
+            long[] sortedTimestamps = new long[size];
+            int[] sortedBoxes = new int[size * COORDS_PER_POSTING];
+            String[] sortedLabels = new String[size];
+            int token = -1;
+            for (int i = 0; i < size; i++) {
+                int p = order[i];
+                if (token < 0 || !tokens[p].equals(sortedTokens[token])) {
+                    token++;
+                    sortedTokens[token] = tokens[p];
+                    tokenStarts[token] = i;
+                }
+                sortedSources[i] = postingSources[p];
+                sortedTimestamps[i] = timestamps[p];
+                System.arraycopy(boxes, p * COORDS_PER_POSTING, sortedBoxes,
+                        i * COORDS_PER_POSTING, COORDS_PER_POSTING);
+                sortedLabels[i] = labels[p];
+            }
+            tokenStarts[tokenCount] = size;
+            return new TextIndexSegment(firstGeneration, lastGeneration,
+                    Arrays.copyOf(sources, sourceCount), Collections.unmodifiableSet(deleted),
+                    sortedTokens, tokenStarts, sortedSources, sortedTimestamps, sortedBoxes,
+                    sortedLabels);
+        }
+
+        private int sourceIndex(String source) {
+            Integer index = sourceIndices.get(source);
+            if (index == null) {
+                if (sourceCount == sources.length) {
+                    sources = Arrays.copyOf(sources, sourceCount * 2);
+                }
+                index = sourceCount;
+                sources[sourceCount++] = source;
+                sourceIndices.put(source, index);
+            }
+            return index;
+        }
+    }
+}
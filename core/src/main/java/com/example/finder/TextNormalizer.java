@@ -0,0 +1,195 @@
+package com.example.finder;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Normalization that makes text compare equal whatever its case, accents, script variants and
+ * spacing, applied to search terms and recognized text before they are matched.
+ *
+ * <p>Each char is replaced by its NFKC form, e.g. full-width {@code 'Ａ'} by {@code 'A'} and the
+ * ligature {@code 'ﬁ'} by {@code "fi"}, without the Latin diacritics (combining marks U+0300 to
+ * U+036F, so {@code 'é'} becomes {@code 'e'} while kana and Indic vowel signs are kept), and then
+ * case-folded independently of the device locale, so that {@code 'İ'}, {@code 'ı'} and {@code 'I'}
+ * all become {@code 'i'} and {@code 'ß'} becomes {@code "ss"}. Runs of whitespace become a single
+ * space and runs of dashes a single {@code '-'}, soft hyphens are dropped, and a word hyphenated at
+ * a line end is joined again. Chars outside the Basic Multilingual Plane are kept as they are.
+ *
+ * <p>Results go to a {@link NormalizedText}, which maps them back to the original text. ASCII is
+ * folded through a table; other chars through tables built per block of 256 the first time a char
+ * of the block is seen, so normalizing does not allocate once the blocks of a script are built.
+ * Safe to use from any thread.
+ */
+public final class TextNormalizer {
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_COUNT = 1 << (Character.SIZE - PAGE_BITS);
+    // Folded form of each ASCII char, as a char, with the classes below for the rest.
+    private static final char[] ASCII = new char[128];
+    private static final String SPACE = " ";
+    private static final String DASH = "-";
+    // Folded forms of other chars, by block; null until a char of the block is seen.
+    private static final AtomicReferenceArray<String[]> PAGES =
+            new AtomicReferenceArray<>(PAGE_COUNT);
+
+    static {
+        for (char c = 0; c < ASCII.length; c++) {
+            String folded = computeFold(c);
+            ASCII[c] = folded.isEmpty() ? c : folded.charAt(0);
+        }
+    }
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Returns the folded form of a single char, or the char lower-cased if its folded form is not
+     * a single char. Whitespace folds to {@code ' '} and dashes to {@code '-'}. Agrees with
+     * {@link #normalize} for every char that normalizes to one char.
+     */
+    public static char fold(char c) {
+        if (c < ASCII.length) {
+            return ASCII[c];
+        }
+        String folded = foldedForm(c);
+        return folded.length() == 1 ? folded.charAt(0) : Character.toLowerCase(c);
+    }
+
+    /** Normalizes a whole text into a new string, e.g. to compare search terms. */
+    public static String normalize(CharSequence text) {
+        NormalizedText out = new NormalizedText();
+        normalize(text, 0, text.length(), out);
+        return out.toString();
+    }
+
+    /**
+     * Replaces the contents of {@code out} with the normalized form of {@code text} from
+     * {@code start} (inclusive) to {@code end} (exclusive). Offsets recorded in {@code out} are
+     * relative to the start of {@code text}. Dropped chars belong to no normalized char, except
+     * diacritics, which belong to the char before them.
+     */
+    public static void normalize(CharSequence text, int start, int end, NormalizedText out) {
+        out.clear();
+        // Whitespace not yet written, kept until it is known not to be leading or trailing.
+        int spaceStart = -1;
+        int spaceEnd = -1;
+        boolean spaceHasLineBreak = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            char folded = 0;
+            // The folded form if it is not a single char, else null.
+            String expansion = null;
+            if (c < ASCII.length) {
+                folded = ASCII[c];
+            } else {
+                String form = foldedForm(c);
+                if (form.length() == 1) {
+                    folded = form.charAt(0);
+                } else {
+                    expansion = form;
+                }
+            }
+            if (folded == ' ') {
+                if (spaceStart < 0) {
+                    spaceStart = i;
+                }
+                spaceEnd = i + 1;
+                spaceHasLineBreak |= isLineBreak(c);
+                continue;
+            }
+            if (expansion != null && expansion.isEmpty()) {
+                // A diacritic or soft hyphen; diacritics are highlighted with their letter.
+                if (out.length() > 0 && spaceStart < 0 && c != '\u00AD') {
+                    out.extendLast(i + 1);
+                }
+                continue;
+            }
+            int length = out.length();
+            char last = length > 0 ? out.charAt(length - 1) : 0;
+            if (spaceStart >= 0) {
+                if (spaceHasLineBreak && last == '-' && length > 1
+                        && Character.isLetter(out.charAt(length - 2))
+                        && Character.isLetter(expansion != null ? expansion.charAt(0) : folded)) {
+                    // A word hyphenated at a line end.
+                    out.setLength(length - 1);
+                } else if (length > 0) {
+                    out.append(' ', spaceStart, spaceEnd);
+                }
+                spaceStart = -1;
+                spaceHasLineBreak = false;
+            } else if (folded == '-' && last == '-') {
+                out.extendLast(i + 1);
+                continue;
+            }
+            if (expansion == null) {
+                out.append(folded, i, i + 1);
+            } else {
+                for (int k = 0; k < expansion.length(); k++) {
+                    out.append(expansion.charAt(k), i, i + 1);
+                }
+            }
+        }
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /** Returns the folded form of a non-ASCII char, building the table of its block if needed. */
+    private static String foldedForm(char c) {
+        String[] page = PAGES.get(c >>> PAGE_BITS);
+        if (page == null) {
+            page = new String[PAGE_SIZE];
+            int base = c & ~(PAGE_SIZE - 1);
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                page[i] = computeFold((char) (base + i));
+            }
+            // Threads racing to build a block build equal tables, so either may win.
+            PAGES.compareAndSet(c >>> PAGE_BITS, null, page);
+        }
+        return page[c & (PAGE_SIZE - 1)];
+    }
+
+    private static String computeFold(char c) {
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+            return SPACE;
+        }
+        if (Character.getType(c) == Character.DASH_PUNCTUATION || c == '\u2212') {
+            return DASH;
+        }
+        if (c == '\u00AD' || Character.isSurrogate(c)) {
+            return c == '\u00AD' ? "" : String.valueOf(c);
+        }
+        String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFKD);
+        StringBuilder base = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char d = decomposed.charAt(i);
+            if (d < '\u0300' || d > '\u036F') {
+                base.append(d);
+            }
+        }
+        // Upper-casing first folds the chars that have several lower-case forms, such as the
+        // final sigma, and expands the ones that have no single upper-case form, such as 'ß'.
+        // Repeated until stable, since the lower case of 'ẞ' is 'ß'.
+        String folded = Normalizer.normalize(base, Normalizer.Form.NFC);
+        String previous;
+        do {
+            previous = folded;
+            folded = folded.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+        } while (!folded.equals(previous));
+        // Compatibility forms of spaces and dashes, such as the ideographic space, are classed as
+        // the chars they decompose to.
+        if (folded.length() == 1 && c != folded.charAt(0)) {
+            char single = folded.charAt(0);
+            if (Character.isWhitespace(single) || Character.isSpaceChar(single)) {
+                return SPACE;
+            }
+            if (Character.getType(single) == Character.DASH_PUNCTUATION) {
+                return DASH;
+            }
+        }
+        return folded;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.finder;
+
+/**
+ * The stages that run on every delivered recognition result: optionally fusing it with the results
+ * before it in a {@link TextFusion}, matching the search terms against the text with a
+ * {@link FrameMatcher}, and handing the resulting geometry to the {@link TextTracker}.
+ *
+ * <p>The pipeline only sees {@link RecognizedText}, so the same code runs in the camera preview and
+ * on the host JVM against a recorded {@link TextCorpus}. {@link #process} must be called from one
+ * thread at a time, in delivery order.
+ */
+public final class TextPipeline {
+
+    /** Receives the outcome of each processed frame, on the thread that processed it. */
+    public interface Listener {
+        /**
+         * @param text the processed result
+         * @param hitCount number of term occurrences in the whole text
+         * @param matches geometry of the hits, empty if there were none
+         */
+        void onFrameProcessed(RecognizedText text, int hitCount, MatchGeometry matches);
+    }
+
+    private final FrameMatcher matcher;
+    private final TextFusion fusion;
+    private final TextTracker tracker;
+    private final Listener listener;
+
+    /** Creates a pipeline that matches terms exactly, ignoring case. */
+    public TextPipeline(TermMatcher matcher, MatchGeometry.LabelMeasurer labelMeasurer,
+                        TextTracker tracker, Listener listener) {
+        this(new FrameMatcher(matcher, labelMeasurer), tracker, listener);
+    }
+
+    /** Creates a pipeline that matches terms tolerating OCR errors. */
+    public TextPipeline(FuzzyMatcher matcher, MatchGeometry.LabelMeasurer labelMeasurer,
+                        TextTracker tracker, Listener listener) {
+        this(new FrameMatcher(matcher, labelMeasurer), tracker, listener);
+    }
+
+    /** Creates a pipeline that matches patterns, with pattern ids as term ids. */
+    public TextPipeline(PatternMatcher matcher, MatchGeometry.LabelMeasurer labelMeasurer,
+                        TextTracker tracker, Listener listener) {
+        this(new FrameMatcher(matcher, labelMeasurer), tracker, listener);
+    }
+
+    /** Creates a pipeline around a matcher, which from now on must only be used by the pipeline. */
+    public TextPipeline(FrameMatcher matcher, TextTracker tracker, Listener listener) {
+        this(matcher, null, tracker, listener);
+    }
+
+    /**
+     * Creates a pipeline that matches the consensus of each result with the results before it.
+     *
+     * @param fusion fuses consecutive results of one camera, or null to match each on its own
+     */
+    public TextPipeline(FrameMatcher matcher, TextFusion fusion, TextTracker tracker,
+                        Listener listener) {
+        this.matcher = matcher;
+        this.fusion = fusion;
+        this.tracker = tracker;
+        this.listener = listener;
+    }
+
+    /** Returns whether terms are matched tolerating OCR errors. */
+    public boolean isFuzzy() {
+        return matcher.isFuzzy();
+    }
+
+    public TextTracker getTracker() {
+        return tracker;
+    }
+
+    /** Returns the fusion of consecutive results, or null if each is matched on its own. */
+    public TextFusion getFusion() {
+        return fusion;
+    }
+
+    /**
+     * Runs all stages on one result and returns the geometry of its hits. The listener receives
+     * the fused text if there is a fusion stage.
+     *
+     * @param transform maps the result's image coordinates to overlay coordinates
+     */
+    public MatchGeometry process(RecognizedText result, ViewTransform transform) {
+        return process(result, transform, true);
+    }
+
+    /**
+     * Runs the stages on one result, leaving out fusion if {@code fuse} is false, e.g. for a
+     * result of another camera stream, which would otherwise reset the fusion of this one.
+     */
+    public MatchGeometry process(RecognizedText result, ViewTransform transform, boolean fuse) {
+        RecognizedText text = fuse && fusion != null ? fusion.fuse(result) : result;
+        MatchGeometry matches = matcher.match(text, transform);
+        // Frames without matches still go to the tracker, which ages out lost lines.
+        tracker.update(matches, text.getTimestampNanos());
+        listener.onFrameProcessed(text, matcher.getHitCount(), matches);
+        return matches;
+    }
+
+    /**
+     * Runs the stages, without fusion, on a result recognized outside the camera stream, such as
+     * a deep scan of a still, and has the tracker {@link TextTracker#hold hold} its hits for
+     * {@code holdMillis}, as the frames after it may not read them.
+     */
+    public MatchGeometry processHeld(RecognizedText result, ViewTransform transform,
+                                     long holdMillis) {
+        MatchGeometry matches = matcher.match(result, transform);
+        tracker.hold(matches, result.getTimestampNanos(), holdMillis);
+        listener.onFrameProcessed(result, matcher.getHitCount(), matches);
+        return matches;
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.finder;
+
+import java.util.Arrays;
+
+/**
+ * Follows matched lines from one recognition result to the next so that highlights stay put
+ * between results instead of being rebuilt, and flickering, every frame.
+ *
+ * <p>Each result's boxes are linked to existing tracks by overlap (IoU), falling back to centroid
+ * distance for small, fast-moving boxes. Linked tracks keep their id; their centre is smoothed with
+ * an alpha-beta filter that also estimates velocity, and their size with exponential smoothing.
+ * Unlinked boxes start new tracks, and tracks that have not been seen for
+ * {@code maxMissedMillis} are dropped, so a single missed frame no longer makes a highlight
+ * disappear.
+ *
+ * <p>Hits found outside the camera stream, such as by a deep scan of a still, are
+ * {@link #hold held}: they are added to the tracks as of the latest frame and kept for a while
+ * even if the frames after it, which could not read them, do not see them.
+ *
+ * <p>After each update the tracker publishes an immutable {@link Snapshot}, which can extrapolate
+ * every box to any later time. The renderer reads snapshots from the UI thread at display rate
+ * while recognition updates the tracker at a much lower rate.
+ *
+ * <p>Times are in the camera's timestamp base. {@link #syncClock} relates it to
+ * {@link System#nanoTime()}, which is what the renderer has at hand.
+ */
+public final class TextTracker {
+
+    private static final int MAX_TRACKS = 64;
+    private static final float MIN_IOU = 0.2f;
+    // Largest centroid distance for a link without overlap, as a fraction of the box diagonal.
+    private static final float MAX_CENTROID_DISTANCE = 0.5f;
+    private static final float SIZE_ALPHA = 0.5f;
+
+    private final float alpha;
+    private final float beta;
+    private final long maxMissedNanos;
+    private final long maxExtrapolationNanos;
+
+    // Track state, only touched in update().
+    private int count;
+    private int nextId = 1;
+    private final int[] ids = new int[MAX_TRACKS];
+    private final String[] labels = new String[MAX_TRACKS];
+    private final float[] labelWidths = new float[MAX_TRACKS];
+    private final int[] termIds = new int[MAX_TRACKS];
+    private final float[] centreX = new float[MAX_TRACKS];
+    private final float[] centreY = new float[MAX_TRACKS];
+    private final float[] widths = new float[MAX_TRACKS];
+    private final float[] heights = new float[MAX_TRACKS];
+    // Velocity in view pixels per nanosecond.
+    private final float[] velocityX = new float[MAX_TRACKS];
+    private final float[] velocityY = new float[MAX_TRACKS];
+    private final long[] lastSeen = new long[MAX_TRACKS];
+    // Time until which a held track is kept even if it is not seen.
+    private final long[] heldUntil = new long[MAX_TRACKS];
+    private final boolean[] linked = new boolean[MAX_TRACKS];
+    private long lastUpdateNanos = Long.MIN_VALUE;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Camera timestamp minus System.nanoTime(), as closely as it has been observed.
+    private volatile long clockOffsetNanos;
+    private volatile boolean clockSynced;
+
+    /** Creates a tracker with settings suited to recognition at roughly 5-15 results a second. */
+    public TextTracker() {
+        this(0.7f, 0.3f, 700, 500);
+    }
+
+    /**
+     * @param alpha weight of a new measurement in the smoothed position, in (0, 1]
+     * @param beta weight of a new measurement in the estimated velocity, in [0, 1]
+     * @param maxMissedMillis how long a track survives without being matched
+     * @param maxExtrapolationMillis how far past its last match a track's motion is extrapolated
+     */
+    public TextTracker(float alpha, float beta, long maxMissedMillis, long maxExtrapolationMillis) {
+        this.alpha = alpha;
+        this.beta = beta;
+        this.maxMissedNanos = maxMissedMillis * 1_000_000L;
+        this.maxExtrapolationNanos = maxExtrapolationMillis * 1_000_000L;
+    }
+
+    /**
+     * Records that a frame captured at {@code frameTimestampNanos} was received at
+     * {@code systemNanos}. Frames are received after they are captured, so the smallest observed
+     * delay is kept as the offset between the two clocks.
+     */
+    public void syncClock(long frameTimestampNanos, long systemNanos) {
+        long offset = frameTimestampNanos - systemNanos;
+        if (!clockSynced || offset > clockOffsetNanos) {
+            clockOffsetNanos = offset;
+            clockSynced = true;
+        }
+    }
+
+    /** Converts a {@link System#nanoTime()} reading to the camera's timestamp base. */
+    public long toFrameTime(long systemNanos) {
+        return systemNanos + clockOffsetNanos;
+    }
+
+    /** Returns the state published by the last update. Safe to call from any thread. */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Links the matches of a frame to the existing tracks and publishes a new snapshot. Results
+     * must arrive in capture order; an older result is ignored.
+     */
+    public synchronized void update(MatchGeometry matches, long frameTimestampNanos) {
+        if (frameTimestampNanos <= lastUpdateNanos) {
+            return;
+        }
+        lastUpdateNanos = frameTimestampNanos;
+        Arrays.fill(linked, 0, count, false);
+
+        for (int m = 0; m < matches.size(); m++) {
+            float left = matches.getLeft(m);
+            float top = matches.getTop(m);
+            float right = matches.getRight(m);
+            float bottom = matches.getBottom(m);
+            int track = findTrack(left, top, right, bottom, frameTimestampNanos);
+            if (track >= 0) {
+                correct(track, matches, m, frameTimestampNanos);
+            } else if (count < MAX_TRACKS) {
+                track = startTrack(matches, m, frameTimestampNanos);
+            } else {
+                continue;
+            }
+            linked[track] = true;
+        }
+
+        // Drop tracks that have been missing for too long, keeping the rest in order.
+        int kept = 0;
+        for (int track = 0; track < count; track++) {
+            if (frameTimestampNanos - lastSeen[track] <= maxMissedNanos
+                    || frameTimestampNanos <= heldUntil[track]) {
+                if (kept != track) {
+                    moveTrack(track, kept);
+                }
+                kept++;
+            }
+        }
+        for (int track = kept; track < count; track++) {
+            labels[track] = null;
+        }
+        count = kept;
+        snapshot = new Snapshot(this);
+    }
+
+    /**
+     * Adds hits found outside the camera stream, e.g. by a deep scan of a still that took longer
+     * than the frames delivered meanwhile, and publishes a new snapshot. The hits are linked to
+     * the tracks as of the later of {@code timestampNanos} and the last update, so they are never
+     * ignored as older, and the tracks they link to or start are kept for {@code holdMillis} from
+     * then even if no frame sees them.
+     */
+    public synchronized void hold(MatchGeometry matches, long timestampNanos, long holdMillis) {
+        long time = Math.max(timestampNanos, lastUpdateNanos);
+        lastUpdateNanos = time;
+        Arrays.fill(linked, 0, count, false);
+        for (int m = 0; m < matches.size(); m++) {
+            int track = findTrack(matches.getLeft(m), matches.getTop(m), matches.getRight(m),
+                    matches.getBottom(m), time);
+            if (track >= 0) {
+                correct(track, matches, m, time);
+            } else if (count < MAX_TRACKS) {
+                track = startTrack(matches, m, time);
+            } else {
+                continue;
+            }
+            linked[track] = true;
+            heldUntil[track] = Math.max(heldUntil[track], time + holdMillis * 1_000_000L);
+        }
+        snapshot = new Snapshot(this);
+    }
+
+    /** Starts a new track at a hit and returns it. */
+    private int startTrack(MatchGeometry matches, int m, long timeNanos) {
+        int track = count++;
+        ids[track] = nextId++;
+        centreX[track] = (matches.getLeft(m) + matches.getRight(m)) / 2;
+        centreY[track] = (matches.getTop(m) + matches.getBottom(m)) / 2;
+        widths[track] = matches.getRight(m) - matches.getLeft(m);
+        heights[track] = matches.getBottom(m) - matches.getTop(m);
+        velocityX[track] = 0;
+        velocityY[track] = 0;
+        labels[track] = matches.getLabel(m);
+        labelWidths[track] = matches.getLabelWidth(m);
+        termIds[track] = matches.getTermId(m);
+        lastSeen[track] = timeNanos;
+        heldUntil[track] = Long.MIN_VALUE;
+        return track;
+    }
+
+    /** Returns the best free track for a box, or -1 if none is close enough. */
+    private int findTrack(float left, float top, float right, float bottom, long timeNanos) {
+        int best = -1;
+        float bestScore = 0;
+        float boxCentreX = (left + right) / 2;
+        float boxCentreY = (top + bottom) / 2;
+        float diagonal = (float) Math.hypot(right - left, bottom - top);
+        for (int track = 0; track < count; track++) {
+            if (linked[track]) {
+                continue;
+            }
+            long dt = Math.min(timeNanos - lastSeen[track], maxExtrapolationNanos);
+            float predictedX = centreX[track] + velocityX[track] * dt;
+            float predictedY = centreY[track] + velocityY[track] * dt;
+            float halfWidth = widths[track] / 2;
+            float halfHeight = heights[track] / 2;
+            float score = intersectionOverUnion(left, top, right, bottom,
+                    predictedX - halfWidth, predictedY - halfHeight,
+                    predictedX + halfWidth, predictedY + halfHeight);
+            if (score < MIN_IOU) {
+                float distance = (float) Math.hypot(boxCentreX - predictedX, boxCentreY - predictedY);
+                // Map distances within the limit to scores below MIN_IOU, closest first.
+                score = distance <= MAX_CENTROID_DISTANCE * diagonal
+                        ? MIN_IOU * (1 - distance / (MAX_CENTROID_DISTANCE * diagonal + 1))
+                        : 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = track;
+            }
+        }
+        return best;
+    }
+
+    /** Applies the alpha-beta correction for a new measurement of a track. */
+    private void correct(int track, MatchGeometry matches, int m, long timeNanos) {
+        long dt = timeNanos - lastSeen[track];
+        float measuredX = (matches.getLeft(m) + matches.getRight(m)) / 2;
+        float measuredY = (matches.getTop(m) + matches.getBottom(m)) / 2;
+        float predictedX = centreX[track] + velocityX[track] * dt;
+        float predictedY = centreY[track] + velocityY[track] * dt;
+        float residualX = measuredX - predictedX;
+        float residualY = measuredY - predictedY;
+        centreX[track] = predictedX + alpha * residualX;
+        centreY[track] = predictedY + alpha * residualY;
+        if (dt > 0) {
+            velocityX[track] += beta * residualX / dt;
+            velocityY[track] += beta * residualY / dt;
+        }
+        widths[track] += SIZE_ALPHA * (matches.getRight(m) - matches.getLeft(m) - widths[track]);
+        heights[track] += SIZE_ALPHA * (matches.getBottom(m) - matches.getTop(m) - heights[track]);
+        labels[track] = matches.getLabel(m);
+        labelWidths[track] = matches.getLabelWidth(m);
+        termIds[track] = matches.getTermId(m);
+        lastSeen[track] = timeNanos;
+    }
+
+    private void moveTrack(int from, int to) {
+        ids[to] = ids[from];
+        labels[to] = labels[from];
+        labelWidths[to] = labelWidths[from];
+        termIds[to] = termIds[from];
+        centreX[to] = centreX[from];
+        centreY[to] = centreY[from];
+        widths[to] = widths[from];
+        heights[to] = heights[from];
+        velocityX[to] = velocityX[from];
+        velocityY[to] = velocityY[from];
+        lastSeen[to] = lastSeen[from];
+        heldUntil[to] = heldUntil[from];
+    }
+
+    static float intersectionOverUnion(float left1, float top1, float right1, float bottom1,
+                                       float left2, float top2, float right2, float bottom2) {
+        float intersectionWidth = Math.min(right1, right2) - Math.max(left1, left2);
+        float intersectionHeight = Math.min(bottom1, bottom2) - Math.max(top1, top2);
+        if (intersectionWidth <= 0 || intersectionHeight <= 0) {
+            return 0;
+        }
+        float intersection = intersectionWidth * intersectionHeight;
+        float union = (right1 - left1) * (bottom1 - top1) + (right2 - left2) * (bottom2 - top2)
+                - intersection;
+        return union > 0 ? intersection / union : 0;
+    }
+
+    /**
+     * Immutable copy of the tracks after an update. Positions are extrapolated on read, so drawing
+     * a snapshot at display rate does not allocate.
+     */
+    public static final class Snapshot {
+
+        public static final Snapshot EMPTY = new Snapshot();
+
+        private final int size;
+        private final int[] ids;
+        private final String[] labels;
+        private final float[] labelWidths;
+        private final int[] termIds;
+        private final float[] centreX;
+        private final float[] centreY;
+        private final float[] halfWidths;
+        private final float[] halfHeights;
+        private final float[] velocityX;
+        private final float[] velocityY;
+        private final long[] lastSeen;
+        private final long maxExtrapolationNanos;
+
+        private Snapshot() {
+            size = 0;
+            ids = new int[0];
+            labels = new String[0];
+            termIds = new int[0];
+            labelWidths = centreX = centreY = halfWidths = halfHeights = velocityX = velocityY =
+                    new float[0];
+            lastSeen = new long[0];
+            maxExtrapolationNanos = 0;
+        }
+
+        private Snapshot(TextTracker tracker) {
+            size = tracker.count;
+            ids = Arrays.copyOf(tracker.ids, size);
+            labels = Arrays.copyOf(tracker.labels, size);
+            labelWidths = Arrays.copyOf(tracker.labelWidths, size);
+            termIds = Arrays.copyOf(tracker.termIds, size);
+            centreX = Arrays.copyOf(tracker.centreX, size);
+            centreY = Arrays.copyOf(tracker.centreY, size);
+            halfWidths = new float[size];
+            halfHeights = new float[size];
+            for (int i = 0; i < size; i++) {
+                halfWidths[i] = tracker.widths[i] / 2;
+                halfHeights[i] = tracker.heights[i] / 2;
+            }
+            velocityX = Arrays.copyOf(tracker.velocityX, size);
+            velocityY = Arrays.copyOf(tracker.velocityY, size);
+            lastSeen = Arrays.copyOf(tracker.lastSeen, size);
+            maxExtrapolationNanos = tracker.maxExtrapolationNanos;
+        }
+
+        /** Returns the number of tracks. */
+        public int size() {
+            return size;
+        }
+
+        /** Returns the id of a track, which stays the same for as long as the track lives. */
+        public int getId(int index) {
+            return ids[index];
+        }
+
+        public String getLabel(int index) {
+            return labels[index];
+        }
+
+        public float getLabelWidth(int index) {
+            return labelWidths[index];
+        }
+
+        /** Returns the term the track's latest match was of, or {@link MatchGeometry#NO_TERM}. */
+        public int getTermId(int index) {
+            return termIds[index];
+        }
+
+        /**
+         * Returns whether any track is still being extrapolated at the given camera time, i.e.
+         * whether drawing it later would move anything.
+         */
+        public boolean isMoving(long timeNanos) {
+            for (int i = 0; i < size; i++) {
+                if ((velocityX[i] != 0 || velocityY[i] != 0)
+                        && timeNanos - lastSeen[i] < maxExtrapolationNanos) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long elapsed(int index, long timeNanos) {
+            return Math.max(0, Math.min(timeNanos - lastSeen[index], maxExtrapolationNanos));
+        }
+
+        /** Returns the extrapolated left edge of a track at the given camera time. */
+        public float getLeft(int index, long timeNanos) {
+            return centreX[index] + velocityX[index] * elapsed(index, timeNanos) - halfWidths[index];
+        }
+
+        public float getTop(int index, long timeNanos) {
+            return centreY[index] + velocityY[index] * elapsed(index, timeNanos) - halfHeights[index];
+        }
+
+        public float getRight(int index, long timeNanos) {
+            return centreX[index] + velocityX[index] * elapsed(index, timeNanos) + halfWidths[index];
+        }
+
+        public float getBottom(int index, long timeNanos) {
+            return centreY[index] + velocityY[index] * elapsed(index, timeNanos) + halfHeights[index];
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.finder;
+
+/**
+ * Immutable mapping from image coordinates to overlay view coordinates.
+ *
+ * <p>The image is scaled to fill the view and centre-cropped on the axis that overflows, the same
+ * way the camera preview is displayed. Snapshots are published by {@link GraphicOverlay} so that
+ * geometry can be mapped to view space on the analyzer thread ahead of drawing.
+ *
+ * <p>When only a crop of the image is recognized, recognized coordinates are relative to the crop.
+ * {@link #mapX(float)} and {@link #mapY(float)} add the crop offset before mapping, while
+ * {@link #mapImageX(float)} and {@link #mapImageY(float)} map coordinates of the whole image.
+ */
+public final class ViewTransform {
+
+    /** Transform used until the overlay knows both its own size and the image size. */
+    public static final ViewTransform IDENTITY = new ViewTransform(1.0f, 0, 0, false, 0, 0, 0, 0);
+
+    private final float scaleFactor;
+    // The number of horizontal pixels cropped on each side to fit the scaled image in the view.
+    private final float postScaleWidthOffset;
+    // The number of vertical pixels cropped on each side to fit the scaled image in the view.
+    private final float postScaleHeightOffset;
+    private final boolean isImageFlipped;
+    private final int viewWidth;
+    private final int viewHeight;
+    // Position of the recognized crop within the whole image.
+    private final int cropOffsetX;
+    private final int cropOffsetY;
+
+    private ViewTransform(float scaleFactor, float postScaleWidthOffset,
+                          float postScaleHeightOffset, boolean isImageFlipped, int viewWidth,
+                          int viewHeight, int cropOffsetX, int cropOffsetY) {
+        this.scaleFactor = scaleFactor;
+        this.postScaleWidthOffset = postScaleWidthOffset;
+        this.postScaleHeightOffset = postScaleHeightOffset;
+        this.isImageFlipped = isImageFlipped;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.cropOffsetX = cropOffsetX;
+        this.cropOffsetY = cropOffsetY;
+    }
+
+    /**
+     * Creates the transform that fits an image of the given size into a view of the given size.
+     * Returns {@link #IDENTITY} while either size is unknown.
+     */
+    public static ViewTransform create(int viewWidth, int viewHeight, int imageWidth,
+                                       int imageHeight, boolean isImageFlipped) {
+        return create(viewWidth, viewHeight, imageWidth, imageHeight, isImageFlipped, 0, 0);
+    }
+
+    /**
+     * Creates the transform for recognition results of a crop whose top-left corner sits at
+     * ({@code cropOffsetX}, {@code cropOffsetY}) in an image of the given size.
+     */
+    public static ViewTransform create(int viewWidth, int viewHeight, int imageWidth,
+                                       int imageHeight, boolean isImageFlipped,
+                                       int cropOffsetX, int cropOffsetY) {
+        if (viewWidth <= 0 || viewHeight <= 0 || imageWidth <= 0 || imageHeight <= 0) {
+            return IDENTITY;
+        }
+        float viewAspectRatio = (float) viewWidth / viewHeight;
+        float imageAspectRatio = (float) imageWidth / imageHeight;
+        float scaleFactor;
+        float postScaleWidthOffset = 0;
+        float postScaleHeightOffset = 0;
+        if (viewAspectRatio > imageAspectRatio) {
+            // The image needs to be vertically cropped to be displayed in this view.
+            scaleFactor = (float) viewWidth / imageWidth;
+            postScaleHeightOffset = ((float) viewWidth / imageAspectRatio - viewHeight) / 2;
+        } else {
+            // The image needs to be horizontally cropped to be displayed in this view.
+            scaleFactor = (float) viewHeight / imageHeight;
+            postScaleWidthOffset = ((float) viewHeight * imageAspectRatio - viewWidth) / 2;
+        }
+        return new ViewTransform(scaleFactor, postScaleWidthOffset, postScaleHeightOffset,
+                isImageFlipped, viewWidth, viewHeight, cropOffsetX, cropOffsetY);
+    }
+
+    /**
+     * Returns the transform into the same view for a crop of another image of the same scene,
+     * such as a still taken while this transform's frames were shown. Returns {@link #IDENTITY}
+     * if this is the identity.
+     */
+    public ViewTransform forImage(int imageWidth, int imageHeight, int cropOffsetX,
+                                  int cropOffsetY) {
+        return create(viewWidth, viewHeight, imageWidth, imageHeight, isImageFlipped,
+                cropOffsetX, cropOffsetY);
+    }
+
+    public float getScaleFactor() {
+        return scaleFactor;
+    }
+
+    public float getPostScaleWidthOffset() {
+        return postScaleWidthOffset;
+    }
+
+    public float getPostScaleHeightOffset() {
+        return postScaleHeightOffset;
+    }
+
+    public boolean isImageFlipped() {
+        return isImageFlipped;
+    }
+
+    public int getViewWidth() {
+        return viewWidth;
+    }
+
+    public int getViewHeight() {
+        return viewHeight;
+    }
+
+    public int getCropOffsetX() {
+        return cropOffsetX;
+    }
+
+    public int getCropOffsetY() {
+        return cropOffsetY;
+    }
+
+    /** Adjusts the supplied value from the image scale to the view scale. */
+    public float scale(float imagePixel) {
+        return imagePixel * scaleFactor;
+    }
+
+    /** Adjusts a recognized x coordinate, relative to the crop, to the view coordinate system. */
+    public float mapX(float x) {
+        return mapImageX(x + cropOffsetX);
+    }
+
+    /** Adjusts a recognized y coordinate, relative to the crop, to the view coordinate system. */
+    public float mapY(float y) {
+        return mapImageY(y + cropOffsetY);
+    }
+
+    /** Adjusts the x coordinate from the image's coordinate system to the view coordinate system. */
+    public float mapImageX(float x) {
+        if (isImageFlipped) {
+            return viewWidth - (scale(x) - postScaleWidthOffset);
+        } else {
+            return scale(x) - postScaleWidthOffset;
+        }
+    }
+
+    /** Adjusts the y coordinate from the image's coordinate system to the view coordinate system. */
+    public float mapImageY(float y) {
+        return scale(y) - postScaleHeightOffset;
+    }
+
+    /** Adjusts the x coordinate from the view coordinate system to the image's coordinate system. */
+    public float unmapX(float viewX) {
+        float x = isImageFlipped ? viewWidth - viewX : viewX;
+        return (x + postScaleWidthOffset) / scaleFactor;
+    }
+
+    /** Adjusts the y coordinate from the view coordinate system to the image's coordinate system. */
+    public float unmapY(float viewY) {
+        return (viewY + postScaleHeightOffset) / scaleFactor;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.finder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies a crop of a YUV_420_888 image into an NV21 buffer that can be handed to the recognizer,
+ * or into a plain luma buffer. {@link YuvFramePool} owns the buffers that frames are copied into.
+ *
+ * <p>Handles any row and pixel stride reported by the camera.
+ */
+public final class YuvCropper {
+
+    private YuvCropper() {
+    }
+
+    /** Returns the number of bytes needed to hold the crop in NV21 layout. */
+    public static int nv21Size(CropRegion crop) {
+        return nv21Size(crop.getWidth(), crop.getHeight());
+    }
+
+    /** Returns the number of bytes needed to hold an image of the given size in NV21 layout. */
+    public static int nv21Size(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+    /**
+     * Copies the crop into NV21 layout at the start of a caller-owned buffer of at least
+     * {@link #nv21Size} bytes, and leaves the buffer's position at 0 and its limit at the end of
+     * the image. Copies luma rows in bulk and allocates nothing. Safe to call from any thread, as
+     * long as no other thread uses the planes.
+     *
+     * @param yPlane luma plane, with a pixel stride of one
+     * @param yRowStride row stride of the luma plane
+     * @param uPlane U chroma plane
+     * @param vPlane V chroma plane
+     * @param uvRowStride row stride shared by both chroma planes
+     * @param uvPixelStride pixel stride shared by both chroma planes
+     * @param crop region to copy; its edges must be even
+     */
+    public static void copyToNv21(ByteBuffer yPlane, int yRowStride,
+                                  ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride,
+                                  int uvPixelStride, CropRegion crop, ByteBuffer nv21) {
+        nv21.clear();
+        copyLumaRows(yPlane, yRowStride, crop, nv21);
+        int chromaLeft = crop.getLeft() / 2;
+        int chromaTop = crop.getTop() / 2;
+        int out = nv21.position();
+        // NV21 stores chroma as interleaved V/U pairs, one pair per 2x2 block of luma.
+        for (int row = 0; row < crop.getHeight() / 2; row++) {
+            int rowStart = (chromaTop + row) * uvRowStride + chromaLeft * uvPixelStride;
+            for (int col = 0; col < crop.getWidth() / 2; col++) {
+                int index = rowStart + col * uvPixelStride;
+                nv21.put(out++, vPlane.get(index));
+                nv21.put(out++, uPlane.get(index));
+            }
+        }
+        nv21.position(0).limit(out);
+    }
+
+    /**
+     * Copies the luma of the crop, row after row without padding, to the start of a caller-owned
+     * buffer of at least {@code width * height} bytes, and leaves the buffer's position at 0 and
+     * its limit at the end of the image.
+     */
+    public static void copyLuma(ByteBuffer yPlane, int yRowStride, CropRegion crop,
+                                ByteBuffer luma) {
+        luma.clear();
+        copyLumaRows(yPlane, yRowStride, crop, luma);
+        luma.flip();
+    }
+
+    /** Appends the luma rows of the crop at the output's position, and restores the plane. */
+    private static void copyLumaRows(ByteBuffer yPlane, int yRowStride, CropRegion crop,
+                                     ByteBuffer out) {
+        int width = crop.getWidth();
+        for (int row = 0; row < crop.getHeight(); row++) {
+            int start = (crop.getTop() + row) * yRowStride + crop.getLeft();
+            // Narrowing the plane to the row lets put() copy it in bulk without a slice object.
+            yPlane.limit(start + width).position(start);
+            out.put(yPlane);
+        }
+        yPlane.clear();
+    }
+}
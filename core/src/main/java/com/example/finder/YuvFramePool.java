@@ -0,0 +1,162 @@
+package com.example.finder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pool of direct buffers that hold copies of camera frames while they are recognized, so that the
+ * camera's buffer can be handed back straight away without allocating a copy per frame.
+ *
+ * <p>Every buffer is big enough for a whole frame at the analysis resolution set with
+ * {@link #resize}, so crops of any size share the same buffers. A frame larger than that, which
+ * the camera may deliver when it cannot match the requested resolution, grows the pool to its size.
+ * Buffers are handed out as {@link Lease leases} that go back to the pool on
+ * {@link Lease#release()}. Once the resolution settles, acquiring, filling and releasing a lease
+ * allocates nothing. All methods are thread-safe.
+ */
+public final class YuvFramePool {
+
+    /** How a lease stores the copied crop. */
+    public enum Layout {
+        /** Luma rows followed by interleaved V/U pairs, as the recognizer accepts them. */
+        NV21,
+        /** Only the luma rows. */
+        LUMA
+    }
+
+    private final Lease[] free;
+    private int freeCount;
+    private int bufferSize;
+    private int allocatedCount;
+
+    /**
+     * Creates a pool whose buffers are sized by the first frame, until {@link #resize} is called.
+     *
+     * @param capacity leases kept for reuse, normally the number of frames recognized at once
+     */
+    public YuvFramePool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        free = new Lease[capacity];
+    }
+
+    /**
+     * Sizes the buffers for a new analysis resolution. Pooled buffers of another size are dropped,
+     * and so are leased ones when they are released, so that a lower resolution frees memory.
+     */
+    public synchronized void resize(int width, int height) {
+        resizeToBytes(YuvCropper.nv21Size(width, height));
+    }
+
+    /**
+     * Copies the crop of a YUV_420_888 frame into a pooled buffer and returns its lease. The
+     * parameters are those of {@link YuvCropper#copyToNv21}.
+     */
+    public Lease copy(ByteBuffer yPlane, int yRowStride,
+                      ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                      CropRegion crop, Layout layout) {
+        Lease lease = acquire(YuvCropper.nv21Size(crop.getWidth(), crop.getHeight()));
+        if (layout == Layout.NV21) {
+            YuvCropper.copyToNv21(yPlane, yRowStride, uPlane, vPlane, uvRowStride, uvPixelStride,
+                    crop, lease.buffer);
+        } else {
+            YuvCropper.copyLuma(yPlane, yRowStride, crop, lease.buffer);
+        }
+        lease.width = crop.getWidth();
+        lease.height = crop.getHeight();
+        lease.layout = layout;
+        return lease;
+    }
+
+    private synchronized Lease acquire(int size) {
+        if (size > bufferSize) {
+            resizeToBytes(size);
+        }
+        Lease lease = freeCount > 0 ? free[--freeCount] : null;
+        if (lease == null) {
+            lease = new Lease(this, ByteBuffer.allocateDirect(bufferSize));
+            allocatedCount++;
+        } else {
+            free[freeCount] = null;
+        }
+        lease.leased = true;
+        return lease;
+    }
+
+    private void resizeToBytes(int size) {
+        if (size == bufferSize) {
+            return;
+        }
+        bufferSize = size;
+        while (freeCount > 0) {
+            free[--freeCount] = null;
+        }
+    }
+
+    private synchronized void release(Lease lease) {
+        if (!lease.leased) {
+            throw new IllegalStateException("Lease released twice");
+        }
+        lease.leased = false;
+        if (lease.buffer.capacity() == bufferSize && freeCount < free.length) {
+            free[freeCount++] = lease;
+        }
+    }
+
+    /** Number of leases waiting to be reused. */
+    public synchronized int getFreeCount() {
+        return freeCount;
+    }
+
+    /** Number of buffers allocated so far, which stops growing once the pool is warm. */
+    public synchronized int getAllocatedCount() {
+        return allocatedCount;
+    }
+
+    /** Size in bytes of the buffers handed out now. */
+    public synchronized int getBufferSize() {
+        return bufferSize;
+    }
+
+    /** A pooled buffer holding one copied crop until it is released. */
+    public static final class Lease {
+
+        private final YuvFramePool pool;
+        private final ByteBuffer buffer;
+        private int width;
+        private int height;
+        private Layout layout;
+        // Guarded by the pool.
+        private boolean leased;
+
+        private Lease(YuvFramePool pool, ByteBuffer buffer) {
+            this.pool = pool;
+            this.buffer = buffer;
+        }
+
+        /**
+         * The copied crop, from position 0 to the limit. Only valid until {@link #release()}, and
+         * must not be modified.
+         */
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public Layout getLayout() {
+            return layout;
+        }
+
+        /** Hands the buffer back to the pool. A lease must be released exactly once. */
+        public void release() {
+            pool.release(this);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BatchScanner} and {@link BatchScanConfig}.
+ */
+public class BatchScannerTest {
+
+    private static final FrameMatcher MATCHER = new FrameMatcher(
+            TermMatcher.compile(Collections.singletonList("lot")), label -> 0f);
+
+    /** Recognizes an image named by its text, failing for images named "corrupt". */
+    private static final BatchScanner.Recognizer<String> RECOGNIZER = image -> {
+        if (image.equals("corrupt")) {
+            throw new IllegalArgumentException("Cannot decode " + image);
+        }
+        return TextCorpusTest.frame(0, image);
+    };
+
+    private final Map<String, Integer> hitCounts = new ConcurrentHashMap<>();
+    private final Map<String, Exception> failures = new ConcurrentHashMap<>();
+    private final AtomicReference<BatchScanner.Progress> finished = new AtomicReference<>();
+
+    private final BatchScanner.Listener<String> listener = new BatchScanner.Listener<String>() {
+        @Override
+        public void onImageScanned(String image, RecognizedText text, int hitCount,
+                                   MatchGeometry matches) {
+            hitCounts.put(image, hitCount);
+        }
+
+        @Override
+        public void onImageFailed(String image, Exception error) {
+            failures.put(image, error);
+        }
+
+        @Override
+        public void onScanFinished(BatchScanner.Progress progress) {
+            finished.set(progress);
+        }
+    };
+
+    @Test
+    public void allImages_areScannedAndMatched() {
+        BatchScanner<String> scanner = new BatchScanner<>(new BatchScanConfig(3, 1, 2048),
+                RECOGNIZER, MATCHER, listener);
+
+        BatchScanner.Progress progress = scanner.run(
+                Arrays.asList("Lot 1", "Ingredients", "Lot 2 lot 3", "Best before").iterator());
+
+        assertEquals(4, progress.getScannedCount());
+        assertEquals(2, progress.getMatchedCount());
+        assertEquals(0, progress.getFailedCount());
+        assertEquals(Integer.valueOf(1), hitCounts.get("Lot 1"));
+        assertEquals(Integer.valueOf(0), hitCounts.get("Ingredients"));
+        assertEquals(Integer.valueOf(2), hitCounts.get("Lot 2 lot 3"));
+        assertSame(progress, finished.get());
+        assertTrue(progress.getImagesPerSecond() > 0);
+    }
+
+    @Test
+    public void failedImage_isReportedAndScanContinues() {
+        BatchScanner<String> scanner = new BatchScanner<>(BatchScanConfig.DEFAULT,
+                RECOGNIZER, MATCHER, listener);
+
+        BatchScanner.Progress progress = scanner.run(
+                Arrays.asList("Lot 1", "corrupt", "Lot 2").iterator());
+
+        assertEquals(2, progress.getScannedCount());
+        assertEquals(1, progress.getFailedCount());
+        assertTrue(failures.get("corrupt") instanceof IllegalArgumentException);
+        assertEquals(2, hitCounts.size());
+    }
+
+    @Test
+    public void slowRecognizer_holdsBackSource() throws Exception {
+        BatchScanConfig config = new BatchScanConfig(2, 1, 2048);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchScanner.Recognizer<String> blocking = image -> {
+            release.await();
+            return RECOGNIZER.recognize(image);
+        };
+        CountingSource source = new CountingSource(20);
+        BatchScanner<String> scanner = new BatchScanner<>(config, blocking, MATCHER, listener);
+        Thread thread = new Thread(() -> scanner.run(source));
+        thread.start();
+
+        waitFor(() -> source.taken.get() == config.getMaxInFlight());
+        Thread.sleep(50);
+        assertEquals(config.getMaxInFlight(), source.taken.get());
+
+        release.countDown();
+        thread.join(5000);
+        assertEquals(20, source.taken.get());
+        assertEquals(20, finished.get().getScannedCount());
+    }
+
+    @Test
+    public void cancel_stopsTakingImages() throws Exception {
+        CountDownLatch recognizing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchScanner.Recognizer<String> blocking = image -> {
+            recognizing.countDown();
+            release.await();
+            return RECOGNIZER.recognize(image);
+        };
+        CountingSource source = new CountingSource(20);
+        BatchScanner<String> scanner = new BatchScanner<>(new BatchScanConfig(1, 0, 2048),
+                blocking, MATCHER, listener);
+        Thread thread = new Thread(() -> scanner.run(source));
+        thread.start();
+
+        assertTrue(recognizing.await(5, TimeUnit.SECONDS));
+        scanner.cancel();
+        release.countDown();
+        thread.join(5000);
+
+        assertTrue(scanner.isCancelled());
+        assertEquals(1, source.taken.get());
+        // The image being recognized when the scan was cancelled is still reported.
+        assertEquals(1, finished.get().getScannedCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void scanner_runsOnlyOnce() {
+        BatchScanner<String> scanner = new BatchScanner<>(BatchScanConfig.DEFAULT,
+                RECOGNIZER, MATCHER, listener);
+        List<String> images = Collections.singletonList("Lot 1");
+        scanner.run(images.iterator());
+        scanner.run(images.iterator());
+    }
+
+    @Test
+    public void sampleSize_boundsLongEdge() {
+        BatchScanConfig config = new BatchScanConfig(1, 0, 2048);
+
+        assertEquals(1, config.sampleSize(2048, 1536));
+        assertEquals(1, config.sampleSize(1000, 2000));
+        assertEquals(2, config.sampleSize(4032, 3024));
+        assertEquals(4, config.sampleSize(3000, 8000));
+        // 4097 / 2 rounds up to 2049, which is still too large.
+        assertEquals(4, config.sampleSize(4097, 100));
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.isMet()) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    /** Source of numbered images that counts how many have been taken. */
+    private static final class CountingSource implements Iterator<String> {
+        final AtomicInteger taken = new AtomicInteger();
+        private final int size;
+
+        CountingSource(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return taken.get() < size;
+        }
+
+        @Override
+        public String next() {
+            return "Lot " + taken.incrementAndGet();
+        }
+    }
+}
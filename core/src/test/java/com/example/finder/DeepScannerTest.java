@@ -0,0 +1,232 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link DeepScanner} and {@link DeepScanConfig}.
+ */
+public class DeepScannerTest {
+
+    private static final int CHAR_WIDTH = 10;
+    private static final int LINE_HEIGHT = 20;
+
+    /** A line of text at a position of the upright capture. */
+    private static final class PrintedLine {
+        final String text;
+        final int left;
+        final int top;
+
+        PrintedLine(String text, int left, int top) {
+            this.text = text;
+            this.left = left;
+            this.top = top;
+        }
+    }
+
+    /**
+     * Reads the part of each printed line that lies within a tile, in the tile's upright
+     * coordinates, as a recognizer would; chars cut by the tile's edge are lost.
+     */
+    private static final class PageRecognizer implements DeepScanner.TileRecognizer {
+        final List<PrintedLine> page;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peakInFlight = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        volatile int failingTile = -1;
+
+        PageRecognizer(List<PrintedLine> page) {
+            this.page = page;
+        }
+
+        @Override
+        public RecognizedText recognize(CropRegion tile) throws Exception {
+            int running = inFlight.incrementAndGet();
+            peakInFlight.accumulateAndGet(running, Math::max);
+            try {
+                if (calls.getAndIncrement() == failingTile) {
+                    throw new IllegalStateException("decoder failed");
+                }
+                Thread.sleep(2);
+                return read(tile);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private RecognizedText read(CropRegion tile) {
+            int x = tile.getUprightOffsetX();
+            int y = tile.getUprightOffsetY();
+            List<RecognizedText.Block> blocks = new ArrayList<>();
+            for (PrintedLine printed : page) {
+                if (printed.top < y || printed.top + LINE_HEIGHT > y + tile.getUprightHeight()) {
+                    continue;
+                }
+                int first = Math.max(0, (x - printed.left + CHAR_WIDTH - 1) / CHAR_WIDTH);
+                int last = Math.min(printed.text.length(),
+                        (x + tile.getUprightWidth() - printed.left) / CHAR_WIDTH);
+                if (last - first <= 0) {
+                    continue;
+                }
+                String text = printed.text.substring(first, last);
+                int left = printed.left + first * CHAR_WIDTH - x;
+                int top = printed.top - y;
+                RecognizedText.Line line = new RecognizedText.Line(text, left, top,
+                        left + CHAR_WIDTH * text.length(), top + LINE_HEIGHT,
+                        Collections.singletonList(new RecognizedText.Element(text, left, top,
+                                left + CHAR_WIDTH * text.length(), top + LINE_HEIGHT)));
+                blocks.add(new RecognizedText.Block(text, line.getLeft(), line.getTop(),
+                        line.getRight(), line.getBottom(), Collections.singletonList(line)));
+            }
+            return new RecognizedText(0, tile.getUprightWidth(), tile.getUprightHeight(), "",
+                    blocks);
+        }
+    }
+
+    private static List<RecognizedText.Line> lines(RecognizedText text) {
+        List<RecognizedText.Line> lines = new ArrayList<>();
+        for (RecognizedText.Block block : text.getBlocks()) {
+            lines.addAll(block.getLines());
+        }
+        return lines;
+    }
+
+    private static RecognizedText.Line find(RecognizedText text, String lineText) {
+        for (RecognizedText.Line line : lines(text)) {
+            if (line.getText().equals(lineText)) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void tiles_coverBufferWithOverlap() {
+        DeepScanConfig config = new DeepScanConfig(1000, 100, 2, 4000);
+        List<CropRegion> tiles = config.tiles(4000, 3000, 90);
+
+        assertEquals(5 * 4, tiles.size());
+        for (int i = 0; i < tiles.size(); i++) {
+            CropRegion tile = tiles.get(i);
+            assertEquals(1000, tile.getWidth());
+            assertEquals(1000, tile.getHeight());
+            if (i % 5 > 0) {
+                CropRegion previous = tiles.get(i - 1);
+                assertTrue(previous.getLeft() + previous.getWidth() - tile.getLeft() >= 100);
+            }
+        }
+        CropRegion last = tiles.get(tiles.size() - 1);
+        assertEquals(4000, last.getLeft() + last.getWidth());
+        assertEquals(3000, last.getTop() + last.getHeight());
+        assertEquals(3000, last.getUprightImageWidth());
+
+        List<CropRegion> single = config.tiles(640, 480, 0);
+        assertEquals(1, single.size());
+        assertTrue(single.get(0).isFull());
+    }
+
+    @Test
+    public void linesInOverlap_areKeptOnceAndWhole() throws Exception {
+        List<PrintedLine> page = new ArrayList<>();
+        // Crosses the vertical tile boundary, so one tile sees it whole and one cut.
+        page.add(new PrintedLine("LOT 4711", 760, 100));
+        // Wholly inside the overlap, so both tiles see it whole.
+        page.add(new PrintedLine("EXP", 900, 300));
+        page.add(new PrintedLine("MILK 1L", 100, 500));
+        page.add(new PrintedLine("BEST BEFORE", 1500, 700));
+        PageRecognizer recognizer = new PageRecognizer(page);
+        DeepScanConfig config = new DeepScanConfig(1000, 200, 2, 4000);
+        DeepScanner.Result result = new DeepScanner(config, recognizer).scan(1800, 1000, 0, 42);
+        RecognizedText text = result.getText();
+
+        assertEquals(2, result.getTileCount());
+        assertEquals(2, result.getDuplicateLineCount());
+        assertEquals(4, lines(text).size());
+        assertEquals(42, text.getTimestampNanos());
+        assertEquals(1800, text.getImageWidth());
+        RecognizedText.Line lot = find(text, "LOT 4711");
+        assertNotNull(lot);
+        assertEquals(760, lot.getLeft());
+        assertEquals(100, lot.getTop());
+        assertNotNull(find(text, "EXP"));
+        RecognizedText.Line best = find(text, "BEST BEFORE");
+        assertNotNull(best);
+        // Moved from the second tile's coordinates into the capture's.
+        assertEquals(1500, best.getLeft());
+        assertEquals(1500, best.getElements().get(0).getLeft());
+    }
+
+    @Test
+    public void rotatedCapture_isMergedInUprightCoordinates() throws Exception {
+        // Upright, the capture is 1000 wide and 2000 high, split into tiles from top to bottom.
+        List<PrintedLine> page = new ArrayList<>();
+        page.add(new PrintedLine("PRICE 2.99", 200, 1200));
+        page.add(new PrintedLine("EAN 4006381333931", 200, 990));
+        PageRecognizer recognizer = new PageRecognizer(page);
+        DeepScanConfig config = new DeepScanConfig(1000, 200, 2, 4000);
+        RecognizedText text = new DeepScanner(config, recognizer).scan(2000, 1000, 90, 0)
+                .getText();
+
+        assertEquals(1000, text.getImageWidth());
+        assertEquals(2000, text.getImageHeight());
+        assertEquals(2, lines(text).size());
+        RecognizedText.Line price = find(text, "PRICE 2.99");
+        assertNotNull(price);
+        assertEquals(200, price.getLeft());
+        assertEquals(1200, price.getTop());
+        assertNotNull(find(text, "EAN 4006381333931"));
+    }
+
+    @Test
+    public void tilesInFlight_areBoundedByParallelism() throws Exception {
+        List<PrintedLine> page = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            page.add(new PrintedLine("ROW " + i, 100 + 90 * (i % 10), 100 * i));
+        }
+        PageRecognizer recognizer = new PageRecognizer(page);
+        DeepScanConfig config = new DeepScanConfig(500, 100, 3, 4000);
+        DeepScanner.Result result = new DeepScanner(config, recognizer).scan(2000, 4000, 0, 0);
+
+        assertEquals(result.getTileCount(), recognizer.calls.get());
+        assertTrue(result.getTileCount() > 3);
+        assertTrue(recognizer.peakInFlight.get() <= 3);
+        assertEquals(40, lines(result.getText()).size());
+    }
+
+    @Test
+    public void failedTiles_areLeftOut_unlessAllFail() throws Exception {
+        List<PrintedLine> page = new ArrayList<>();
+        page.add(new PrintedLine("LEFT", 100, 100));
+        page.add(new PrintedLine("RIGHT", 1500, 100));
+        PageRecognizer recognizer = new PageRecognizer(page);
+        recognizer.failingTile = 0;
+        DeepScanConfig config = new DeepScanConfig(1000, 200, 1, 4000);
+        DeepScanner.Result result = new DeepScanner(config, recognizer).scan(2000, 1000, 0, 0);
+
+        assertEquals(1, result.getFailedTileCount());
+        assertEquals("RIGHT", result.getText().getText());
+
+        PageRecognizer failing = new PageRecognizer(page);
+        failing.failingTile = 0;
+        try {
+            new DeepScanner(config, failing).scan(800, 600, 0, 0);
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals("decoder failed", expected.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void scanner_runsOnce() throws Exception {
+        DeepScanner scanner = new DeepScanner(DeepScanConfig.DEFAULT,
+                new PageRecognizer(Collections.<PrintedLine>emptyList()));
+        scanner.scan(640, 480, 0, 0);
+        scanner.scan(640, 480, 0, 0);
+    }
+}
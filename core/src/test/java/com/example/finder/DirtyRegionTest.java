@@ -0,0 +1,68 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link DirtyRegion}.
+ */
+public class DirtyRegionTest {
+
+    @Test
+    public void union_coversAllRectanglesRoundedOutwards() {
+        DirtyRegion region = new DirtyRegion();
+        assertTrue(region.isEmpty());
+
+        region.union(10.5f, 20.2f, 30.1f, 40.9f, 0);
+        region.union(50f, 5f, 60f, 15f, 2f);
+
+        assertFalse(region.isEmpty());
+        assertEquals(10, region.getLeft(1000));
+        assertEquals(3, region.getTop(1000));
+        assertEquals(62, region.getRight(1000));
+        assertEquals(41, region.getBottom(1000));
+    }
+
+    @Test
+    public void emptyRectangles_areIgnored() {
+        DirtyRegion region = new DirtyRegion();
+        region.union(10, 10, 10, 20, 4);
+        region.union(10, 20, 30, 10, 4);
+        region.union(Float.NaN, 0, 10, 10, 0);
+        assertTrue(region.isEmpty());
+    }
+
+    @Test
+    public void region_isClippedToTheView() {
+        DirtyRegion region = new DirtyRegion();
+        region.union(-50, -50, 50, 50, 0);
+        assertEquals(0, region.getLeft(100));
+        assertEquals(50, region.getRight(100));
+        assertEquals(0.25f, region.coverage(100, 100), 1e-6f);
+
+        DirtyRegion outside = new DirtyRegion();
+        outside.union(200, 200, 300, 300, 0);
+        assertTrue(outside.isOutside(100, 100));
+        assertEquals(0f, outside.coverage(100, 100), 0f);
+    }
+
+    @Test
+    public void regions_canBeCombinedAndCopied() {
+        DirtyRegion previous = new DirtyRegion();
+        previous.union(0, 0, 10, 10, 0);
+        DirtyRegion next = new DirtyRegion();
+        next.union(90, 90, 100, 100, 0);
+
+        DirtyRegion changed = new DirtyRegion();
+        changed.set(previous);
+        changed.union(next);
+        changed.union(new DirtyRegion());
+
+        assertEquals(0, changed.getLeft(100));
+        assertEquals(100, changed.getBottom(100));
+        changed.clear();
+        assertTrue(changed.isEmpty());
+        assertFalse(previous.isEmpty());
+    }
+}
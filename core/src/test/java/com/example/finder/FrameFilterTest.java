@@ -0,0 +1,128 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FrameFilter}.
+ */
+public class FrameFilterTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int ROW_STRIDE = 336;
+    private static final long FRAME_NANOS = 33_000_000L;
+    private static final CropRegion FULL = CropRegion.full(WIDTH, HEIGHT, 0);
+
+    /** High-contrast random blocks, standing in for printed text. */
+    private static ByteBuffer sharpFrame(long seed) {
+        Random random = new Random(seed);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT);
+        byte[][] blocks = new byte[HEIGHT / 4 + 1][WIDTH / 4 + 1];
+        for (byte[] row : blocks) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (random.nextBoolean() ? 20 : 230);
+            }
+        }
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                buffer.put(y * ROW_STRIDE + x, blocks[y / 4][x / 4]);
+            }
+        }
+        return buffer;
+    }
+
+    /** A smooth horizontal ramp with no edges, standing in for a motion-blurred frame. */
+    private static ByteBuffer blurryFrame(int offset) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                buffer.put(y * ROW_STRIDE + x, (byte) ((x + offset) * 200 / (WIDTH + 100)));
+            }
+        }
+        return buffer;
+    }
+
+    @Test
+    public void firstFrame_isRecognized() {
+        FrameFilter filter = new FrameFilter(FrameFilterConfig.DEFAULT);
+        assertEquals(FrameFilter.Decision.RECOGNIZE,
+                filter.evaluate(sharpFrame(1), ROW_STRIDE, FULL, 5_000_000_000L));
+        assertTrue(filter.getLastSharpness() > FrameFilterConfig.DEFAULT.getMinSharpness());
+    }
+
+    @Test
+    public void unchangedScene_isSkippedUntilResultGetsStale() {
+        FrameFilter filter = new FrameFilter(FrameFilterConfig.DEFAULT);
+        ByteBuffer frame = sharpFrame(1);
+        long time = 5_000_000_000L;
+        assertEquals(FrameFilter.Decision.RECOGNIZE, filter.evaluate(frame, ROW_STRIDE, FULL, time));
+        assertEquals(FrameFilter.Decision.SKIP_UNCHANGED,
+                filter.evaluate(frame, ROW_STRIDE, FULL, time + FRAME_NANOS));
+        assertEquals(0f, filter.getLastChange(), 0f);
+        assertEquals(FrameFilter.Decision.RECOGNIZE,
+                filter.evaluate(frame, ROW_STRIDE, FULL, time + 1_000_000_000L));
+        assertEquals(3, filter.getFrameCount());
+        assertEquals(2, filter.getRecognizedCount());
+        assertEquals(1, filter.getSkippedUnchangedCount());
+    }
+
+    @Test
+    public void changedScene_isRecognized() {
+        FrameFilter filter = new FrameFilter(FrameFilterConfig.DEFAULT);
+        long time = 5_000_000_000L;
+        filter.evaluate(sharpFrame(1), ROW_STRIDE, FULL, time);
+        assertEquals(FrameFilter.Decision.RECOGNIZE,
+                filter.evaluate(sharpFrame(2), ROW_STRIDE, FULL, time + FRAME_NANOS));
+        assertTrue(filter.getLastChange() > FrameFilterConfig.DEFAULT.getMinChange());
+    }
+
+    @Test
+    public void blurryFrame_isSkipped() {
+        FrameFilter filter = new FrameFilter(FrameFilterConfig.DEFAULT);
+        long time = 5_000_000_000L;
+        filter.evaluate(sharpFrame(1), ROW_STRIDE, FULL, time);
+        assertEquals(FrameFilter.Decision.SKIP_BLURRY,
+                filter.evaluate(blurryFrame(0), ROW_STRIDE, FULL, time + FRAME_NANOS));
+        assertEquals(1, filter.getSkippedBlurryCount());
+        assertTrue(filter.getLastSharpness() < FrameFilterConfig.DEFAULT.getMinSharpness());
+    }
+
+    @Test
+    public void changedCrop_isNotComparedWithPreviousReference() {
+        FrameFilter filter = new FrameFilter(FrameFilterConfig.DEFAULT);
+        ByteBuffer frame = sharpFrame(1);
+        long time = 5_000_000_000L;
+        filter.evaluate(frame, ROW_STRIDE, FULL, time);
+        CropRegion band = RegionOfInterest.centreBand(0.5f).toCropRegion(WIDTH, HEIGHT, 0);
+        assertEquals(FrameFilter.Decision.RECOGNIZE,
+                filter.evaluate(frame, ROW_STRIDE, band, time + FRAME_NANOS));
+        assertEquals(FrameFilter.Decision.SKIP_UNCHANGED,
+                filter.evaluate(frame, ROW_STRIDE, band, time + 2 * FRAME_NANOS));
+    }
+
+    @Test
+    public void invalidate_forcesNextFrameThrough() {
+        FrameFilter filter = new FrameFilter(FrameFilterConfig.DEFAULT);
+        ByteBuffer frame = sharpFrame(1);
+        long time = 5_000_000_000L;
+        filter.evaluate(frame, ROW_STRIDE, FULL, time);
+        filter.invalidate();
+        assertEquals(FrameFilter.Decision.RECOGNIZE,
+                filter.evaluate(frame, ROW_STRIDE, FULL, time + FRAME_NANOS));
+    }
+
+    @Test
+    public void disabledFilter_recognizesEverything() {
+        FrameFilter filter = new FrameFilter(FrameFilterConfig.DISABLED);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(FrameFilter.Decision.RECOGNIZE,
+                    filter.evaluate(blurryFrame(0), ROW_STRIDE, FULL, i * FRAME_NANOS));
+        }
+        assertEquals(3, filter.getRecognizedCount());
+    }
+}
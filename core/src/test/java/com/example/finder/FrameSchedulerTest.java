@@ -0,0 +1,83 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FrameScheduler}.
+ */
+public class FrameSchedulerTest {
+
+    @Test
+    public void slots_areLimitedToMaxFramesInFlight() {
+        FrameScheduler scheduler = FrameScheduler.create(2);
+        try {
+            assertTrue(scheduler.isPipelined());
+            assertTrue(scheduler.tryStartFrame());
+            assertTrue(scheduler.tryStartFrame());
+            assertFalse(scheduler.tryStartFrame());
+            assertEquals(1, scheduler.getDroppedBusyCount());
+            scheduler.finishFrame();
+            assertTrue(scheduler.tryStartFrame());
+            assertEquals(2, scheduler.getFramesInFlight());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void singleFrameInFlight_isNotPipelined() {
+        FrameScheduler scheduler = FrameScheduler.create(1);
+        assertFalse(scheduler.isPipelined());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void olderResults_areDroppedAsStale() {
+        FrameScheduler scheduler = FrameScheduler.create(3);
+        assertTrue(scheduler.shouldDeliver(200));
+        assertFalse(scheduler.shouldDeliver(100));
+        assertFalse(scheduler.shouldDeliver(200));
+        assertTrue(scheduler.shouldDeliver(300));
+        assertEquals(2, scheduler.getDroppedStaleCount());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void concurrentFrames_neverExceedLimit() throws InterruptedException {
+        FrameScheduler scheduler = FrameScheduler.create(3);
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            workers.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    if (scheduler.tryStartFrame()) {
+                        peak.accumulateAndGet(scheduler.getFramesInFlight(), Math::max);
+                        scheduler.finishFrame();
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        workers.shutdown();
+        assertTrue(peak.get() <= 3);
+        assertEquals(0, scheduler.getFramesInFlight());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void shutDownExecutors_discardLateWork() {
+        FrameScheduler scheduler = FrameScheduler.create(2);
+        scheduler.shutdown();
+        scheduler.getResultExecutor().execute(() -> fail("should not run"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FuzzyMatcher}.
+ */
+public class FuzzyMatcherTest {
+
+    /** Collects hits as "termId:start-end/distance". */
+    private static List<String> hits(FuzzyMatcher matcher, String text) {
+        List<String> hits = new ArrayList<>();
+        matcher.newScanner().match(text, (termId, start, end, distance) ->
+                hits.add(termId + ":" + start + "-" + end + "/" + distance));
+        return hits;
+    }
+
+    @Test
+    public void exactOccurrence_hasDistanceZero() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Collections.singletonList("milk"));
+        assertEquals(Collections.singletonList("0:4-8/0"), hits(matcher, "soy milk 1l"));
+    }
+
+    @Test
+    public void ocrConfusions_matchWithoutEdits() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Arrays.asList("bottle", "modern"));
+        assertEquals(Collections.singletonList("0:0-6/0"), hits(matcher, "B0TT1E"));
+        assertEquals(Collections.singletonList("1:4-11/0"), hits(matcher, "the rnodern age"));
+    }
+
+    @Test
+    public void textIsNormalized_beforeConfusionsAreApplied() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Arrays.asList("fish", "crème"));
+        // The ligature stands for two normalized chars, so the hit ends after it.
+        assertEquals(Collections.singletonList("0:0-3/0"), hits(matcher, "ﬁsh"));
+        assertEquals(Collections.singletonList("0:4-8/0"), hits(matcher, "red ＦＩＳＨ"));
+        assertEquals(Collections.singletonList("1:0-5/0"), hits(matcher, "CREME"));
+    }
+
+    @Test
+    public void oneEdit_isToleratedForMediumTerms() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Collections.singletonList("chocolate"));
+        // Substitution, deletion and insertion.
+        assertEquals(Collections.singletonList("0:0-9/1"), hits(matcher, "chocalate"));
+        assertEquals(Collections.singletonList("0:4-12/1"), hits(matcher, "dak chocolte bar"));
+        assertEquals(Collections.singletonList("0:0-10/1"), hits(matcher, "chocoxlate"));
+        assertEquals(0.888f, matcher.score(0, 1), 1e-3f);
+    }
+
+    @Test
+    public void tooManyEdits_doNotMatch() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Collections.singletonList("milk"));
+        assertEquals(1, matcher.getMaxEdits(0));
+        assertTrue(hits(matcher, "mxxk").isEmpty());
+        assertTrue(hits(matcher, "nothing here").isEmpty());
+    }
+
+    @Test
+    public void shortTerms_mustMatchExactly() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Collections.singletonList("tea"));
+        assertEquals(0, matcher.getMaxEdits(0));
+        assertTrue(hits(matcher, "sea").isEmpty());
+        assertEquals(1, hits(matcher, "green tea").size());
+    }
+
+    @Test
+    public void wordsSplitAcrossElementsAndLines_match() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Collections.singletonList("strawberry"));
+        assertEquals(Collections.singletonList("0:4-16/0"), hits(matcher, "red straw- berry jam"));
+    }
+
+    @Test
+    public void repeatedOccurrences_areReportedSeparately() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Collections.singletonList("best"));
+        assertEquals(Arrays.asList("0:0-4/0", "0:5-9/0"), hits(matcher, "best best"));
+    }
+
+    @Test
+    public void severalTerms_areMatchedInOnePass() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Arrays.asList("sugar", "salt", ""));
+        List<String> hits = hits(matcher, "SUGAR 5g SALT 0.1g");
+        assertEquals(Arrays.asList("0:0-5/0", "1:9-13/0"), hits);
+    }
+
+    @Test
+    public void longTerms_useFirst64Chars() {
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < 80; i++) {
+            term.append((char) ('a' + i % 26));
+        }
+        FuzzyMatcher matcher = FuzzyMatcher.compile(Collections.singletonList(term.toString()));
+        assertEquals(Collections.singletonList("0:0-64/0"), hits(matcher, term.toString()));
+    }
+
+    @Test
+    public void distance_agreesWithDynamicProgramming() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            String term = randomText(random, 4 + random.nextInt(12));
+            String text = randomText(random, random.nextInt(40));
+            FuzzyMatcher matcher = FuzzyMatcher.compile(Collections.singletonList(term),
+                    OcrConfusionMap.NONE, 3);
+            int[] best = {Integer.MAX_VALUE};
+            matcher.newScanner().match(text, (termId, start, end, distance) -> {
+                assertEquals(distance, editDistance(term, text.substring(start, end)));
+                best[0] = Math.min(best[0], distance);
+            });
+            int expected = bestSubstringDistance(term, text);
+            if (expected <= matcher.getMaxEdits(0)) {
+                assertEquals(term + " in " + text, expected, best[0]);
+            } else {
+                assertEquals(term + " in " + text, Integer.MAX_VALUE, best[0]);
+            }
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(chars);
+    }
+
+    private static int editDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j], d[i][j - 1]) + 1, d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static int bestSubstringDistance(String term, String text) {
+        int best = term.length();
+        for (int start = 0; start <= text.length(); start++) {
+            for (int end = start; end <= text.length(); end++) {
+                best = Math.min(best, editDistance(term, text.substring(start, end)));
+            }
+        }
+        return best;
+    }
+}
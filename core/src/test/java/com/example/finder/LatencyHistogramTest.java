@@ -0,0 +1,103 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    private static final long US = 1000L;
+
+    @Test
+    public void empty_reportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(0, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void smallValues_areExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10; micros++) {
+            histogram.record(micros * US);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(5 * US, histogram.getPercentileNanos(50));
+        assertEquals(10 * US, histogram.getPercentileNanos(99));
+        assertEquals(10 * US, histogram.getMaxNanos());
+        assertEquals(5500, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void percentiles_areWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 ms to 100 ms in steps of 10 us.
+        for (long micros = 1_000; micros <= 100_000; micros += 10) {
+            histogram.record(micros * US);
+        }
+        assertWithin(50_500 * US, histogram.getPercentileNanos(50));
+        assertWithin(95_050 * US, histogram.getPercentileNanos(95));
+        assertWithin(99_010 * US, histogram.getPercentileNanos(99));
+        assertEquals(100_000 * US, histogram.getPercentileNanos(100));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertEquals(expected, actual, expected * 0.035);
+    }
+
+    @Test
+    public void hugeAndNegativeValues_areClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(10L * 60 * 1_000_000_000L);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertTrue(histogram.getPercentileNanos(100) >= 60_000_000_000L);
+    }
+
+    @Test
+    public void buckets_areContiguous() {
+        for (int index = 1; index < LatencyHistogram.indexOf(1L << 25); index++) {
+            long lowest = LatencyHistogram.highestValueOf(index - 1) + 1;
+            assertEquals(index, LatencyHistogram.indexOf(lowest));
+            assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.highestValueOf(index)));
+        }
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i * US);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(9_999 * US, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void reset_forgetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500 * US);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(99));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MatchAlerter} and {@link SearchSession}.
+ */
+public class MatchAlerterTest {
+
+    private static final long MS = 1_000_000L;
+
+    /** A frame with one hit of each of the given terms. */
+    private static MatchGeometry hits(int... termIds) {
+        MatchGeometry.Builder builder = new MatchGeometry.Builder(ViewTransform.IDENTITY,
+                label -> 0f);
+        for (int termId : termIds) {
+            builder.add(termId, 1f, "term" + termId, 0, 0, 10, 10);
+        }
+        return builder.build();
+    }
+
+    private static SearchSession session(SearchTerm... terms) {
+        return new SearchSession(Arrays.asList(terms));
+    }
+
+    private static SearchTerm term(String text, SearchTerm.Priority priority, long debounceMillis,
+                                   long cooldownMillis) {
+        return new SearchTerm(text, priority, 0xFFFFFFFF, debounceMillis, cooldownMillis);
+    }
+
+    @Test
+    public void parse_readsPriorityMarksAndAssignsColours() {
+        SearchSession session = SearchSession.parse("oat milk, !Passport,\n? lot 4711, OAT MILK, !");
+
+        assertEquals(Arrays.asList("oat milk", "Passport", "lot 4711"), session.getTermTexts());
+        assertEquals(SearchTerm.Priority.NORMAL, session.get(0).getPriority());
+        assertEquals(SearchTerm.Priority.HIGH, session.get(1).getPriority());
+        assertEquals(SearchTerm.Priority.LOW, session.get(2).getPriority());
+        assertNotEquals(session.get(0).getColor(), session.get(1).getColor());
+        assertEquals(0, session.get(1).getDebounceMillis());
+        assertTrue(session.get(2).getCooldownMillis() > session.get(0).getCooldownMillis());
+    }
+
+    @Test
+    public void term_isAnnouncedAfterDebounceAndNotAgainWithinCooldown() {
+        MatchAlerter alerter = new MatchAlerter(
+                session(term("milk", SearchTerm.Priority.NORMAL, 150, 1000)), 0);
+
+        assertEquals(MatchGeometry.NO_TERM, alerter.onFrame(hits(0), 0));
+        assertEquals(MatchGeometry.NO_TERM, alerter.onFrame(hits(0), 100 * MS));
+        assertEquals(0, alerter.onFrame(hits(0), 200 * MS));
+        assertEquals(MatchGeometry.NO_TERM, alerter.onFrame(hits(0), 900 * MS));
+        assertEquals(0, alerter.onFrame(hits(0), 1200 * MS));
+        assertEquals(2, alerter.getAlertCount(0));
+    }
+
+    @Test
+    public void gap_restartsDebounce() {
+        MatchAlerter alerter = new MatchAlerter(
+                session(term("milk", SearchTerm.Priority.NORMAL, 150, 1000)), 0);
+
+        alerter.onFrame(hits(0), 0);
+        alerter.onFrame(hits(), 100 * MS);
+        // Seen again after more than the allowed gap, so the sighting starts over.
+        assertEquals(MatchGeometry.NO_TERM, alerter.onFrame(hits(0), 1000 * MS));
+        assertEquals(0, alerter.onFrame(hits(0), 1200 * MS));
+    }
+
+    @Test
+    public void highestPriority_winsAndOthersStayDue() {
+        MatchAlerter alerter = new MatchAlerter(session(
+                term("milk", SearchTerm.Priority.NORMAL, 0, 5000),
+                term("keys", SearchTerm.Priority.HIGH, 0, 5000),
+                term("lot", SearchTerm.Priority.LOW, 0, 5000)), 500);
+
+        assertEquals(1, alerter.onFrame(hits(0, 1, 2), 0));
+        // Spaced by the minimum interval, then by priority.
+        assertEquals(MatchGeometry.NO_TERM, alerter.onFrame(hits(0, 1, 2), 100 * MS));
+        assertEquals(0, alerter.onFrame(hits(0, 1, 2), 500 * MS));
+        assertEquals(2, alerter.onFrame(hits(0, 1, 2), 1000 * MS));
+    }
+
+    @Test
+    public void counters_arePerTerm() {
+        MatchAlerter alerter = new MatchAlerter(session(
+                term("milk", SearchTerm.Priority.NORMAL, 0, 1000),
+                term("keys", SearchTerm.Priority.NORMAL, 0, 1000)));
+
+        alerter.onFrame(hits(0, 0, MatchGeometry.NO_TERM), 0);
+        alerter.onFrame(hits(0), 100 * MS);
+
+        assertEquals(3, alerter.getHitCount(0));
+        assertEquals(2, alerter.getFrameCount(0));
+        assertEquals(1, alerter.getAlertCount(0));
+        assertEquals(0, alerter.getHitCount(1));
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.finder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MatchExporter} and {@link MatchExportConfig}.
+ */
+public class MatchExporterTest {
+
+    private static final List<String> TERMS = Arrays.asList("milk", "bread");
+    // Maps a 500x500 image onto a 1000x1000 view, so view coordinates are twice image ones.
+    private static final ViewTransform DOUBLE = ViewTransform.create(1000, 1000, 500, 500, false);
+    private static final MatchExportConfig CONFIG = new MatchExportConfig(
+            64, 5, 1 << 20, 4, MatchExportConfig.SyncPolicy.EVERY_BATCH);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static MatchGeometry matches(String... labels) {
+        MatchGeometry.Builder builder = new MatchGeometry.Builder(DOUBLE, label -> 0f);
+        for (int i = 0; i < labels.length; i++) {
+            builder.add(i % 2, 0.5f, labels[i], 10 * i, 20, 10 * i + 50, 40);
+        }
+        return builder.build();
+    }
+
+    private static List<String> readLines(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        assertNotNull(files);
+        Arrays.sort(files);
+        List<String> lines = new ArrayList<>();
+        for (File file : files) {
+            lines.addAll(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    @Test
+    public void matches_areWrittenAsJsonLinesInImageCoordinates() throws IOException {
+        File directory = new File(folder.getRoot(), "matches");
+        MatchExporter exporter = new MatchExporter(directory, TERMS, CONFIG);
+        assertTrue(exporter.offer(7, 123456789L, 1700000000000L, matches("Milk 2L", "Rye bread"),
+                DOUBLE));
+        assertTrue(exporter.offer(8, 123456790L, 1700000000001L, MatchGeometry.EMPTY, DOUBLE));
+        exporter.close();
+
+        assertEquals(Arrays.asList(
+                "{\"frame\":7,\"t\":123456789,\"time\":1700000000000,\"term\":\"milk\","
+                        + "\"text\":\"Milk 2L\",\"box\":[0,20,50,40],\"score\":0.5}",
+                "{\"frame\":7,\"t\":123456789,\"time\":1700000000000,\"term\":\"bread\","
+                        + "\"text\":\"Rye bread\",\"box\":[10,20,60,40],\"score\":0.5}"),
+                readLines(directory));
+        assertEquals(2, exporter.getOfferedCount());
+        assertEquals(2, exporter.getWrittenCount());
+        assertEquals(0, exporter.getDroppedCount());
+        assertNull(exporter.getLastError());
+    }
+
+    @Test
+    public void text_isEscaped() throws IOException {
+        MatchExporter exporter = new MatchExporter(folder.getRoot(), TERMS, CONFIG);
+        MatchGeometry matches = new MatchGeometry.Builder(DOUBLE, label -> 0f)
+                .add("say \"hi\"\\\n\u0001 café 😀", 0, 0, 10, 10)
+                .build();
+        exporter.offer(1, 0, 0, matches, DOUBLE);
+        exporter.close();
+
+        String line = readLines(folder.getRoot()).get(0);
+        assertTrue(line, line.contains(
+                "\"term\":null,\"text\":\"say \\\"hi\\\"\\\\\\n\\u0001 café 😀\""));
+    }
+
+    @Test
+    public void files_areRotatedBySize_andOldOnesDeleted() throws IOException {
+        MatchExportConfig config = new MatchExportConfig(1024, 5, 1000, 3,
+                MatchExportConfig.SyncPolicy.ON_ROTATE);
+        MatchExporter exporter = new MatchExporter(folder.getRoot(), TERMS, config);
+        for (int frame = 0; frame < 100; frame++) {
+            while (!exporter.offer(frame, frame, frame, matches("line " + frame), DOUBLE)) {
+                Thread.yield();
+            }
+        }
+        exporter.close();
+
+        File[] files = folder.getRoot().listFiles();
+        assertNotNull(files);
+        assertEquals(3, files.length);
+        assertTrue(exporter.getFileCount() > 3);
+        List<String> lines = readLines(folder.getRoot());
+        for (String line : lines) {
+            assertTrue(line, line.startsWith("{\"frame\":") && line.endsWith("}"));
+        }
+        // The newest files hold the last frames, without gaps.
+        String lastLine = lines.get(lines.size() - 1);
+        assertEquals("line 99", lastLine.replaceAll(".*\"text\":\"([^\"]*)\".*", "$1"));
+        for (File file : files) {
+            assertTrue(file.length() <= 1000);
+        }
+        assertEquals(100, exporter.getWrittenCount() + exporter.getDroppedCount());
+        assertEquals(0, exporter.getDroppedCount());
+    }
+
+    @Test
+    public void numbering_continuesAfterExistingFiles() throws IOException {
+        assertTrue(new File(folder.getRoot(), "matches-000041.jsonl").createNewFile());
+        MatchExporter exporter = new MatchExporter(folder.getRoot(), TERMS, CONFIG);
+        exporter.offer(1, 0, 0, matches("Milk"), DOUBLE);
+        exporter.close();
+        assertTrue(new File(folder.getRoot(), "matches-000042.jsonl").length() > 0);
+    }
+
+    @Test
+    public void fullRing_dropsInsteadOfWaiting() throws IOException {
+        MatchExportConfig config = new MatchExportConfig(3, 60_000, 1 << 20, 4,
+                MatchExportConfig.SyncPolicy.NEVER);
+        assertEquals(4, config.getRingCapacity());
+        MatchExporter exporter = new MatchExporter(folder.getRoot(), TERMS, config);
+        // More matches than the ring holds are dropped together, whatever the writer is doing.
+        assertFalse(exporter.offer(1, 0, 0, matches("a", "b", "c", "d", "e"), DOUBLE));
+        assertTrue(exporter.offer(2, 0, 0, matches("f", "g", "h"), DOUBLE));
+        exporter.close();
+
+        assertEquals(8, exporter.getOfferedCount());
+        assertEquals(3, exporter.getWrittenCount());
+        assertEquals(5, exporter.getDroppedCount());
+        assertEquals(3, readLines(folder.getRoot()).size());
+        assertFalse(exporter.offer(3, 0, 0, matches("i"), DOUBLE));
+    }
+
+    @Test
+    public void writeErrors_dropTheBatch_andAreReportedOnClose() throws IOException {
+        File notADirectory = folder.newFile("taken");
+        MatchExporter exporter = new MatchExporter(notADirectory, TERMS, CONFIG);
+        exporter.offer(1, 0, 0, matches("Milk", "Bread"), DOUBLE);
+        try {
+            exporter.close();
+            fail("Expected the write error");
+        } catch (IOException expected) {
+            assertSame(expected, exporter.getLastError());
+        }
+        assertEquals(0, exporter.getWrittenCount());
+        assertEquals(2, exporter.getDroppedCount());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MatchGeometry}.
+ */
+public class MatchGeometryTest {
+
+    private static final float DELTA = 1e-3f;
+    private static final MatchGeometry.LabelMeasurer TEN_PER_CHAR = label -> 10f * label.length();
+
+    @Test
+    public void emptyBuilder_givesEmptyGeometry() {
+        MatchGeometry geometry =
+                new MatchGeometry.Builder(ViewTransform.IDENTITY, TEN_PER_CHAR).build();
+        assertSame(MatchGeometry.EMPTY, geometry);
+        assertEquals(0, geometry.size());
+    }
+
+    @Test
+    public void hits_areMappedAndMeasuredWhenAdded() {
+        ViewTransform transform = ViewTransform.create(1080, 1920, 480, 640, false);
+        MatchGeometry geometry = new MatchGeometry.Builder(transform, TEN_PER_CHAR)
+                .add("milk", 100, 200, 150, 220)
+                .build();
+        assertEquals(1, geometry.size());
+        assertEquals(120f, geometry.getLeft(0), DELTA);
+        assertEquals(600f, geometry.getTop(0), DELTA);
+        assertEquals(270f, geometry.getRight(0), DELTA);
+        assertEquals(660f, geometry.getBottom(0), DELTA);
+        assertEquals("milk", geometry.getLabel(0));
+        assertEquals(40f, geometry.getLabelWidth(0), DELTA);
+    }
+
+    @Test
+    public void flippedHits_keepLeftOfRight() {
+        ViewTransform transform = ViewTransform.create(1080, 1920, 480, 640, true);
+        MatchGeometry geometry = new MatchGeometry.Builder(transform, TEN_PER_CHAR)
+                .add("milk", 100, 200, 150, 220)
+                .build();
+        assertEquals(1080f - 270f, geometry.getLeft(0), DELTA);
+        assertEquals(1080f - 120f, geometry.getRight(0), DELTA);
+    }
+
+    @Test
+    public void builder_growsPastInitialCapacity() {
+        MatchGeometry.Builder builder = new MatchGeometry.Builder(ViewTransform.IDENTITY, TEN_PER_CHAR);
+        for (int i = 0; i < 100; i++) {
+            builder.add("line" + i, i, i, i + 1, i + 1);
+        }
+        MatchGeometry geometry = builder.build();
+        assertEquals(100, geometry.size());
+        assertEquals(99f, geometry.getLeft(99), DELTA);
+        assertEquals("line99", geometry.getLabel(99));
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link OcrConfusionMap}.
+ */
+public class OcrConfusionMapTest {
+
+    private static String normalize(OcrConfusionMap map, String text) {
+        NormalizedText out = new NormalizedText();
+        map.normalize(text, out);
+        return out.toString();
+    }
+
+    @Test
+    public void defaultMap_foldsCommonConfusions() {
+        OcrConfusionMap map = OcrConfusionMap.DEFAULT;
+        assertEquals(normalize(map, "BOTTLE"), normalize(map, "B0TT1E"));
+        assertEquals(normalize(map, "Illinois"), normalize(map, "1llin0is"));
+        assertEquals(normalize(map, "modern"), normalize(map, "rnodern"));
+        assertEquals(normalize(map, "strawberry"), normalize(map, "Straw-\nberry"));
+        assertNotEquals(normalize(map, "milk"), normalize(map, "silk"));
+    }
+
+    @Test
+    public void offsets_pointBackToOriginalChars() {
+        NormalizedText out = new NormalizedText();
+        OcrConfusionMap.DEFAULT.normalize("a rn-b", out);
+        assertEquals("amb", out.toString());
+        assertEquals(0, out.getStart(0));
+        assertEquals(2, out.getStart(1));
+        assertEquals(4, out.getEnd(1));
+        assertEquals(5, out.getStart(2));
+        assertEquals(6, out.getEnd(2));
+    }
+
+    @Test
+    public void range_isRelativeToWholeText() {
+        NormalizedText out = new NormalizedText();
+        OcrConfusionMap.NONE.normalize("xx Ab", 3, 5, out);
+        assertEquals("ab", out.toString());
+        assertEquals(3, out.getStart(0));
+    }
+
+    @Test
+    public void customMap_appliesOwnRules() {
+        OcrConfusionMap map = new OcrConfusionMap.Builder()
+                .equivalent("aä")
+                .replace("cl", 'd')
+                .ignore("/")
+                .ignoreWhitespace(false)
+                .build();
+        assertEquals("bad x", normalize(map, "Bäcl/ X"));
+    }
+
+    @Test
+    public void buffer_growsPastInitialCapacity() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append('x');
+        }
+        NormalizedText out = new NormalizedText();
+        OcrConfusionMap.NONE.normalize(text, out);
+        assertEquals(1000, out.length());
+        assertEquals(999, out.getStart(999));
+    }
+}
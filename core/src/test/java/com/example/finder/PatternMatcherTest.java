@@ -0,0 +1,170 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PatternMatcher}.
+ */
+public class PatternMatcherTest {
+
+    private static List<String> hits(PatternMatcher matcher, String text) {
+        List<String> hits = new ArrayList<>();
+        matcher.newScanner().match(text, (patternId, start, end) ->
+                hits.add(patternId + ":" + text.substring(start, end)));
+        return hits;
+    }
+
+    private static List<String> hits(String pattern, String text) {
+        return hits(PatternMatcher.compile(Collections.singletonList(pattern)), text);
+    }
+
+    @Test
+    public void builtInPatterns_matchCommonLabels() {
+        assertEquals(Arrays.asList("0:$3.49", "0:2,99 EUR"),
+                hits("@price", "Now $3.49, was 2,99 EUR"));
+        assertEquals(Arrays.asList("0:12/05/2026", "0:2025-03-01", "0:3 March 2025"),
+                hits("@date", "BB 12/05/2026 made 2025-03-01 on 3 March 2025"));
+        assertEquals(Arrays.asList("0:LOT No: A12-334"), hits("@lot", "LOT No: A12-334"));
+        assertEquals(Arrays.asList("0:SKU#AB-1234"), hits("@sku", "ref SKU#AB-1234"));
+        assertEquals(Arrays.asList("0:4006381333931"), hits("@ean", "4006381333931"));
+        assertEquals(Arrays.asList("0:SW1A 1AA"), hits("@postcode", "London SW1A 1AA"));
+        assertEquals(Arrays.asList("0:90210-1234"), hits("@zip", "CA 90210-1234"));
+        assertEquals(Arrays.asList("0:14/02/24"), hits("@DATE", "14/02/24"));
+    }
+
+    @Test
+    public void matches_areLeftmostLongest_andDoNotOverlap() {
+        PatternMatcher matcher = PatternMatcher.compile(Arrays.asList("ab", "abc+", "bcd"));
+        assertEquals(Arrays.asList("1:abccc", "0:ab"), hits(matcher, "xabcccdab"));
+        // Of patterns matching the same text, the first wins.
+        assertEquals(Arrays.asList("0:12"), hits(PatternMatcher.compile(
+                Arrays.asList("\\d\\d", "[0-9]+")), "12"));
+    }
+
+    @Test
+    public void text_isFoldedWithoutMovingOffsets() {
+        PatternMatcher matcher = PatternMatcher.compile(Collections.singletonList("creme \\d+g"));
+        String text = "CRÈME ２５0G";
+        List<int[]> ranges = new ArrayList<>();
+        matcher.newScanner().match(text, (patternId, start, end) ->
+                ranges.add(new int[] {start, end}));
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new int[] {0, text.length()}, ranges.get(0));
+        assertEquals(Arrays.asList("0:Lot 7"), hits("[a-z]+ [^a-z ]", "Lot 7"));
+    }
+
+    @Test
+    public void range_isRelativeToWholeText() {
+        PatternMatcher matcher = PatternMatcher.compile(Collections.singletonList("\\d+"));
+        List<String> hits = new ArrayList<>();
+        assertEquals(1, matcher.newScanner().match("12 34 56", 2, 5, (patternId, start, end) ->
+                hits.add(start + "-" + end)));
+        assertEquals(Collections.singletonList("3-5"), hits);
+    }
+
+    @Test
+    public void matches_agreeWithBacktrackingRegex() {
+        assertAgreesWithBacktrackingRegex("ab1- ",
+                "a+b", "(ab|a)b*", "\\d{2,3}", "[ab]-?1", "b(a|1)*?", "(?:a1){2}");
+    }
+
+    @Test
+    public void matches_areLongest_whenRunsFromLaterStartsOverlap() {
+        PatternMatcher matcher = PatternMatcher.compile(Arrays.asList("ab", "a.*c"));
+        assertEquals(Arrays.asList("0:ab", "0:ab", "0:ab"), hits(matcher, "ab ab ab"));
+        assertEquals(Arrays.asList("1:ab ab abc", "0:ab"), hits(matcher, "ab ab abc ab"));
+        // Runs from odd and even starts stay apart, as they count pairs differently.
+        assertAgreesWithBacktrackingRegex("abxyc ", "ab", "a.*c", "x(..)*y", "b.*a.*c");
+    }
+
+    private static void assertAgreesWithBacktrackingRegex(String alphabet, String... patterns) {
+        PatternMatcher matcher = PatternMatcher.compile(Arrays.asList(patterns));
+        Pattern[] regexes = new Pattern[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            regexes[i] = Pattern.compile(patterns[i]);
+        }
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(24); i > 0; i--) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertEquals(text.toString(), expectedHits(regexes, text.toString()),
+                    hits(matcher, text.toString()));
+        }
+    }
+
+    /** Leftmost-longest matches, the first pattern winning ties, found by trying every range. */
+    private static List<String> expectedHits(Pattern[] regexes, String text) {
+        List<String> hits = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int bestEnd = -1;
+            int bestId = -1;
+            for (int end = text.length(); end > start && bestEnd < 0; end--) {
+                for (int id = 0; id < regexes.length && bestEnd < 0; id++) {
+                    Matcher m = regexes[id].matcher(text).region(start, end);
+                    if (m.matches()) {
+                        bestEnd = end;
+                        bestId = id;
+                    }
+                }
+            }
+            if (bestEnd < 0) {
+                start++;
+            } else {
+                hits.add(bestId + ":" + text.substring(start, bestEnd));
+                start = bestEnd;
+            }
+        }
+        return hits;
+    }
+
+    @Test
+    public void invalidPatterns_areRejected() {
+        String[] invalid = {"a*", "", "(ab", "ab)", "[a-", "*a", "a{3,1}", "a{99}", "\\b", "@nope"};
+        for (String pattern : invalid) {
+            try {
+                PatternMatcher.compile(Collections.singletonList(pattern));
+                fail(pattern);
+            } catch (IllegalArgumentException expected) {
+                assertNotNull(expected.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void tooComplexPatterns_areRejected() {
+        // Remembering the last 17 chars needs a state for each of their 2^17 combinations.
+        try {
+            PatternMatcher.compile(Collections.singletonList("[ab]*a[ab]{16}"));
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("complex"));
+        }
+    }
+
+    @Test
+    public void splitPatterns_keepsCommasInsideBracketsAndBraces() {
+        assertEquals(Arrays.asList("\\d{1,2}", "[,;]x", "@price", "a\\,b"),
+                PatternMatcher.splitPatterns(" \\d{1,2}, [,;]x\n@price,,a\\,b "));
+        assertEquals(Collections.emptyList(), PatternMatcher.splitPatterns(null));
+    }
+
+    @Test
+    public void sessionOfPatterns_keepsPatternsDifferingInCase() {
+        SearchSession session = SearchSession.parsePatterns("a\\s, a\\S, !\\d{1,2}, a\\s");
+        assertEquals(Arrays.asList("a\\s", "a\\S", "\\d{1,2}"), session.getTermTexts());
+        assertEquals(SearchTerm.Priority.HIGH, session.getTerms().get(2).getPriority());
+    }
+}
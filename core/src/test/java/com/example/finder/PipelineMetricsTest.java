@@ -0,0 +1,61 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PipelineMetrics}.
+ */
+public class PipelineMetricsTest {
+
+    @Test
+    public void stages_haveSeparateHistograms() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.record(PipelineMetrics.Stage.RECOGNITION, 40_000_000L);
+        metrics.record(PipelineMetrics.Stage.RECOGNITION, 60_000_000L);
+        metrics.record(PipelineMetrics.Stage.DRAW, 1_000_000L);
+
+        assertEquals(2, metrics.getHistogram(PipelineMetrics.Stage.RECOGNITION).getCount());
+        assertEquals(1, metrics.getHistogram(PipelineMetrics.Stage.DRAW).getCount());
+        assertEquals(0, metrics.getHistogram(PipelineMetrics.Stage.MATCH).getCount());
+    }
+
+    @Test
+    public void writeCsv_hasHeaderAndRowPerStage() throws IOException {
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.record(PipelineMetrics.Stage.MATCH, 2_000_000L);
+        StringWriter out = new StringWriter();
+        metrics.writeCsv(out);
+
+        String[] rows = out.toString().split("\n");
+        assertEquals(1 + PipelineMetrics.Stage.values().length, rows.length);
+        assertEquals("stage,count,p50_ms,p95_ms,p99_ms,max_ms,mean_ms", rows[0]);
+        assertEquals("match,1,2.000,2.000,2.000,2.000,2.000",
+                rows[1 + PipelineMetrics.Stage.MATCH.ordinal()]);
+    }
+
+    @Test
+    public void summarize_namesStage() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.record(PipelineMetrics.Stage.DRAW, 3_000_000L);
+        String summary = metrics.summarize(PipelineMetrics.Stage.DRAW);
+        assertTrue(summary, summary.startsWith("draw"));
+        assertTrue(summary, summary.endsWith("n=1"));
+    }
+
+    @Test
+    public void reset_clearsAllStages() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+            metrics.record(stage, 1_000L);
+        }
+        metrics.reset();
+        for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+            assertEquals(0, metrics.getHistogram(stage).getCount());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link QualityController}, driven by simulated latency traces.
+ */
+public class QualityControllerTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long FRAME_NANOS = 33 * MS;
+    private static final long TARGET = QualityController.DEFAULT_TARGET_NANOS;
+
+    /** Latency of one recognition at a level. */
+    private interface Device {
+        long latencyNanos(QualityController.Level level);
+    }
+
+    /** A device whose latency grows with the number of pixels recognized. */
+    private static Device scaling(long fullQualityNanos) {
+        return level -> {
+            double edge = level.getLongEdge() / 1280.0;
+            return (long) (fullQualityNanos * edge * edge * level.getRegionScale());
+        };
+    }
+
+    /** Feeds the controller camera frames for a while and returns the time reached. */
+    private static long run(QualityController controller, Device device, long startNanos,
+                            long durationNanos, int thermalStatus) {
+        long now = startNanos;
+        for (; now < startNanos + durationNanos; now += FRAME_NANOS) {
+            if (controller.admitFrame()) {
+                controller.recordLatency(device.latencyNanos(controller.getLevel()));
+            }
+            controller.update(now, 0, thermalStatus);
+        }
+        return now;
+    }
+
+    @Test
+    public void startsAtTheBestLevelForTheDevice() {
+        assertEquals(1280, new QualityController(AnalysisConfig.DEFAULT, TARGET).getLevel()
+                .getLongEdge());
+        QualityController lowEnd = new QualityController(AnalysisConfig.LOW_END, TARGET);
+        assertEquals(960, lowEnd.getLevel().getLongEdge());
+
+        // A fast device never goes above what its configuration allows.
+        run(lowEnd, level -> 10 * MS, 0, 20 * QualityController.WINDOW_NANOS,
+                QualityController.THERMAL_NONE);
+        assertEquals(960, lowEnd.getLevel().getLongEdge());
+        assertEquals(0, lowEnd.getChangeCount());
+    }
+
+    @Test
+    public void slowDevice_settlesAtTheFirstLevelWithinTarget() {
+        QualityController controller = new QualityController(AnalysisConfig.DEFAULT, TARGET);
+        Device device = scaling(300 * MS);
+
+        long now = run(controller, device, 0, 10 * QualityController.WINDOW_NANOS,
+                QualityController.THERMAL_NONE);
+        QualityController.Level settled = controller.getLevel();
+        assertTrue(device.latencyNanos(settled) <= TARGET);
+        long changes = controller.getChangeCount();
+
+        // Latency at the settled level is too close to the target to raise quality again.
+        run(controller, device, now, 20 * QualityController.WINDOW_NANOS,
+                QualityController.THERMAL_NONE);
+        assertSame(settled, controller.getLevel());
+        assertEquals(changes, controller.getChangeCount());
+    }
+
+    @Test
+    public void stepsDownOncePerWindow_andSkipsTheWindowAfterAChange() {
+        QualityController controller = new QualityController(AnalysisConfig.DEFAULT, TARGET);
+        Device slow = level -> 400 * MS;
+
+        run(controller, slow, 0, QualityController.WINDOW_NANOS + FRAME_NANOS,
+                QualityController.THERMAL_NONE);
+        assertEquals(1, controller.getChangeCount());
+        run(controller, slow, QualityController.WINDOW_NANOS + FRAME_NANOS,
+                QualityController.WINDOW_NANOS, QualityController.THERMAL_NONE);
+        assertEquals(1, controller.getChangeCount());
+    }
+
+    @Test
+    public void recoveredDevice_raisesQualityGradually() {
+        QualityController controller = new QualityController(AnalysisConfig.DEFAULT, TARGET);
+        long now = run(controller, level -> 400 * MS, 0, 20 * QualityController.WINDOW_NANOS,
+                QualityController.THERMAL_NONE);
+        assertEquals(640, controller.getLevel().getLongEdge());
+        assertEquals(3, controller.getLevel().getFrameInterval());
+
+        long changes = controller.getChangeCount();
+        // One window is discarded after each change, then three good ones are needed.
+        now = run(controller, level -> 20 * MS, now, 5 * QualityController.WINDOW_NANOS,
+                QualityController.THERMAL_NONE);
+        assertEquals(changes + 1, controller.getChangeCount());
+
+        run(controller, level -> 20 * MS, now, 60 * QualityController.WINDOW_NANOS,
+                QualityController.THERMAL_NONE);
+        assertEquals(1280, controller.getLevel().getLongEdge());
+        assertEquals(1f, controller.getLevel().getRegionScale(), 0f);
+    }
+
+    @Test
+    public void heat_forcesACheaperLevelAtOnce() {
+        QualityController controller = new QualityController(AnalysisConfig.DEFAULT, TARGET);
+        Device fast = level -> 20 * MS;
+
+        assertTrue(controller.update(0, 0, QualityController.THERMAL_SEVERE));
+        assertEquals(720, controller.getLevel().getLongEdge());
+
+        // Fast results do not raise quality while the device stays hot.
+        long now = run(controller, fast, FRAME_NANOS, 20 * QualityController.WINDOW_NANOS,
+                QualityController.THERMAL_SEVERE);
+        assertEquals(720, controller.getLevel().getLongEdge());
+
+        assertTrue(controller.update(now, 0, QualityController.THERMAL_CRITICAL));
+        assertEquals(640, controller.getLevel().getLongEdge());
+
+        run(controller, fast, now + FRAME_NANOS, 60 * QualityController.WINDOW_NANOS,
+                QualityController.THERMAL_NONE);
+        assertEquals(1280, controller.getLevel().getLongEdge());
+    }
+
+    @Test
+    public void drops_stepDownEvenWithFastResults() {
+        QualityController controller = new QualityController(AnalysisConfig.DEFAULT, TARGET);
+        long dropped = 0;
+        long now = 0;
+        for (; now < QualityController.WINDOW_NANOS + 2 * FRAME_NANOS; now += FRAME_NANOS) {
+            if (controller.admitFrame()) {
+                controller.recordLatency(20 * MS);
+                dropped++;
+            }
+            controller.update(now, dropped, QualityController.THERMAL_NONE);
+        }
+        assertEquals(1, controller.getChangeCount());
+    }
+
+    @Test
+    public void admitFrame_followsTheFrameInterval() {
+        QualityController controller = new QualityController(AnalysisConfig.DEFAULT, TARGET);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(controller.admitFrame());
+        }
+        controller.update(0, 0, QualityController.THERMAL_CRITICAL);
+        int admitted = 0;
+        for (int i = 0; i < 9; i++) {
+            if (controller.admitFrame()) {
+                admitted++;
+            }
+        }
+        assertEquals(3, admitted);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RegionOfInterest} and {@link CropRegion}.
+ */
+public class RegionOfInterestTest {
+
+    // Upright left half, top quarter of a 640x480 buffer in each orientation.
+    private static final RegionOfInterest TOP_LEFT = RegionOfInterest.of(0f, 0f, 0.5f, 0.25f);
+
+    @Test
+    public void of_sortsAndClampsCorners() {
+        RegionOfInterest region = RegionOfInterest.of(1.5f, 0.8f, 0.2f, -1f);
+        assertEquals(0.2f, region.getLeft(), 0f);
+        assertEquals(0f, region.getTop(), 0f);
+        assertEquals(1f, region.getRight(), 0f);
+        assertEquals(0.8f, region.getBottom(), 0f);
+    }
+
+    @Test
+    public void of_enforcesMinimumSize() {
+        RegionOfInterest region = RegionOfInterest.of(1f, 0.5f, 1f, 0.5f);
+        assertTrue(region.getRight() - region.getLeft() > 0.04f);
+        assertTrue(region.getBottom() - region.getTop() > 0.04f);
+        assertTrue(region.getRight() <= 1f);
+    }
+
+    @Test
+    public void centreBand_isCentred() {
+        RegionOfInterest band = RegionOfInterest.centreBand(0.4f);
+        assertEquals(0.3f, band.getTop(), 1e-6f);
+        assertEquals(0.7f, band.getBottom(), 1e-6f);
+        assertEquals(0f, band.getLeft(), 0f);
+        assertEquals(1f, band.getRight(), 0f);
+    }
+
+    @Test
+    public void withHeightScaled_keepsCentreAndWidth() {
+        RegionOfInterest band = RegionOfInterest.centreBand(0.4f).withHeightScaled(0.5f);
+        assertEquals(0.4f, band.getTop(), 1e-6f);
+        assertEquals(0.6f, band.getBottom(), 1e-6f);
+        assertEquals(0f, band.getLeft(), 0f);
+        assertEquals(1f, band.getRight(), 0f);
+        assertSame(TOP_LEFT, TOP_LEFT.withHeightScaled(1f));
+    }
+
+    @Test
+    public void noRotation_cropsDirectly() {
+        CropRegion crop = TOP_LEFT.toCropRegion(640, 480, 0);
+        assertCrop(crop, 0, 0, 320, 120);
+        assertEquals(640, crop.getUprightImageWidth());
+        assertEquals(0, crop.getUprightOffsetX());
+        assertEquals(0, crop.getUprightOffsetY());
+    }
+
+    @Test
+    public void rotation90_mapsUprightRegionToBuffer() {
+        // Upright image is 480x640; its top-left corner is the buffer's bottom-left corner.
+        CropRegion crop = TOP_LEFT.toCropRegion(640, 480, 90);
+        assertCrop(crop, 0, 240, 160, 240);
+        assertEquals(480, crop.getUprightImageWidth());
+        assertEquals(640, crop.getUprightImageHeight());
+        assertEquals(0, crop.getUprightOffsetX());
+        assertEquals(0, crop.getUprightOffsetY());
+    }
+
+    @Test
+    public void rotation180_mapsUprightRegionToBuffer() {
+        CropRegion crop = TOP_LEFT.toCropRegion(640, 480, 180);
+        assertCrop(crop, 320, 360, 320, 120);
+        assertEquals(0, crop.getUprightOffsetX());
+        assertEquals(0, crop.getUprightOffsetY());
+    }
+
+    @Test
+    public void rotation270_mapsUprightRegionToBuffer() {
+        CropRegion crop = TOP_LEFT.toCropRegion(640, 480, 270);
+        assertCrop(crop, 480, 0, 160, 240);
+        assertEquals(240, crop.getUprightWidth());
+        assertEquals(160, crop.getUprightHeight());
+        assertEquals(0, crop.getUprightOffsetX());
+        assertEquals(0, crop.getUprightOffsetY());
+    }
+
+    @Test
+    public void uprightOffsets_locateCentreBand() {
+        RegionOfInterest band = RegionOfInterest.centreBand(0.5f);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            CropRegion crop = band.toCropRegion(640, 480, rotation);
+            int uprightHeight = crop.getUprightImageHeight();
+            assertEquals("rotation " + rotation, 0, crop.getUprightOffsetX());
+            assertEquals("rotation " + rotation, uprightHeight / 4, crop.getUprightOffsetY());
+        }
+    }
+
+    @Test
+    public void cropEdges_areEven() {
+        CropRegion crop = RegionOfInterest.of(0.111f, 0.333f, 0.777f, 0.999f)
+                .toCropRegion(642, 482, 90);
+        assertEquals(0, crop.getLeft() % 2);
+        assertEquals(0, crop.getTop() % 2);
+        assertEquals(0, crop.getWidth() % 2);
+        assertEquals(0, crop.getHeight() % 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedRotation_throws() {
+        TOP_LEFT.toCropRegion(640, 480, 45);
+    }
+
+    private static void assertCrop(CropRegion crop, int left, int top, int width, int height) {
+        assertEquals(left, crop.getLeft());
+        assertEquals(top, crop.getTop());
+        assertEquals(width, crop.getWidth());
+        assertEquals(height, crop.getHeight());
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.finder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ReplayRecognizer}.
+ */
+public class ReplayRecognizerTest {
+
+    private static final List<RecognizedText> RECORDING = Arrays.asList(
+            TextCorpusTest.frame(0, "LOT 4711"),
+            TextCorpusTest.frame(0, "EXP 2025"));
+
+    private final List<ReplayRecognizer> recognizers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (ReplayRecognizer recognizer : recognizers) {
+            recognizer.shutdown();
+        }
+    }
+
+    /** A frame without pixels, which the replaying recognizer never reads. */
+    private static final class EmptyFrame implements ScanEngine.Frame {
+        private final long timestamp;
+
+        EmptyFrame(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public long getTimestampNanos() {
+            return timestamp;
+        }
+
+        @Override
+        public int getWidth() {
+            return 640;
+        }
+
+        @Override
+        public int getHeight() {
+            return 480;
+        }
+
+        @Override
+        public int getRotationDegrees() {
+            return 0;
+        }
+
+        @Override
+        public ByteBuffer getPlane(int plane) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getRowStride(int plane) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getPixelStride(int plane) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /** Records the outcome of one recognition and counts how often it is reported. */
+    private static final class Outcome implements ScanEngine.Callback {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile RecognizedText text;
+        volatile Exception error;
+        volatile int calls;
+
+        @Override
+        public synchronized void onRecognized(RecognizedText text) {
+            this.text = text;
+            calls++;
+            done.countDown();
+        }
+
+        @Override
+        public synchronized void onFailed(Exception e) {
+            error = e;
+            calls++;
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private ReplayRecognizer build(ReplayRecognizer.Builder builder) {
+        ReplayRecognizer recognizer = builder.build();
+        recognizers.add(recognizer);
+        return recognizer;
+    }
+
+    private static Outcome recognize(ReplayRecognizer recognizer, long timestamp) {
+        Outcome outcome = new Outcome();
+        recognizer.recognize(new EmptyFrame(timestamp), null,
+                CropRegion.full(640, 480, 0), outcome);
+        return outcome;
+    }
+
+    @Test
+    public void results_areReplayedInOrder_withFrameTimestamps() throws Exception {
+        ReplayRecognizer recognizer = build(new ReplayRecognizer.Builder(RECORDING));
+        String[] expected = {"LOT 4711", "EXP 2025", "LOT 4711"};
+        for (int i = 0; i < expected.length; i++) {
+            Outcome outcome = recognize(recognizer, 100 + i);
+            outcome.await();
+            assertEquals(expected[i], outcome.text.getText());
+            assertEquals(100 + i, outcome.text.getTimestampNanos());
+        }
+        assertEquals(3, recognizer.getRecognizedCount());
+    }
+
+    @Test
+    public void latency_delaysCallback() throws Exception {
+        ReplayRecognizer recognizer = build(new ReplayRecognizer.Builder(RECORDING)
+                .setLatency(ReplayRecognizer.fixed(30)));
+        long start = System.nanoTime();
+        Outcome outcome = recognize(recognizer, 0);
+        assertEquals(1, recognizer.getInFlight());
+        outcome.await();
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertNotNull(outcome.text);
+    }
+
+    @Test
+    public void failuresAndHangs_followTheirRates_andRepeatWithTheSeed() throws Exception {
+        List<Boolean> firstRun = runOutcomes(3);
+        assertEquals(firstRun, runOutcomes(3));
+        assertNotEquals(firstRun, runOutcomes(4));
+
+        ReplayRecognizer recognizer = build(new ReplayRecognizer.Builder(RECORDING)
+                .setFailureRate(0.2f)
+                .setHangRate(0.1f)
+                .setSeed(5));
+        for (int i = 0; i < 2000; i++) {
+            recognize(recognizer, i);
+        }
+        // Hanging recognitions never call back, so wait until the others have stopped doing so.
+        long completed = -1;
+        while (completed != recognizer.getRecognizedCount() + recognizer.getFailedCount()) {
+            completed = recognizer.getRecognizedCount() + recognizer.getFailedCount();
+            Thread.sleep(50);
+        }
+
+        assertEquals(2000, recognizer.getStartedCount());
+        assertEquals(0.2, recognizer.getFailedCount() / 2000.0, 0.03);
+        assertEquals(0.1, recognizer.getInFlight() / 2000.0, 0.03);
+        assertEquals(0.7, recognizer.getRecognizedCount() / 2000.0, 0.03);
+    }
+
+    /** Returns, for each of a run of recognitions, whether it failed. */
+    private List<Boolean> runOutcomes(long seed) throws Exception {
+        ReplayRecognizer recognizer = build(new ReplayRecognizer.Builder(RECORDING)
+                .setFailureRate(0.5f)
+                .setSeed(seed));
+        List<Boolean> failed = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            Outcome outcome = recognize(recognizer, i);
+            outcome.await();
+            failed.add(outcome.error != null);
+        }
+        return failed;
+    }
+
+    @Test
+    public void cancel_completesHangingRecognitionOnce() throws Exception {
+        ReplayRecognizer recognizer = build(new ReplayRecognizer.Builder(RECORDING)
+                .setHangRate(1));
+        Outcome outcome = new Outcome();
+        ScanEngine.Cancellable handle = recognizer.recognize(new EmptyFrame(0), null,
+                CropRegion.full(640, 480, 0), outcome);
+        assertFalse(outcome.done.await(20, TimeUnit.MILLISECONDS));
+
+        handle.cancel();
+        handle.cancel();
+
+        assertEquals(1, outcome.calls);
+        assertTrue(outcome.error instanceof CancellationException);
+        assertEquals(1, recognizer.getCancelledCount());
+        assertEquals(0, recognizer.getInFlight());
+    }
+
+    @Test
+    public void cancel_ofUnstoppableRecognizer_failsWhenDone_orNeverIfHanging() throws Exception {
+        ReplayRecognizer recognizer = build(new ReplayRecognizer.Builder(RECORDING)
+                .setLatency(ReplayRecognizer.fixed(30))
+                .setStoppable(false));
+        Outcome outcome = new Outcome();
+        recognizer.recognize(new EmptyFrame(0), null, CropRegion.full(640, 480, 0), outcome)
+                .cancel();
+        assertEquals(0, outcome.calls);
+        outcome.await();
+
+        assertEquals(1, outcome.calls);
+        assertTrue(outcome.error instanceof CancellationException);
+        assertEquals(1, recognizer.getCancelledCount());
+        assertEquals(0, recognizer.getRecognizedCount());
+
+        ReplayRecognizer hanging = build(new ReplayRecognizer.Builder(RECORDING)
+                .setHangRate(1)
+                .setStoppable(false));
+        Outcome hung = new Outcome();
+        hanging.recognize(new EmptyFrame(0), null, CropRegion.full(640, 480, 0), hung).cancel();
+
+        assertFalse(hung.done.await(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, hanging.getInFlight());
+    }
+
+    @Test
+    public void cancel_afterCompletion_doesNothing() throws Exception {
+        ReplayRecognizer recognizer = build(new ReplayRecognizer.Builder(RECORDING));
+        Outcome outcome = new Outcome();
+        ScanEngine.Cancellable handle = recognizer.recognize(new EmptyFrame(0), null,
+                CropRegion.full(640, 480, 0), outcome);
+        outcome.await();
+        handle.cancel();
+
+        assertEquals(1, outcome.calls);
+        assertNotNull(outcome.text);
+        assertEquals(0, recognizer.getCancelledCount());
+    }
+
+    @Test
+    public void latencyDistributions_haveExpectedShape() {
+        Random random = new Random(1);
+        ReplayRecognizer.Latency uniform = ReplayRecognizer.uniform(10, 20);
+        ReplayRecognizer.Latency logNormal = ReplayRecognizer.logNormal(40, 0.5);
+        long[] draws = new long[10001];
+        for (int i = 0; i < draws.length; i++) {
+            long nanos = uniform.nextNanos(random);
+            assertTrue(nanos >= 10_000_000L && nanos <= 20_000_000L);
+            draws[i] = logNormal.nextNanos(random);
+        }
+        Arrays.sort(draws);
+
+        assertEquals(40_000_000L, draws[draws.length / 2], 2_000_000L);
+        // exp(0.5 * 2.326), the 99th percentile of a log-normal with sigma 0.5.
+        assertEquals(3.2, draws[draws.length * 99 / 100] / 40_000_000.0, 0.2);
+        assertEquals(5_000_000L, ReplayRecognizer.fixed(5).nextNanos(random));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyRecording_isRejected() {
+        new ReplayRecognizer.Builder(Collections.<RecognizedText>emptyList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ratesAbove1_areRejected() {
+        new ReplayRecognizer.Builder(RECORDING).setFailureRate(0.6f).setHangRate(0.6f).build();
+    }
+}
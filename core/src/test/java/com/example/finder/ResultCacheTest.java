@@ -0,0 +1,142 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ResultCache} and {@link PerceptualHash}.
+ */
+public class ResultCacheTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int ROW_STRIDE = 336;
+    private static final CropRegion FULL = CropRegion.full(WIDTH, HEIGHT, 0);
+    private static final long SECOND = 1_000_000_000L;
+
+    /** High-contrast random blocks, shifted right by {@code shift} pixels, plus some noise. */
+    private static ByteBuffer frame(long seed, int shift, int brightness, int noise) {
+        Random random = new Random(seed);
+        byte[][] blocks = new byte[HEIGHT / 8 + 1][WIDTH / 8 + 2];
+        for (byte[] row : blocks) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (random.nextBoolean() ? 40 : 200);
+            }
+        }
+        Random noiseRandom = new Random(seed * 31 + shift + noise);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int luma = (blocks[y / 8][(x + 8 - shift) / 8] & 0xFF) + brightness
+                        + (noise > 0 ? noiseRandom.nextInt(2 * noise + 1) - noise : 0);
+                buffer.put(y * ROW_STRIDE + x, (byte) Math.max(0, Math.min(255, luma)));
+            }
+        }
+        return buffer;
+    }
+
+    private static long[] hash(ByteBuffer frame) {
+        long[] hash = new long[PerceptualHash.WORDS];
+        PerceptualHash.compute(frame, ROW_STRIDE, FULL, hash);
+        return hash;
+    }
+
+    private static int distance(long[] a, long[] b) {
+        return PerceptualHash.distance(a, 0, b, 0);
+    }
+
+    @Test
+    public void hash_isStableUnderNoiseAndExposure() {
+        long[] reference = hash(frame(1, 0, 0, 0));
+
+        assertEquals(0, distance(reference, hash(frame(1, 0, 0, 0))));
+        assertTrue(distance(reference, hash(frame(1, 0, 0, 8)))
+                <= ResultCache.DEFAULT_MAX_DISTANCE);
+        assertTrue(distance(reference, hash(frame(1, 0, 15, 0)))
+                <= ResultCache.DEFAULT_MAX_DISTANCE);
+    }
+
+    @Test
+    public void hash_separatesDifferentScenes() {
+        long[] reference = hash(frame(1, 0, 0, 0));
+
+        assertTrue(distance(reference, hash(frame(2, 0, 0, 0))) > PerceptualHash.BITS / 4);
+        // Moving the camera by a whole block is a different view.
+        assertTrue(distance(reference, hash(frame(1, 8, 0, 0)))
+                > ResultCache.DEFAULT_MAX_DISTANCE);
+    }
+
+    @Test
+    public void nearDuplicateFrame_hitsCache() {
+        ResultCache<String> cache = new ResultCache<>();
+        long[] first = hash(frame(1, 0, 0, 0));
+
+        assertNull(cache.get(first, WIDTH, HEIGHT, SECOND));
+        cache.put(first, WIDTH, HEIGHT, SECOND, "lot 4711");
+
+        assertEquals("lot 4711", cache.get(hash(frame(1, 0, 0, 6)), WIDTH, HEIGHT, 2 * SECOND));
+        assertNull(cache.get(hash(frame(2, 0, 0, 0)), WIDTH, HEIGHT, 2 * SECOND));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1 / 3f, cache.getHitRate(), 1e-6f);
+    }
+
+    @Test
+    public void otherImageSize_misses() {
+        ResultCache<String> cache = new ResultCache<>();
+        long[] hash = hash(frame(1, 0, 0, 0));
+        cache.put(hash, WIDTH, HEIGHT, SECOND, "lot 4711");
+
+        assertNull(cache.get(hash, HEIGHT, WIDTH, SECOND));
+    }
+
+    @Test
+    public void oldResult_expires() {
+        ResultCache<String> cache = new ResultCache<>(4, 12, 5 * SECOND);
+        long[] hash = hash(frame(1, 0, 0, 0));
+        cache.put(hash, WIDTH, HEIGHT, SECOND, "lot 4711");
+
+        assertNotNull(cache.get(hash, WIDTH, HEIGHT, 6 * SECOND));
+        // Hits do not extend the age; the result is recognized again after a while.
+        assertNull(cache.get(hash, WIDTH, HEIGHT, 6 * SECOND + 1));
+    }
+
+    @Test
+    public void nearDuplicate_replacesEntry() {
+        ResultCache<String> cache = new ResultCache<>(4, 12, 5 * SECOND);
+        cache.put(hash(frame(1, 0, 0, 0)), WIDTH, HEIGHT, SECOND, "old");
+        cache.put(hash(frame(1, 0, 0, 6)), WIDTH, HEIGHT, 2 * SECOND, "new");
+
+        assertEquals(1, cache.size());
+        assertEquals("new", cache.get(hash(frame(1, 0, 0, 0)), WIDTH, HEIGHT, 2 * SECOND));
+    }
+
+    @Test
+    public void fullCache_evictsExpiredThenLeastRecentlyUsed() {
+        ResultCache<String> cache = new ResultCache<>(2, 12, 5 * SECOND);
+        long[] a = hash(frame(1, 0, 0, 0));
+        long[] b = hash(frame(2, 0, 0, 0));
+        long[] c = hash(frame(3, 0, 0, 0));
+        long[] d = hash(frame(4, 0, 0, 0));
+
+        cache.put(a, WIDTH, HEIGHT, SECOND, "a");
+        cache.put(b, WIDTH, HEIGHT, 4 * SECOND, "b");
+        cache.get(b, WIDTH, HEIGHT, 4 * SECOND);
+        cache.get(a, WIDTH, HEIGHT, 4 * SECOND);
+        // a is the most recently used, but it has expired.
+        cache.put(c, WIDTH, HEIGHT, 7 * SECOND, "c");
+        assertNull(cache.get(a, WIDTH, HEIGHT, 7 * SECOND));
+        assertEquals("b", cache.get(b, WIDTH, HEIGHT, 7 * SECOND));
+
+        // Nothing has expired, so the least recently used result, c, goes.
+        cache.put(d, WIDTH, HEIGHT, 8 * SECOND, "d");
+        assertEquals(2, cache.size());
+        assertNull(cache.get(c, WIDTH, HEIGHT, 8 * SECOND));
+        assertEquals("b", cache.get(b, WIDTH, HEIGHT, 8 * SECOND));
+        assertEquals("d", cache.get(d, WIDTH, HEIGHT, 8 * SECOND));
+    }
+}
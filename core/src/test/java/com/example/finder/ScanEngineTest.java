@@ -0,0 +1,571 @@
+package com.example.finder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ScanEngine}, driven headlessly by fake frames and a fake recognizer.
+ */
+public class ScanEngineTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final long FRAME_NANOS = 33_000_000L;
+    private static final MatchGeometry.LabelMeasurer MEASURER = label -> 10f * label.length();
+    private static final AnalysisConfig FULL_FRAME = new AnalysisConfig(
+            AnalysisConfig.Mode.FULL_FRAME, 1280, RegionOfInterest.centreBand(0.4f), 1);
+
+    private FrameScheduler scheduler;
+    private ScanEngine engine;
+    private ReplayRecognizer replay;
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.shutdown();
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        if (replay != null) {
+            replay.shutdown();
+        }
+    }
+
+    /** A frame of random high-contrast blocks that counts how often it is closed. */
+    private static final class FakeFrame implements ScanEngine.Frame {
+        final long timestamp;
+        final ByteBuffer luma = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        final ByteBuffer chroma = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 2);
+        int closeCount;
+
+        FakeFrame(long seed, long timestamp) {
+            this.timestamp = timestamp;
+            Random random = new Random(seed);
+            byte[] blocks = new byte[(WIDTH / 8) * (HEIGHT / 8)];
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = (byte) (random.nextBoolean() ? 40 : 200);
+            }
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    luma.put(y * WIDTH + x, blocks[(y / 8) * (WIDTH / 8) + x / 8]);
+                }
+            }
+        }
+
+        @Override
+        public long getTimestampNanos() {
+            return timestamp;
+        }
+
+        @Override
+        public int getWidth() {
+            return WIDTH;
+        }
+
+        @Override
+        public int getHeight() {
+            return HEIGHT;
+        }
+
+        @Override
+        public int getRotationDegrees() {
+            return 0;
+        }
+
+        @Override
+        public ByteBuffer getPlane(int plane) {
+            return plane == 0 ? luma : chroma;
+        }
+
+        @Override
+        public int getRowStride(int plane) {
+            return WIDTH;
+        }
+
+        @Override
+        public int getPixelStride(int plane) {
+            return plane == 0 ? 1 : 2;
+        }
+
+        @Override
+        public void close() {
+            closeCount++;
+        }
+    }
+
+    /** Recognizes every frame as the same lines, or fails if there are none. */
+    private static final class FakeRecognizer implements ScanEngine.Recognizer {
+        final String[] lines;
+        final AtomicInteger calls = new AtomicInteger();
+        final List<YuvFramePool.Lease> copies = new ArrayList<>();
+        final List<Integer> closedBefore = new ArrayList<>();
+
+        FakeRecognizer(String... lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public ScanEngine.Cancellable recognize(ScanEngine.Frame frame, YuvFramePool.Lease copy,
+                                                CropRegion crop, ScanEngine.Callback callback) {
+            calls.incrementAndGet();
+            copies.add(copy);
+            closedBefore.add(((FakeFrame) frame).closeCount);
+            if (lines.length == 0) {
+                callback.onFailed(new IllegalStateException("no text"));
+            } else {
+                callback.onRecognized(TextCorpusTest.frame(frame.getTimestampNanos(), lines));
+            }
+            return () -> { };
+        }
+    }
+
+    /** Records everything the engine reports. */
+    private static final class RecordingListener implements ScanEngine.Listener {
+        final List<Integer> hitCounts = new ArrayList<>();
+        final List<ViewTransform> transforms = new ArrayList<>();
+        final List<Integer> alerts = new ArrayList<>();
+
+        @Override
+        public void onResult(RecognizedText text, int hitCount, MatchGeometry matches,
+                             ViewTransform transform) {
+            hitCounts.add(hitCount);
+            transforms.add(transform);
+        }
+
+        @Override
+        public void onAlert(int termId) {
+            alerts.add(termId);
+        }
+    }
+
+    private ScanEngine newEngine(AnalysisConfig config, FrameFilterConfig filterConfig,
+                                 ScanEngine.Recognizer recognizer) {
+        return newEngine(config, filterConfig, recognizer, ScanEngine.DEFAULT_DEADLINE_NANOS);
+    }
+
+    private ScanEngine newEngine(AnalysisConfig config, FrameFilterConfig filterConfig,
+                                 ScanEngine.Recognizer recognizer, long deadlineNanos) {
+        scheduler = FrameScheduler.create(config.getMaxFramesInFlight());
+        engine = new ScanEngine(config, filterConfig, scheduler, recognizer, null, deadlineNanos);
+        return engine;
+    }
+
+    private static FrameMatcher matcher(SearchSession session) {
+        return new FrameMatcher(TermMatcher.compile(session.getTermTexts()), MEASURER);
+    }
+
+    /** Waits until the result thread has run everything posted so far. */
+    private void flush() throws Exception {
+        scheduler.getResultExecutor().submit(() -> { }).get();
+    }
+
+    /**
+     * Waits until the engine has freed the slots of all recognitions and the replaying recognizer,
+     * if any, has called back for all of them, then flushes.
+     */
+    private void awaitIdle() throws Exception {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (engine.getRecognitionsInFlight() > 0
+                || (replay != null && replay.getInFlight() > 0)) {
+            assertTrue("recognitions still in flight", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        flush();
+    }
+
+    @Test
+    public void result_isMatchedAndAlertedWithoutDisplay() throws Exception {
+        FakeRecognizer recognizer = new FakeRecognizer("LOT 4711", "EXP 2025");
+        ScanEngine engine = newEngine(FULL_FRAME, FrameFilterConfig.DISABLED, recognizer);
+        SearchSession session = SearchSession.parse("!lot, milk");
+        RecordingListener listener = new RecordingListener();
+        engine.startSearch(session, matcher(session), listener);
+
+        FakeFrame frame = new FakeFrame(1, FRAME_NANOS);
+        engine.analyze(frame);
+        flush();
+
+        assertEquals(1, recognizer.calls.get());
+        assertEquals(1, frame.closeCount);
+        assertEquals(1, listener.hitCounts.size());
+        assertEquals(1, (int) listener.hitCounts.get(0));
+        assertSame(ViewTransform.IDENTITY, listener.transforms.get(0));
+        // High priority terms are announced on the first sight.
+        assertEquals(1, listener.alerts.size());
+        assertEquals(0, (int) listener.alerts.get(0));
+        assertEquals(1, engine.getAlerter().getHitCount(0));
+        assertEquals(0, scheduler.getFramesInFlight());
+    }
+
+    @Test
+    public void attachedDisplay_preparesAndShowsResults() throws Exception {
+        ScanEngine engine = newEngine(FULL_FRAME, FrameFilterConfig.DISABLED,
+                new FakeRecognizer("LOT 4711"));
+        SearchSession session = SearchSession.parse("lot");
+        RecordingListener listener = new RecordingListener();
+        engine.startSearch(session, matcher(session), listener);
+        ViewTransform transform = ViewTransform.IDENTITY;
+        List<CropRegion> prepared = new ArrayList<>();
+        List<MatchGeometry> shown = new ArrayList<>();
+        ScanEngine.Display display = new ScanEngine.Display() {
+            @Override
+            public ViewTransform prepare(CropRegion crop) {
+                prepared.add(crop);
+                return transform;
+            }
+
+            @Override
+            public RegionOfInterest getRegionOfInterest() {
+                return null;
+            }
+
+            @Override
+            public void show(RecognizedText text, MatchGeometry matches, ViewTransform t) {
+                assertSame(transform, t);
+                shown.add(matches);
+            }
+        };
+        engine.attach(display);
+        engine.analyze(new FakeFrame(1, FRAME_NANOS));
+        flush();
+        engine.detach(display);
+        engine.analyze(new FakeFrame(2, 2 * FRAME_NANOS));
+        flush();
+
+        assertEquals(1, prepared.size());
+        assertTrue(prepared.get(0).isFull());
+        assertEquals(1, shown.size());
+        assertEquals(1, shown.get(0).size());
+        // The search goes on without a display.
+        assertEquals(2, listener.hitCounts.size());
+    }
+
+    @Test
+    public void deliveredResult_afterNewerFrames_isTrackedAlertedAndHeld() throws Exception {
+        ScanEngine engine = newEngine(FULL_FRAME, FrameFilterConfig.DISABLED,
+                new FakeRecognizer("MILK"));
+        SearchSession session = SearchSession.parse("!lot");
+        RecordingListener listener = new RecordingListener();
+        engine.startSearch(session, matcher(session), listener);
+        ViewTransform frameTransform = ViewTransform.create(640, 480, WIDTH, HEIGHT, false);
+        List<CropRegion> prepared = new ArrayList<>();
+        List<ViewTransform> shown = new ArrayList<>();
+        engine.attach(new ScanEngine.Display() {
+            @Override
+            public ViewTransform prepare(CropRegion crop) {
+                prepared.add(crop);
+                return frameTransform;
+            }
+
+            @Override
+            public RegionOfInterest getRegionOfInterest() {
+                return null;
+            }
+
+            @Override
+            public void show(RecognizedText text, MatchGeometry matches, ViewTransform t) {
+                shown.add(t);
+            }
+        });
+        for (int i = 1; i <= 3; i++) {
+            engine.analyze(new FakeFrame(i, i * FRAME_NANOS));
+            flush();
+        }
+
+        // A still of four times the frames' size, captured before the last frames.
+        RecognizedText recognized = TextCorpusTest.frame(FRAME_NANOS, "LOT 4711");
+        RecognizedText still = new RecognizedText(recognized.getTimestampNanos(), 1280, 960,
+                recognized.getText(), recognized.getBlocks());
+        engine.deliverResult(still, CropRegion.full(1280, 960, 0));
+        flush();
+
+        // The display keeps the frames' image size; the still is mapped into the same view.
+        assertEquals(3, prepared.size());
+        assertEquals(0.5f, shown.get(3).getScaleFactor(), 1e-6f);
+        TextTracker.Snapshot snapshot = engine.getTracker().getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(0, snapshot.getTermId(0));
+        assertEquals(5f, snapshot.getLeft(0, 3 * FRAME_NANOS), 1e-3f);
+        assertEquals(45f, snapshot.getRight(0, 3 * FRAME_NANOS), 1e-3f);
+        assertEquals(Collections.singletonList(0), listener.alerts);
+
+        // Held against later frames that do not read it, longer than a track is kept unseen.
+        long later = 3 * FRAME_NANOS + 1_500_000_000L;
+        engine.analyze(new FakeFrame(4, later));
+        flush();
+        assertEquals(1, engine.getTracker().getSnapshot().size());
+        engine.analyze(new FakeFrame(5, later + 1_000_000_000L));
+        flush();
+        assertEquals(0, engine.getTracker().getSnapshot().size());
+    }
+
+    @Test
+    public void newSearch_reusesCachedResults() throws Exception {
+        FakeRecognizer recognizer = new FakeRecognizer("LOT 4711", "MILK");
+        ScanEngine engine = newEngine(FULL_FRAME, FrameFilterConfig.DEFAULT, recognizer);
+        SearchSession first = SearchSession.parse("lot");
+        RecordingListener firstListener = new RecordingListener();
+        engine.startSearch(first, matcher(first), firstListener);
+        engine.analyze(new FakeFrame(1, FRAME_NANOS));
+        flush();
+
+        // The same scene, as after a rotation or a new query from the same spot.
+        SearchSession second = SearchSession.parse("milk");
+        RecordingListener secondListener = new RecordingListener();
+        engine.startSearch(second, matcher(second), secondListener);
+        FakeFrame frame = new FakeFrame(1, 2 * FRAME_NANOS);
+        engine.analyze(frame);
+        flush();
+
+        assertEquals(1, recognizer.calls.get());
+        assertEquals(1, frame.closeCount);
+        assertEquals(1, firstListener.hitCounts.size());
+        assertEquals(1, secondListener.hitCounts.size());
+        assertEquals(1, (int) secondListener.hitCounts.get(0));
+        assertSame(second, engine.getSession());
+    }
+
+    @Test
+    public void stoppedEngine_closesFramesWithoutRecognizing() throws Exception {
+        FakeRecognizer recognizer = new FakeRecognizer("LOT 4711");
+        ScanEngine engine = newEngine(FULL_FRAME, FrameFilterConfig.DISABLED, recognizer);
+        FakeFrame idle = new FakeFrame(1, FRAME_NANOS);
+        engine.analyze(idle);
+
+        SearchSession session = SearchSession.parse("lot");
+        engine.startSearch(session, matcher(session), new RecordingListener());
+        engine.stopSearch();
+        FakeFrame stopped = new FakeFrame(2, 2 * FRAME_NANOS);
+        engine.analyze(stopped);
+        flush();
+
+        assertEquals(0, recognizer.calls.get());
+        assertEquals(1, idle.closeCount);
+        assertEquals(1, stopped.closeCount);
+        assertNull(engine.getSession());
+        assertNull(engine.getTracker());
+    }
+
+    @Test
+    public void failedRecognition_freesSlotAndIsCounted() throws Exception {
+        FakeRecognizer recognizer = new FakeRecognizer();
+        ScanEngine engine = newEngine(FULL_FRAME, FrameFilterConfig.DISABLED, recognizer);
+        SearchSession session = SearchSession.parse("lot");
+        RecordingListener listener = new RecordingListener();
+        engine.startSearch(session, matcher(session), listener);
+
+        FakeFrame first = new FakeFrame(1, FRAME_NANOS);
+        engine.analyze(first);
+        flush();
+        engine.analyze(new FakeFrame(1, 2 * FRAME_NANOS));
+        flush();
+
+        assertEquals(2, recognizer.calls.get());
+        assertEquals(2, engine.getFailedCount());
+        assertEquals(1, first.closeCount);
+        assertEquals(0, scheduler.getFramesInFlight());
+        assertTrue(listener.hitCounts.isEmpty());
+    }
+
+    @Test
+    public void pipelinedEngine_recognizesCopyOfClosedFrame() throws Exception {
+        AnalysisConfig pipelined = new AnalysisConfig(AnalysisConfig.Mode.FULL_FRAME, 1280,
+                RegionOfInterest.centreBand(0.4f), 2);
+        FakeRecognizer recognizer = new FakeRecognizer("LOT 4711");
+        ScanEngine engine = newEngine(pipelined, FrameFilterConfig.DISABLED, recognizer);
+        SearchSession session = SearchSession.parse("lot");
+        engine.startSearch(session, matcher(session), new RecordingListener());
+
+        FakeFrame frame = new FakeFrame(1, FRAME_NANOS);
+        engine.analyze(frame);
+        flush();
+
+        assertEquals(1, recognizer.copies.size());
+        YuvFramePool.Lease copy = recognizer.copies.get(0);
+        assertNotNull(copy);
+        assertEquals(WIDTH, copy.getWidth());
+        assertEquals(HEIGHT, copy.getHeight());
+        assertEquals(1, (int) recognizer.closedBefore.get(0));
+        assertEquals(1, frame.closeCount);
+        // The copy went back to the pool once the result was delivered.
+        assertEquals(engine.getFramePool().getAllocatedCount(),
+                engine.getFramePool().getFreeCount());
+    }
+
+    @Test
+    public void hungRecognition_freesSlotAtDeadline_andCopyWhenItCallsBack() throws Exception {
+        List<ScanEngine.Callback> callbacks = new ArrayList<>();
+        AtomicInteger cancels = new AtomicInteger();
+        ScanEngine.Recognizer hanging = (frame, copy, crop, callback) -> {
+            callbacks.add(callback);
+            return cancels::incrementAndGet;
+        };
+        ScanEngine engine = newEngine(FULL_FRAME, FrameFilterConfig.DISABLED, hanging,
+                50_000_000L);
+        SearchSession session = SearchSession.parse("lot");
+        RecordingListener listener = new RecordingListener();
+        engine.startSearch(session, matcher(session), listener);
+
+        FakeFrame frame = new FakeFrame(1, FRAME_NANOS);
+        engine.analyze(frame);
+        awaitIdle();
+
+        assertEquals(1, engine.getTimedOutCount());
+        assertEquals(1, cancels.get());
+        assertEquals(0, scheduler.getFramesInFlight());
+        // The camera got its buffer back at once; the recognizer may still be reading the copy.
+        assertEquals(1, frame.closeCount);
+        assertEquals(1, engine.getAbandonedCount());
+        assertEquals(0, engine.getFramePool().getFreeCount());
+
+        callbacks.get(0).onRecognized(TextCorpusTest.frame(FRAME_NANOS, "LOT 4711"));
+        callbacks.get(0).onFailed(new IllegalStateException("called back twice"));
+        flush();
+
+        assertEquals(0, engine.getAbandonedCount());
+        assertEquals(1, engine.getFramePool().getFreeCount());
+        assertEquals(0, engine.getFailedCount());
+        assertTrue(listener.hitCounts.isEmpty());
+    }
+
+    @Test
+    public void recognizerThatNeverCallsBack_closesFrames_andHoldsBoundedCopies()
+            throws Exception {
+        assertFramesClosedAndCopiesBounded(FULL_FRAME);
+    }
+
+    @Test
+    public void recognizerThatNeverCallsBack_holdsBoundedCopies_whenPipelined() throws Exception {
+        assertFramesClosedAndCopiesBounded(new AnalysisConfig(AnalysisConfig.Mode.FULL_FRAME,
+                1280, RegionOfInterest.centreBand(0.4f), 3));
+    }
+
+    /** Feeds frames to a recognizer that hangs on every one and ignores cancels. */
+    private void assertFramesClosedAndCopiesBounded(AnalysisConfig config) throws Exception {
+        replay = new ReplayRecognizer.Builder(
+                Collections.singletonList(TextCorpusTest.frame(0, "LOT 4711")))
+                .setHangRate(1)
+                .setStoppable(false)
+                .build();
+        ScanEngine engine = newEngine(config, FrameFilterConfig.DISABLED, replay, 20_000_000L);
+        SearchSession session = SearchSession.parse("lot");
+        engine.startSearch(session, matcher(session), new RecordingListener());
+
+        List<FakeFrame> frames = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            FakeFrame frame = new FakeFrame(i, (i + 1) * FRAME_NANOS);
+            frames.add(frame);
+            engine.analyze(frame);
+            Thread.sleep(5);
+        }
+        flush();
+
+        for (FakeFrame frame : frames) {
+            assertEquals(1, frame.closeCount);
+        }
+        int maxInFlight = config.getMaxFramesInFlight();
+        assertTrue(engine.getTimedOutCount() >= maxInFlight);
+        assertTrue(engine.getDroppedStuckCount() > 0);
+        // Copies are held by recognitions in flight and timed-out ones, at most one frame per
+        // slot more of which can time out after the engine stopped copying.
+        assertTrue(engine.getAbandonedCount() < 2 * maxInFlight);
+        assertEquals(replay.getStartedCount(), engine.getFramePool().getAllocatedCount());
+        assertTrue(engine.getFramePool().getAllocatedCount() < 3 * maxInFlight);
+    }
+
+    @Test
+    public void stopSearch_cancelsRecognitionsInFlight() throws Exception {
+        AnalysisConfig pipelined = new AnalysisConfig(AnalysisConfig.Mode.FULL_FRAME, 1280,
+                RegionOfInterest.centreBand(0.4f), 2);
+        replay = new ReplayRecognizer.Builder(
+                Collections.singletonList(TextCorpusTest.frame(0, "LOT 4711")))
+                .setHangRate(1)
+                .build();
+        ScanEngine engine = newEngine(pipelined, FrameFilterConfig.DISABLED, replay);
+        SearchSession session = SearchSession.parse("lot");
+        engine.startSearch(session, matcher(session), new RecordingListener());
+        engine.analyze(new FakeFrame(1, FRAME_NANOS));
+        engine.analyze(new FakeFrame(2, 2 * FRAME_NANOS));
+        assertEquals(2, engine.getRecognitionsInFlight());
+
+        engine.stopSearch();
+        awaitIdle();
+
+        assertEquals(2, replay.getCancelledCount());
+        assertEquals(2, engine.getCancelledCount());
+        assertEquals(0, engine.getFailedCount());
+        assertEquals(0, scheduler.getFramesInFlight());
+        assertEquals(engine.getFramePool().getAllocatedCount(),
+                engine.getFramePool().getFreeCount());
+    }
+
+    @Test
+    public void replayUnderLoad_keepsSlotsAndBuffersBalanced() throws Exception {
+        int maxInFlight = 3;
+        AnalysisConfig pipelined = new AnalysisConfig(AnalysisConfig.Mode.FULL_FRAME, 1280,
+                RegionOfInterest.centreBand(0.4f), maxInFlight);
+        List<RecognizedText> recording = Arrays.asList(
+                TextCorpusTest.frame(0, "LOT 4711", "EXP 2025"),
+                TextCorpusTest.frame(0, "MILK 1L"),
+                TextCorpusTest.frame(0, "L0T 4711"));
+        // Frames arrive faster than three slots can recognize them, some of which fail or hang.
+        replay = new ReplayRecognizer.Builder(recording)
+                .setLatency(ReplayRecognizer.logNormal(12, 0.5))
+                .setFailureRate(0.05f)
+                .setHangRate(0.03f)
+                .setSeed(11)
+                .build();
+        ScanEngine engine = newEngine(pipelined, FrameFilterConfig.DISABLED, replay,
+                100_000_000L);
+        SearchSession session = SearchSession.parse("lot 4711");
+        RecordingListener listener = new RecordingListener();
+        engine.startSearch(session, matcher(session), listener);
+
+        List<FakeFrame> frames = new ArrayList<>();
+        int peakSlots = 0;
+        for (int i = 0; i < 200; i++) {
+            FakeFrame frame = new FakeFrame(i, (i + 1) * FRAME_NANOS);
+            frames.add(frame);
+            engine.analyze(frame);
+            peakSlots = Math.max(peakSlots, scheduler.getFramesInFlight());
+            Thread.sleep(2);
+        }
+        engine.stopSearch();
+        awaitIdle();
+
+        assertTrue(peakSlots <= maxInFlight);
+        assertTrue(scheduler.getDroppedBusyCount() > 0);
+        assertTrue(replay.getStartedCount() + scheduler.getDroppedBusyCount() <= frames.size());
+        assertTrue(engine.getTimedOutCount() > 0);
+        assertEquals(replay.getFailedCount(), engine.getFailedCount());
+        // Every hanging recognition was cancelled, at its deadline or by the stop. A slow one may
+        // have completed before its cancel reached it.
+        assertEquals(0, replay.getInFlight());
+        assertTrue(replay.getCancelledCount() > 0);
+        assertTrue(replay.getCancelledCount()
+                <= engine.getTimedOutCount() + engine.getCancelledCount());
+        // Every recognition called back, so every copy could be released.
+        assertEquals(replay.getStartedCount(), engine.getMetrics()
+                .getHistogram(PipelineMetrics.Stage.RECOGNITION).getCount());
+        assertFalse(listener.hitCounts.isEmpty());
+        for (FakeFrame frame : frames) {
+            assertEquals(1, frame.closeCount);
+        }
+        assertEquals(0, scheduler.getFramesInFlight());
+        // Copies taken while timed-out recognitions still held theirs are beyond the pool's
+        // capacity, so they are dropped rather than kept when released.
+        YuvFramePool pool = engine.getFramePool();
+        assertEquals(Math.min(pool.getAllocatedCount(), maxInFlight), pool.getFreeCount());
+    }
+}
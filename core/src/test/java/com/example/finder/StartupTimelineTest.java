@@ -0,0 +1,70 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link StartupTimeline} and {@link AnalysisConfig#forDevice}.
+ */
+public class StartupTimelineTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void milestones_areMeasuredFromTheOrigin() {
+        StartupTimeline timeline = new StartupTimeline("launch", 1000 * MS);
+        assertFalse(timeline.isReached(StartupTimeline.Milestone.FIRST_MATCH));
+        assertEquals(-1, timeline.getElapsedNanos(StartupTimeline.Milestone.FIRST_MATCH));
+
+        assertTrue(timeline.mark(StartupTimeline.Milestone.FIRST_FRAME, 1200 * MS));
+        assertTrue(timeline.isReached(StartupTimeline.Milestone.FIRST_FRAME));
+        assertEquals(200 * MS, timeline.getElapsedNanos(StartupTimeline.Milestone.FIRST_FRAME));
+    }
+
+    @Test
+    public void laterMarks_areIgnored() {
+        StartupTimeline timeline = new StartupTimeline("launch", 0);
+        assertTrue(timeline.mark(StartupTimeline.Milestone.FIRST_RESULT, 300 * MS));
+        assertFalse(timeline.mark(StartupTimeline.Milestone.FIRST_RESULT, 500 * MS));
+        assertEquals(300 * MS, timeline.getElapsedNanos(StartupTimeline.Milestone.FIRST_RESULT));
+    }
+
+    @Test
+    public void budget_needsTheMilestoneInTime() {
+        StartupTimeline timeline = new StartupTimeline("launch", 0);
+        assertFalse(timeline.isWithinBudget(StartupTimeline.Milestone.FIRST_MATCH, 1000 * MS));
+        timeline.mark(StartupTimeline.Milestone.FIRST_MATCH, 800 * MS);
+        assertTrue(timeline.isWithinBudget(StartupTimeline.Milestone.FIRST_MATCH, 1000 * MS));
+        assertFalse(timeline.isWithinBudget(StartupTimeline.Milestone.FIRST_MATCH, 500 * MS));
+    }
+
+    @Test
+    public void csv_listsReachedMilestonesOfEachTimeline() throws IOException {
+        StartupTimeline process = new StartupTimeline("process", 0);
+        process.mark(StartupTimeline.Milestone.WARM_UP_DONE, 450 * MS);
+        StartupTimeline launch = new StartupTimeline("launch", 0);
+        launch.mark(StartupTimeline.Milestone.CAMERA_BOUND, 120 * MS);
+        launch.mark(StartupTimeline.Milestone.FIRST_MATCH, 900 * MS);
+
+        StringWriter out = new StringWriter();
+        StartupTimeline.writeCsv(out, process, launch);
+
+        assertEquals("timeline,milestone,elapsed_ms\n"
+                + "process,warm_up,450.000\n"
+                + "launch,camera_bound,120.000\n"
+                + "launch,first_match,900.000\n", out.toString());
+        assertEquals("launch camera_bound=120.0ms first_match=900.0ms", launch.summarize());
+    }
+
+    @Test
+    public void analysisConfig_dependsOnTheDevice() {
+        assertSame(AnalysisConfig.DEFAULT, AnalysisConfig.forDevice(8, false));
+        assertSame(AnalysisConfig.LOW_END, AnalysisConfig.forDevice(8, true));
+        assertSame(AnalysisConfig.LOW_END, AnalysisConfig.forDevice(4, false));
+        assertEquals(1, AnalysisConfig.LOW_END.getMaxFramesInFlight());
+    }
+}
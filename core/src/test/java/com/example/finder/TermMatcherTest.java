@@ -0,0 +1,94 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TermMatcher}.
+ */
+public class TermMatcherTest {
+
+    private static List<String> hits(TermMatcher matcher, String text) {
+        List<String> hits = new ArrayList<>();
+        matcher.match(text, (termId, start, end) ->
+                hits.add(termId + ":" + start + "-" + end + ":" + text.substring(start, end)));
+        return hits;
+    }
+
+    @Test
+    public void singleTerm_isFoundIgnoringCase() {
+        TermMatcher matcher = TermMatcher.compile(Collections.singletonList("Milk"));
+        assertEquals(Arrays.asList("0:4-8:MILK"), hits(matcher, "Oat MILK 1L"));
+        assertTrue(matcher.matches("oat milk"));
+        assertFalse(matcher.matches("oat mlk"));
+    }
+
+    @Test
+    public void normalizedText_matchesAccentsExpansionsAndSpacing_atOriginalOffsets() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("Straße", "creme brulee"));
+        String text = "STRASSE  Crème\nBrûlée";
+        NormalizedText normalized = new NormalizedText();
+        TextNormalizer.normalize(text, 0, text.length(), normalized);
+        List<String> hits = new ArrayList<>();
+        assertEquals(2, matcher.match(normalized, (termId, start, end) ->
+                hits.add(termId + ":" + text.substring(start, end))));
+        assertEquals(Arrays.asList("0:STRASSE", "1:Crème\nBrûlée"), hits);
+        // Unnormalized text is folded one char at a time.
+        assertTrue(TermMatcher.compile(Collections.singletonList("istanbul")).matches("İSTANBUL"));
+    }
+
+    @Test
+    public void overlappingTerms_areAllReported() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("he", "she", "his", "hers"));
+        assertEquals(
+                Arrays.asList("1:1-4:she", "0:2-4:he", "3:2-6:hers"),
+                hits(matcher, "ushers"));
+    }
+
+    @Test
+    public void repeatedTerm_isReportedAtEveryOccurrence() {
+        TermMatcher matcher = TermMatcher.compile(Collections.singletonList("aa"));
+        assertEquals(Arrays.asList("0:0-2:aa", "0:1-3:aa", "0:2-4:aa"), hits(matcher, "aaaa"));
+    }
+
+    @Test
+    public void duplicateTerms_reportBothIds() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("tea", "TEA"));
+        assertEquals(2, matcher.match("green tea", null));
+    }
+
+    @Test
+    public void nonAsciiTerms_areFoldedPerChar() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("ÄPFEL", "café"));
+        assertEquals(Arrays.asList("0:0-5:äpfel", "1:6-10:CAFÉ"), hits(matcher, "äpfel CAFÉ"));
+    }
+
+    @Test
+    public void matchRange_reportsOffsetsInWholeText() {
+        TermMatcher matcher = TermMatcher.compile(Collections.singletonList("egg"));
+        List<String> hits = new ArrayList<>();
+        matcher.match("egg, egg", 3, 8, (termId, start, end) -> hits.add(start + "-" + end));
+        assertEquals(Collections.singletonList("5-8"), hits);
+    }
+
+    @Test
+    public void emptyTerms_neverMatch() {
+        TermMatcher matcher = TermMatcher.compile(Arrays.asList("", "x"));
+        assertEquals(Collections.singletonList("1:1-2:x"), hits(matcher, "ax"));
+        assertFalse(TermMatcher.compile(Collections.<String>emptyList()).matches("anything"));
+    }
+
+    @Test
+    public void splitTerms_trimsAndDeduplicates() {
+        assertEquals(
+                Arrays.asList("milk", "Eggs", "bread"),
+                TermMatcher.splitTerms(" milk, Eggs ,,\nbread, MILK "));
+        assertTrue(TermMatcher.splitTerms(null).isEmpty());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TextCorpus}.
+ */
+public class TextCorpusTest {
+
+    static RecognizedText frame(long timestampNanos, String... lines) {
+        List<RecognizedText.Line> lineNodes = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            int top = 30 * i;
+            lineNodes.add(new RecognizedText.Line(lines[i], 10, top, 10 + 10 * lines[i].length(),
+                    top + 20, Collections.singletonList(new RecognizedText.Element(lines[i],
+                            10, top, 10 + 10 * lines[i].length(), top + 20))));
+            text.append(i > 0 ? "\n" : "").append(lines[i]);
+        }
+        RecognizedText.Block block = new RecognizedText.Block(text.toString(), lineNodes);
+        return new RecognizedText(timestampNanos, 640, 480, text.toString(),
+                Collections.singletonList(block));
+    }
+
+    private static byte[] serialize(List<RecognizedText> frames) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TextCorpus.write(frames, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void roundTrip_preservesTree() throws IOException {
+        List<RecognizedText> frames = Arrays.asList(
+                frame(100, "Best before 12/24", "Lot 4711"),
+                frame(200, "Äpfel – 1,99 €"));
+        List<RecognizedText> read =
+                TextCorpus.read(new ByteArrayInputStream(serialize(frames)));
+
+        assertEquals(2, read.size());
+        RecognizedText first = read.get(0);
+        assertEquals(100, first.getTimestampNanos());
+        assertEquals(640, first.getImageWidth());
+        assertEquals(480, first.getImageHeight());
+        assertEquals("Best before 12/24\nLot 4711", first.getText());
+        RecognizedText.Block block = first.getBlocks().get(0);
+        assertFalse(block.hasBoundingBox());
+        RecognizedText.Line line = block.getLines().get(1);
+        assertEquals("Lot 4711", line.getText());
+        assertTrue(line.hasBoundingBox());
+        assertEquals(30, line.getTop());
+        assertEquals(90, line.getRight());
+        assertEquals("Lot 4711", line.getElements().get(0).getText());
+        assertEquals("Äpfel – 1,99 €", read.get(1).getText());
+    }
+
+    @Test
+    public void truncatedRecording_keepsCompleteFrames() throws IOException {
+        byte[] bytes = serialize(Arrays.asList(frame(100, "one"), frame(200, "two")));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 5);
+        List<RecognizedText> read = TextCorpus.read(new ByteArrayInputStream(truncated));
+        assertEquals(1, read.size());
+        assertEquals("one", read.get(0).getText());
+    }
+
+    @Test
+    public void emptyCorpus_hasNoFrames() throws IOException {
+        byte[] bytes = serialize(Collections.<RecognizedText>emptyList());
+        assertTrue(TextCorpus.read(new ByteArrayInputStream(bytes)).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void otherData_isRejected() throws IOException {
+        TextCorpus.read(new ByteArrayInputStream("not a corpus".getBytes("UTF-8")));
+    }
+}
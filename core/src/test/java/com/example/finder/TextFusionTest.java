@@ -0,0 +1,200 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TextFusion}.
+ */
+public class TextFusionTest {
+
+    private static final int CHAR_WIDTH = 12;
+    private static final int LINE_HEIGHT = 24;
+    private static final long FRAME_NANOS = 33_000_000L;
+    private static final MatchGeometry.LabelMeasurer MEASURER = label -> 10f * label.length();
+
+    /** A line whose words are {@value #CHAR_WIDTH} pixels a char, one char apart. */
+    private static RecognizedText.Line line(String text, int left, int top) {
+        List<RecognizedText.Element> elements = new ArrayList<>();
+        int x = left;
+        for (String word : text.split(" ")) {
+            int width = CHAR_WIDTH * word.length();
+            elements.add(new RecognizedText.Element(word, x, top, x + width, top + LINE_HEIGHT));
+            x += width + CHAR_WIDTH;
+        }
+        return new RecognizedText.Line(text, left, top, x - CHAR_WIDTH, top + LINE_HEIGHT,
+                elements);
+    }
+
+    private static RecognizedText frame(int index, RecognizedText.Line... lines) {
+        StringBuilder text = new StringBuilder();
+        for (RecognizedText.Line line : lines) {
+            text.append(text.length() > 0 ? "\n" : "").append(line.getText());
+        }
+        RecognizedText.Block block = new RecognizedText.Block(text.toString(),
+                Arrays.asList(lines));
+        return new RecognizedText(index * FRAME_NANOS, 640, 480, text.toString(),
+                Collections.singletonList(block));
+    }
+
+    private static String firstLine(RecognizedText text) {
+        return text.getBlocks().get(0).getLines().get(0).getText();
+    }
+
+    @Test
+    public void misreadInOneFrame_isOutvoted() {
+        TextFusion fusion = new TextFusion();
+        fusion.fuse(frame(0, line("LOT 4711", 100, 100)));
+        fusion.fuse(frame(1, line("LOT 4711", 102, 100)));
+        RecognizedText fused = fusion.fuse(frame(2, line("L0T 47l1", 104, 101)));
+
+        assertEquals("LOT 4711", firstLine(fused));
+        assertEquals("LOT 4711", fused.getText());
+        RecognizedText.Element element = fused.getBlocks().get(0).getLines().get(0)
+                .getElements().get(0);
+        // Boxes stay where the new result saw the words.
+        assertEquals(104, element.getLeft());
+        assertEquals(2, fusion.getCorrectedCount());
+    }
+
+    @Test
+    public void charVotes_canRecoverTextNoSingleFrameRead() {
+        TextFusion fusion = new TextFusion();
+        fusion.fuse(frame(0, line("L0T 4711", 100, 100)));
+        fusion.fuse(frame(1, line("LOT 47I1", 100, 100)));
+        RecognizedText fused = fusion.fuse(frame(2, line("LOT 4T11", 100, 100)));
+
+        assertEquals("LOT 4711", firstLine(fused));
+    }
+
+    @Test
+    public void unchangedText_isReturnedAsIs() {
+        TextFusion fusion = new TextFusion();
+        RecognizedText first = frame(0, line("EXP 2025", 100, 100));
+        assertSame(first, fusion.fuse(first));
+        RecognizedText second = frame(1, line("EXP 2025", 101, 100));
+        assertSame(second, fusion.fuse(second));
+        // A tie between one earlier and the new reading keeps the new one.
+        RecognizedText third = new TextFusion().fuse(first);
+        assertSame(first, third);
+    }
+
+    @Test
+    public void linesElsewhere_areNotMixed() {
+        TextFusion fusion = new TextFusion();
+        fusion.fuse(frame(0, line("LOT 4711", 100, 100), line("LOT 9999", 100, 300)));
+        fusion.fuse(frame(1, line("LOT 4711", 100, 100), line("LOT 9999", 100, 300)));
+        RecognizedText fused = fusion.fuse(frame(2, line("LOT 9999", 100, 300),
+                line("LOT 4711", 100, 100)));
+
+        assertEquals("LOT 9999\nLOT 4711", fused.getText());
+        assertEquals(2, fusion.getTrackCount());
+    }
+
+    @Test
+    public void wordsAreAlignedByPosition_notByIndex() {
+        TextFusion fusion = new TextFusion();
+        fusion.fuse(frame(0, line("BEST BEFORE 2025", 100, 100)));
+        fusion.fuse(frame(1, line("BEST BEFORE 2025", 100, 100)));
+        // The first word was missed, so the others come first in the new reading.
+        RecognizedText.Line missed = line("BEF0RE 2O25", 100 + 5 * CHAR_WIDTH, 100);
+        RecognizedText fused = fusion.fuse(frame(2, missed));
+
+        assertEquals("BEFORE 2025", firstLine(fused));
+    }
+
+    @Test
+    public void staleReadings_andResizedImages_areNotUsed() {
+        TextFusion fusion = new TextFusion(4, 100);
+        fusion.fuse(frame(0, line("LOT 4711", 100, 100)));
+        fusion.fuse(frame(1, line("LOT 4711", 100, 100)));
+        // Ten frames later the earlier readings are too old.
+        RecognizedText late = frame(12, line("L0T 4711", 100, 100));
+        assertSame(late, fusion.fuse(late));
+
+        fusion.fuse(frame(13, line("LOT 4711", 100, 100)));
+        RecognizedText.Line misread = line("L0T 4711", 100, 100);
+        RecognizedText resized = new RecognizedText(14 * FRAME_NANOS, 480, 640,
+                misread.getText(), Collections.singletonList(new RecognizedText.Block(
+                        misread.getText(), Collections.singletonList(misread))));
+        assertSame(resized, fusion.fuse(resized));
+        assertEquals(1, fusion.getTrackCount());
+    }
+
+    @Test
+    public void trackCount_isBounded() {
+        TextFusion fusion = new TextFusion();
+        for (int f = 0; f < 4; f++) {
+            RecognizedText.Line[] lines = new RecognizedText.Line[200];
+            for (int i = 0; i < lines.length; i++) {
+                // A different column each frame, so no line is linked to an earlier one.
+                lines[i] = line("ROW " + i, 40 + 200 * f, 2 * LINE_HEIGHT * i);
+            }
+            fusion.fuse(frame(f, lines));
+            assertEquals(TextFusion.MAX_TRACKS, fusion.getTrackCount());
+        }
+    }
+
+    @Test
+    public void replayOfNoisyCorpus_matchesMoreFramesWhenFused() {
+        List<RecognizedText> corpus = noisyCorpus(new Random(7), 120, 0.3f);
+        SearchSession session = SearchSession.parse("lot 4711, exp 2025");
+
+        CorpusReplay.Result single = replay(corpus, session, null);
+        CorpusReplay.Result fused = replay(corpus, session, new TextFusion());
+
+        assertEquals(corpus.size(), single.getDeliveredCount());
+        assertEquals(corpus.size(), fused.getDeliveredCount());
+        // About half the frames read both words of a term right; the consensus nearly always does.
+        assertTrue(single.getMatchedLineCount() < 0.7 * 2 * corpus.size());
+        assertTrue(fused.getMatchedLineCount() > 0.9 * 2 * corpus.size());
+        assertTrue(fused.getMatchedFrameCount() > single.getMatchedFrameCount());
+    }
+
+    private static CorpusReplay.Result replay(List<RecognizedText> corpus, SearchSession session,
+                                              TextFusion fusion) {
+        FrameMatcher matcher = new FrameMatcher(TermMatcher.compile(session.getTermTexts()),
+                MEASURER);
+        TextPipeline pipeline = new TextPipeline(matcher, fusion, new TextTracker(),
+                (text, hitCount, matches) -> { });
+        FrameScheduler scheduler = FrameScheduler.create(1);
+        try {
+            return CorpusReplay.run(corpus, scheduler, pipeline, ViewTransform.IDENTITY);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * A slow pan across a label in which every word is misread, one char replaced, with the
+     * given probability.
+     */
+    private static List<RecognizedText> noisyCorpus(Random random, int frameCount,
+                                                    float errorRate) {
+        String[] texts = {"MILK 1L", "LOT 4711", "EXP 2025", "KEEP REFRIGERATED"};
+        List<RecognizedText> frames = new ArrayList<>(frameCount);
+        for (int f = 0; f < frameCount; f++) {
+            RecognizedText.Line[] lines = new RecognizedText.Line[texts.length];
+            for (int i = 0; i < texts.length; i++) {
+                StringBuilder text = new StringBuilder();
+                for (String word : texts[i].split(" ")) {
+                    char[] chars = word.toCharArray();
+                    if (random.nextFloat() < errorRate) {
+                        chars[random.nextInt(chars.length)] = (char) ('#' + random.nextInt(5));
+                    }
+                    text.append(text.length() > 0 ? " " : "").append(chars);
+                }
+                lines[i] = line(text.toString(), 60 + f % 40, 80 + 40 * i);
+            }
+            frames.add(frame(f, lines));
+        }
+        return frames;
+    }
+}
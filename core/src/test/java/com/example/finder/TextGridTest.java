@@ -0,0 +1,207 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TextGrid}.
+ */
+public class TextGridTest {
+
+    /** A receipt: product names on the left, prices on the right, one line each. */
+    private static RecognizedText receipt() {
+        List<RecognizedText.Line> lines = new ArrayList<>();
+        lines.add(line("Whole milk 2L", 20, 100));
+        lines.add(line("3.49", 400, 102));
+        lines.add(line("Sourdough bread", 20, 150));
+        lines.add(line("4.99", 400, 148));
+        return new RecognizedText(0, 500, 300, "", Collections.singletonList(
+                new RecognizedText.Block("", 20, 100, 460, 180, lines)));
+    }
+
+    /** A line of 20 pixel high words, 15 pixels per character and a 10 pixel space. */
+    private static RecognizedText.Line line(String text, int left, int top) {
+        List<RecognizedText.Element> elements = new ArrayList<>();
+        int x = left;
+        for (String word : text.split(" ")) {
+            elements.add(new RecognizedText.Element(word, x, top, x + 15 * word.length(),
+                    top + 20));
+            x += 15 * word.length() + 10;
+        }
+        return new RecognizedText.Line(text, left, top, x - 10, top + 20, elements);
+    }
+
+    /** A page of random lines of random words, as dense as a printed page. */
+    private static RecognizedText page(int lineCount, long seed) {
+        Random random = new Random(seed);
+        List<RecognizedText.Line> lines = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++) {
+            StringBuilder text = new StringBuilder("w");
+            for (int words = random.nextInt(6); words > 0; words--) {
+                text.append(" w").append(random.nextInt(1000));
+            }
+            lines.add(line(text.toString(), random.nextInt(900), random.nextInt(1400)));
+        }
+        return new RecognizedText(0, 1000, 1500, "", Collections.singletonList(
+                new RecognizedText.Block("", lines)));
+    }
+
+    private static int find(TextGrid grid, String text) {
+        return find(grid, text, text.contains(" ") ? TextGrid.Kind.LINE : TextGrid.Kind.ELEMENT);
+    }
+
+    private static int find(TextGrid grid, String text, TextGrid.Kind kind) {
+        for (int i = 0; i < grid.size(); i++) {
+            if (grid.getKind(i) == kind && grid.getText(i).equals(text)) {
+                return i;
+            }
+        }
+        throw new AssertionError("No entry " + text);
+    }
+
+    @Test
+    public void build_indexesLinesAndElementsWithTheirLines() {
+        TextGrid grid = TextGrid.build(receipt());
+        assertEquals(4 + 7, grid.size());
+        int milk = find(grid, "milk");
+        assertEquals(TextGrid.Kind.ELEMENT, grid.getKind(milk));
+        assertEquals(find(grid, "Whole milk 2L"), grid.getLine(milk));
+        assertEquals(TextGrid.Kind.LINE, grid.getKind(grid.getLine(milk)));
+        assertEquals(105, grid.getLeft(milk));
+        assertEquals(120, grid.getBottom(milk));
+    }
+
+    @Test
+    public void nodesWithoutBoxes_areLeftOut() {
+        RecognizedText text = new RecognizedText(0, 100, 100, "", Collections.singletonList(
+                new RecognizedText.Block("", Collections.singletonList(
+                        new RecognizedText.Line("a b", Arrays.asList(
+                                new RecognizedText.Element("a"),
+                                new RecognizedText.Element("b", 10, 10, 20, 20)))))));
+        TextGrid grid = TextGrid.build(text);
+        assertEquals(1, grid.size());
+        assertEquals(-1, grid.getLine(0));
+        assertEquals(0, TextGrid.EMPTY.size());
+        assertEquals(-1, TextGrid.EMPTY.find(0, 0, TextGrid.Kind.ELEMENT, 100));
+        assertEquals(0, TextGrid.EMPTY.query(0, 0, 100, 100, TextGrid.Kind.LINE, new int[4]));
+    }
+
+    @Test
+    public void find_returnsTheWordUnderAPoint_orTheClosestWithinSlop() {
+        TextGrid grid = TextGrid.build(receipt());
+        assertEquals(find(grid, "milk"), grid.find(110, 110, TextGrid.Kind.ELEMENT, 0));
+        assertEquals(find(grid, "Whole milk 2L"), grid.find(110, 110, TextGrid.Kind.LINE, 0));
+        // Between "Whole" and "milk", closer to "milk".
+        assertEquals(find(grid, "milk"), grid.find(102, 110, TextGrid.Kind.ELEMENT, 5));
+        assertEquals(-1, grid.find(300, 250, TextGrid.Kind.ELEMENT, 20));
+        assertEquals(find(grid, "4.99"), grid.find(430, 180, TextGrid.Kind.ELEMENT, 20));
+    }
+
+    @Test
+    public void query_matchesAScanOfAllEntries() {
+        TextGrid grid = TextGrid.build(page(2000, 7));
+        Random random = new Random(11);
+        int[] found = new int[grid.size()];
+        for (int q = 0; q < 200; q++) {
+            float left = random.nextInt(1100) - 50;
+            float top = random.nextInt(1600) - 50;
+            float right = left + random.nextInt(400);
+            float bottom = top + random.nextInt(400);
+            TextGrid.Kind kind = q % 2 == 0 ? TextGrid.Kind.LINE : TextGrid.Kind.ELEMENT;
+            int count = grid.query(left, top, right, bottom, kind, found);
+            int[] actual = Arrays.copyOf(found, count);
+            Arrays.sort(actual);
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < grid.size(); i++) {
+                if (grid.getKind(i) == kind && grid.getLeft(i) <= right
+                        && grid.getRight(i) >= left && grid.getTop(i) <= bottom
+                        && grid.getBottom(i) >= top) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(expected.size(), count);
+            for (int i = 0; i < count; i++) {
+                assertEquals((int) expected.get(i), actual[i]);
+            }
+        }
+    }
+
+    @Test
+    public void query_countsEntriesBeyondTheOutputArray() {
+        TextGrid grid = TextGrid.build(receipt());
+        int[] found = new int[1];
+        assertEquals(4, grid.query(0, 0, 500, 300, TextGrid.Kind.LINE, found));
+        assertEquals(TextGrid.Kind.LINE, grid.getKind(found[0]));
+        assertEquals(0, grid.query(10, 10, 0, 0, TextGrid.Kind.LINE, found));
+    }
+
+    @Test
+    public void findNeighbour_returnsThePriceNextToAProduct() {
+        TextGrid grid = TextGrid.build(receipt());
+        int milk = find(grid, "Whole milk 2L");
+        int bread = find(grid, "Sourdough bread");
+        int milkPrice = find(grid, "3.49", TextGrid.Kind.LINE);
+        assertEquals(milkPrice, grid.findNeighbour(milk, TextGrid.Direction.RIGHT,
+                TextGrid.Kind.LINE, Float.MAX_VALUE));
+        assertEquals(find(grid, "4.99", TextGrid.Kind.LINE), grid.findNeighbour(bread,
+                TextGrid.Direction.RIGHT, TextGrid.Kind.LINE, Float.MAX_VALUE));
+        assertEquals(milk, grid.findNeighbour(milkPrice, TextGrid.Direction.LEFT,
+                TextGrid.Kind.LINE, Float.MAX_VALUE));
+        assertEquals(bread, grid.findNeighbour(milk, TextGrid.Direction.BELOW,
+                TextGrid.Kind.LINE, Float.MAX_VALUE));
+        assertEquals(-1, grid.findNeighbour(milk, TextGrid.Direction.ABOVE,
+                TextGrid.Kind.LINE, Float.MAX_VALUE));
+        assertEquals(-1, grid.findNeighbour(milk, TextGrid.Direction.RIGHT,
+                TextGrid.Kind.LINE, 100));
+    }
+
+    @Test
+    public void findNeighbour_skipsWordsOfTheSameLine() {
+        TextGrid grid = TextGrid.build(receipt());
+        assertEquals(find(grid, "3.49"), grid.findNeighbour(find(grid, "Whole"),
+                TextGrid.Direction.RIGHT, TextGrid.Kind.ELEMENT, Float.MAX_VALUE));
+    }
+
+    @Test
+    public void findNeighbour_matchesAScanOfAllEntries() {
+        TextGrid grid = TextGrid.build(page(500, 3));
+        for (int index = 0; index < grid.size(); index++) {
+            if (grid.getKind(index) != TextGrid.Kind.LINE) {
+                continue;
+            }
+            int expected = -1;
+            for (int i = 0; i < grid.size(); i++) {
+                if (grid.getKind(i) != TextGrid.Kind.LINE || i == index) {
+                    continue;
+                }
+                int gap = grid.getTop(i) - grid.getBottom(index);
+                int overlap = Math.min(grid.getRight(i), grid.getRight(index))
+                        - Math.max(grid.getLeft(i), grid.getLeft(index));
+                int smaller = Math.min(grid.getRight(i) - grid.getLeft(i),
+                        grid.getRight(index) - grid.getLeft(index));
+                if (gap >= -5 && overlap >= smaller / 2f && (expected < 0
+                        || Math.max(0, gap) < Math.max(0,
+                        grid.getTop(expected) - grid.getBottom(index)))) {
+                    expected = i;
+                }
+            }
+            int actual = grid.findNeighbour(index, TextGrid.Direction.BELOW, TextGrid.Kind.LINE,
+                    Float.MAX_VALUE);
+            if (expected < 0) {
+                assertEquals(-1, actual);
+            } else {
+                // Ties may be broken either way.
+                assertEquals(Math.max(0, grid.getTop(expected) - grid.getBottom(index)),
+                        Math.max(0, grid.getTop(actual) - grid.getBottom(index)));
+            }
+        }
+    }
+}
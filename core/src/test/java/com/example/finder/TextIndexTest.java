@@ -0,0 +1,260 @@
+package com.example.finder;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TextIndex} and {@link TextIndexSegment}.
+ */
+public class TextIndexTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private TextIndex index;
+
+    @After
+    public void closeIndex() throws IOException {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    private TextIndex open(int flushThreshold, int maxSegments) throws IOException {
+        index = TextIndex.open(folder.getRoot(), OcrConfusionMap.DEFAULT, flushThreshold,
+                maxSegments);
+        return index;
+    }
+
+    @Test
+    public void search_findsWordWithSourceTimeAndBox() throws IOException {
+        open(100, 4);
+        index.add("aisle-3", 1000, TextCorpusTest.frame(0, "Oat milk 1L", "Lot 4711"));
+
+        List<TextIndex.Hit> hits = index.search("milk", 10);
+
+        assertEquals(1, hits.size());
+        TextIndex.Hit hit = hits.get(0);
+        assertEquals("aisle-3", hit.getSource());
+        assertEquals(1000, hit.getTimestampMillis());
+        assertEquals(1, hit.size());
+        // The test frames have one element per line, so the label is the whole line.
+        assertEquals("Oat milk 1L", hit.getLabel(0));
+        assertEquals(0, hit.getTop(0));
+        assertTrue(hit.getRight(0) > hit.getLeft(0));
+    }
+
+    @Test
+    public void search_isCaseInsensitiveAndToleratesConfusions() throws IOException {
+        open(100, 4);
+        index.add("shelf", 1000, TextCorpusTest.frame(0, "L0T 4711"));
+
+        assertEquals(1, index.search("lot", 10).size());
+        assertEquals(1, index.search("LOT", 10).size());
+        assertEquals("L0T 4711", index.search("lot", 10).get(0).getLabel(0));
+    }
+
+    @Test
+    public void search_requiresAllWordsInOneSighting() throws IOException {
+        open(100, 4);
+        index.add("a", 1000, TextCorpusTest.frame(0, "best before", "12/24"));
+        index.add("b", 2000, TextCorpusTest.frame(0, "best price"));
+        index.add("b", 3000, TextCorpusTest.frame(0, "before noon"));
+
+        List<TextIndex.Hit> hits = index.search("Best before", 10);
+
+        assertEquals(1, hits.size());
+        assertEquals("a", hits.get(0).getSource());
+        assertEquals(2, hits.get(0).size());
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search("unseen", 10).isEmpty());
+    }
+
+    @Test
+    public void search_returnsMostRecentFirst() throws IOException {
+        open(2, 100);
+        for (int i = 0; i < 10; i++) {
+            index.add("frame-" + i, 1000 + i, TextCorpusTest.frame(0, "Lot " + i));
+        }
+
+        List<TextIndex.Hit> hits = index.search("lot", 3);
+
+        assertEquals(3, hits.size());
+        assertEquals(1009, hits.get(0).getTimestampMillis());
+        assertEquals(1008, hits.get(1).getTimestampMillis());
+        assertEquals(1007, hits.get(2).getTimestampMillis());
+    }
+
+    @Test
+    public void search_findsBufferedPostingsWithoutFlushing() throws IOException {
+        open(100, 4);
+        index.add("aisle-3", 1000, TextCorpusTest.frame(0, "Lot 4711"));
+        assertEquals(1, index.search("lot", 10).size());
+        index.add("aisle-4", 2000, TextCorpusTest.frame(0, "Lot 9"));
+
+        assertEquals(Arrays.asList("aisle-4", "aisle-3"), sources(index.search("lot", 10)));
+        index.delete("aisle-4");
+        assertEquals(Collections.singletonList("aisle-3"), sources(index.search("lot", 10)));
+        assertEquals(0, index.getSegmentCount());
+        assertEquals(0, segmentFiles().length);
+    }
+
+    @Test
+    public void index_survivesReopening() throws IOException {
+        open(100, 4);
+        index.add("photo.jpg", 1000, TextCorpusTest.frame(0, "Best before 12/24"));
+        index.close();
+
+        open(100, 4);
+
+        List<TextIndex.Hit> hits = index.search("before", 10);
+        assertEquals(1, hits.size());
+        assertEquals("photo.jpg", hits.get(0).getSource());
+        assertEquals(1, index.getSegmentCount());
+    }
+
+    @Test
+    public void replace_hidesEarlierPostingsOfSource() throws IOException, InterruptedException {
+        open(100, 100);
+        index.add("photo.jpg", 1000, TextCorpusTest.frame(0, "Lot 4711"));
+        index.flush();
+        index.replace("photo.jpg", 2000, TextCorpusTest.frame(0, "Best before"));
+        index.add("other.jpg", 2000, TextCorpusTest.frame(0, "Lot 1"));
+
+        assertEquals(Collections.singletonList("other.jpg"), sources(index.search("lot", 10)));
+        assertEquals(Collections.singletonList("photo.jpg"),
+                sources(index.search("before", 10)));
+
+        index.delete("other.jpg");
+        assertTrue(index.search("lot", 10).isEmpty());
+
+        // Deletions also hold after reopening.
+        index.close();
+        open(100, 100);
+        assertTrue(index.search("lot", 10).isEmpty());
+        assertEquals(1, index.search("before", 10).size());
+    }
+
+    @Test
+    public void compaction_mergesSegmentsAndDropsDeletedPostings()
+            throws IOException, InterruptedException {
+        open(1, 3);
+        for (int i = 0; i < 6; i++) {
+            index.add("photo-" + i, 1000 + i, TextCorpusTest.frame(0, "Lot " + i));
+            // Each segment is written before the next, so the merges happen at fixed points.
+            index.awaitBackgroundWork();
+        }
+        index.delete("photo-0");
+        index.flush();
+        index.awaitBackgroundWork();
+
+        assertEquals(1, index.getSegmentCount());
+        // Two postings, "lot" and the number, for each photo left.
+        assertEquals(10, index.getPostingCount());
+        assertEquals(1, segmentFiles().length);
+        assertEquals(5, index.search("lot", 10).size());
+
+        index.close();
+        open(1, 3);
+        assertEquals(5, index.search("lot", 10).size());
+    }
+
+    @Test
+    public void open_removesLeftoversOfInterruptedWork() throws IOException {
+        open(100, 100);
+        index.add("a", 1000, TextCorpusTest.frame(0, "Lot 1"));
+        index.flush();
+        index.add("b", 2000, TextCorpusTest.frame(0, "Lot 2"));
+        index.close();
+        index = null;
+        File[] files = segmentFiles();
+        assertEquals(2, files.length);
+        // A merge that was renamed in place but crashed before deleting what it merged, and a
+        // segment that was still being written.
+        List<TextIndexSegment> segments = new ArrayList<>();
+        for (File file : files) {
+            segments.add(TextIndexSegment.read(file));
+        }
+        TextIndexSegment.merge(segments).writeTo(
+                new File(folder.getRoot(), TextIndexSegment.fileName(1, 2)));
+        try (FileOutputStream out = new FileOutputStream(
+                new File(folder.getRoot(), TextIndexSegment.fileName(3, 3) + ".tmp"))) {
+            out.write(new byte[] {1, 2, 3});
+        }
+
+        open(100, 100);
+
+        assertEquals(1, index.getSegmentCount());
+        assertEquals(1, segmentFiles().length);
+        assertEquals(2, index.search("lot", 10).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsCorruptSegment() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(
+                new File(folder.getRoot(), TextIndexSegment.fileName(1, 1)))) {
+            out.write(new byte[] {'F', 'T', 'C', '1', 0, 0});
+        }
+        open(100, 4);
+    }
+
+    @Test
+    public void tokenize_splitsOnSeparatorsAndNormalizes() throws IOException {
+        open(100, 4);
+        List<String> tokens = new ArrayList<>();
+
+        index.tokenize("Best-before: 12/24, L0T", tokens);
+
+        // 1 and 2 fold into the l and z they are confused with.
+        assertEquals(Arrays.asList("best", "before", "lz", "z4", "lot"), tokens);
+    }
+
+    @Test
+    public void search_findsWordsInLargeIndex() throws IOException {
+        open(TextIndex.DEFAULT_FLUSH_THRESHOLD, TextIndex.DEFAULT_MAX_SEGMENTS);
+        Random random = new Random(7);
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            terms.add("word" + i);
+        }
+        for (int frame = 0; frame < 2000; frame++) {
+            String[] lines = new String[10];
+            for (int l = 0; l < lines.length; l++) {
+                lines[l] = terms.get(random.nextInt(terms.size())) + " "
+                        + terms.get(random.nextInt(terms.size()));
+            }
+            index.add("session", frame, TextCorpusTest.frame(0, lines));
+        }
+
+        // Search time on an index of this size is measured by TextIndexBenchmark.
+        for (int i = 0; i < 100; i++) {
+            assertFalse(index.search(terms.get(i), 10).isEmpty());
+        }
+    }
+
+    private File[] segmentFiles() {
+        return folder.getRoot().listFiles(
+                (dir, name) -> TextIndexSegment.parseFileName(name) != null);
+    }
+
+    private static List<String> sources(List<TextIndex.Hit> hits) {
+        List<String> sources = new ArrayList<>();
+        for (TextIndex.Hit hit : hits) {
+            sources.add(hit.getSource());
+        }
+        return sources;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TextNormalizer}.
+ */
+public class TextNormalizerTest {
+
+    private static NormalizedText normalize(String text) {
+        NormalizedText out = new NormalizedText();
+        TextNormalizer.normalize(text, 0, text.length(), out);
+        return out;
+    }
+
+    /** Returns the original text behind normalized chars {@code [start, end)}. */
+    private static String original(String text, NormalizedText normalized, int start, int end) {
+        return text.substring(normalized.getStart(start), normalized.getEnd(end - 1));
+    }
+
+    @Test
+    public void ascii_isLowerCased() {
+        assertEquals("oat milk 1l", TextNormalizer.normalize("Oat MILK 1L"));
+        assertEquals('a', TextNormalizer.fold('A'));
+        assertEquals('-', TextNormalizer.fold('-'));
+    }
+
+    @Test
+    public void caseFolding_doesNotDependOnTheDeviceLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals("istanbul", TextNormalizer.normalize("ISTANBUL"));
+            assertEquals("istanbul", TextNormalizer.normalize("İstanbul"));
+            assertEquals("istanbul", TextNormalizer.normalize("ıstanbul"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+        assertEquals("strasse", TextNormalizer.normalize("STRAẞE"));
+        assertEquals("strasse", TextNormalizer.normalize("Straße"));
+        assertEquals("οδοσ", TextNormalizer.normalize("ΟΔΌΣ"));
+        assertEquals(TextNormalizer.normalize("οδός"), TextNormalizer.normalize("ΟΔΟΣ"));
+    }
+
+    @Test
+    public void latinDiacritics_areStripped_otherMarksKept() {
+        assertEquals("creme brulee", TextNormalizer.normalize("Crème Brûlée"));
+        assertEquals("creme", TextNormalizer.normalize("Cre\u0300me"));
+        assertEquals("елка", TextNormalizer.normalize("Ёлка"));
+        // Voiced kana and Devanagari vowel signs change the letter, not just its accent.
+        assertEquals("\u30AC", TextNormalizer.normalize("\u30AC"));
+        assertNotEquals(TextNormalizer.normalize("か"), TextNormalizer.normalize("が"));
+        assertEquals("दूध", TextNormalizer.normalize("दूध"));
+    }
+
+    @Test
+    public void compatibilityForms_areReplaced() {
+        assertEquals("milk12", TextNormalizer.normalize("ＭＩＬＫ１２"));
+        assertEquals("fish", TextNormalizer.normalize("ﬁsh"));
+        assertEquals("m2", TextNormalizer.normalize("m²"));
+        assertEquals("가나", TextNormalizer.normalize("가나"));
+    }
+
+    @Test
+    public void whitespace_isCollapsedAndTrimmed() {
+        assertEquals("whole milk", TextNormalizer.normalize("  whole \t\n milk  "));
+        assertEquals("whole milk", TextNormalizer.normalize("whole\u00A0milk"));
+        assertEquals("whole milk", TextNormalizer.normalize("whole\u3000milk"));
+        assertEquals("", TextNormalizer.normalize(" \n "));
+    }
+
+    @Test
+    public void dashes_areCollapsed_andLineEndHyphensJoined() {
+        assertEquals("semi-skimmed", TextNormalizer.normalize("semi\u2014skimmed"));
+        assertEquals("semi-skimmed", TextNormalizer.normalize("semi--skimmed"));
+        assertEquals("semi-skimmed", TextNormalizer.normalize("semi\u2011skimmed"));
+        assertEquals("strawberry", TextNormalizer.normalize("Straw-\nberry"));
+        assertEquals("strawberry", TextNormalizer.normalize("straw\u00ADberry"));
+        // Only hyphens at a line end between letters join words.
+        assertEquals("straw- berry", TextNormalizer.normalize("straw- berry"));
+        assertEquals("2020- 21", TextNormalizer.normalize("2020-\n21"));
+    }
+
+    @Test
+    public void offsets_pointBackToOriginalChars() {
+        String text = "  Crème  ﬁne -- Straße";
+        NormalizedText normalized = normalize(text);
+        assertEquals("creme fine - strasse", normalized.toString());
+        assertEquals("Crème", original(text, normalized, 0, 5));
+        // The dropped accent belongs to its letter.
+        assertEquals("è", original(text, normalized, 2, 3));
+        assertEquals("  ", original(text, normalized, 5, 6));
+        // Both chars of an expansion stand for the one original char.
+        assertEquals("ﬁ", original(text, normalized, 6, 7));
+        assertEquals("ﬁ", original(text, normalized, 7, 8));
+        assertEquals("--", original(text, normalized, 11, 12));
+        assertEquals("ß", original(text, normalized, 17, 19));
+    }
+
+    @Test
+    public void range_isRelativeToWholeText() {
+        NormalizedText out = new NormalizedText();
+        TextNormalizer.normalize("xx Ab", 3, 5, out);
+        assertEquals("ab", out.toString());
+        assertEquals(3, out.getStart(0));
+    }
+
+    @Test
+    public void remap_composesTwoNormalizations() {
+        String text = "ＢＯＴＴ１Ｅ  ﬁ";
+        NormalizedText folded = normalize(text);
+        NormalizedText confused = new NormalizedText();
+        OcrConfusionMap.DEFAULT.normalize(folded, confused);
+        confused.remap(folded);
+        assertEquals("bottlefl", confused.toString());
+        assertEquals("１", text.substring(confused.getStart(4), confused.getEnd(4)));
+        assertEquals("ﬁ", text.substring(confused.getStart(6), confused.getEnd(7)));
+    }
+
+    @Test
+    public void fold_agreesWithNormalize_forCharsThatNormalizeToOneChar() {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            String normalized = TextNormalizer.normalize(String.valueOf((char) c));
+            if (normalized.length() == 1) {
+                assertEquals("U+" + Integer.toHexString(c), normalized.charAt(0),
+                        TextNormalizer.fold((char) c));
+            }
+        }
+    }
+}
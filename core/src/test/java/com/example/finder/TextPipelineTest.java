@@ -0,0 +1,191 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TextPipeline}, {@link BlockText} and {@link CorpusReplay}.
+ */
+public class TextPipelineTest {
+
+    private static final MatchGeometry.LabelMeasurer MEASURER = label -> 10f * label.length();
+
+    private final List<Integer> hitCounts = new ArrayList<>();
+    private final TextTracker tracker = new TextTracker();
+    private final TextPipeline pipeline = new TextPipeline(
+            TermMatcher.compile(Arrays.asList("lot", "best before")), MEASURER, tracker,
+            (text, hitCount, matches) -> hitCounts.add(hitCount));
+
+    @Test
+    public void matchingLines_becomeGeometry() {
+        MatchGeometry matches = pipeline.process(
+                TextCorpusTest.frame(100, "Best before 12/24", "Ingredients", "Lot 4711"),
+                ViewTransform.IDENTITY);
+
+        assertEquals(2, matches.size());
+        assertEquals("Best before 12/24", matches.getLabel(0));
+        assertEquals("Lot 4711", matches.getLabel(1));
+        assertEquals(60f, matches.getTop(1), 0f);
+        assertEquals(Collections.singletonList(2), hitCounts);
+        assertEquals(2, tracker.getSnapshot().size());
+    }
+
+    @Test
+    public void frameWithoutHits_stillUpdatesTracker() {
+        pipeline.process(TextCorpusTest.frame(100, "Lot 4711"), ViewTransform.IDENTITY);
+        MatchGeometry matches = pipeline.process(
+                TextCorpusTest.frame(2_000_000_000L, "Ingredients"), ViewTransform.IDENTITY);
+
+        assertEquals(0, matches.size());
+        assertEquals(Arrays.asList(1, 0), hitCounts);
+        // The lost line has aged out.
+        assertEquals(0, tracker.getSnapshot().size());
+    }
+
+    @Test
+    public void linesWithoutBox_areSkipped() {
+        RecognizedText.Line line = new RecognizedText.Line("Lot 4711",
+                Collections.<RecognizedText.Element>emptyList());
+        RecognizedText text = new RecognizedText(100, 640, 480, "Lot 4711",
+                Collections.singletonList(new RecognizedText.Block("Lot 4711",
+                        Collections.singletonList(line))));
+
+        assertEquals(0, pipeline.process(text, ViewTransform.IDENTITY).size());
+        assertEquals(Collections.singletonList(1), hitCounts);
+    }
+
+    @Test
+    public void unfusedResult_leavesFusionOfFramesAlone() {
+        TextFusion fusion = new TextFusion();
+        TextPipeline fused = new TextPipeline(new FrameMatcher(
+                TermMatcher.compile(Collections.singletonList("lot 4711")), MEASURER), fusion,
+                new TextTracker(), (text, hitCount, matches) -> hitCounts.add(hitCount));
+        fused.process(TextCorpusTest.frame(100, "LOT 4711"), ViewTransform.IDENTITY);
+        fused.process(TextCorpusTest.frame(200, "LOT 4711"), ViewTransform.IDENTITY);
+
+        // A still of another size, which fusion would take as a new camera stream.
+        RecognizedText still = TextCorpusTest.frame(250, "LOT 4711");
+        still = new RecognizedText(still.getTimestampNanos(), 4032, 3024, still.getText(),
+                still.getBlocks());
+        fused.process(still, ViewTransform.IDENTITY, false);
+        assertEquals(1, fusion.getTrackCount());
+
+        // The earlier readings still outvote a misread.
+        fused.process(TextCorpusTest.frame(300, "L0T 4711"), ViewTransform.IDENTITY);
+        assertEquals(Arrays.asList(1, 1, 1, 1), hitCounts);
+    }
+
+    /** Returns a line whose words are 10 pixels per char wide, separated by 10 pixels. */
+    private static RecognizedText.Line words(int top, String... words) {
+        List<RecognizedText.Element> elements = new ArrayList<>();
+        int left = 0;
+        for (String word : words) {
+            int right = left + 10 * word.length();
+            elements.add(new RecognizedText.Element(word, left, top, right, top + 20));
+            left = right + 10;
+        }
+        return new RecognizedText.Line(String.join(" ", words), 0, top, left - 10, top + 20,
+                elements);
+    }
+
+    private static RecognizedText block(RecognizedText.Line... lines) {
+        StringBuilder text = new StringBuilder();
+        for (RecognizedText.Line line : lines) {
+            text.append(text.length() > 0 ? "\n" : "").append(line.getText());
+        }
+        return new RecognizedText(100, 640, 480, text.toString(), Collections.singletonList(
+                new RecognizedText.Block(text.toString(), Arrays.asList(lines))));
+    }
+
+    @Test
+    public void hit_coversOnlyMatchedWords() {
+        MatchGeometry matches = pipeline.process(
+                block(words(0, "Ingredients:", "Lot", "4711")), ViewTransform.IDENTITY);
+
+        assertEquals(1, matches.size());
+        assertEquals("Lot", matches.getLabel(0));
+        assertEquals(130f, matches.getLeft(0), 0f);
+        assertEquals(160f, matches.getRight(0), 0f);
+        assertEquals(0, matches.getTermId(0));
+        assertEquals(1f, matches.getScore(0), 0f);
+    }
+
+    @Test
+    public void hitAcrossLineBreak_getsBoxPerLine() {
+        MatchGeometry matches = pipeline.process(
+                block(words(0, "use", "best"), words(30, "before", "05/25")),
+                ViewTransform.IDENTITY);
+
+        assertEquals(2, matches.size());
+        assertEquals("best", matches.getLabel(0));
+        assertEquals(40f, matches.getLeft(0), 0f);
+        assertEquals("before", matches.getLabel(1));
+        assertEquals(30f, matches.getTop(1), 0f);
+        assertEquals(1, matches.getTermId(1));
+    }
+
+    @Test
+    public void fuzzyPipeline_toleratesOcrErrors() {
+        TextPipeline fuzzy = new TextPipeline(
+                FuzzyMatcher.compile(Arrays.asList("chocolate", "best before")), MEASURER,
+                new TextTracker(), (text, hitCount, matches) -> hitCounts.add(hitCount));
+        assertTrue(fuzzy.isFuzzy());
+        MatchGeometry matches = fuzzy.process(block(
+                words(0, "Dark", "Choc0-"), words(30, "lote", "bar"), words(60, "8est", "bef0re")),
+                ViewTransform.IDENTITY);
+
+        assertEquals(Collections.singletonList(2), hitCounts);
+        assertEquals(3, matches.size());
+        assertEquals("Choc0-", matches.getLabel(0));
+        assertEquals("lote", matches.getLabel(1));
+        assertEquals(0.888f, matches.getScore(1), 1e-3f);
+        assertEquals("8est bef0re", matches.getLabel(2));
+        assertEquals(1f, matches.getScore(2), 0f);
+    }
+
+    @Test
+    public void patternPipeline_boxesWordsOfEachMatch() {
+        TextPipeline patterns = new TextPipeline(
+                PatternMatcher.compile(Arrays.asList("lot \\d+", "@date")), MEASURER,
+                new TextTracker(), (text, hitCount, matches) -> hitCounts.add(hitCount));
+        assertFalse(patterns.isFuzzy());
+        MatchGeometry matches = patterns.process(block(
+                words(0, "Lot", "4711", "exp"), words(30, "12/05/26", "Lot", "X")),
+                ViewTransform.IDENTITY);
+
+        assertEquals(Collections.singletonList(2), hitCounts);
+        assertEquals(2, matches.size());
+        assertEquals("Lot 4711", matches.getLabel(0));
+        assertEquals(0, matches.getTermId(0));
+        assertEquals("12/05/26", matches.getLabel(1));
+        assertEquals(1, matches.getTermId(1));
+    }
+
+    @Test
+    public void replay_dropsStaleResults() {
+        // The third result was delivered after a newer one, as can happen with frames pipelined.
+        List<RecognizedText> corpus = Arrays.asList(
+                TextCorpusTest.frame(100, "Lot 1"),
+                TextCorpusTest.frame(300, "Lot 1", "Lot 2"),
+                TextCorpusTest.frame(200, "Lot 1"),
+                TextCorpusTest.frame(400, "nothing"));
+        FrameScheduler scheduler = FrameScheduler.create(2);
+        try {
+            CorpusReplay.Result result =
+                    CorpusReplay.run(corpus, scheduler, pipeline, ViewTransform.IDENTITY);
+            assertEquals(4, result.getFrameCount());
+            assertEquals(3, result.getDeliveredCount());
+            assertEquals(2, result.getMatchedFrameCount());
+            assertEquals(3, result.getMatchedLineCount());
+            assertEquals(1, scheduler.getDroppedStaleCount());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TextTracker}.
+ */
+public class TextTrackerTest {
+
+    private static final long MS = 1_000_000L;
+    private static final float DELTA = 0.5f;
+    private static final MatchGeometry.LabelMeasurer MEASURER = label -> 10f * label.length();
+
+    private static MatchGeometry boxes(float... ltrb) {
+        MatchGeometry.Builder builder = new MatchGeometry.Builder(ViewTransform.IDENTITY, MEASURER);
+        for (int i = 0; i < ltrb.length; i += 4) {
+            builder.add("line" + i / 4, ltrb[i], ltrb[i + 1], ltrb[i + 2], ltrb[i + 3]);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void newBoxes_startTracksWithDistinctIds() {
+        TextTracker tracker = new TextTracker();
+        tracker.update(boxes(0, 0, 100, 20, 0, 100, 100, 120), 100 * MS);
+        TextTracker.Snapshot tracks = tracker.getSnapshot();
+        assertEquals(2, tracks.size());
+        assertNotEquals(tracks.getId(0), tracks.getId(1));
+        assertEquals(0f, tracks.getLeft(0, 100 * MS), DELTA);
+        assertEquals(120f, tracks.getBottom(1, 100 * MS), DELTA);
+        assertFalse(tracks.isMoving(100 * MS));
+    }
+
+    @Test
+    public void overlappingBox_keepsTrackId() {
+        TextTracker tracker = new TextTracker();
+        tracker.update(boxes(0, 0, 100, 20), 100 * MS);
+        int id = tracker.getSnapshot().getId(0);
+        tracker.update(boxes(10, 2, 110, 22), 200 * MS);
+        TextTracker.Snapshot tracks = tracker.getSnapshot();
+        assertEquals(1, tracks.size());
+        assertEquals(id, tracks.getId(0));
+    }
+
+    @Test
+    public void heldBoxes_olderThanLastUpdate_areAddedAndKeptUnseen() {
+        TextTracker tracker = new TextTracker(0.7f, 0.3f, 700, 500);
+        tracker.update(boxes(0, 0, 100, 20), 100 * MS);
+        tracker.update(boxes(0, 0, 100, 20), 200 * MS);
+        int id = tracker.getSnapshot().getId(0);
+
+        tracker.hold(boxes(0, 0, 100, 20, 0, 100, 100, 120), 50 * MS, 2000);
+        TextTracker.Snapshot tracks = tracker.getSnapshot();
+        assertEquals(2, tracks.size());
+        assertEquals(id, tracks.getId(0));
+        assertFalse(tracks.isMoving(200 * MS));
+
+        // Longer unseen than a track is kept, but within the hold.
+        tracker.update(boxes(), 1500 * MS);
+        assertEquals(2, tracker.getSnapshot().size());
+        tracker.update(boxes(), 2300 * MS);
+        assertEquals(0, tracker.getSnapshot().size());
+    }
+
+    @Test
+    public void smallFastBox_isLinkedByCentroidDistance() {
+        TextTracker tracker = new TextTracker();
+        tracker.update(boxes(0, 0, 4, 10), 100 * MS);
+        int id = tracker.getSnapshot().getId(0);
+        // No overlap with the previous box, but within half a diagonal.
+        tracker.update(boxes(5, 0, 9, 10), 200 * MS);
+        assertEquals(1, tracker.getSnapshot().size());
+        assertEquals(id, tracker.getSnapshot().getId(0));
+    }
+
+    @Test
+    public void steadyMotion_isExtrapolatedBetweenResults() {
+        TextTracker tracker = new TextTracker();
+        // Moves 10px right every 100ms.
+        for (int i = 0; i <= 10; i++) {
+            tracker.update(boxes(10 * i, 0, 10 * i + 100, 20), i * 100 * MS);
+        }
+        TextTracker.Snapshot tracks = tracker.getSnapshot();
+        assertEquals(100f, tracks.getLeft(0, 1000 * MS), 2f);
+        assertEquals(105f, tracks.getLeft(0, 1050 * MS), 2f);
+        assertTrue(tracks.isMoving(1050 * MS));
+        // Extrapolation stops after 500ms without a result.
+        assertEquals(tracks.getLeft(0, 1500 * MS), tracks.getLeft(0, 3000 * MS), 0f);
+        assertFalse(tracks.isMoving(3000 * MS));
+    }
+
+    @Test
+    public void missedFrames_keepTrackUntilMaxMissed() {
+        TextTracker tracker = new TextTracker();
+        tracker.update(boxes(0, 0, 100, 20), 100 * MS);
+        tracker.update(MatchGeometry.EMPTY, 200 * MS);
+        tracker.update(MatchGeometry.EMPTY, 700 * MS);
+        assertEquals(1, tracker.getSnapshot().size());
+        tracker.update(MatchGeometry.EMPTY, 900 * MS);
+        assertEquals(0, tracker.getSnapshot().size());
+    }
+
+    @Test
+    public void olderResult_isIgnored() {
+        TextTracker tracker = new TextTracker();
+        tracker.update(boxes(0, 0, 100, 20), 200 * MS);
+        TextTracker.Snapshot before = tracker.getSnapshot();
+        tracker.update(boxes(500, 500, 600, 520), 100 * MS);
+        assertSame(before, tracker.getSnapshot());
+    }
+
+    @Test
+    public void track_followsTheTermOfItsLatestMatch() {
+        TextTracker tracker = new TextTracker();
+        tracker.update(new MatchGeometry.Builder(ViewTransform.IDENTITY, MEASURER)
+                .add(3, 1f, "oat milk", 0, 0, 100, 20).build(), 100 * MS);
+        assertEquals(3, tracker.getSnapshot().getTermId(0));
+        tracker.update(boxes(2, 0, 102, 20), 200 * MS);
+        assertEquals(MatchGeometry.NO_TERM, tracker.getSnapshot().getTermId(0));
+    }
+
+    @Test
+    public void clock_usesSmallestObservedDelay() {
+        TextTracker tracker = new TextTracker();
+        tracker.syncClock(1_000 * MS, 50 * MS);
+        tracker.syncClock(1_100 * MS, 160 * MS);
+        assertEquals(1_000 * MS, tracker.toFrameTime(50 * MS));
+    }
+
+    @Test
+    public void intersectionOverUnion_isSymmetric() {
+        assertEquals(1f / 3f, TextTracker.intersectionOverUnion(0, 0, 2, 1, 1, 0, 3, 1), 1e-6f);
+        assertEquals(0f, TextTracker.intersectionOverUnion(0, 0, 1, 1, 2, 2, 3, 3), 0f);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ViewTransform}.
+ */
+public class ViewTransformTest {
+
+    private static final float DELTA = 1e-3f;
+
+    @Test
+    public void unknownSizes_giveIdentity() {
+        assertSame(ViewTransform.IDENTITY, ViewTransform.create(0, 100, 640, 480, false));
+        assertSame(ViewTransform.IDENTITY, ViewTransform.create(100, 100, 0, 480, false));
+        assertEquals(12f, ViewTransform.IDENTITY.mapX(12f), DELTA);
+    }
+
+    @Test
+    public void widerView_cropsImageVertically() {
+        // A 480x480 image shown in a 960x540 view is scaled by 2 and 210px is cut from top and bottom.
+        ViewTransform transform = ViewTransform.create(960, 540, 480, 480, false);
+        assertEquals(2f, transform.getScaleFactor(), DELTA);
+        assertEquals(0f, transform.getPostScaleWidthOffset(), DELTA);
+        assertEquals(210f, transform.getPostScaleHeightOffset(), DELTA);
+        assertEquals(20f, transform.mapX(10f), DELTA);
+        assertEquals(-190f, transform.mapY(10f), DELTA);
+    }
+
+    @Test
+    public void tallerView_cropsImageHorizontally() {
+        ViewTransform transform = ViewTransform.create(1080, 1920, 480, 640, false);
+        assertEquals(3f, transform.getScaleFactor(), DELTA);
+        assertEquals(180f, transform.getPostScaleWidthOffset(), DELTA);
+        assertEquals(0f, transform.getPostScaleHeightOffset(), DELTA);
+        assertEquals(120f, transform.mapX(100f), DELTA);
+    }
+
+    @Test
+    public void flippedImage_mirrorsX() {
+        ViewTransform transform = ViewTransform.create(1080, 1920, 480, 640, true);
+        assertEquals(1080f - 120f, transform.mapX(100f), DELTA);
+        assertEquals(300f, transform.mapY(100f), DELTA);
+    }
+
+    @Test
+    public void cropOffset_appliesOnlyToRecognizedCoordinates() {
+        ViewTransform transform = ViewTransform.create(1080, 1920, 480, 640, false, 0, 160);
+        assertEquals(transform.mapImageY(170f), transform.mapY(10f), DELTA);
+        assertEquals(transform.mapImageX(10f), transform.mapX(10f), DELTA);
+        assertEquals(30f, transform.mapImageY(10f), DELTA);
+    }
+
+    @Test
+    public void unmap_invertsImageMapping() {
+        for (boolean flipped : new boolean[] {false, true}) {
+            ViewTransform transform = ViewTransform.create(1080, 1920, 480, 640, flipped, 8, 16);
+            assertEquals(123f, transform.unmapX(transform.mapImageX(123f)), DELTA);
+            assertEquals(456f, transform.unmapY(transform.mapImageY(456f)), DELTA);
+        }
+    }
+}
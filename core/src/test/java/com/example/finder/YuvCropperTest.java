@@ -0,0 +1,97 @@
+package com.example.finder;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link YuvCropper}.
+ */
+public class YuvCropperTest {
+
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 6;
+    // Padded rows, as many camera HALs report.
+    private static final int Y_ROW_STRIDE = 12;
+    private static final int UV_ROW_STRIDE = 12;
+
+    /** Luma is 10 * row + column; chroma planes encode their chroma row and column. */
+    private static ByteBuffer[] planes(int uvPixelStride) {
+        ByteBuffer y = ByteBuffer.allocateDirect(Y_ROW_STRIDE * HEIGHT);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                y.put(row * Y_ROW_STRIDE + col, (byte) (10 * row + col));
+            }
+        }
+        ByteBuffer u = ByteBuffer.allocateDirect(UV_ROW_STRIDE * HEIGHT / 2);
+        ByteBuffer v = ByteBuffer.allocateDirect(UV_ROW_STRIDE * HEIGHT / 2);
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int col = 0; col < WIDTH / 2; col++) {
+                int index = row * UV_ROW_STRIDE + col * uvPixelStride;
+                u.put(index, (byte) (100 + 10 * row + col));
+                v.put(index, (byte) (-100 + 10 * row + col));
+            }
+        }
+        return new ByteBuffer[] {y, u, v};
+    }
+
+    /** Copies a crop with {@link YuvCropper#copyToNv21} and returns the copied bytes. */
+    private static byte[] nv21(ByteBuffer[] planes, int uvPixelStride, CropRegion crop) {
+        // Larger than needed, to check that the limit marks the end of the image.
+        ByteBuffer nv21 = ByteBuffer.allocateDirect(YuvCropper.nv21Size(crop) + 16);
+        YuvCropper.copyToNv21(planes[0], Y_ROW_STRIDE, planes[1], planes[2], UV_ROW_STRIDE,
+                uvPixelStride, crop, nv21);
+        assertEquals(0, nv21.position());
+        byte[] copied = new byte[nv21.remaining()];
+        nv21.get(copied);
+        return copied;
+    }
+
+    @Test
+    public void fullFrame_isConvertedToNv21() {
+        ByteBuffer[] planes = planes(1);
+        byte[] nv21 = nv21(planes, 1, CropRegion.full(WIDTH, HEIGHT, 0));
+        assertEquals(WIDTH * HEIGHT * 3 / 2, nv21.length);
+        assertEquals(0, nv21[0]);
+        assertEquals(57, nv21[5 * WIDTH + 7]);
+        int chroma = WIDTH * HEIGHT;
+        // First pair is V then U of chroma sample (0, 0); the last is sample (2, 3).
+        assertEquals(-100, nv21[chroma]);
+        assertEquals(100, nv21[chroma + 1]);
+        assertEquals(-100 + 23, nv21[nv21.length - 2]);
+        assertEquals(100 + 23, nv21[nv21.length - 1]);
+    }
+
+    @Test
+    public void crop_copiesOnlyTheRegion() {
+        ByteBuffer[] planes = planes(2);
+        CropRegion crop = new CropRegion(WIDTH, HEIGHT, 0, 2, 2, 4, 4);
+        byte[] nv21 = nv21(planes, 2, crop);
+        assertEquals(YuvCropper.nv21Size(crop), nv21.length);
+        assertArrayEquals(new byte[] {22, 23, 24, 25}, Arrays.copyOfRange(nv21, 0, 4));
+        assertArrayEquals(new byte[] {52, 53, 54, 55}, Arrays.copyOfRange(nv21, 12, 16));
+        // Chroma samples (1, 1), (1, 2), (2, 1), (2, 2) as V/U pairs.
+        assertArrayEquals(new byte[] {-89, 111, -88, 112, -79, 121, -78, 122},
+                Arrays.copyOfRange(nv21, 16, 24));
+        // The plane is left as it was found.
+        assertEquals(0, planes[0].position());
+        assertEquals(planes[0].capacity(), planes[0].limit());
+    }
+
+    @Test
+    public void luma_isCopiedWithoutRowPadding() {
+        ByteBuffer[] planes = planes(1);
+        ByteBuffer luma = ByteBuffer.allocateDirect(64);
+        YuvCropper.copyLuma(planes[0], Y_ROW_STRIDE, new CropRegion(WIDTH, HEIGHT, 0, 2, 2, 4, 4),
+                luma);
+
+        assertEquals(16, luma.remaining());
+        assertEquals(22, luma.get(0));
+        assertEquals(25, luma.get(3));
+        assertEquals(32, luma.get(4));
+        assertEquals(55, luma.get(15));
+    }
+}
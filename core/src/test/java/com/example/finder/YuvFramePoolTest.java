@@ -0,0 +1,159 @@
+package com.example.finder;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link YuvFramePool}.
+ */
+public class YuvFramePoolTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    // Padded rows, and chroma interleaved with a pixel stride of 2, as most cameras deliver it.
+    private static final int ROW_STRIDE = 80;
+
+    private static ByteBuffer[] planes(int height) {
+        ByteBuffer y = ByteBuffer.allocateDirect(ROW_STRIDE * height);
+        for (int i = 0; i < y.capacity(); i++) {
+            y.put(i, (byte) i);
+        }
+        ByteBuffer u = ByteBuffer.allocateDirect(ROW_STRIDE * height / 2);
+        ByteBuffer v = ByteBuffer.allocateDirect(ROW_STRIDE * height / 2);
+        for (int i = 0; i < u.capacity(); i++) {
+            u.put(i, (byte) (i + 1));
+            v.put(i, (byte) (i + 2));
+        }
+        return new ByteBuffer[] {y, u, v};
+    }
+
+    private static YuvFramePool.Lease copy(YuvFramePool pool, ByteBuffer[] planes,
+                                           CropRegion crop, YuvFramePool.Layout layout) {
+        return pool.copy(planes[0], ROW_STRIDE, planes[1], planes[2], ROW_STRIDE, 2, crop, layout);
+    }
+
+    @Test
+    public void lease_holdsTheCropInTheRequestedLayout() {
+        YuvFramePool pool = new YuvFramePool(2);
+        pool.resize(WIDTH, HEIGHT);
+        ByteBuffer[] planes = planes(HEIGHT);
+        CropRegion crop = new CropRegion(WIDTH, HEIGHT, 90, 8, 4, 16, 10);
+
+        YuvFramePool.Lease nv21 = copy(pool, planes, crop, YuvFramePool.Layout.NV21);
+        ByteBuffer direct = ByteBuffer.allocateDirect(YuvCropper.nv21Size(crop));
+        YuvCropper.copyToNv21(planes[0], ROW_STRIDE, planes[1], planes[2], ROW_STRIDE, 2, crop,
+                direct);
+        byte[] expected = new byte[direct.remaining()];
+        direct.get(expected);
+        byte[] copied = new byte[nv21.getBuffer().remaining()];
+        nv21.getBuffer().duplicate().get(copied);
+        assertArrayEquals(expected, copied);
+        assertEquals(16, nv21.getWidth());
+        assertEquals(10, nv21.getHeight());
+        assertEquals(YuvFramePool.Layout.NV21, nv21.getLayout());
+
+        YuvFramePool.Lease luma = copy(pool, planes, crop, YuvFramePool.Layout.LUMA);
+        assertEquals(16 * 10, luma.getBuffer().remaining());
+        assertEquals(expected[16 * 10 - 1], luma.getBuffer().get(16 * 10 - 1));
+        assertNotSame(nv21.getBuffer(), luma.getBuffer());
+    }
+
+    @Test
+    public void releasedLeases_areReused() {
+        YuvFramePool pool = new YuvFramePool(2);
+        pool.resize(WIDTH, HEIGHT);
+        ByteBuffer[] planes = planes(HEIGHT);
+        CropRegion full = CropRegion.full(WIDTH, HEIGHT, 0);
+
+        YuvFramePool.Lease first = copy(pool, planes, full, YuvFramePool.Layout.NV21);
+        YuvFramePool.Lease second = copy(pool, planes, full, YuvFramePool.Layout.NV21);
+        first.release();
+        second.release();
+        // Crops of another size share the same buffers.
+        YuvFramePool.Lease crop = copy(pool, planes, new CropRegion(WIDTH, HEIGHT, 0, 0, 0, 8, 8),
+                YuvFramePool.Layout.NV21);
+
+        assertSame(second, crop);
+        assertEquals(1, pool.getFreeCount());
+        assertEquals(2, pool.getAllocatedCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doubleRelease_throws() {
+        YuvFramePool pool = new YuvFramePool(1);
+        YuvFramePool.Lease lease = copy(pool, planes(HEIGHT),
+                CropRegion.full(WIDTH, HEIGHT, 0), YuvFramePool.Layout.LUMA);
+        lease.release();
+        lease.release();
+    }
+
+    @Test
+    public void resize_dropsBuffersOfTheOldResolution() {
+        YuvFramePool pool = new YuvFramePool(2);
+        pool.resize(WIDTH, HEIGHT);
+        ByteBuffer[] planes = planes(HEIGHT);
+        YuvFramePool.Lease pooled = copy(pool, planes, CropRegion.full(WIDTH, HEIGHT, 0),
+                YuvFramePool.Layout.NV21);
+        YuvFramePool.Lease leased = copy(pool, planes, CropRegion.full(WIDTH, HEIGHT, 0),
+                YuvFramePool.Layout.NV21);
+        pooled.release();
+
+        pool.resize(WIDTH / 2, HEIGHT / 2);
+        assertEquals(0, pool.getFreeCount());
+        leased.release();
+        assertEquals(0, pool.getFreeCount());
+
+        YuvFramePool.Lease small = copy(pool, planes, CropRegion.full(WIDTH / 2, HEIGHT / 2, 0),
+                YuvFramePool.Layout.NV21);
+        assertEquals(WIDTH / 2 * HEIGHT / 2 * 3 / 2, small.getBuffer().capacity());
+    }
+
+    @Test
+    public void largerFrame_growsTheBuffers() {
+        YuvFramePool pool = new YuvFramePool(2);
+        pool.resize(WIDTH / 2, HEIGHT / 2);
+        ByteBuffer[] planes = planes(HEIGHT);
+
+        YuvFramePool.Lease lease = copy(pool, planes, CropRegion.full(WIDTH, HEIGHT, 0),
+                YuvFramePool.Layout.NV21);
+
+        assertEquals(WIDTH * HEIGHT * 3 / 2, pool.getBufferSize());
+        assertEquals(WIDTH * HEIGHT * 3 / 2, lease.getBuffer().remaining());
+        lease.release();
+        assertEquals(1, pool.getFreeCount());
+    }
+
+    @Test
+    public void warmPool_doesNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        YuvFramePool pool = new YuvFramePool(2);
+        pool.resize(WIDTH, HEIGHT);
+        ByteBuffer[] planes = planes(HEIGHT);
+        CropRegion crop = new CropRegion(WIDTH, HEIGHT, 0, 8, 4, 32, 24);
+        for (int i = 0; i < 10_000; i++) {
+            copy(pool, planes, crop, YuvFramePool.Layout.NV21).release();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1000; i++) {
+            copy(pool, planes, crop, YuvFramePool.Layout.NV21).release();
+            copy(pool, planes, crop, YuvFramePool.Layout.LUMA).release();
+        }
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+        // Reading the counter itself may allocate a little; a copy per frame would be 2 MB.
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+        assertEquals(1, pool.getAllocatedCount());
+    }
+}